@@ -0,0 +1,304 @@
+package web.crawler.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.CrawlerManager;
+import web.crawler.crawling.CrawlerSettings;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Measures cluster crawls, with each node of the cluster in its own JVM on
+ * the local machine, against one SiteServer. For each node count the harness
+ * starts that many JVMs, each running a CrawlerManager that joins the same
+ * cluster, and prints a line with the pages crawled by all nodes and the
+ * pages per second from the first page claimed on any node to the last.
+ *
+ * The page budget is split evenly between the nodes, and every node is given
+ * every starting link; a node that does not own a starting link's site sends
+ * it on to the node that does.
+ *
+ * Usage:
+ *   --nodes n,n,...        The node counts to run with. (1,2,4)
+ *   --threads n            The fetch thread count of each node. (16)
+ *   --pages n              The amount of pages to crawl in each run. (4000)
+ *   --hosts n              The amount of hosts. (64)
+ *   --pages-per-host n     The amount of pages on each host. (100000)
+ *   --fan-out n            The amount of links on each page. (20)
+ *   --page-size n          The approximate size of each page in bytes. (16384)
+ *   --latency n            How long each response is held back, in
+ *                          milliseconds. (50)
+ *   --error-rate x         The fraction of pages that answer with an error.
+ *                          (0.01)
+ *
+ * Other settings are read from crawler.* system properties and passed to
+ * every node. The per host rate limit is off unless
+ * crawler.host.requestsPerSecond is set, and crawler.cluster.idleSeconds is 2
+ * unless it is set.
+ *
+ * @author Jordan Hartwick
+ * July 1, 2016
+ */
+public class ClusterHarness {
+
+
+    /**
+     * The start of the line a node prints with its measurements.
+     */
+    private static final String RESULT = "NODE-RESULT ";
+
+
+    /** Private constructor so the class is only created by main. */
+    private ClusterHarness(){}
+
+
+    /**
+     * Runs the harness, or one node of a cluster if the first argument is
+     * --node.
+     *
+     * @param args  The command line arguments.
+     * @throws Exception    If the site could not be started or a run failed.
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length > 0 && args[0].equals("--node")) {
+            runNode(Integer.parseInt(args[1]), args[2].split(","));
+            return;
+        }
+
+        int[] nodeCounts = {1, 2, 4};
+        int threads = 16, pages = 4000;
+        int hosts = 64, pagesPerHost = 100000, fanOut = 20, pageSize = 16384;
+        long latency = 50;
+        double errorRate = 0.01;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--nodes":
+                    String[] counts = value(args, ++i).split(",");
+                    nodeCounts = new int[counts.length];
+                    for(int j = 0; j < counts.length; j++) {
+                        nodeCounts[j] = Integer.parseInt(counts[j].trim());
+                    }
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--pages":
+                    pages = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--hosts":
+                    hosts = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--pages-per-host":
+                    pagesPerHost = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--fan-out":
+                    fanOut = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--page-size":
+                    pageSize = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(value(args, ++i));
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value(args, ++i));
+                    break;
+                default:
+                    System.err.println("Unknown argument " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SiteServer site = new SiteServer(hosts, pagesPerHost, fanOut, pageSize, latency, errorRate);
+        site.start();
+        try {
+            System.out.printf(Locale.ROOT, "hosts=%d pagesPerHost=%d fanOut=%d pageSize=%d latency=%dms errorRate=%.3f threads=%d%n",
+                              hosts, pagesPerHost, fanOut, pageSize, latency, errorRate, threads);
+            System.out.printf(Locale.ROOT, "%6s %8s %9s %10s %10s%n",
+                              "nodes", "pages", "seconds", "pages/s", "per node");
+            for(int nodes : nodeCounts) {
+                long[] run = runCluster(nodes, threads, pages, site.seeds());
+                double seconds = (run[2] - run[1]) / 1000.0;
+                System.out.printf(Locale.ROOT, "%6d %8d %9.2f %10.1f %10.1f%n",
+                                  nodes, run[0], seconds, run[0] / seconds, run[0] / seconds / nodes);
+            }
+        } finally {
+            site.stop();
+        }
+        System.exit(0);
+    }
+
+
+    /**
+     * Returns the value after an argument.
+     *
+     * @param args  The command line arguments.
+     * @param i     The index of the value.
+     * @return      The value.
+     */
+    private static String value(String[] args, int i) {
+        if(i >= args.length) {
+            System.err.println("Missing value for " + args[i - 1]);
+            System.exit(2);
+        }
+        return args[i];
+    }
+
+
+    /**
+     * Starts one JVM for each node, waits for them all to finish and adds up
+     * their measurements.
+     *
+     * @param nodes     The amount of nodes.
+     * @param threads   The fetch thread count of each node.
+     * @param pages     The amount of pages to crawl across all nodes.
+     * @param seeds     The starting links.
+     * @return          The pages crawled, the first claim and the last claim
+     *                  on any node, in milliseconds since the epoch.
+     * @throws Exception    If a node could not be started or failed.
+     */
+    private static long[] runCluster(int nodes, int threads, int pages, String[] seeds)
+                                     throws Exception {
+        StringBuilder addresses = new StringBuilder();
+        for(int i = 0; i < nodes; i++) {
+            try(ServerSocket probe = new ServerSocket(0)) {
+                if(i > 0) addresses.append(',');
+                addresses.append("127.0.0.1:").append(probe.getLocalPort());
+            }
+        }
+
+        int perNode = (pages + nodes - 1) / nodes;
+        List<Process> processes = new ArrayList<>();
+        for(int i = 0; i < nodes; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("-Dcrawler.host.requestsPerSecond=0");
+            command.add("-Dcrawler.cluster.idleSeconds=2");
+            for(String key : System.getProperties().stringPropertyNames()) {
+                if(key.startsWith("crawler.")) command.add("-D" + key + "=" + System.getProperty(key));
+            }
+            command.add("-Dcrawler.cluster.nodes=" + addresses);
+            command.add("-Dcrawler.cluster.nodeId=" + i);
+            command.add("-Dcrawler.fetchThreads=" + threads);
+            command.add(ClusterHarness.class.getName());
+            command.add("--node");
+            command.add(String.valueOf(perNode));
+            command.add(String.join(",", seeds));
+
+            processes.add(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+        }
+
+        long total = 0, first = Long.MAX_VALUE, last = 0;
+        for(Process process : processes) {
+            String result = null;
+            try(BufferedReader in = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    if(line.startsWith(RESULT)) result = line.substring(RESULT.length());
+                }
+            }
+            if(process.waitFor() != 0 || result == null) {
+                throw new IOException("A node failed");
+            }
+
+            String[] parts = result.split(" ");
+            total += Long.parseLong(parts[0]);
+            if(Long.parseLong(parts[0]) > 0) {
+                first = Math.min(first, Long.parseLong(parts[1]));
+                last = Math.max(last, Long.parseLong(parts[2]));
+            }
+        }
+        return new long[] {total, first, last};
+    }
+
+
+    /**
+     * Runs one node of the cluster and prints its measurements.
+     *
+     * @param pages     The amount of pages this node may crawl.
+     * @param seeds     The starting links.
+     * @throws InterruptedException If the crawl was interrupted.
+     */
+    private static void runNode(int pages, String[] seeds) throws InterruptedException {
+        Properties properties = new Properties();
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("crawler.")) properties.setProperty(key, System.getProperty(key));
+        }
+        CrawlerSettings settings = CrawlerSettings.fromProperties(properties);
+
+        ClaimListener listener = new ClaimListener();
+        CrawlerManager crawlerManager = new CrawlerManager(new String[] {"crawler"},
+                                                           seeds,
+                                                           (pages + seeds.length - 1) / seeds.length,
+                                                           listener,
+                                                           settings);
+        crawlerManager.start();
+        crawlerManager.join();
+
+        System.out.println(RESULT + listener.claims.get() + " " + listener.first.get()
+                           + " " + listener.last.get());
+        System.out.flush();
+        System.exit(0);
+    }
+
+
+    /**
+     * Counts the links claimed by the node's crawlers and when the first and
+     * last were claimed.
+     */
+    private static class ClaimListener implements CrawlListener {
+
+
+        /** The start of the message sent when a link is claimed. */
+        private static final String VISITED = "Visited site ";
+
+
+        /** The amount of links claimed. */
+        final AtomicInteger claims = new AtomicInteger();
+
+
+        /** When the first link was claimed, in milliseconds since the epoch. */
+        final AtomicLong first = new AtomicLong();
+
+
+        /** When the last link was claimed, in milliseconds since the epoch. */
+        final AtomicLong last = new AtomicLong();
+
+
+        /*
+            Results are not needed, only the claims.
+        */
+        @Override
+        public void resultFound(InformationPackage infoPackage) {
+        }
+
+
+        /*
+            Records when a link is claimed.
+        */
+        @Override
+        public void message(String text) {
+            if(text.startsWith(VISITED)) {
+                long now = System.currentTimeMillis();
+                claims.incrementAndGet();
+                first.compareAndSet(0, now);
+                last.set(now);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package web.crawler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+
+/**
+ * Loads the offline HTML pages the benchmarks run over. The pages are in
+ * "bench/corpus" unless the "corpus.dir" system property points elsewhere.
+ *
+ * @author Jordan Hartwick
+ * June 20, 2016
+ */
+final class Corpus {
+
+
+    /**
+     * The address the corpus pages pretend to come from.
+     */
+    static final String BASE_URI = "http://corpus.example.com/index.html";
+
+
+    /**
+     * Words that appear in the corpus pages, used as search queries.
+     */
+    private static final String[] WORDS = {
+        "java", "crawler", "search", "query", "link", "page", "content", "web",
+        "server", "network", "thread", "queue", "frontier", "host", "robot",
+        "index", "document", "parser", "token", "stream", "buffer", "memory",
+        "cache", "latency", "throughput", "benchmark", "result", "export",
+        "scan", "match", "data", "system", "process", "code", "function",
+        "method", "class", "object", "value", "string", "number", "list",
+        "model", "file", "time", "work", "the", "and", "that", "which"
+    };
+
+
+    /** Private constructor so the class cannot be instantiated. */
+    private Corpus(){}
+
+
+    /**
+     * Loads a corpus page.
+     *
+     * @param name  The name of the page without ".html".
+     * @return      The page's HTML.
+     * @throws IOException  If the page could not be read.
+     */
+    static String load(String name) throws IOException {
+        File dir = new File(System.getProperty("corpus.dir", "bench/corpus"));
+        return new String(Files.readAllBytes(new File(dir, name + ".html").toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Returns search queries taken from the words used in the corpus. Past
+     * the end of the word list, words are joined in pairs.
+     *
+     * @param count     The amount of queries.
+     * @return          The queries.
+     */
+    static String[] queries(int count) {
+        String[] queries = new String[count];
+        for(int i = 0; i < count; i++) {
+            queries[i] = i < WORDS.length
+                            ? WORDS[i]
+                            : WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length];
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,242 @@
+package web.crawler.bench;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.CrawlerManager;
+import web.crawler.crawling.CrawlerSettings;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Measures how quickly a crawl finds the pages about a topic, in the order
+ * the links were found and then best first. The SiteServer is given a topic
+ * rate so some pages are about SiteServer.TOPIC, and both crawls search for
+ * it with the same page budget. For each crawl a line is printed with the
+ * pages about the topic found within 10%, 25%, 50% and all of the budget,
+ * and the hits of the topic on all pages. Pages that only link to a page
+ * about the topic have it in their anchor text, so a page only counts as
+ * about the topic with at least TOPICAL_HITS hits.
+ *
+ * Usage:
+ *   --pages n              The page budget of each crawl. (2000)
+ *   --threads n            The amount of fetch threads. (16)
+ *   --topic-rate x         The fraction of the pages about the topic. (0.05)
+ *   --hosts n              The amount of hosts. (8)
+ *   --pages-per-host n     The amount of pages on each host. (100000)
+ *   --fan-out n            The amount of links on each page. (20)
+ *   --page-size n          The approximate size of each page in bytes. (8192)
+ *   --latency n            How long each response is held back, in
+ *                          milliseconds. (5)
+ *
+ * Other settings are read from crawler.* system properties. The per host
+ * rate limit is off unless crawler.host.requestsPerSecond is set.
+ *
+ * @author Jordan Hartwick
+ * July 2, 2016
+ */
+public class FocusHarness {
+
+
+    /**
+     * The fractions of the budget the pages found are reported at.
+     */
+    private static final double[] MARKS = {0.10, 0.25, 0.50, 1.0};
+
+
+    /**
+     * The hits a page needs to count as about the topic.
+     */
+    private static final int TOPICAL_HITS = 10;
+
+
+    /** Private constructor so the class is only created by main. */
+    private FocusHarness(){}
+
+
+    /**
+     * Starts the site, runs both crawls and prints the results.
+     *
+     * @param args  The command line arguments.
+     * @throws Exception    If the site could not be started or a crawl was
+     *                      interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        int pages = 2000, threads = 16;
+        double topicRate = 0.05;
+        int hosts = 8, pagesPerHost = 100000, fanOut = 20, pageSize = 8192;
+        long latency = 5;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--pages":
+                    pages = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--topic-rate":
+                    topicRate = Double.parseDouble(value(args, ++i));
+                    break;
+                case "--hosts":
+                    hosts = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--pages-per-host":
+                    pagesPerHost = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--fan-out":
+                    fanOut = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--page-size":
+                    pageSize = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(value(args, ++i));
+                    break;
+                default:
+                    System.err.println("Unknown argument " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("crawler.host.requestsPerSecond", "0");
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("crawler.")) properties.setProperty(key, System.getProperty(key));
+        }
+
+        SiteServer site = new SiteServer(hosts, pagesPerHost, fanOut, pageSize, latency, 0);
+        site.setTopicRate(topicRate);
+        site.start();
+        try {
+            System.out.printf(Locale.ROOT, "hosts=%d pagesPerHost=%d fanOut=%d topicRate=%.3f budget=%d threads=%d%n",
+                              hosts, pagesPerHost, fanOut, topicRate, pages, threads);
+            System.out.printf(Locale.ROOT, "%-12s %8s %8s %8s %8s %10s%n",
+                              "order", "10%", "25%", "50%", "100%", "hits");
+            for(boolean priority : new boolean[] {false, true}) {
+                CrawlerSettings settings = CrawlerSettings.fromProperties(properties);
+                settings.setFetchThreads(threads);
+                settings.setFrontierPriority(priority);
+
+                FocusListener listener = crawl(site.seeds(), pages, settings);
+                int[] found = listener.foundBy(pages);
+                System.out.printf(Locale.ROOT, "%-12s %8d %8d %8d %8d %10d%n",
+                                  priority ? "best first" : "found order",
+                                  found[0], found[1], found[2], found[3], listener.hits.get());
+            }
+        } finally {
+            site.stop();
+        }
+        System.exit(0);
+    }
+
+
+    /**
+     * Returns the value after an argument.
+     *
+     * @param args  The command line arguments.
+     * @param i     The index of the value.
+     * @return      The value.
+     */
+    private static String value(String[] args, int i) {
+        if(i >= args.length) {
+            System.err.println("Missing value for " + args[i - 1]);
+            System.exit(2);
+        }
+        return args[i];
+    }
+
+
+    /**
+     * Crawls the site for the topic and waits for the crawl to finish.
+     *
+     * @param seeds     The starting links.
+     * @param pages     The page budget.
+     * @param settings  The settings of the crawl.
+     * @return          The listener that recorded the crawl.
+     * @throws InterruptedException If the crawl was interrupted.
+     */
+    private static FocusListener crawl(String[] seeds, int pages, CrawlerSettings settings)
+                                       throws InterruptedException {
+        FocusListener listener = new FocusListener();
+        CrawlerManager crawlerManager = new CrawlerManager(new String[] {SiteServer.TOPIC},
+                                                           seeds,
+                                                           (pages + seeds.length - 1) / seeds.length,
+                                                           listener,
+                                                           settings);
+        crawlerManager.start();
+        crawlerManager.join();
+        return listener;
+    }
+
+
+    /**
+     * Records, for each page about the topic, how many links had been claimed
+     * when it was reported.
+     */
+    private static class FocusListener implements CrawlListener {
+
+
+        /** The start of the message sent when a link is claimed. */
+        private static final String VISITED = "Visited site ";
+
+
+        /** The amount of links claimed. */
+        final AtomicInteger claims = new AtomicInteger();
+
+
+        /** The hits of the topic on all pages. */
+        final AtomicInteger hits = new AtomicInteger();
+
+
+        /** The claims made when each page about the topic was reported. */
+        private int[] foundAt = new int[256];
+
+
+        /** The amount of pages about the topic. */
+        private int found;
+
+
+        /*
+            Records a page about the topic.
+        */
+        @Override
+        public synchronized void resultFound(InformationPackage infoPackage) {
+            int amount = infoPackage.getSearchQueryOccurrences()[0];
+            hits.addAndGet(amount);
+            if(amount < TOPICAL_HITS) return;
+
+            if(found == foundAt.length) foundAt = Arrays.copyOf(foundAt, found * 2);
+            foundAt[found++] = claims.get();
+        }
+
+
+        /*
+            Counts a claimed link.
+        */
+        @Override
+        public void message(String text) {
+            if(text.startsWith(VISITED)) claims.incrementAndGet();
+        }
+
+
+        /**
+         * Returns the pages about the topic found within each of MARKS of
+         * the budget.
+         *
+         * @param budget    The page budget.
+         * @return          The pages found by each mark.
+         */
+        synchronized int[] foundBy(int budget) {
+            int[] result = new int[MARKS.length];
+            for(int i = 0; i < found; i++) {
+                for(int m = 0; m < MARKS.length; m++) {
+                    if(foundAt[i] <= MARKS[m] * budget) result[m]++;
+                }
+            }
+            return result;
+        }
+    }
+}
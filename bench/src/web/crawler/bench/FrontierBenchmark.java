@@ -0,0 +1,184 @@
+package web.crawler.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import web.crawler.frontier.WorkStealingFrontier;
+
+
+/**
+ * Measures taking the next link from a large queue, which is what
+ * Crawler.getNextLink does. Each operation takes one link and adds one, so
+ * the queue stays the same size.
+ *
+ * arrayListRemoveFirst - how Crawler.getNextLink used to work, with
+ *                        ArrayList.remove(0).
+ * frontier             - one crawler on the WorkStealingFrontier.
+ * sharedFrontier       - four crawlers sharing a WorkStealingFrontier where all
+ *                        of the links start in one crawler's deque, so the
+ *                        others have to steal.
+ *
+ * @author Jordan Hartwick
+ * June 20, 2016
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontierBenchmark {
+
+
+    /**
+     * A queue owned by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Queues {
+
+
+        /** The amount of links in the queue. */
+        @Param({"10000", "100000", "1000000"})
+        public int queueSize;
+
+
+        /** The old link queue. */
+        List<String> linkQueue;
+
+
+        /** The frontier. */
+        WorkStealingFrontier frontier;
+
+
+        /**
+         * Fills the queues.
+         */
+        @Setup
+        public void setup() {
+            linkQueue = new ArrayList<>();
+            frontier = new WorkStealingFrontier(1);
+            for(int i = 0; i < queueSize; i++) {
+                String link = "http://corpus.example.com/page/" + i;
+                linkQueue.add(link);
+                frontier.offer(0, link);
+            }
+        }
+    }
+
+
+    /**
+     * A frontier shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+
+        /** The amount of links in the frontier. */
+        @Param({"10000", "100000", "1000000"})
+        public int queueSize;
+
+
+        /** The frontier. */
+        WorkStealingFrontier frontier;
+
+
+        /** Hands out worker indexes. */
+        final AtomicInteger nextWorker = new AtomicInteger();
+
+
+        /**
+         * Fills the frontier, all in the first worker's deque.
+         */
+        @Setup
+        public void setup() {
+            frontier = new WorkStealingFrontier(4);
+            for(int i = 0; i < queueSize; i++) {
+                frontier.offer(0, "http://corpus.example.com/page/" + i);
+            }
+        }
+    }
+
+
+    /**
+     * The worker index of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+
+
+        /** The worker index. */
+        int id;
+
+
+        /**
+         * Takes the next worker index.
+         *
+         * @param shared    The shared frontier.
+         */
+        @Setup
+        public void setup(Shared shared) {
+            id = shared.nextWorker.getAndIncrement() % 4;
+        }
+    }
+
+
+    /**
+     * Takes the first link of an ArrayList and adds it to the end.
+     *
+     * @param q     The queues.
+     * @return      The link.
+     */
+    @Benchmark
+    public String arrayListRemoveFirst(Queues q) {
+        String link = q.linkQueue.remove(0);
+        q.linkQueue.add(link);
+        return link;
+    }
+
+
+    /**
+     * Takes a link from the frontier and adds it back.
+     *
+     * @param q     The queues.
+     * @return      The link.
+     */
+    @Benchmark
+    public String frontier(Queues q) {
+        String link = q.frontier.poll(0);
+        q.frontier.complete(0);
+        q.frontier.offer(0, link);
+        return link;
+    }
+
+
+    /**
+     * Takes a link from the shared frontier, stealing if needed, and adds it
+     * to this thread's deque.
+     *
+     * @param shared    The shared frontier.
+     * @param worker    This thread's worker index.
+     * @return          The link.
+     */
+    @Benchmark
+    @Threads(4)
+    public String sharedFrontier(Shared shared, Worker worker) {
+        String link = shared.frontier.poll(worker.id);
+        if(link != null) {
+            shared.frontier.complete(worker.id);
+            shared.frontier.offer(worker.id, link);
+        }
+        return link;
+    }
+}
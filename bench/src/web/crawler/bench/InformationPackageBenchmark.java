@@ -0,0 +1,65 @@
+package web.crawler.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Measures InformationPackage.toString, which is used for the quick info area
+ * and the text export.
+ *
+ * @author Jordan Hartwick
+ * June 20, 2016
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InformationPackageBenchmark {
+
+
+    /** The amount of search queries. */
+    @Param({"1", "5", "20"})
+    public int queryCount;
+
+
+    /** The InformationPackage to print. */
+    private InformationPackage infoPackage;
+
+
+    /**
+     * Creates the InformationPackage.
+     */
+    @Setup
+    public void setup() {
+        String[] queries = Corpus.queries(queryCount);
+        int[] occurrences = new int[queryCount];
+        for(int i = 0; i < queryCount; i++) occurrences[i] = i * 7 % 13;
+
+        infoPackage = new InformationPackage(Corpus.BASE_URI, queries, occurrences);
+    }
+
+
+    /**
+     * Prints the InformationPackage.
+     *
+     * @return  The printed InformationPackage.
+     */
+    @Benchmark
+    public String toStringBenchmark() {
+        return infoPackage.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package web.crawler.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import web.crawler.crawling.HtmlStreamScanner;
+import web.crawler.crawling.QueryMatcher;
+
+
+/**
+ * Measures counting the search queries on a page, which is what
+ * CrawlerLeg.searchDocument does, for different page sizes and query counts.
+ *
+ * matcher          - what searchDocument does: one QueryMatcher pass over the
+ *                    body text of an already parsed Document.
+ * regexPerQuery    - how searchDocument used to work: a Pattern compiled and
+ *                    the body text lower cased once per query.
+ * parseAndMatch    - the whole Document path of CrawlerLeg.crawl: parse, count
+ *                    and select the links.
+ * streamingScan    - the streaming scan mode of CrawlerLeg.crawl.
+ *
+ * @author Jordan Hartwick
+ * June 20, 2016
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchDocumentBenchmark {
+
+
+    /** The corpus page to search. */
+    @Param({"small", "medium", "large"})
+    public String page;
+
+
+    /** The amount of search queries. */
+    @Param({"1", "5", "20", "50"})
+    public int queryCount;
+
+
+    /** The page's HTML. */
+    private String html;
+
+
+    /** The parsed page. */
+    private Document doc;
+
+
+    /** The search queries. */
+    private String[] queries;
+
+
+    /** The compiled search queries. */
+    private QueryMatcher matcher;
+
+
+    /** The scanner for the streaming scan. */
+    private HtmlStreamScanner scanner;
+
+
+    /**
+     * Loads and parses the page and compiles the queries.
+     *
+     * @throws IOException  If the page could not be read.
+     */
+    @Setup
+    public void setup() throws IOException {
+        html = Corpus.load(page);
+        doc = Jsoup.parse(html, Corpus.BASE_URI);
+        queries = Corpus.queries(queryCount);
+        matcher = new QueryMatcher(queries);
+        scanner = new HtmlStreamScanner();
+    }
+
+
+    /**
+     * Counts the queries in one pass over the body text.
+     *
+     * @return  The occurrences of each query.
+     */
+    @Benchmark
+    public int[] matcher() {
+        return matcher.count(doc.body().text());
+    }
+
+
+    /**
+     * Counts the queries the way searchDocument used to.
+     *
+     * @return  The occurrences of each query.
+     */
+    @Benchmark
+    public int[] regexPerQuery() {
+        int[] amountFound = new int[queries.length];
+        for(int i = 0; i < queries.length; i++) {
+            Pattern pattern = Pattern.compile("\\b" + queries[i] + "\\b");
+            Matcher m = pattern.matcher(doc.body().text().toLowerCase());
+            while(m.find()) {
+                amountFound[i]++;
+            }
+        }
+        return amountFound;
+    }
+
+
+    /**
+     * Parses the page, counts the queries and resolves the links.
+     *
+     * @param bh    Consumes the links.
+     * @return      The occurrences of each query.
+     */
+    @Benchmark
+    public int[] parseAndMatch(Blackhole bh) {
+        Document parsed = Jsoup.parse(html, Corpus.BASE_URI);
+        int[] counts = matcher.count(parsed.body().text());
+        for(org.jsoup.nodes.Element e : parsed.select("a[href]")) {
+            bh.consume(e.absUrl("href"));
+        }
+        return counts;
+    }
+
+
+    /**
+     * Scans the page in one pass without building a Document.
+     *
+     * @param bh    Consumes the links.
+     * @return      The occurrences of each query.
+     * @throws IOException  Never; the page is read from memory.
+     */
+    @Benchmark
+    public int[] streamingScan(final Blackhole bh) throws IOException {
+        final QueryMatcher.Counter counter = matcher.newCounter();
+        scanner.scan(new StringReader(html), new HtmlStreamScanner.Handler() {
+
+            @Override
+            public void text(char[] chars, int offset, int length) {
+                counter.feed(chars, offset, length);
+            }
+
+            @Override
+            public void link(String href, String anchorText) {
+                bh.consume(org.jsoup.helper.StringUtil.resolve(Corpus.BASE_URI, href));
+            }
+
+            @Override
+            public void base(String href) {}
+        });
+        return counter.finish();
+    }
+}
@@ -0,0 +1,648 @@
+package web.crawler.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Serves a generated site graph on the local machine, so crawls can be
+ * measured without the network. Each host is a separate server on its own
+ * port of 127.0.0.1, and each host has pages "/page/0" to "/page/n-1". Pages
+ * are generated from their host and number, so the same page always has the
+ * same text and links.
+ *
+ * Every page links to a number of other pages, some on the same host and
+ * some on other hosts, and has text padded to about the same size. Responses
+ * are held back for the configured latency without holding a thread, and a
+ * fraction of the pages always answer with an error. Pages carry an ETag, and
+ * a request whose If-None-Match matches it gets a 304 with no body.
+ *
+ * If a topic rate is set, that fraction of the pages is about TOPIC: their
+ * text is full of it, most of their links go to other pages about it, and
+ * links to pages about it say so in their anchor text. Other pages only
+ * link to a page about the topic now and then. This gives a focused crawl
+ * the same clues real sites do.
+ *
+ * If a file rate is set, that fraction of the links go to files that cannot
+ * be scanned instead of pages: half of them end in ".pdf" and half have no
+ * extension, and all of them answer with FILE_SIZE bytes of
+ * application/octet-stream.
+ *
+ * If a host capacity is set, each host answers that many requests at a time
+ * in the configured latency. A host with more requests in flight shares its
+ * time between them, so each takes longer, and once it has OVERLOAD times
+ * its capacity in flight it answers any more with 503 straight away, like a
+ * server shedding load.
+ *
+ * If gzip is turned on, pages are gzipped for requests that accept it, so
+ * the bytes a crawl receives can be compared with and without compression.
+ *
+ * @author Jordan Hartwick
+ * June 21, 2016
+ */
+public class SiteServer {
+
+
+    /**
+     * Words used for the page text. The search queries should be taken from
+     * here. Every page's heading contains "crawler", so that query is found
+     * on every page.
+     */
+    static final String[] WORDS = {
+        "java", "crawler", "search", "query", "link", "page", "content", "web",
+        "server", "network", "thread", "queue", "frontier", "host", "robot",
+        "index", "document", "parser", "token", "stream", "buffer", "memory"
+    };
+
+
+    /**
+     * The word the pages about the topic are full of. It is not one of WORDS.
+     */
+    static final String TOPIC = "focus";
+
+
+    /**
+     * The multiple of a host's capacity in flight at which it answers 503.
+     */
+    static final int OVERLOAD = 4;
+
+
+    /**
+     * The size of each file, in bytes.
+     */
+    static final int FILE_SIZE = 256 * 1024;
+
+
+    /**
+     * The body of each file.
+     */
+    private static final byte[] FILE = new byte[FILE_SIZE];
+
+
+    static {
+        // Without this the server's responses wait on the client's delayed
+        // ACK, which adds about 40ms to every page.
+        if(System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+
+    /**
+     * The amount of pages on each host.
+     */
+    private final int pagesPerHost;
+
+
+    /**
+     * The amount of links on each page.
+     */
+    private final int fanOut;
+
+
+    /**
+     * The approximate size of each page in bytes.
+     */
+    private final int pageSize;
+
+
+    /**
+     * How long each response is held back, in milliseconds.
+     */
+    private final long latencyMillis;
+
+
+    /**
+     * The fraction of pages that answer with an error.
+     */
+    private final double errorRate;
+
+
+    /**
+     * The fraction of the pages about TOPIC.
+     */
+    private double topicRate;
+
+
+    /**
+     * The amount of requests each host answers at a time without slowing
+     * down, or 0 for no limit.
+     */
+    private int hostCapacity;
+
+
+    /**
+     * The fraction of the links that go to files.
+     */
+    private double fileRate;
+
+
+    /**
+     * True to gzip pages for requests that accept it.
+     */
+    private boolean gzip;
+
+
+    /**
+     * The amount of requests in flight to each host.
+     */
+    private final AtomicInteger[] active;
+
+
+    /**
+     * The servers, one for each host.
+     */
+    private final List<HttpServer> servers = new ArrayList<>();
+
+
+    /**
+     * The address of each host, for example "http://127.0.0.1:5000".
+     */
+    private final List<String> hosts = new ArrayList<>();
+
+
+    /**
+     * Handles the requests of all hosts.
+     */
+    private final ExecutorService handlers;
+
+
+    /**
+     * Sends the held back responses.
+     */
+    private final ScheduledExecutorService delayer;
+
+
+    /**
+     * The amount of pages served.
+     */
+    private final AtomicLong served = new AtomicLong();
+
+
+    /**
+     * The amount of error responses sent.
+     */
+    private final AtomicLong errors = new AtomicLong();
+
+
+    /**
+     * Creates a new instance of the SiteServer class. The servers are not
+     * started until start is called.
+     *
+     * @param hostCount     The amount of hosts.
+     * @param pagesPerHost  The amount of pages on each host.
+     * @param fanOut        The amount of links on each page.
+     * @param pageSize      The approximate size of each page in bytes.
+     * @param latencyMillis How long each response is held back.
+     * @param errorRate     The fraction of pages that answer with an error,
+     *                      from 0 to 1.
+     * @throws IOException  If a server could not be created.
+     */
+    public SiteServer(int hostCount, int pagesPerHost, int fanOut, int pageSize,
+                      long latencyMillis, double errorRate) throws IOException {
+        this(hostCount, pagesPerHost, fanOut, pageSize, latencyMillis, errorRate, 0);
+    }
+
+
+    /**
+     * Creates a new instance of the SiteServer class with each host on a set
+     * port, so the links stay the same from one run to the next. The servers
+     * are not started until start is called.
+     *
+     * @param hostCount     The amount of hosts.
+     * @param pagesPerHost  The amount of pages on each host.
+     * @param fanOut        The amount of links on each page.
+     * @param pageSize      The approximate size of each page in bytes.
+     * @param latencyMillis How long each response is held back.
+     * @param errorRate     The fraction of pages that answer with an error,
+     *                      from 0 to 1.
+     * @param firstPort     The port of the first host, with the other hosts
+     *                      on the ports after it, or 0 for any free ports.
+     * @throws IOException  If a server could not be created.
+     */
+    public SiteServer(int hostCount, int pagesPerHost, int fanOut, int pageSize,
+                      long latencyMillis, double errorRate, int firstPort) throws IOException {
+        this.pagesPerHost = pagesPerHost;
+        this.fanOut = fanOut;
+        this.pageSize = pageSize;
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.active = new AtomicInteger[hostCount];
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        handlers = Executors.newFixedThreadPool(Math.max(4, processors * 2));
+        delayer = Executors.newScheduledThreadPool(Math.max(2, processors / 2));
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for(int i = 0; i < hostCount; i++) {
+            HttpServer server = HttpServer.create(new InetSocketAddress(loopback, firstPort == 0 ? 0 : firstPort + i), 1024);
+            active[i] = new AtomicInteger();
+            server.createContext("/", new PageHandler(i));
+            server.setExecutor(handlers);
+            servers.add(server);
+            hosts.add("http://" + loopback.getHostAddress() + ":" + server.getAddress().getPort());
+        }
+    }
+
+
+    /**
+     * Starts the servers.
+     */
+    public void start() {
+        for(HttpServer server : servers) {
+            server.start();
+        }
+    }
+
+
+    /**
+     * Stops the servers.
+     */
+    public void stop() {
+        for(HttpServer server : servers) {
+            server.stop(0);
+        }
+        delayer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+
+    /**
+     * Returns the first page of each host, to be used as starting links.
+     *
+     * @return  The first page of each host.
+     */
+    public String[] seeds() {
+        String[] seeds = new String[hosts.size()];
+        for(int i = 0; i < seeds.length; i++) {
+            seeds[i] = hosts.get(i) + "/page/0";
+        }
+        return seeds;
+    }
+
+
+    /**
+     * Sets the fraction of the pages about TOPIC. The first page of each host
+     * is never about it.
+     *
+     * @param topicRate     The fraction, from 0 to 1. 0, the default, gives
+     *                      the same pages as before topics were added.
+     */
+    public void setTopicRate(double topicRate) {
+        this.topicRate = topicRate;
+    }
+
+
+    /**
+     * Sets the fraction of the links that go to files that cannot be
+     * scanned.
+     *
+     * @param fileRate  The fraction, from 0 to 1. 0, the default, gives the
+     *                  same pages as before files were added.
+     */
+    public void setFileRate(double fileRate) {
+        this.fileRate = fileRate;
+    }
+
+
+    /**
+     * Sets whether pages are sent gzipped to requests whose Accept-Encoding
+     * header names gzip. Files are always sent as they are.
+     *
+     * @param gzip  True to gzip pages. False, the default, sends every body
+     *              as it is.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+
+    /**
+     * Sets the amount of requests each host answers at a time without
+     * slowing down.
+     *
+     * @param hostCapacity  The amount of requests, or 0, the default, for no
+     *                      limit.
+     */
+    public void setHostCapacity(int hostCapacity) {
+        this.hostCapacity = hostCapacity;
+    }
+
+
+    /**
+     * Returns true if a page is about TOPIC.
+     *
+     * @param host  The host's index.
+     * @param page  The page's number.
+     * @return      True if the page is about the topic.
+     */
+    boolean isTopical(int host, int page) {
+        return topicRate > 0 && page != 0
+               && new SplittableRandom((((long) host << 32) ^ page) * 0x9e3779b97f4a7c15L).nextDouble() < topicRate;
+    }
+
+
+    /**
+     * Returns the amount of pages served, including errors.
+     *
+     * @return  The amount of pages served.
+     */
+    public long getServed() {
+        return served.get();
+    }
+
+
+    /**
+     * Returns the amount of error responses sent.
+     *
+     * @return  The amount of error responses sent.
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+
+    /**
+     * Returns true if a page always answers with an error.
+     *
+     * @param host  The host's index.
+     * @param page  The page's number.
+     * @return      True if the page answers with an error.
+     */
+    private boolean isError(int host, int page) {
+        return page != 0 && random(host, page).nextDouble() < errorRate;
+    }
+
+
+    /**
+     * Returns the random numbers a page is generated from.
+     *
+     * @param host  The host's index.
+     * @param page  The page's number.
+     * @return      The random numbers for the page.
+     */
+    private static SplittableRandom random(int host, int page) {
+        return new SplittableRandom(((long) host << 32) ^ page);
+    }
+
+
+    /**
+     * Generates a page. Most links stay on the same host and are relative;
+     * one in four goes to another host and is absolute.
+     *
+     * @param host  The host's index.
+     * @param page  The page's number.
+     * @return      The page's HTML.
+     */
+    byte[] page(int host, int page) {
+        SplittableRandom random = random(host, page);
+        random.nextDouble();
+        boolean topical = isTopical(host, page);
+
+        StringBuilder sb = new StringBuilder(pageSize + 256);
+        sb.append("<!DOCTYPE html>\n<html><head><title>Page ").append(page)
+          .append("</title></head>\n<body>\n<h1>Crawler page ").append(page).append("</h1>\n<ul>\n");
+
+        for(int i = 0; i < fanOut; i++) {
+            int target = random.nextInt(pagesPerHost);
+            int targetHost = host;
+            String prefix = "";
+            if(hosts.size() > 1 && random.nextInt(4) == 0) {
+                targetHost = random.nextInt(hosts.size());
+                prefix = hosts.get(targetHost);
+            }
+
+            if(topicRate > 0 && random.nextDouble() < (topical ? 0.6 : 0.03)) {
+                target = topicalPage(targetHost, random);
+            }
+            if(fileRate > 0 && random.nextDouble() < fileRate) {
+                sb.append("<li><a href=\"").append(prefix).append("/file/").append(target)
+                  .append(target % 2 == 0 ? ".pdf" : "").append("\">File ").append(target).append("</a></li>\n");
+                continue;
+            }
+            String anchor = isTopical(targetHost, target) ? "Focus page " : "Page ";
+            sb.append("<li><a href=\"").append(prefix).append("/page/").append(target).append("\">")
+              .append(anchor).append(target).append("</a></li>\n");
+        }
+        sb.append("</ul>\n");
+
+        while(sb.length() < pageSize) {
+            sb.append("<p>");
+            for(int i = 0; i < 40; i++) {
+                if(i > 0) sb.append(' ');
+                String word = topical && random.nextInt(10) == 0 ? TOPIC : WORDS[random.nextInt(WORDS.length)];
+                if(random.nextInt(8) == 0) {
+                    sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                } else {
+                    sb.append(word);
+                }
+            }
+            sb.append(".</p>\n");
+        }
+        sb.append("</body></html>\n");
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Returns a page about TOPIC on a host, or a random page if none is found
+     * in a few tries.
+     *
+     * @param host      The host's index.
+     * @param random    The random numbers of the page linking to it.
+     * @return          The page's number.
+     */
+    private int topicalPage(int host, SplittableRandom random) {
+        int page = random.nextInt(pagesPerHost);
+        for(int i = 0; i < 64 && !isTopical(host, page); i++) {
+            page = random.nextInt(pagesPerHost);
+        }
+        return page;
+    }
+
+
+    /**
+     * Answers the requests for one host.
+     */
+    private class PageHandler implements HttpHandler {
+
+
+        /**
+         * The host's index.
+         */
+        private final int host;
+
+
+        /**
+         * Creates a new instance of the PageHandler class.
+         *
+         * @param host  The host's index.
+         */
+        PageHandler(int host) {
+            this.host = host;
+        }
+
+
+        /*
+            Works out the response and sends it once the latency has passed.
+            With a host capacity the latency grows with the requests in
+            flight, and an overloaded host answers 503 straight away.
+        */
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            int status;
+            byte[] body;
+            String etag = null;
+            String contentType = "text/html; charset=UTF-8";
+            String encoding = null;
+            long delay = latencyMillis;
+
+            String path = exchange.getRequestURI().getPath();
+            int page = pageNumber(path);
+            int load = active[host].incrementAndGet();
+            if(hostCapacity > 0 && load > OVERLOAD * hostCapacity) {
+                status = 503;
+                body = new byte[0];
+                errors.incrementAndGet();
+                delay = 0;
+            } else if(path.startsWith("/file/")) {
+                status = 200;
+                body = FILE;
+                contentType = "application/octet-stream";
+            } else if(page < 0) {
+                status = 404;
+                body = new byte[0];
+            } else if(isError(host, page)) {
+                status = 500;
+                body = new byte[0];
+                errors.incrementAndGet();
+            } else {
+                body = page(host, page);
+                etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+                if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    status = 304;
+                    body = new byte[0];
+                } else {
+                    status = 200;
+                    String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    if(gzip && accept != null && accept.contains("gzip")) {
+                        body = gzip(body);
+                        encoding = "gzip";
+                    }
+                }
+            }
+            served.incrementAndGet();
+            if(delay > 0 && hostCapacity > 0 && load > hostCapacity) {
+                delay = latencyMillis * load / hostCapacity;
+            }
+
+            final int responseStatus = status;
+            final byte[] responseBody = body;
+            final String responseEtag = etag;
+            final String responseType = contentType;
+            final String responseEncoding = encoding;
+            Runnable respond = new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        send(exchange, responseStatus, responseBody, responseEtag, responseType,
+                             responseEncoding);
+                    } finally {
+                        active[host].decrementAndGet();
+                    }
+                }
+            };
+
+            if(delay > 0) {
+                delayer.schedule(respond, delay, TimeUnit.MILLISECONDS);
+            } else {
+                respond.run();
+            }
+        }
+
+
+        /**
+         * Returns a body gzipped.
+         *
+         * @param body  The body.
+         * @return      The gzipped body.
+         */
+        private byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+                zip.write(body);
+            } catch (IOException err) {
+                throw new IllegalStateException(err);
+            }
+            return out.toByteArray();
+        }
+
+
+        /**
+         * Returns the page number in a path, or -1 if the path is not a page
+         * on this host.
+         *
+         * @param path  The path of the request.
+         * @return      The page number, or -1.
+         */
+        private int pageNumber(String path) {
+            if(!path.startsWith("/page/")) return -1;
+            try {
+                int page = Integer.parseInt(path.substring(6));
+                return page >= 0 && page < pagesPerHost ? page : -1;
+            } catch (NumberFormatException err) {
+                return -1;
+            }
+        }
+
+
+        /**
+         * Sends a response and closes the exchange.
+         *
+         * @param exchange  The exchange.
+         * @param status    The status code.
+         * @param body      The body.
+         * @param etag      The page's ETag, or null.
+         * @param type      The content type.
+         * @param encoding  The content encoding, or null.
+         */
+        private void send(HttpExchange exchange, int status, byte[] body, String etag, String type,
+                          String encoding) {
+            try {
+                exchange.getResponseHeaders().set("Content-Type", type);
+                if(encoding != null) exchange.getResponseHeaders().set("Content-Encoding", encoding);
+                if(etag != null) exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+                if(body.length > 0) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            } catch (IOException err) {
+                // The crawler gave up on the request.
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package web.crawler.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.CrawlerManager;
+import web.crawler.crawling.CrawlerSettings;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Measures whole crawls, through the CrawlerManager, Crawlers and
+ * CrawlerLegs, against a SiteServer on the local machine. The same crawl is
+ * run once for each thread count and a line is printed for each run with the
+ * pages per second, the page latency percentiles and the peak heap.
+ *
+ * A page's latency is the time from a crawler claiming its link to its
+ * result being reported, so it covers the download, the scan and the query
+ * count. Every generated page contains "crawler", so every page that does not
+ * answer with an error has a result. The peak heap is the sum of the peaks of
+ * the heap memory pools during the run.
+ *
+ * Usage:
+ *   --threads n,n,...      The fetch thread counts to run with. (1,4,16,64)
+ *   --pages n              The amount of pages to crawl in each run. (2000)
+ *   --hosts n              The amount of hosts. (4)
+ *   --pages-per-host n     The amount of pages on each host. (100000)
+ *   --fan-out n            The amount of links on each page. (20)
+ *   --page-size n          The approximate size of each page in bytes. (16384)
+ *   --latency n            How long each response is held back, in
+ *                          milliseconds. (20)
+ *   --error-rate x         The fraction of pages that answer with an error.
+ *                          (0.01)
+ *   --file-rate x          The fraction of links that go to files that cannot
+ *                          be scanned; see SiteServer. (0)
+ *   --host-capacity n      The amount of requests each host answers at a
+ *                          time before it slows down and then answers 503;
+ *                          see SiteServer. (no limit)
+ *   --gzip                 Gzip pages for requests that accept it. (off)
+ *   --queries q,q,...      The search queries. (crawler,java,search)
+ *   --warmup n             The amount of pages to crawl once before measuring.
+ *                          (500)
+ *   --port n               The port of the first host, with the other hosts
+ *                          on the ports after it. Set it to keep the links
+ *                          the same between runs, as a recrawl with
+ *                          crawler.cache.dir needs. (any free ports)
+ *
+ * Other settings are read from crawler.* system properties, as in the
+ * HeadlessCrawler. The per host rate limit is off unless
+ * crawler.host.requestsPerSecond is set.
+ *
+ * @author Jordan Hartwick
+ * June 21, 2016
+ */
+public class ThroughputHarness {
+
+
+    /**
+     * The fetch thread counts to run with.
+     */
+    private int[] threadCounts = {1, 4, 16, 64};
+
+
+    /**
+     * The amount of pages to crawl in each run.
+     */
+    private int pages = 2000;
+
+
+    /**
+     * The amount of pages to crawl before measuring.
+     */
+    private int warmupPages = 500;
+
+
+    /**
+     * The search queries.
+     */
+    private String[] queries = {"crawler", "java", "search"};
+
+
+    /**
+     * The settings every run starts from.
+     */
+    private Properties properties = new Properties();
+
+
+    /**
+     * The site being crawled.
+     */
+    private SiteServer site;
+
+
+    /** Private constructor so the class is only created by main. */
+    private ThroughputHarness(){}
+
+
+    /**
+     * Starts the site, runs the crawls and prints the results.
+     *
+     * @param args  The command line arguments.
+     * @throws Exception    If the site could not be started or a run was
+     *                      interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        ThroughputHarness harness = new ThroughputHarness();
+
+        int hosts = 4, pagesPerHost = 100000, fanOut = 20, pageSize = 16384;
+        long latency = 20;
+        double errorRate = 0.01;
+        int firstPort = 0, hostCapacity = 0;
+        double fileRate = 0;
+        boolean gzip = false;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--threads":
+                    String[] counts = value(args, ++i).split(",");
+                    harness.threadCounts = new int[counts.length];
+                    for(int j = 0; j < counts.length; j++) {
+                        harness.threadCounts[j] = Integer.parseInt(counts[j].trim());
+                    }
+                    break;
+                case "--pages":
+                    harness.pages = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--hosts":
+                    hosts = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--pages-per-host":
+                    pagesPerHost = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--fan-out":
+                    fanOut = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--page-size":
+                    pageSize = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(value(args, ++i));
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value(args, ++i));
+                    break;
+                case "--file-rate":
+                    fileRate = Double.parseDouble(value(args, ++i));
+                    break;
+                case "--host-capacity":
+                    hostCapacity = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--gzip":
+                    gzip = true;
+                    break;
+                case "--queries":
+                    harness.queries = value(args, ++i).split(",");
+                    break;
+                case "--port":
+                    firstPort = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--warmup":
+                    harness.warmupPages = Integer.parseInt(value(args, ++i));
+                    break;
+                default:
+                    System.err.println("Unknown argument " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        harness.properties.setProperty("crawler.host.requestsPerSecond", "0");
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("crawler.")) harness.properties.setProperty(key, System.getProperty(key));
+        }
+
+        harness.site = new SiteServer(hosts, pagesPerHost, fanOut, pageSize, latency, errorRate, firstPort);
+        harness.site.setHostCapacity(hostCapacity);
+        harness.site.setFileRate(fileRate);
+        harness.site.setGzip(gzip);
+        harness.site.start();
+        try {
+            System.out.printf(Locale.ROOT, "hosts=%d pagesPerHost=%d fanOut=%d pageSize=%d latency=%dms errorRate=%.3f%n",
+                              hosts, pagesPerHost, fanOut, pageSize, latency, errorRate);
+
+            if(harness.warmupPages > 0) {
+                int most = 0;
+                for(int count : harness.threadCounts) most = Math.max(most, count);
+                harness.run(most, harness.warmupPages);
+            }
+
+            System.out.printf(Locale.ROOT, "%8s %8s %7s %9s %10s %8s %8s %8s %8s %10s%n",
+                              "threads", "pages", "errors", "seconds", "pages/s",
+                              "p50 ms", "p90 ms", "p99 ms", "max ms", "heap MB");
+            for(int count : harness.threadCounts) {
+                Run run = harness.run(count, harness.pages);
+                System.out.printf(Locale.ROOT, "%8d %8d %7d %9.2f %10.1f %8.1f %8.1f %8.1f %8.1f %10.1f%n",
+                                  count, run.pages, run.pages - run.latencies.length, run.seconds,
+                                  run.pages / run.seconds,
+                                  run.percentile(50), run.percentile(90), run.percentile(99),
+                                  run.percentile(100), run.peakHeap / (1024.0 * 1024.0));
+            }
+        } finally {
+            harness.site.stop();
+        }
+        System.exit(0);
+    }
+
+
+    /**
+     * Returns the value after an argument.
+     *
+     * @param args  The command line arguments.
+     * @param i     The index of the value.
+     * @return      The value.
+     */
+    private static String value(String[] args, int i) {
+        if(i >= args.length) {
+            System.err.println("Missing value for " + args[i - 1]);
+            System.exit(2);
+        }
+        return args[i];
+    }
+
+
+    /**
+     * Crawls the site once and waits for the crawl to finish.
+     *
+     * @param threads   The amount of fetch threads.
+     * @param amount    The amount of pages to crawl.
+     * @return          The measurements of the crawl.
+     * @throws InterruptedException If the crawl was interrupted.
+     */
+    private Run run(int threads, int amount) throws InterruptedException {
+        String[] seeds = site.seeds();
+        CrawlerSettings settings = CrawlerSettings.fromProperties(properties);
+        settings.setFetchThreads(threads);
+
+        LatencyListener listener = new LatencyListener(amount);
+        CrawlerManager crawlerManager = new CrawlerManager(queries,
+                                                           seeds,
+                                                           (amount + seeds.length - 1) / seeds.length,
+                                                           listener,
+                                                           settings);
+
+        System.gc();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        crawlerManager.start();
+        crawlerManager.join();
+        long end = System.nanoTime();
+
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        return new Run((int) CrawlerManager.scannedLinkCount(),
+                       (end - start) / 1e9,
+                       listener.latencies(),
+                       peakHeap);
+    }
+
+
+    /**
+     * The measurements of one crawl.
+     */
+    private static class Run {
+
+
+        /** The amount of pages crawled. */
+        final int pages;
+
+
+        /** How long the crawl took, in seconds. */
+        final double seconds;
+
+
+        /** The sorted latencies of the pages with results, in nanoseconds. */
+        final long[] latencies;
+
+
+        /** The peak heap, in bytes. */
+        final long peakHeap;
+
+
+        /**
+         * Creates a new instance of the Run class.
+         *
+         * @param pages     The amount of pages crawled.
+         * @param seconds   How long the crawl took, in seconds.
+         * @param latencies The latencies of the pages with results.
+         * @param peakHeap  The peak heap, in bytes.
+         */
+        Run(int pages, double seconds, long[] latencies, long peakHeap) {
+            this.pages = pages;
+            this.seconds = seconds;
+            this.latencies = latencies;
+            this.peakHeap = peakHeap;
+            Arrays.sort(latencies);
+        }
+
+
+        /**
+         * Returns a latency percentile in milliseconds.
+         *
+         * @param percent   The percentile, from 0 to 100.
+         * @return          The latency in milliseconds, or 0 if there were
+         *                  no results.
+         */
+        double percentile(double percent) {
+            if(latencies.length == 0) return 0;
+
+            int index = (int) Math.ceil(percent / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6;
+        }
+    }
+
+
+    /**
+     * Times each page from its link being claimed to its result.
+     */
+    private static class LatencyListener implements CrawlListener {
+
+
+        /** The start of the message sent when a link is claimed. */
+        private static final String VISITED = "Visited site ";
+
+
+        /** When each link in progress was claimed, in nanoseconds. */
+        private final ConcurrentHashMap<String, Long> claimed = new ConcurrentHashMap<>();
+
+
+        /** The latencies of the pages with results, in nanoseconds. */
+        private long[] latencies;
+
+
+        /** The amount of latencies. */
+        private int count;
+
+
+        /**
+         * Creates a new instance of the LatencyListener class.
+         *
+         * @param expected  The expected amount of pages.
+         */
+        LatencyListener(int expected) {
+            latencies = new long[Math.max(16, expected)];
+        }
+
+
+        /*
+            Records the latency of the page.
+        */
+        @Override
+        public void resultFound(InformationPackage infoPackage) {
+            Long start = claimed.remove(infoPackage.getLink());
+            if(start != null) {
+                add(System.nanoTime() - start);
+            }
+        }
+
+
+        /*
+            Records when a link is claimed.
+        */
+        @Override
+        public void message(String text) {
+            if(text.startsWith(VISITED)) {
+                claimed.put(text.substring(VISITED.length()), System.nanoTime());
+            }
+        }
+
+
+        /**
+         * Adds a latency.
+         *
+         * @param nanos     The latency in nanoseconds.
+         */
+        private synchronized void add(long nanos) {
+            if(count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+
+        /**
+         * Returns the latencies recorded so far.
+         *
+         * @return  The latencies in nanoseconds.
+         */
+        synchronized long[] latencies() {
+            return Arrays.copyOf(latencies, count);
+        }
+    }
+}
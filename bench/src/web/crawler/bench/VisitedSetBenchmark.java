@@ -0,0 +1,180 @@
+package web.crawler.bench;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.CrawlerManager;
+import web.crawler.crawling.CrawlerSettings;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Measures the CrawlerManager's visited set with eight threads adding and
+ * checking links at the same time. Half of each thread's links are shared
+ * with every other thread, so threads race to add the same links.
+ *
+ * addScannedLink       - CrawlerManager.addScannedLink.
+ * checkForScannedLink  - CrawlerManager.checkForScannedLink.
+ * synchronizedHashSet  - a synchronized HashSet of Strings, for comparison
+ *                        with the unsynchronized HashSet the manager used to
+ *                        have.
+ *
+ * @author Jordan Hartwick
+ * June 20, 2016
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class VisitedSetBenchmark {
+
+
+    /**
+     * Ignores everything the CrawlerManager reports.
+     */
+    private static final CrawlListener QUIET = new CrawlListener() {
+
+        @Override
+        public void resultFound(InformationPackage infoPackage) {}
+
+        @Override
+        public void message(String text) {}
+    };
+
+
+    /**
+     * The visited sets, emptied before each iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Sets {
+
+
+        /** True to keep the visited set in direct memory. */
+        @Param({"false", "true"})
+        public boolean offHeap;
+
+
+        /** The synchronized HashSet to compare with. */
+        Set<String> hashSet;
+
+
+        /** Hands out thread numbers. */
+        final AtomicInteger nextThread = new AtomicInteger();
+
+
+        /**
+         * Creates a CrawlerManager, which creates a new visited set, and an
+         * empty HashSet. The crawlers are never started.
+         */
+        @Setup(Level.Iteration)
+        public void setup() {
+            CrawlerSettings settings = new CrawlerSettings();
+            settings.setVisitedOffHeap(offHeap);
+            settings.setFetchThreads(1);
+
+            new CrawlerManager(new String[]{"java"},
+                               new String[]{Corpus.BASE_URI},
+                               1,
+                               QUIET,
+                               settings);
+            hashSet = Collections.synchronizedSet(new HashSet<String>());
+        }
+    }
+
+
+    /**
+     * The links of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Links {
+
+
+        /** The links. */
+        String[] links = new String[1 << 16];
+
+
+        /** The index of the next link. */
+        int next;
+
+
+        /**
+         * Creates the links.
+         *
+         * @param sets  The visited sets.
+         */
+        @Setup
+        public void setup(Sets sets) {
+            int thread = sets.nextThread.getAndIncrement();
+            for(int i = 0; i < links.length; i++) {
+                links[i] = i % 2 == 0
+                            ? "http://shared.example.com/page/" + i
+                            : "http://thread" + thread + ".example.com/page/" + i;
+            }
+        }
+
+
+        /**
+         * Returns the next link, starting over after the last one.
+         *
+         * @return  The next link.
+         */
+        String next() {
+            return links[next++ & (links.length - 1)];
+        }
+    }
+
+
+    /**
+     * Adds a link to the CrawlerManager's visited set.
+     *
+     * @param links     This thread's links.
+     * @return          True if the link was added.
+     */
+    @Benchmark
+    public boolean addScannedLink(Links links) {
+        return CrawlerManager.addScannedLink(links.next());
+    }
+
+
+    /**
+     * Checks for a link in the CrawlerManager's visited set.
+     *
+     * @param links     This thread's links.
+     * @return          True if the link was found.
+     */
+    @Benchmark
+    public boolean checkForScannedLink(Links links) {
+        return CrawlerManager.checkForScannedLink(links.next());
+    }
+
+
+    /**
+     * Adds a link to a synchronized HashSet.
+     *
+     * @param sets      The sets.
+     * @param links     This thread's links.
+     * @return          True if the link was added.
+     */
+    @Benchmark
+    public boolean synchronizedHashSet(Sets sets, Links links) {
+        return sets.hashSet.add(links.next());
+    }
+}
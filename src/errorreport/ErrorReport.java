@@ -4,10 +4,33 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
- * The ErrorReport creates a file that contains an exception's stack trace.
+ * The ErrorReport writes the exceptions of the application to one rolling log
+ * file, "errorreports/errors.log".
+ *
+ * createErrorReport only puts the exception in a queue, so the thread that
+ * caught it never waits on disk. A background thread takes the exceptions
+ * from the queue and groups them by cause: the exception's class and the
+ * place it was thrown. The stack trace of a cause is written the first time
+ * it is seen and then at most once a minute, and the log never gets more
+ * than MAX_TRACES_PER_MINUTE traces a minute in all. Every ten seconds the
+ * thread writes a summary with the count of each cause seen since the last
+ * one. If the queue is full the exception is dropped and counted in the next
+ * summary.
+ *
+ * The defaults can be overridden with the system properties
+ * errorreport.file, errorreport.maxFileBytes and errorreport.keepFiles.
  *
  * @author Jordan Hartwick
  * May 18, 2016
@@ -15,35 +38,317 @@ import java.io.StringWriter;
 public class ErrorReport {
 
 
+    /**
+     * The most exceptions waiting to be written.
+     */
+    private static final int QUEUE_CAPACITY = 4096;
+
+
+    /**
+     * The milliseconds between summaries.
+     */
+    private static final long SUMMARY_MILLIS = 10000;
+
+
+    /**
+     * The milliseconds before another stack trace of the same cause is
+     * written.
+     */
+    private static final long TRACE_INTERVAL_MILLIS = 60000;
+
+
+    /**
+     * The most stack traces written in a minute.
+     */
+    private static final int MAX_TRACES_PER_MINUTE = 20;
+
+
+    /**
+     * The most causes remembered. When there are more, the causes seen
+     * longest ago are forgotten after the next summary.
+     */
+    private static final int MAX_CAUSES = 1024;
+
+
+    /**
+     * The exceptions waiting to be written.
+     */
+    private static final BlockingQueue<Exception> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+
+    /**
+     * The amount of exceptions dropped because the queue was full since the
+     * last summary.
+     */
+    private static final AtomicLong dropped = new AtomicLong();
+
+
+    /**
+     * The causes seen, by key. Only used by the writer thread and the
+     * shutdown hook, which hold the class lock.
+     */
+    private static final Map<String, Cause> causes = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * The log file.
+     */
+    private static final RollingLog log = new RollingLog(
+            new File(System.getProperty("errorreport.file", "errorreports/errors.log")),
+            Long.getLong("errorreport.maxFileBytes", 10L * 1024 * 1024),
+            Integer.getInteger("errorreport.keepFiles", 5));
+
+
+    /**
+     * Formats the time of each entry.
+     */
+    private static final SimpleDateFormat TIME = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+
+    /**
+     * When the last summary was written.
+     */
+    private static long lastSummary = System.currentTimeMillis();
+
+
+    /**
+     * When the current minute of the trace limit started.
+     */
+    private static long traceMinute = lastSummary;
+
+
+    /**
+     * The amount of traces written in the current minute.
+     */
+    private static int tracesThisMinute;
+
+
+    static {
+        Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "error-report");
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "error-report-flush"));
+    }
+
+
     /** Private constructor so the class cannot be instantiated. */
     private ErrorReport(){}
 
 
     /**
-     * Creates an error report. The error report will contain the stack trace
-     * of an exception. The error report file will be located in the following
-     * location: "errorreports/". The error report file name is "error_at_" with
-     * the system's time in nanoseconds appended to the end. The file extension
-     * will be ".txt".
+     * Reports an exception. The exception is written to the log by a
+     * background thread, so this returns at once. If too many exceptions are
+     * waiting, the exception is only counted.
      *
      * @param cause     The exception that was thrown.
      */
     public static void createErrorReport(Exception cause) {
-        StringWriter sw = new StringWriter();
-        cause.printStackTrace(new PrintWriter(sw));
-        String errMessage = sw.toString();
+        if(!queue.offer(cause)) {
+            dropped.incrementAndGet();
+        }
+    }
+
 
-        File file = new File("errorreports");
-        if(!file.exists() || !file.isDirectory()) {
-            file.mkdir();
+    /**
+     * Writes the waiting exceptions and a summary to the log now. Called when
+     * the application exits.
+     */
+    public static synchronized void flush() {
+        drain(System.currentTimeMillis());
+        writeSummary(System.currentTimeMillis());
+        try {
+            log.flush();
+        } catch (IOException err) {
+            err.printStackTrace();
         }
+    }
 
+
+    /**
+     * Takes exceptions from the queue and writes them until the application
+     * exits, writing a summary every SUMMARY_MILLIS.
+     */
+    private static void writeLoop() {
+        while(true) {
+            try {
+                Exception first = queue.poll(SUMMARY_MILLIS, TimeUnit.MILLISECONDS);
+                synchronized(ErrorReport.class) {
+                    long now = System.currentTimeMillis();
+                    if(first != null) record(first, now);
+                    drain(now);
+
+                    if(now - lastSummary >= SUMMARY_MILLIS) writeSummary(now);
+                    log.flush();
+                }
+            } catch (InterruptedException err) {
+                return;
+            } catch (IOException | RuntimeException err) {
+                err.printStackTrace();
+            }
+        }
+    }
+
+
+    /**
+     * Records every exception waiting in the queue. The class lock must be
+     * held.
+     *
+     * @param now   The current time in milliseconds.
+     */
+    private static void drain(long now) {
+        Exception cause;
+        while((cause = queue.poll()) != null) {
+            record(cause, now);
+        }
+    }
+
+
+    /**
+     * Counts an exception under its cause and writes its stack trace if the
+     * limits allow it. The class lock must be held.
+     *
+     * @param err   The exception.
+     * @param now   The current time in milliseconds.
+     */
+    private static void record(Exception err, long now) {
+        String key = keyOf(err);
+        Cause cause = causes.get(key);
+        if(cause == null) {
+            cause = new Cause(key);
+            causes.put(key, cause);
+        }
+        cause.count++;
+        cause.total++;
+        cause.lastMessage = err.getMessage();
+
+        if(now - traceMinute >= 60000) {
+            traceMinute = now;
+            tracesThisMinute = 0;
+        }
+
+        if(now - cause.lastTrace >= TRACE_INTERVAL_MILLIS && tracesThisMinute < MAX_TRACES_PER_MINUTE) {
+            cause.lastTrace = now;
+            tracesThisMinute++;
+
+            StringWriter sw = new StringWriter();
+            sw.write(TIME.format(new Date(now)) + " [" + cause.total + " so far] ");
+            err.printStackTrace(new PrintWriter(sw));
+            write(sw.toString());
+        }
+    }
+
+
+    /**
+     * Writes the count of each cause seen since the last summary, and the
+     * amount of dropped exceptions, then forgets causes past MAX_CAUSES. The
+     * class lock must be held.
+     *
+     * @param now   The current time in milliseconds.
+     */
+    private static void writeSummary(long now) {
+        lastSummary = now;
+
+        long lost = dropped.getAndSet(0);
+        StringBuilder sb = new StringBuilder();
+        for(Cause cause : causes.values()) {
+            if(cause.count == 0) continue;
+
+            sb.append(String.format("    %8d x %s", cause.count, cause.key));
+            if(cause.lastMessage != null) sb.append(": ").append(cause.lastMessage);
+            sb.append(System.lineSeparator());
+            cause.count = 0;
+        }
+        if(lost > 0) {
+            sb.append(String.format("    %8d x not recorded, too many waiting%n", lost));
+        }
+
+        if(sb.length() > 0) {
+            write(TIME.format(new Date(now)) + " Errors since the last summary:" + System.lineSeparator() + sb);
+        }
+
+        int extra = causes.size() - MAX_CAUSES;
+        for(Iterator<Cause> it = causes.values().iterator(); extra > 0 && it.hasNext(); extra--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+
+    /**
+     * Returns the key that groups an exception with the same cause: its class
+     * and the place it was thrown, without the message, which often holds a
+     * link.
+     *
+     * @param err   The exception.
+     * @return      The key.
+     */
+    private static String keyOf(Exception err) {
+        StackTraceElement[] trace = err.getStackTrace();
+        return trace.length == 0 ? err.getClass().getName()
+                                 : err.getClass().getName() + " at " + trace[0];
+    }
+
+
+    /**
+     * Appends text to the log, printing the error if it cannot be written.
+     *
+     * @param text  The text.
+     */
+    private static void write(String text) {
         try {
-            PrintWriter pw = new PrintWriter("errorreports/error_at_" + System.nanoTime() + ".txt");
-            pw.println(errMessage);
-            pw.close();
+            log.write(text);
         } catch (IOException err) {
             err.printStackTrace();
         }
     }
+
+
+    /**
+     * The counts of one cause.
+     */
+    private static class Cause {
+
+
+        /** The cause's key. */
+        final String key;
+
+
+        /** The amount seen since the last summary. */
+        long count;
+
+
+        /** The amount seen in all. */
+        long total;
+
+
+        /** The message of the last exception, or null. */
+        String lastMessage;
+
+
+        /** When the last stack trace was written, or 0 if none was. */
+        long lastTrace;
+
+
+        /**
+         * Creates a new instance of the Cause class.
+         *
+         * @param key   The cause's key.
+         */
+        Cause(String key) {
+            this.key = key;
+        }
+    }
 }
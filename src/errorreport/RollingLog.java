@@ -0,0 +1,145 @@
+package errorreport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * The RollingLog appends text to one log file. When the file grows past its
+ * limit it is renamed to name.1, the older files move up one number, and the
+ * oldest is deleted, so the log never takes more than about the limit times
+ * the amount of files kept.
+ *
+ * The RollingLog is not thread safe.
+ *
+ * @author Jordan Hartwick
+ * June 27, 2016
+ */
+class RollingLog {
+
+
+    /**
+     * The log file.
+     */
+    private final File file;
+
+
+    /**
+     * The size the log file can reach before it is rolled.
+     */
+    private final long maxBytes;
+
+
+    /**
+     * The amount of rolled files kept besides the log file.
+     */
+    private final int keep;
+
+
+    /**
+     * Writes to the log file, or null if it is not open.
+     */
+    private Writer out;
+
+
+    /**
+     * The size of the log file.
+     */
+    private long size;
+
+
+    /**
+     * Creates a new instance of the RollingLog class. The file is opened when
+     * the first text is written.
+     *
+     * @param file      The log file.
+     * @param maxBytes  The size the log file can reach before it is rolled.
+     * @param keep      The amount of rolled files to keep.
+     */
+    RollingLog(File file, long maxBytes, int keep) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.keep = keep;
+    }
+
+
+    /**
+     * Appends text to the log, rolling the file first if it is full.
+     *
+     * @param text  The text.
+     * @throws IOException  If the text could not be written.
+     */
+    void write(String text) throws IOException {
+        if(out == null) open();
+        if(size > 0 && size + text.length() > maxBytes) roll();
+
+        out.write(text);
+        size += text.length();
+    }
+
+
+    /**
+     * Writes the buffered text to the file.
+     *
+     * @throws IOException  If the text could not be written.
+     */
+    void flush() throws IOException {
+        if(out != null) out.flush();
+    }
+
+
+    /**
+     * Closes the log file.
+     *
+     * @throws IOException  If the file could not be closed.
+     */
+    void close() throws IOException {
+        if(out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+
+    /**
+     * Opens the log file for appending, creating its directory if needed.
+     *
+     * @throws IOException  If the file could not be opened.
+     */
+    private void open() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        size = file.length();
+        out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Moves the log file to name.1, moving the older files up one number and
+     * deleting the oldest, then opens a new log file.
+     *
+     * @throws IOException  If the new file could not be opened.
+     */
+    private void roll() throws IOException {
+        close();
+
+        new File(file.getPath() + "." + keep).delete();
+        for(int i = keep - 1; i >= 1; i--) {
+            new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+        }
+        if(keep > 0) {
+            file.renameTo(new File(file.getPath() + ".1"));
+        } else {
+            file.delete();
+        }
+
+        open();
+    }
+}
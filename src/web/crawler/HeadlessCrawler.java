@@ -0,0 +1,231 @@
+package web.crawler;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.CrawlerManager;
+import web.crawler.crawling.CrawlerSettings;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Runs a crawling session without the GUI, for example on a server. The
+ * starting links, search queries and amount to scan are given as arguments,
+ * and the tuning options can be given in a properties file. Results are
+ * printed to standard output as they are found.
+ *
+ * Usage:
+ *   --seeds link,link      The starting links.
+ *   --seeds-file file      A file with one starting link per line.
+ *   --queries query,query  The search queries.
+ *   --amount n             The amount of links to scan for each starting link.
+ *   --config file          A properties file with crawler.* settings. System
+ *                          properties override the file.
+ *   --export file          Write results to a file as they are found. The
+ *                          format comes from the extension: .csv, .jsonl or
+ *                          .bin, with .gz added to gzip the file.
+ *   --verbose              Print progress messages to standard error.
+ *
+ * @author Jordan Hartwick
+ * June 16, 2016
+ */
+public class HeadlessCrawler {
+
+
+    /** Private constructor so the class cannot be instantiated. */
+    private HeadlessCrawler(){}
+
+
+    /**
+     * Runs a crawling session and waits for it to finish. Stopping the
+     * process with Ctrl-C stops the crawlers cleanly, so a last checkpoint is
+     * written if checkpointing is turned on.
+     *
+     * @param args  The command line arguments.
+     */
+    public static void main(String[] args) {
+        List<String> seeds = new ArrayList<>();
+        String[] queries = null;
+        Properties props = new Properties();
+        int amount = -1;
+        boolean verbose = false;
+
+        try {
+            for(int i = 0; i < args.length; i++) {
+                switch(args[i]) {
+                    case "--seeds":
+                        for(String seed : value(args, ++i).split(",")) {
+                            if(!seed.trim().isEmpty()) seeds.add(seed.trim());
+                        }
+                        break;
+                    case "--seeds-file":
+                        seeds.addAll(readLines(value(args, ++i)));
+                        break;
+                    case "--queries":
+                        queries = value(args, ++i).split(",");
+                        break;
+                    case "--amount":
+                        amount = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--config":
+                        try (InputStream in = new FileInputStream(value(args, ++i))) {
+                            props.load(in);
+                        }
+                        break;
+                    case "--export":
+                        props.setProperty("crawler.export.file", value(args, ++i));
+                        break;
+                    case "--verbose":
+                        verbose = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+
+            if(seeds.isEmpty() || queries == null || amount < 1) {
+                throw new IllegalArgumentException("--seeds or --seeds-file, --queries and --amount are required");
+            }
+        } catch (IOException | IllegalArgumentException err) {
+            System.err.println(err.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("crawler.")) props.setProperty(key, System.getProperty(key));
+        }
+
+        CrawlerSettings settings;
+        try {
+            settings = CrawlerSettings.fromProperties(props);
+        } catch (IllegalArgumentException err) {
+            System.err.println(err.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        final CrawlerManager crawlerManager;
+        try {
+            crawlerManager = new CrawlerManager(queries,
+                                                seeds.toArray(new String[seeds.size()]),
+                                                amount,
+                                                new ConsoleListener(verbose),
+                                                settings);
+        } catch (IllegalArgumentException err) {
+            System.err.println(err.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                crawlerManager.stopCrawlers();
+                try {
+                    crawlerManager.join();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+
+        crawlerManager.start();
+        try {
+            crawlerManager.join();
+        } catch (InterruptedException err) {
+            crawlerManager.stopCrawlers();
+        }
+    }
+
+
+    /**
+     * Returns the value after an argument.
+     *
+     * @param args  The command line arguments.
+     * @param i     The index of the value.
+     * @return      The value.
+     */
+    private static String value(String[] args, int i) {
+        if(i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+
+    /**
+     * Reads the lines of a file that are not empty.
+     *
+     * @param fileName  The file.
+     * @return          The lines.
+     * @throws IOException  If the file could not be read.
+     */
+    private static List<String> readLines(String fileName) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while((line = br.readLine()) != null) {
+                if(!line.trim().isEmpty()) lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * Prints how to use the headless crawler.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: --headless (--seeds link,link | --seeds-file file)"
+                           + " --queries query,query --amount n [--config file] [--export file] [--verbose]");
+    }
+
+
+    /**
+     * Prints results to standard output and, if verbose, progress messages to
+     * standard error.
+     */
+    private static class ConsoleListener implements CrawlListener {
+
+
+        /** True to print progress messages. */
+        private final boolean verbose;
+
+
+        /**
+         * Creates a new ConsoleListener.
+         *
+         * @param verbose   True to print progress messages.
+         */
+        ConsoleListener(boolean verbose) {
+            this.verbose = verbose;
+        }
+
+
+        /*
+            Prints the InformationPackage.
+        */
+        @Override
+        public void resultFound(InformationPackage infoPackage) {
+            System.out.println(infoPackage);
+        }
+
+
+        /*
+            Prints the message if verbose.
+        */
+        @Override
+        public void message(String text) {
+            if(verbose) System.err.println(text);
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package web.crawler;
 
 import java.awt.EventQueue;
+import java.util.Arrays;
 import web.crawler.gui.MainGraphics;
 
 
 /**
- * This is a web crawling application that uses the Jsoup libraries.
+ * This is a web crawling application that uses the Jsoup libraries. It opens
+ * the GUI unless the first argument is "--headless", in which case the rest of
+ * the arguments are passed to the HeadlessCrawler.
+ *
+ * @see web.crawler.HeadlessCrawler
  *
  * @author  Jordan Hartwick
  * May 14, 2016
@@ -14,11 +19,16 @@ public class WebCrawler {
 
 
     /**
-     * Main method of the program. Displays the GUI.
+     * Main method of the program. Displays the GUI or runs headless.
      *
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+        if(args.length > 0 && args[0].equals("--headless")) {
+            HeadlessCrawler.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         EventQueue.invokeLater(new Runnable() {
 
             @Override
@@ -0,0 +1,170 @@
+package web.crawler.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The CachedPage holds what was learned from a page the last time it was
+ * crawled: the validators the server sent (ETag and Last-Modified), a hash of
+ * the page's content, the links found on it, and the occurrences of the
+ * search queries for each set of queries it was scanned with.
+ *
+ * @see web.crawler.cache.PageCache
+ *
+ * @author Jordan Hartwick
+ * June 28, 2016
+ */
+public class CachedPage {
+
+
+    /**
+     * The ETag the server sent, or null.
+     */
+    private final String etag;
+
+
+    /**
+     * The Last-Modified date the server sent, or null.
+     */
+    private final String lastModified;
+
+
+    /**
+     * The hash of the page's content.
+     */
+    private final long contentHash;
+
+
+    /**
+     * The links found on the page, in their canonical form.
+     */
+    private final List<String> links;
+
+
+    /**
+     * The occurrences of the search queries, by the key of the set of queries.
+     */
+    private final Map<Long, int[]> counts;
+
+
+    /**
+     * Creates a new instance of the CachedPage class.
+     *
+     * @param etag          The ETag the server sent, or null.
+     * @param lastModified  The Last-Modified date the server sent, or null.
+     * @param contentHash   The hash of the page's content.
+     * @param links         The links found on the page.
+     * @param counts        The occurrences of the search queries, by the key
+     *                      of the set of queries.
+     */
+    public CachedPage(String etag, String lastModified, long contentHash, List<String> links,
+                      Map<Long, int[]> counts) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.links = Collections.unmodifiableList(links);
+        this.counts = Collections.unmodifiableMap(counts);
+    }
+
+
+    /**
+     * Returns a copy of this page for new content. The counts of other sets
+     * of queries are kept only if the content has not changed.
+     *
+     * @param etag          The ETag the server sent, or null.
+     * @param lastModified  The Last-Modified date the server sent, or null.
+     * @param contentHash   The hash of the page's content.
+     * @param links         The links found on the page.
+     * @param queryKey      The key of the set of queries the page was scanned
+     *                      with.
+     * @param occurrences   The occurrences of the search queries.
+     * @return              The updated page.
+     */
+    public CachedPage update(String etag, String lastModified, long contentHash, List<String> links,
+                             long queryKey, int[] occurrences) {
+        Map<Long, int[]> updated = new HashMap<>();
+        if(contentHash == this.contentHash) {
+            updated.putAll(counts);
+        }
+        updated.put(queryKey, occurrences.clone());
+        return new CachedPage(etag, lastModified, contentHash, links, updated);
+    }
+
+
+    /**
+     * Returns the ETag the server sent.
+     *
+     * @return  The ETag, or null.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+
+    /**
+     * Returns the Last-Modified date the server sent.
+     *
+     * @return  The Last-Modified date, or null.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+
+    /**
+     * Returns true if the server sent an ETag or a Last-Modified date, so the
+     * page can be requested only if it changed.
+     *
+     * @return  True if the page has a validator.
+     */
+    public boolean hasValidator() {
+        return etag != null || lastModified != null;
+    }
+
+
+    /**
+     * Returns the hash of the page's content.
+     *
+     * @return  The hash of the page's content.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+
+    /**
+     * Returns the links found on the page.
+     *
+     * @return  The links found on the page, which cannot be changed.
+     */
+    public List<String> getLinks() {
+        return links;
+    }
+
+
+    /**
+     * Returns the occurrences of a set of search queries.
+     *
+     * @param queryKey  The key of the set of queries.
+     * @return          A copy of the occurrences, or null if the page was not
+     *                  scanned with that set of queries.
+     */
+    public int[] getCounts(long queryKey) {
+        int[] found = counts.get(queryKey);
+        return found == null ? null : found.clone();
+    }
+
+
+    /**
+     * Returns the occurrences of every set of search queries.
+     *
+     * @return  The occurrences by the key of the set of queries, which cannot
+     *          be changed.
+     */
+    Map<Long, int[]> getAllCounts() {
+        return counts;
+    }
+}
@@ -0,0 +1,501 @@
+package web.crawler.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import web.crawler.frontier.VisitedSet;
+
+
+/**
+ * The PageCache remembers the pages of earlier crawls on disk, so a recrawl
+ * can ask the server for a page only if it changed and reuse the links and
+ * counts of a page that did not.
+ *
+ * The pages are kept in one file, "pages.cache", in the cache directory. Each
+ * put appends a record to the end of the file, and an index in memory maps
+ * the fingerprint of each link to its latest record. The index is rebuilt by
+ * reading the file when the cache is opened. A record cut short by a crash is
+ * dropped. When more than half of the file is old records, it is rewritten
+ * with only the latest ones when the cache is closed.
+ *
+ * A record is its length followed by the link, the ETag, the Last-Modified
+ * date, the content hash, the links found on the page, and the counts for
+ * each set of queries. Strings are written as a length and UTF-8 bytes, with
+ * a length of -1 for null.
+ *
+ * The PageCache is thread safe. Reads do not block each other.
+ *
+ * @author Jordan Hartwick
+ * June 28, 2016
+ */
+public class PageCache implements Closeable {
+
+
+    /**
+     * The name of the cache file.
+     */
+    private static final String FILE_NAME = "pages.cache";
+
+
+    /**
+     * The starting value of a content hash.
+     */
+    public static final long EMPTY_HASH = 0xCBF29CE484222325L;
+
+
+    /**
+     * The cache file.
+     */
+    private final File file;
+
+
+    /**
+     * Reads and writes the cache file.
+     */
+    private FileChannel channel;
+
+
+    /**
+     * The size of the cache file.
+     */
+    private long end;
+
+
+    /**
+     * The size of the latest records in the cache file.
+     */
+    private long liveBytes;
+
+
+    /**
+     * The index's keys: link fingerprints, 0 for an empty slot.
+     */
+    private long[] keys = new long[1024];
+
+
+    /**
+     * The offset of each key's record in the cache file.
+     */
+    private long[] offsets = new long[1024];
+
+
+    /**
+     * The length of each key's record, not counting its length field.
+     */
+    private int[] lengths = new int[1024];
+
+
+    /**
+     * The amount of keys in the index.
+     */
+    private int size;
+
+
+    /**
+     * Opens the cache in a directory, creating the directory and the cache
+     * file if needed.
+     *
+     * @param dir   The cache directory.
+     * @throws IOException  If the cache file could not be opened or read.
+     */
+    public PageCache(File dir) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        file = new File(dir, FILE_NAME);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        load();
+    }
+
+
+    /**
+     * Returns the key of a set of search queries, so counts are only reused
+     * for the same queries.
+     *
+     * @param queries   The search queries.
+     * @return          The key of the set of queries.
+     */
+    public static long queryKey(String[] queries) {
+        return VisitedSet.fingerprint(String.join("\u0000", queries));
+    }
+
+
+    /**
+     * Adds bytes to a content hash. Start with EMPTY_HASH.
+     *
+     * @param hash      The hash of the bytes before these.
+     * @param bytes     The bytes.
+     * @param offset    The first byte to add.
+     * @param length    The amount of bytes to add.
+     * @return          The hash of the bytes before these and these.
+     */
+    public static long contentHash(long hash, byte[] bytes, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Returns the cached page for a link.
+     *
+     * @param link  The link in its canonical form.
+     * @return      The cached page, or null if the link is not cached or the
+     *              record could not be read.
+     */
+    public CachedPage get(String link) {
+        long offset;
+        int length;
+        FileChannel in;
+
+        synchronized(this) {
+            int slot = find(keyOf(link));
+            if(slot < 0 || channel == null) return null;
+
+            offset = offsets[slot];
+            length = lengths[slot];
+            in = channel;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(in, buffer, offset + 4);
+
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+            if(!link.equals(readString(data))) return null;
+            return readPage(data);
+        } catch (IOException err) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Caches a page, replacing any earlier record of the link.
+     *
+     * @param link  The link in its canonical form.
+     * @param page  The page.
+     * @throws IOException  If the record could not be written.
+     */
+    public void put(String link, CachedPage page) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(0);
+        writeString(data, link);
+        writePage(data, page);
+        data.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int length = buffer.remaining() - 4;
+        buffer.putInt(0, length);
+
+        synchronized(this) {
+            if(channel == null) throw new IOException("The page cache is closed");
+
+            long offset = end;
+            while(buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            end += 4 + length;
+            index(keyOf(link), offset, length);
+        }
+    }
+
+
+    /**
+     * Returns the amount of cached links.
+     *
+     * @return  The amount of cached links.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /*
+        Closes the cache, first rewriting the file with only the latest records
+        if more than half of it is old records.
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        if(channel == null) return;
+
+        try {
+            if(end - liveBytes > liveBytes) compact();
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    /**
+     * Reads the cache file and builds the index. A record that is cut short
+     * is dropped along with anything after it.
+     *
+     * @throws IOException  If the cache file could not be read.
+     */
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        long offset = 0;
+
+        while(offset + 8 <= fileSize) {
+            header.clear();
+            readFully(channel, header, offset);
+            int length = header.getInt(0);
+            int linkLength = header.getInt(4);
+            if(length < 4 || linkLength < 0 || linkLength > length - 4 || offset + 4 + length > fileSize) break;
+
+            ByteBuffer link = ByteBuffer.allocate(linkLength);
+            readFully(channel, link, offset + 8);
+            index(keyOf(new String(link.array(), StandardCharsets.UTF_8)), offset, length);
+            offset += 4 + length;
+        }
+
+        if(offset < fileSize) channel.truncate(offset);
+        end = offset;
+    }
+
+
+    /**
+     * Writes the latest records to a new file and puts it in place of the
+     * cache file.
+     *
+     * @throws IOException  If the file could not be rewritten.
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        long written = 0;
+
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(int slot = 0; slot < keys.length; slot++) {
+                if(keys[slot] == 0) continue;
+
+                long count = 4 + lengths[slot];
+                for(long done = 0; done < count; ) {
+                    done += channel.transferTo(offsets[slot] + done, count - done, out);
+                }
+                offsets[slot] = written;
+                written += count;
+            }
+            out.force(true);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        end = written;
+    }
+
+
+    /**
+     * Points a key at a record, replacing the key's old record.
+     *
+     * @param key       The key.
+     * @param offset    The offset of the record.
+     * @param length    The length of the record.
+     */
+    private void index(long key, long offset, int length) {
+        int slot = find(key);
+        if(slot >= 0) {
+            liveBytes -= 4 + lengths[slot];
+        } else {
+            slot = -slot - 1;
+            keys[slot] = key;
+            size++;
+        }
+
+        offsets[slot] = offset;
+        lengths[slot] = length;
+        liveBytes += 4 + length;
+
+        if(size * 4 >= keys.length * 3) grow();
+    }
+
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key   The key.
+     * @return      The slot of the key, or -(slot + 1) for the empty slot
+     *              where it would go.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int i = (int) key & mask;
+        while(keys[i] != 0) {
+            if(keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+
+    /**
+     * Doubles the index.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+
+        keys = new long[oldKeys.length * 2];
+        offsets = new long[oldKeys.length * 2];
+        lengths = new int[oldKeys.length * 2];
+
+        for(int j = 0; j < oldKeys.length; j++) {
+            if(oldKeys[j] == 0) continue;
+
+            int i = -find(oldKeys[j]) - 1;
+            keys[i] = oldKeys[j];
+            offsets[i] = oldOffsets[j];
+            lengths[i] = oldLengths[j];
+        }
+    }
+
+
+    /**
+     * Returns the index key of a link.
+     *
+     * @param link  The link.
+     * @return      The key, never 0.
+     */
+    private static long keyOf(String link) {
+        long key = VisitedSet.fingerprint(link);
+        return key == 0 ? 1 : key;
+    }
+
+
+    /**
+     * Writes a page's fields after its link.
+     *
+     * @param data  The record.
+     * @param page  The page.
+     * @throws IOException  If the page could not be written.
+     */
+    private static void writePage(DataOutputStream data, CachedPage page) throws IOException {
+        writeString(data, page.getEtag());
+        writeString(data, page.getLastModified());
+        data.writeLong(page.getContentHash());
+
+        data.writeInt(page.getLinks().size());
+        for(String link : page.getLinks()) {
+            writeString(data, link);
+        }
+
+        data.writeInt(page.getAllCounts().size());
+        for(Map.Entry<Long, int[]> e : page.getAllCounts().entrySet()) {
+            data.writeLong(e.getKey());
+            data.writeInt(e.getValue().length);
+            for(int count : e.getValue()) {
+                data.writeInt(count);
+            }
+        }
+    }
+
+
+    /**
+     * Reads a page's fields after its link.
+     *
+     * @param data  The record.
+     * @return      The page.
+     * @throws IOException  If the record is cut short.
+     */
+    private static CachedPage readPage(DataInputStream data) throws IOException {
+        String etag = readString(data);
+        String lastModified = readString(data);
+        long contentHash = data.readLong();
+
+        int linkCount = data.readInt();
+        List<String> links = new ArrayList<>(linkCount);
+        for(int i = 0; i < linkCount; i++) {
+            links.add(readString(data));
+        }
+
+        int sets = data.readInt();
+        Map<Long, int[]> counts = new HashMap<>();
+        for(int i = 0; i < sets; i++) {
+            long queryKey = data.readLong();
+            int[] occurrences = new int[data.readInt()];
+            for(int j = 0; j < occurrences.length; j++) {
+                occurrences[j] = data.readInt();
+            }
+            counts.put(queryKey, occurrences);
+        }
+
+        return new CachedPage(etag, lastModified, contentHash, links, counts);
+    }
+
+
+    /**
+     * Writes a string as its length and UTF-8 bytes, or -1 for null.
+     *
+     * @param data  The record.
+     * @param s     The string, or null.
+     * @throws IOException  If the string could not be written.
+     */
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        if(s == null) {
+            data.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+
+    /**
+     * Reads a string written by writeString.
+     *
+     * @param data  The record.
+     * @return      The string, or null.
+     * @throws IOException  If the record is cut short.
+     */
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if(length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Fills a buffer from a file.
+     *
+     * @param in        The file.
+     * @param buffer    The buffer.
+     * @param offset    Where to start reading.
+     * @throws IOException  If the file ends before the buffer is full.
+     */
+    private static void readFully(FileChannel in, ByteBuffer buffer, long offset) throws IOException {
+        while(buffer.hasRemaining()) {
+            int n = in.read(buffer, offset + buffer.position());
+            if(n < 0) throw new EOFException();
+        }
+    }
+}
@@ -0,0 +1,718 @@
+package web.crawler.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+import web.crawler.crawling.InformationPackage;
+import web.crawler.frontier.Frontier;
+import web.crawler.frontier.UrlCanonicalizer;
+import web.crawler.frontier.VisitedSet;
+
+
+/**
+ * The CrawlCheckpoint saves the state of a crawling session so it can be
+ * resumed after the application stops. Four things are saved, each in its
+ * own {@link SegmentLog}:
+ *
+ * visited  - the fingerprint of every link that has been scanned. Only the
+ *            fingerprints added since the last checkpoint are written.
+ * results  - every InformationPackage. Only the ones added since the last
+ *            checkpoint are written.
+ * frontier - every link added to the frontier. Only the links added since
+ *            the last checkpoint are written. The links waiting to be scanned
+ *            are the ones in this log that have not been scanned.
+ * inflight - the links of the pages being scanned. These are written in full
+ *            at each checkpoint, to a new log, and the previous one is
+ *            deleted once the checkpoint is committed.
+ *
+ * A link counts as visited as soon as a crawler claims it, but its page is
+ * only done once its result has been recorded and the links found on it have
+ * been added to the frontier. The pages that are not done are scanned again
+ * on resume, so the links on them are not lost. As everything is recorded as
+ * it happens, a checkpoint only has to take what was recorded since the last
+ * one, so the crawlers are never held up while the frontier is saved.
+ *
+ * Scanned links stay in the frontier log until it has doubled in size since
+ * it was last compacted. It is then rewritten to a new log without them, on
+ * the thread writing the checkpoint, and the old log is deleted once the
+ * checkpoint is committed.
+ *
+ * A checkpoint is committed by replacing the "checkpoint.properties" manifest,
+ * which records how far each log is valid. Anything written after the last
+ * manifest is ignored when resuming, so a crash part way through a checkpoint
+ * resumes from the one before it.
+ *
+ * @author Jordan Hartwick
+ * June 14, 2016
+ */
+public class CrawlCheckpoint implements Closeable {
+
+
+    /**
+     * The name of the manifest file.
+     */
+    private static final String MANIFEST = "checkpoint.properties";
+
+
+    /**
+     * The most fingerprints written in one record.
+     */
+    private static final int FINGERPRINTS_PER_RECORD = 1024;
+
+
+    /**
+     * The fewest records the frontier log must have before it is compacted.
+     */
+    private static final long COMPACT_MIN_RECORDS = 1 << 20;
+
+
+    /**
+     * The directory holding the checkpoint.
+     */
+    private final File dir;
+
+
+    /**
+     * The search queries of the crawling session.
+     */
+    private final String[] queries;
+
+
+    /**
+     * The manifest of the last committed checkpoint.
+     */
+    private final Properties manifest;
+
+
+    /**
+     * The log of visited link fingerprints.
+     */
+    private SegmentLog visitedLog;
+
+
+    /**
+     * The log of results.
+     */
+    private SegmentLog resultsLog;
+
+
+    /**
+     * The log of links added to the frontier.
+     */
+    private SegmentLog frontierLog;
+
+
+    /**
+     * The generation of the last committed frontier log.
+     */
+    private long frontierGeneration;
+
+
+    /**
+     * The amount of links in the last committed frontier log.
+     */
+    private long frontierRecords;
+
+
+    /**
+     * The amount of links the frontier log had when it was last compacted.
+     */
+    private long frontierCompacted;
+
+
+    /**
+     * The generation of the last committed log of pages being scanned.
+     */
+    private long inFlightGeneration;
+
+
+    /**
+     * Fingerprints of links scanned since the last checkpoint.
+     */
+    private long[] pendingVisited = new long[FINGERPRINTS_PER_RECORD];
+
+
+    /**
+     * The amount of fingerprints in pendingVisited.
+     */
+    private int pendingVisitedCount;
+
+
+    /**
+     * Results added since the last checkpoint.
+     */
+    private List<InformationPackage> pendingResults = new ArrayList<>();
+
+
+    /**
+     * Links added to the frontier since the last checkpoint.
+     */
+    private List<String> pendingFound = new ArrayList<>();
+
+
+    /**
+     * The links claimed by the crawlers whose pages are not done.
+     */
+    private final Set<String> inFlight = new HashSet<>();
+
+
+    /**
+     * The amount of links scanned in this and all earlier runs.
+     */
+    private long scannedCount;
+
+
+    /**
+     * Opens the checkpoint in a directory. Unless resuming, any checkpoint
+     * already in the directory is discarded. A checkpoint can only be resumed
+     * with the queries it was saved for, as its results were counted for
+     * them.
+     *
+     * @param dir       The directory holding the checkpoint.
+     * @param queries   The search queries of the crawling session.
+     * @param resume    True to keep the checkpoint already in the directory.
+     * @throws IOException  If the checkpoint could not be opened.
+     * @throws IllegalArgumentException If resuming a checkpoint that was
+     *                                  saved for other queries. The
+     *                                  checkpoint is left as it is.
+     */
+    public CrawlCheckpoint(File dir, String[] queries, boolean resume) throws IOException {
+        this.dir = dir;
+        this.queries = queries;
+        this.manifest = new Properties();
+
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create checkpoint directory " + dir);
+        }
+
+        File manifestFile = new File(dir, MANIFEST);
+        if(resume && manifestFile.isFile()) {
+            try (InputStream in = new FileInputStream(manifestFile)) {
+                manifest.load(in);
+            }
+
+            String[] saved = savedQueries();
+            if(saved != null && !Arrays.equals(saved, queries)) {
+                throw new IllegalArgumentException("The checkpoint in " + dir + " was saved for the queries "
+                                                   + Arrays.toString(saved) + ", not "
+                                                   + Arrays.toString(queries)
+                                                   + ". Resume with the same queries or start a new crawl.");
+            }
+        } else {
+            manifestFile.delete();
+            SegmentLog.delete(dir, "visited");
+            SegmentLog.delete(dir, "results");
+            deleteLogs("frontier", -1);
+            deleteLogs("inflight", -1);
+        }
+
+        frontierGeneration = longValue("frontier.generation");
+        frontierRecords = longValue("frontier.records");
+        frontierCompacted = longValue("frontier.compacted");
+        inFlightGeneration = longValue("inflight.generation");
+        scannedCount = longValue("scanned");
+
+        visitedLog = new SegmentLog(dir, "visited", segmentSize(), longValue("visited.end"));
+        resultsLog = new SegmentLog(dir, "results", segmentSize(), longValue("results.end"));
+        frontierLog = new SegmentLog(dir, logName("frontier", frontierGeneration), segmentSize(),
+                                     longValue("frontier.end"));
+    }
+
+
+    /**
+     * Returns true if there is a committed checkpoint to resume from.
+     *
+     * @return  True if there is a committed checkpoint to resume from.
+     */
+    public boolean hasState() {
+        return manifest.getProperty("scanned") != null;
+    }
+
+
+    /**
+     * Returns the amount of links scanned up to the last checkpoint.
+     *
+     * @return  The amount of links scanned up to the last checkpoint.
+     */
+    public synchronized long getScannedCount() {
+        return scannedCount;
+    }
+
+
+    /**
+     * Loads the committed checkpoint. The links in the frontier log that were
+     * not scanned go back in the frontier. The pages that were being scanned
+     * go back in the frontier too and are left out of the visited links, so
+     * they are scanned again.
+     *
+     * @param visited   Receives the fingerprints of the scanned links.
+     * @param frontier  Receives the links that were waiting to be scanned.
+     * @param workers   The amount of workers the frontier is shared by.
+     * @param results   Receives the results.
+     * @throws IOException  If the checkpoint could not be read.
+     */
+    public void restore(final VisitedSet visited, final Frontier frontier, final int workers,
+                        final Consumer<InformationPackage> results) throws IOException {
+        if(!hasState()) return;
+
+        final List<String> pages = new ArrayList<>();
+        final Set<Long> rescan = new HashSet<>();
+        SegmentLog.read(dir, logName("inflight", inFlightGeneration), segmentSize(),
+                        longValue("inflight.end"), new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) {
+                String link = new String(data, 0, length, StandardCharsets.UTF_8);
+                pages.add(link);
+                rescan.add(UrlCanonicalizer.fingerprint(link));
+            }
+        });
+
+        SegmentLog.read(dir, "visited", segmentSize(), longValue("visited.end"),
+                        new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while(buffer.remaining() >= 8) {
+                    long fingerprint = buffer.getLong();
+                    if(!rescan.contains(fingerprint)) visited.addFingerprint(fingerprint);
+                }
+            }
+        });
+
+        // A link may be in the frontier log more than once, so the links
+        // added back are kept apart from the visited ones.
+        final VisitedSet queued = new VisitedSet(frontierRecords, false);
+        final int[] next = {0};
+        SegmentLog.read(dir, logName("frontier", frontierGeneration), segmentSize(),
+                        longValue("frontier.end"), new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) {
+                String link = new String(data, 0, length, StandardCharsets.UTF_8);
+                long fingerprint = UrlCanonicalizer.fingerprint(link);
+                if(!visited.containsFingerprint(fingerprint) && queued.addFingerprint(fingerprint)) {
+                    frontier.offer(next[0]++ % workers, link);
+                }
+            }
+        });
+        for(String link : pages) {
+            if(queued.addFingerprint(UrlCanonicalizer.fingerprint(link))) {
+                frontier.offer(next[0]++ % workers, link);
+            }
+        }
+
+        SegmentLog.read(dir, "results", segmentSize(), longValue("results.end"),
+                        new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) throws IOException {
+                results.accept(decodeResult(data, length, queries));
+            }
+        });
+    }
+
+
+    /**
+     * Records that a link was added to the frontier. Called by the crawlers,
+     * so this only keeps the link until the next checkpoint.
+     *
+     * @param link  The link.
+     */
+    public synchronized void recordFound(String link) {
+        pendingFound.add(link);
+    }
+
+
+    /**
+     * Records that a link was claimed by a crawler. Called by the crawlers,
+     * so this only keeps the fingerprint until the next checkpoint. The
+     * link's page is not done until recordDone is called for it.
+     *
+     * @param fingerprint   The fingerprint of the link.
+     * @param link          The link.
+     */
+    public synchronized void recordVisited(long fingerprint, String link) {
+        if(pendingVisitedCount == pendingVisited.length) {
+            pendingVisited = Arrays.copyOf(pendingVisited, pendingVisited.length * 2);
+        }
+        pendingVisited[pendingVisitedCount++] = fingerprint;
+        inFlight.add(link);
+        scannedCount++;
+    }
+
+
+    /**
+     * Records that a page is done: its result, if it has one, is recorded and
+     * the links found on it have been recorded with recordFound. Called by
+     * the crawlers, so this only keeps the result until the next checkpoint.
+     *
+     * @param link      The link of the page.
+     * @param result    The page's result, or null if it has none.
+     */
+    public synchronized void recordDone(String link, InformationPackage result) {
+        inFlight.remove(link);
+        if(result != null) pendingResults.add(result);
+    }
+
+
+    /**
+     * Writes a checkpoint: the links, fingerprints and results recorded since
+     * the last checkpoint and the pages being scanned, then commits it. The
+     * frontier log is compacted first if it has doubled in size since it was
+     * last compacted. Only one checkpoint may be written at a time.
+     *
+     * @throws IOException  If the checkpoint could not be written.
+     */
+    public void checkpoint() throws IOException {
+        long[] visited;
+        int visitedCount;
+        List<InformationPackage> results;
+        List<String> found;
+        String[] pages;
+        long scanned;
+
+        // Take what was recorded so far and let the crawlers carry on while it
+        // is written. A page is only done once the links found on it have
+        // been recorded, so every link claimed is either done, with those
+        // links in this checkpoint, or one of the pages being scanned.
+        synchronized(this) {
+            visited = pendingVisited;
+            visitedCount = pendingVisitedCount;
+            results = pendingResults;
+            found = pendingFound;
+            pages = inFlight.toArray(new String[inFlight.size()]);
+            scanned = scannedCount - pages.length;
+
+            pendingVisited = new long[FINGERPRINTS_PER_RECORD];
+            pendingVisitedCount = 0;
+            pendingResults = new ArrayList<>();
+            pendingFound = new ArrayList<>();
+        }
+
+        long records = frontierRecords + found.size();
+        boolean compact = records >= COMPACT_MIN_RECORDS && records >= 2 * frontierCompacted;
+        long generation = compact ? frontierGeneration + 1 : frontierGeneration;
+        long inFlightNext = inFlightGeneration + 1;
+        SegmentLog frontierOut = frontierLog;
+        SegmentLog inFlightLog = null;
+        long compacted = frontierCompacted;
+
+        try {
+            if(compact) {
+                SegmentLog.delete(dir, logName("frontier", generation));
+                frontierOut = new SegmentLog(dir, logName("frontier", generation), segmentSize(), 0);
+                records = compactFrontier(frontierOut, visited, visitedCount, pages) + found.size();
+                compacted = records;
+            }
+
+            for(String link : found) {
+                byte[] data = link.getBytes(StandardCharsets.UTF_8);
+                frontierOut.append(data, 0, data.length);
+            }
+
+            SegmentLog.delete(dir, logName("inflight", inFlightNext));
+            inFlightLog = new SegmentLog(dir, logName("inflight", inFlightNext), segmentSize(), 0);
+            for(String link : pages) {
+                byte[] data = link.getBytes(StandardCharsets.UTF_8);
+                inFlightLog.append(data, 0, data.length);
+            }
+
+            ByteBuffer batch = ByteBuffer.allocate(FINGERPRINTS_PER_RECORD * 8);
+            for(int i = 0; i < visitedCount; i++) {
+                batch.putLong(visited[i]);
+                if(!batch.hasRemaining() || i == visitedCount - 1) {
+                    visitedLog.append(batch.array(), 0, batch.position());
+                    batch.clear();
+                }
+            }
+
+            for(InformationPackage result : results) {
+                byte[] data = encodeResult(result);
+                resultsLog.append(data, 0, data.length);
+            }
+
+            visitedLog.force();
+            resultsLog.force();
+            frontierOut.force();
+            inFlightLog.close();
+        } catch (IOException | RuntimeException err) {
+            // Drop the new logs, and keep the records for the next checkpoint.
+            if(frontierOut != frontierLog) {
+                frontierOut.close();
+                SegmentLog.delete(dir, logName("frontier", generation));
+            }
+            if(inFlightLog != null) {
+                inFlightLog.close();
+                SegmentLog.delete(dir, logName("inflight", inFlightNext));
+            }
+            synchronized(this) {
+                for(int i = 0; i < visitedCount; i++) {
+                    if(pendingVisitedCount == pendingVisited.length) {
+                        pendingVisited = Arrays.copyOf(pendingVisited, pendingVisited.length * 2);
+                    }
+                    pendingVisited[pendingVisitedCount++] = visited[i];
+                }
+                pendingResults.addAll(0, results);
+                pendingFound.addAll(0, found);
+            }
+            throw err;
+        }
+
+        synchronized(this) {
+            manifest.setProperty("segment.size", String.valueOf(segmentSize()));
+            manifest.setProperty("visited.end", String.valueOf(visitedLog.position()));
+            manifest.setProperty("results.end", String.valueOf(resultsLog.position()));
+            manifest.setProperty("frontier.generation", String.valueOf(generation));
+            manifest.setProperty("frontier.end", String.valueOf(frontierOut.position()));
+            manifest.setProperty("frontier.records", String.valueOf(records));
+            manifest.setProperty("frontier.compacted", String.valueOf(compacted));
+            manifest.setProperty("inflight.generation", String.valueOf(inFlightNext));
+            manifest.setProperty("inflight.end", String.valueOf(inFlightLog.position()));
+            manifest.setProperty("scanned", String.valueOf(scanned));
+            manifest.setProperty("queries", String.valueOf(queries.length));
+            for(int i = 0; i < queries.length; i++) {
+                manifest.setProperty("query." + i, queries[i]);
+            }
+            writeManifest();
+        }
+
+        if(frontierOut != frontierLog) {
+            frontierLog.close();
+            frontierLog = frontierOut;
+        }
+        frontierGeneration = generation;
+        frontierRecords = records;
+        frontierCompacted = compacted;
+        inFlightGeneration = inFlightNext;
+
+        deleteLogs("frontier", generation);
+        deleteLogs("inflight", inFlightNext);
+    }
+
+
+    /**
+     * Copies the links in the committed frontier log that have not been
+     * scanned to a new log, each only once. A link counts as scanned if it
+     * was claimed before this checkpoint and its page is not being scanned.
+     *
+     * @param out           The new log.
+     * @param visited       The fingerprints claimed since the last checkpoint.
+     * @param visitedCount  The amount of fingerprints in visited.
+     * @param pages         The pages being scanned.
+     * @return              The amount of links copied.
+     * @throws IOException  If a log could not be read or written.
+     */
+    private long compactFrontier(final SegmentLog out, long[] visited, int visitedCount,
+                                 String[] pages) throws IOException {
+        final Set<Long> rescan = new HashSet<>();
+        for(String link : pages) rescan.add(UrlCanonicalizer.fingerprint(link));
+
+        final VisitedSet scanned = new VisitedSet(scannedCount, false);
+        SegmentLog.read(dir, "visited", segmentSize(), longValue("visited.end"),
+                        new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while(buffer.remaining() >= 8) scanned.addFingerprint(buffer.getLong());
+            }
+        });
+        for(int i = 0; i < visitedCount; i++) scanned.addFingerprint(visited[i]);
+
+        final VisitedSet kept = new VisitedSet(frontierCompacted, false);
+        final long[] copied = {0};
+        SegmentLog.read(dir, logName("frontier", frontierGeneration), segmentSize(),
+                        longValue("frontier.end"), new SegmentLog.RecordHandler() {
+
+            @Override
+            public void record(byte[] data, int length) throws IOException {
+                long fingerprint = UrlCanonicalizer.fingerprint(
+                                        new String(data, 0, length, StandardCharsets.UTF_8));
+                if(scanned.containsFingerprint(fingerprint) && !rescan.contains(fingerprint)) return;
+                if(!kept.addFingerprint(fingerprint)) return;
+
+                out.append(data, 0, length);
+                copied[0]++;
+            }
+        });
+        return copied[0];
+    }
+
+
+    /*
+        Writes out anything still mapped. Call checkpoint() first to save the
+        last changes.
+    */
+    @Override
+    public void close() {
+        visitedLog.close();
+        resultsLog.close();
+        frontierLog.close();
+    }
+
+
+    /**
+     * Replaces the manifest file in one step, so a crash leaves either the old
+     * or the new manifest.
+     *
+     * @throws IOException  If the manifest could not be written.
+     */
+    private void writeManifest() throws IOException {
+        File temp = new File(dir, MANIFEST + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            manifest.store(out, "Web crawler checkpoint");
+        }
+        Files.move(temp.toPath(), new File(dir, MANIFEST).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Deletes every generation of a log except one.
+     *
+     * @param name  The name of the log.
+     * @param keep  The generation to keep, or -1 to delete them all.
+     */
+    private void deleteLogs(String name, long keep) {
+        File[] files = dir.listFiles();
+        if(files == null) return;
+
+        String kept = logName(name, keep) + "-";
+        for(File f : files) {
+            if(f.getName().startsWith(name + "-") && !f.getName().startsWith(kept)) {
+                f.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the queries saved with the checkpoint.
+     *
+     * @return  The saved queries, or null if none were saved.
+     */
+    private String[] savedQueries() {
+        String count = manifest.getProperty("queries");
+        if(count == null) return null;
+
+        String[] saved = new String[Integer.parseInt(count)];
+        for(int i = 0; i < saved.length; i++) {
+            saved[i] = manifest.getProperty("query." + i, "");
+        }
+        return saved;
+    }
+
+
+    /**
+     * Encodes a result as a record.
+     *
+     * @param result    The result.
+     * @return          The record.
+     * @throws IOException  Never; the record is written to memory.
+     */
+    private static byte[] encodeResult(InformationPackage result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        byte[] link = result.getLink().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(link.length);
+        out.write(link);
+
+        int[] occurrences = result.getSearchQueryOccurrences();
+        out.writeInt(occurrences.length);
+        for(int i : occurrences) out.writeInt(i);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Decodes a result record.
+     *
+     * @param data      The array holding the record.
+     * @param length    The length of the record.
+     * @param queries   The queries the result was counted for.
+     * @return          The result.
+     * @throws IOException  If the record is damaged.
+     */
+    private static InformationPackage decodeResult(byte[] data, int length, String[] queries)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+
+        byte[] link = new byte[in.readInt()];
+        in.readFully(link);
+
+        int[] occurrences = new int[in.readInt()];
+        for(int i = 0; i < occurrences.length; i++) occurrences[i] = in.readInt();
+
+        return new InformationPackage(new String(link, StandardCharsets.UTF_8), queries, occurrences);
+    }
+
+
+    /**
+     * Returns the name of one generation of a log.
+     *
+     * @param name          The name of the log.
+     * @param generation    The generation of the log.
+     * @return              The name of the generation.
+     */
+    private static String logName(String name, long generation) {
+        return name + "-" + generation;
+    }
+
+
+    /**
+     * Returns the segment size of the checkpoint.
+     *
+     * @return  The segment size.
+     */
+    private int segmentSize() {
+        return (int) longValue("segment.size", SegmentLog.DEFAULT_SEGMENT_SIZE);
+    }
+
+
+    /**
+     * Returns a number from the manifest, or zero if it is missing.
+     *
+     * @param key   The key.
+     * @return      The number.
+     */
+    private long longValue(String key) {
+        return longValue(key, 0);
+    }
+
+
+    /**
+     * Returns a number from the manifest.
+     *
+     * @param key           The key.
+     * @param defaultValue  The value if the key is missing.
+     * @return              The number.
+     */
+    private long longValue(String key, long defaultValue) {
+        String value = manifest.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,255 @@
+package web.crawler.checkpoint;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * The SegmentLog is an append-only log of records stored in fixed size,
+ * memory-mapped segment files named "name-00000.seg", "name-00001.seg" and so
+ * on. Appending a record is a copy into mapped memory; the operating system
+ * writes the pages out in the background and {@link #force()} waits for them.
+ *
+ * Positions in the log are byte offsets across all of the segments. A
+ * position is only trusted once it has been written to a checkpoint manifest,
+ * so anything after the last committed position is ignored when reading and
+ * overwritten when appending again.
+ *
+ * Each record is an int length followed by that many bytes. A record never
+ * spans two segments; a length of zero or less marks the unused end of a
+ * segment.
+ *
+ * @author Jordan Hartwick
+ * June 14, 2016
+ */
+public class SegmentLog implements Closeable {
+
+
+    /**
+     * Receives the records read from a log.
+     */
+    public interface RecordHandler {
+
+
+        /**
+         * Receives one record.
+         *
+         * @param data      The array holding the record.
+         * @param length    The length of the record.
+         * @throws IOException  If the record could not be handled.
+         */
+        void record(byte[] data, int length) throws IOException;
+    }
+
+
+    /**
+     * The default size of a segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 32 * 1024 * 1024;
+
+
+    /**
+     * The directory holding the segment files.
+     */
+    private final File dir;
+
+
+    /**
+     * The name the segment files start with.
+     */
+    private final String name;
+
+
+    /**
+     * The size of each segment file.
+     */
+    private final int segmentSize;
+
+
+    /**
+     * The segment being appended to.
+     */
+    private MappedByteBuffer current;
+
+
+    /**
+     * The index of the segment being appended to.
+     */
+    private int currentIndex = -1;
+
+
+    /**
+     * The position the next record will be written at.
+     */
+    private long position;
+
+
+    /**
+     * Opens a log for appending.
+     *
+     * @param dir           The directory holding the segment files.
+     * @param name          The name the segment files start with.
+     * @param segmentSize   The size of each segment file.
+     * @param position      The position to append from, usually the last
+     *                      committed position.
+     * @throws IOException  If the segment could not be mapped.
+     */
+    public SegmentLog(File dir, String name, int segmentSize, long position) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.position = position;
+
+        map((int) (position / segmentSize));
+        current.position((int) (position % segmentSize));
+    }
+
+
+    /**
+     * Appends a record.
+     *
+     * @param data      The array holding the record.
+     * @param offset    The index of the first byte of the record.
+     * @param length    The length of the record.
+     * @return          The position after the record.
+     * @throws IOException  If a new segment could not be mapped.
+     */
+    public synchronized long append(byte[] data, int offset, int length) throws IOException {
+        if(length <= 0 || length > segmentSize - 4) {
+            throw new IllegalArgumentException("record length " + length
+                                               + " does not fit in a segment");
+        }
+
+        if(current.remaining() < length + 4) {
+            if(current.remaining() >= 4) current.putInt(0);
+            position = (long) (currentIndex + 1) * segmentSize;
+            map(currentIndex + 1);
+        }
+
+        current.putInt(length);
+        current.put(data, offset, length);
+        position += length + 4;
+        return position;
+    }
+
+
+    /**
+     * Returns the position the next record will be written at.
+     *
+     * @return  The position the next record will be written at.
+     */
+    public synchronized long position() {
+        return position;
+    }
+
+
+    /**
+     * Waits until everything appended so far has been written to disk.
+     */
+    public synchronized void force() {
+        current.force();
+    }
+
+
+    /*
+        Writes out the current segment. Segments that are already full were
+        written when the log moved past them.
+    */
+    @Override
+    public synchronized void close() {
+        force();
+    }
+
+
+    /**
+     * Reads the records of a log up to a committed position.
+     *
+     * @param dir           The directory holding the segment files.
+     * @param name          The name the segment files start with.
+     * @param segmentSize   The size of each segment file.
+     * @param end           The committed position to read up to.
+     * @param handler       Receives the records.
+     * @throws IOException  If a segment could not be read.
+     */
+    public static void read(File dir, String name, int segmentSize, long end,
+                            RecordHandler handler) throws IOException {
+        byte[] record = new byte[1024];
+        long position = 0;
+
+        while(position < end) {
+            int index = (int) (position / segmentSize);
+            long segmentEnd = Math.min(end, (long) (index + 1) * segmentSize);
+
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(dir, name, index), "r");
+                 FileChannel channel = file.getChannel()) {
+
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+                segment.position((int) (position % segmentSize));
+
+                while(position + 4 <= segmentEnd) {
+                    int length = segment.getInt();
+                    if(length <= 0) break;
+
+                    if(record.length < length) record = new byte[Math.max(length, record.length * 2)];
+                    segment.get(record, 0, length);
+                    handler.record(record, length);
+                    position += length + 4;
+                }
+            }
+
+            position = (long) (index + 1) * segmentSize;
+        }
+    }
+
+
+    /**
+     * Deletes all of the segment files of a log.
+     *
+     * @param dir   The directory holding the segment files.
+     * @param name  The name the segment files start with.
+     */
+    public static void delete(File dir, final String name) {
+        File[] files = dir.listFiles();
+        if(files == null) return;
+
+        for(File f : files) {
+            if(f.getName().startsWith(name + "-") && f.getName().endsWith(".seg")) {
+                f.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Maps a segment for appending, creating its file if needed.
+     *
+     * @param index     The index of the segment.
+     * @throws IOException  If the segment could not be mapped.
+     */
+    private void map(int index) throws IOException {
+        if(current != null) current.force();
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(dir, name, index), "rw");
+             FileChannel channel = file.getChannel()) {
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        currentIndex = index;
+    }
+
+
+    /**
+     * Returns the file of a segment.
+     *
+     * @param dir       The directory holding the segment files.
+     * @param name      The name the segment files start with.
+     * @param index     The index of the segment.
+     * @return          The segment file.
+     */
+    private static File segmentFile(File dir, String name, int index) {
+        return new File(dir, String.format("%s-%05d.seg", name, index));
+    }
+}
@@ -0,0 +1,157 @@
+package web.crawler.cluster;
+
+import java.util.function.Consumer;
+import web.crawler.frontier.Frontier;
+
+
+/**
+ * The ClusterFrontier sits in front of a node's own frontier and splits the
+ * links found by its Crawlers between the nodes of a cluster. A link whose
+ * site this node owns goes to the local frontier, and any other link is sent
+ * to the node that owns its site through the LinkExchange.
+ *
+ * The frontier is only exhausted when the local frontier is and the exchange
+ * is quiet, so Crawlers keep waiting for links from the other nodes until no
+ * links have moved for the exchange's idle time.
+ *
+ * @author Jordan Hartwick
+ * July 1, 2016
+ */
+public class ClusterFrontier implements Frontier {
+
+
+    /**
+     * The frontier of this node.
+     */
+    private final Frontier local;
+
+
+    /**
+     * Decides which node owns a link.
+     */
+    private final HashRing ring;
+
+
+    /**
+     * Sends links to the other nodes.
+     */
+    private final LinkExchange exchange;
+
+
+    /**
+     * The index of this node.
+     */
+    private final int self;
+
+
+    /**
+     * Creates a new instance of the ClusterFrontier class.
+     *
+     * @param local     The frontier of this node.
+     * @param ring      Decides which node owns a link.
+     * @param exchange  Sends links to the other nodes.
+     * @param self      The index of this node.
+     */
+    public ClusterFrontier(Frontier local, HashRing ring, LinkExchange exchange, int self) {
+        this.local = local;
+        this.ring = ring;
+        this.exchange = exchange;
+        this.self = self;
+    }
+
+
+    /**
+     * Returns true if this node owns a link's site.
+     *
+     * @param link  The link.
+     * @return      True if the link belongs in this node's frontier.
+     */
+    public boolean isLocal(String link) {
+        return ring.ownerOf(link) == self;
+    }
+
+
+    /*
+        Adds the link to the local frontier if this node owns its site, or
+        sends it to the node that does.
+    */
+    @Override
+    public void offer(int worker, String link) {
+        int owner = ring.ownerOf(link);
+        if(owner == self) {
+            local.offer(worker, link);
+        } else {
+            exchange.send(owner, link, 0, 0);
+        }
+    }
+
+
+    /*
+        Adds the link to the local frontier, or sends it to the node that owns
+        it, with its priority and depth.
+    */
+    @Override
+    public void offer(int worker, String link, int priority, int depth) {
+        int owner = ring.ownerOf(link);
+        if(owner == self) {
+            local.offer(worker, link, priority, depth);
+        } else {
+            exchange.send(owner, link, priority, depth);
+        }
+    }
+
+
+    /*
+        Takes a link from the local frontier.
+    */
+    @Override
+    public String poll(int worker) {
+        return local.poll(worker);
+    }
+
+
+    /*
+        Marks the worker as no longer processing a link.
+    */
+    @Override
+    public void complete(int worker) {
+        local.complete(worker);
+    }
+
+
+    /*
+        Returns the depth kept by the local frontier.
+    */
+    @Override
+    public int depthOf(String link) {
+        return local.depthOf(link);
+    }
+
+
+    /*
+        Returns the amount of links in the local frontier.
+    */
+    @Override
+    public int size() {
+        return local.size();
+    }
+
+
+    /*
+        Returns true if the local frontier is exhausted and no links have
+        moved between the nodes for the exchange's idle time.
+    */
+    @Override
+    public boolean isExhausted() {
+        return local.isExhausted() && exchange.isQuiet();
+    }
+
+
+    /*
+        Hands over the links in the local frontier.
+    */
+    @Override
+    public void snapshot(Consumer<String> consumer) {
+        local.snapshot(consumer);
+    }
+}
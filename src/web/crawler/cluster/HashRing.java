@@ -0,0 +1,172 @@
+package web.crawler.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/**
+ * The HashRing assigns each site to one node of a crawling cluster by
+ * consistent hashing. Every node is placed on a ring of 64 bit hashes at
+ * VIRTUAL_NODES points, and a site belongs to the node at the first point
+ * after the site's hash. The many points even out the share of each node,
+ * and adding or removing a node only moves the sites next to its points.
+ *
+ * A site is the host and port of a link, so every link of a site is crawled
+ * by the same node, which keeps the site's politeness limits and robots.txt
+ * in one place.
+ *
+ * @author Jordan Hartwick
+ * July 1, 2016
+ */
+public class HashRing {
+
+
+    /**
+     * The amount of points each node has on the ring.
+     */
+    private static final int VIRTUAL_NODES = 160;
+
+
+    /**
+     * The low bits of a point that hold its index while the points are
+     * sorted. The rest hold the point's hash.
+     */
+    private static final long INDEX_MASK = (1 << 20) - 1;
+
+
+    /**
+     * The points on the ring, sorted. The sign bit of each hash is flipped so
+     * the signed order of the points is the unsigned order of the hashes.
+     */
+    private final long[] points;
+
+
+    /**
+     * The node that owns each point.
+     */
+    private final int[] owners;
+
+
+    /**
+     * The amount of nodes.
+     */
+    private final int nodeCount;
+
+
+    /**
+     * Creates a new instance of the HashRing class.
+     *
+     * @param nodes     The name of each node, for example its address. The
+     *                  position of a name is the node's index. Every node of
+     *                  the cluster must be given the same names in the same
+     *                  order.
+     * @throws IllegalArgumentException If there are no nodes or too many.
+     */
+    public HashRing(String[] nodes) {
+        if(nodes.length == 0 || (long) nodes.length * VIRTUAL_NODES > INDEX_MASK) {
+            throw new IllegalArgumentException("The ring needs 1 to "
+                                               + INDEX_MASK / VIRTUAL_NODES + " nodes");
+        }
+
+        nodeCount = nodes.length;
+        points = new long[nodes.length * VIRTUAL_NODES];
+        owners = new int[points.length];
+        for(int node = 0, i = 0; node < nodes.length; node++) {
+            for(int v = 0; v < VIRTUAL_NODES; v++, i++) {
+                points[i] = (hash(nodes[node] + "#" + v) ^ Long.MIN_VALUE) & ~INDEX_MASK | i;
+            }
+        }
+
+        Arrays.sort(points);
+        for(int i = 0; i < points.length; i++) {
+            owners[i] = (int) (points[i] & INDEX_MASK) / VIRTUAL_NODES;
+            points[i] &= ~INDEX_MASK;
+        }
+    }
+
+
+    /**
+     * Returns the amount of nodes on the ring.
+     *
+     * @return  The amount of nodes.
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+
+    /**
+     * Returns the index of the node that owns a link's site.
+     *
+     * @param link  The link.
+     * @return      The index of the node.
+     */
+    public int ownerOf(String link) {
+        if(nodeCount == 1) {
+            return 0;
+        }
+
+        long hash = hash(siteOf(link)) ^ Long.MIN_VALUE;
+        int low = 0, high = points.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(points[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+
+    /**
+     * Returns the host and port of a link in lower case, without any user
+     * info.
+     *
+     * @param link  The link.
+     * @return      The host and port, or an empty string if the link has no
+     *              scheme.
+     */
+    static String siteOf(String link) {
+        int start = link.indexOf("://");
+        if(start == -1) {
+            return "";
+        }
+        start += 3;
+
+        int end = start;
+        while(end < link.length()) {
+            char c = link.charAt(end);
+            if(c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+
+        String authority = link.substring(start, end);
+        int at = authority.lastIndexOf('@');
+        if(at != -1) authority = authority.substring(at + 1);
+        return authority.toLowerCase(Locale.ENGLISH);
+    }
+
+
+    /**
+     * Returns the 64 bit FNV-1a hash of a string's UTF-8 bytes, with a final
+     * mix so that names which differ only in their last characters are
+     * spread around the ring.
+     *
+     * @param text  The string.
+     * @return      The hash.
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for(byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,671 @@
+package web.crawler.cluster;
+
+import errorreport.ErrorReport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The LinkExchange sends links to the other nodes of a crawling cluster and
+ * receives the links they send. Links for a node are collected and sent in
+ * batches over one socket to that node, so a batch of links costs one write
+ * instead of one for each link.
+ *
+ * Each connection starts with MAGIC and the index of the sending node. After
+ * that, each batch is the amount of links followed by the links, each as a
+ * modified UTF-8 string, as written by DataOutputStream.writeUTF, then its
+ * priority as a byte and its depth as a short.
+ *
+ * A node that cannot be reached is tried again until it has not been reached
+ * for the idle time; then the links waiting for it are dropped and counted.
+ * The idle time is also how long the exchange must go without sending or
+ * receiving a link before it is quiet, which is how a node knows the other
+ * nodes have stopped sending it work.
+ *
+ * The exchange has no authentication or encryption: any host that can reach
+ * a node's port can send it links. It is only meant for a trusted network, so
+ * each node listens only on the address given for it in the node list.
+ *
+ * @author Jordan Hartwick
+ * July 1, 2016
+ */
+public class LinkExchange {
+
+
+    /**
+     * The first value written on every connection.
+     */
+    private static final int MAGIC = 0x4c4e4b32;
+
+
+    /**
+     * How long a sender waits for a batch to fill before sending what it has.
+     */
+    private static final long LINGER_MILLIS = 20;
+
+
+    /**
+     * How long a sender waits before connecting again after an error.
+     */
+    private static final long RETRY_MILLIS = 250;
+
+
+    /**
+     * The most links waiting for one node. Links past this are dropped.
+     */
+    private static final int MAX_WAITING = 1 << 18;
+
+
+    /**
+     * The longest link sent, in characters. Longer links may not fit in a
+     * modified UTF-8 string and are dropped.
+     */
+    private static final int MAX_LINK_LENGTH = 16384;
+
+
+    /**
+     * The address of each node.
+     */
+    private final InetSocketAddress[] addresses;
+
+
+    /**
+     * The index of this node.
+     */
+    private final int self;
+
+
+    /**
+     * The most links in one batch.
+     */
+    private final int batchSize;
+
+
+    /**
+     * How long the exchange must go without sending or receiving a link to
+     * be quiet, and how long a node that cannot be reached is tried.
+     */
+    private final long idleMillis;
+
+
+    /**
+     * Receives the links sent by the other nodes.
+     */
+    private final Receiver receiver;
+
+
+    /**
+     * The links waiting for each node. Null for this node.
+     */
+    private final Outbox[] outboxes;
+
+
+    /**
+     * The amount of links sent.
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+
+    /**
+     * The amount of links received.
+     */
+    private final AtomicLong received = new AtomicLong();
+
+
+    /**
+     * The amount of links dropped without being sent.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+
+    /**
+     * When a link was last sent or received, in milliseconds.
+     */
+    private volatile long lastActivity;
+
+
+    /**
+     * True once the exchange has been closed.
+     */
+    private volatile boolean closed;
+
+
+    /**
+     * Accepts the connections of the other nodes.
+     */
+    private ServerSocket server;
+
+
+    /**
+     * The connections accepted, so they can be closed.
+     */
+    private final List<Socket> accepted = new ArrayList<>();
+
+
+    /**
+     * Creates a new instance of the LinkExchange class.
+     *
+     * @param nodes         The address of each node as host:port, in the
+     *                      same order on every node.
+     * @param self          The index of this node.
+     * @param batchSize     The most links in one batch.
+     * @param idleMillis    How long the exchange must go without sending or
+     *                      receiving a link to be quiet.
+     * @param receiver      Receives the links sent by the other nodes. Called
+     *                      from the exchange's threads.
+     * @throws IllegalArgumentException If an address is not host:port or
+     *                                  self is not the index of a node.
+     */
+    public LinkExchange(String[] nodes, int self, int batchSize, long idleMillis,
+                        Receiver receiver) {
+        if(self < 0 || self >= nodes.length) {
+            throw new IllegalArgumentException("Node index " + self + " is not in the node list");
+        }
+
+        addresses = new InetSocketAddress[nodes.length];
+        for(int i = 0; i < nodes.length; i++) {
+            addresses[i] = parseAddress(nodes[i]);
+        }
+
+        this.self = self;
+        this.batchSize = Math.max(1, batchSize);
+        this.idleMillis = idleMillis;
+        this.receiver = receiver;
+
+        outboxes = new Outbox[nodes.length];
+        for(int i = 0; i < nodes.length; i++) {
+            if(i != self) outboxes[i] = new Outbox(i);
+        }
+        lastActivity = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Starts listening for the other nodes and starts the sender of each.
+     * This node listens on its own address from the node list, not on every
+     * interface.
+     *
+     * @throws IOException  If this node's address could not be found or its
+     *                      port could not be opened.
+     */
+    public void start() throws IOException {
+        InetSocketAddress local = new InetSocketAddress(addresses[self].getHostString(),
+                                                        addresses[self].getPort());
+        if(local.isUnresolved()) {
+            throw new IOException("Unknown host for this node: " + local.getHostString());
+        }
+
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(local);
+
+        startThread("cluster-accept", new Runnable() {
+
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+
+        for(final Outbox outbox : outboxes) {
+            if(outbox == null) continue;
+
+            startThread("cluster-send-" + outbox.node, new Runnable() {
+
+                @Override
+                public void run() {
+                    outbox.sendLoop();
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Queues a link to be sent to a node.
+     *
+     * @param node      The index of the node.
+     * @param link      The link.
+     * @param priority  The link's priority, from 0 to 255.
+     * @param depth     The link's depth.
+     */
+    public void send(int node, String link, int priority, int depth) {
+        if(link.length() > MAX_LINK_LENGTH) {
+            dropped.incrementAndGet();
+            return;
+        }
+        outboxes[node].add(new Link(link, priority, depth));
+    }
+
+
+    /**
+     * Returns true if no links are waiting to be sent and no link has been
+     * sent or received for the idle time.
+     *
+     * @return  True if the exchange is quiet.
+     */
+    public boolean isQuiet() {
+        for(Outbox outbox : outboxes) {
+            if(outbox != null && outbox.isBusy()) return false;
+        }
+        return System.currentTimeMillis() - lastActivity >= idleMillis;
+    }
+
+
+    /**
+     * Returns the amount of links sent to the other nodes.
+     *
+     * @return  The amount of links sent.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+
+    /**
+     * Returns the amount of links received from the other nodes.
+     *
+     * @return  The amount of links received.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+
+    /**
+     * Returns the amount of links dropped because their node could not be
+     * reached, too many were waiting for it or they were too long.
+     *
+     * @return  The amount of links dropped.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+
+    /**
+     * Stops the exchange and closes its connections. Links still waiting are
+     * dropped.
+     */
+    public void close() {
+        closed = true;
+        closeQuietly(server);
+        synchronized(accepted) {
+            for(Socket socket : accepted) closeQuietly(socket);
+            accepted.clear();
+        }
+        for(Outbox outbox : outboxes) {
+            if(outbox != null) outbox.close();
+        }
+    }
+
+
+    /**
+     * Accepts connections until the exchange is closed, reading each on its
+     * own thread.
+     */
+    private void acceptLoop() {
+        while(!closed) {
+            try {
+                final Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                synchronized(accepted) {
+                    accepted.add(socket);
+                }
+
+                startThread("cluster-receive", new Runnable() {
+
+                    @Override
+                    public void run() {
+                        receive(socket);
+                    }
+                });
+            } catch (IOException err) {
+                if(!closed) ErrorReport.createErrorReport(err);
+            }
+        }
+    }
+
+
+    /**
+     * Reads batches from a connection and passes the links to the receiver
+     * until the connection ends.
+     *
+     * @param socket    The connection.
+     */
+    private void receive(Socket socket) {
+        try(DataInputStream in = new DataInputStream(
+                                     new BufferedInputStream(socket.getInputStream(), 1 << 16))) {
+            int magic = in.readInt();
+            int from = in.readInt();
+            if(magic != MAGIC || from < 0 || from >= addresses.length) {
+                throw new IOException("Unknown cluster connection from " + socket.getRemoteSocketAddress());
+            }
+
+            while(!closed) {
+                int count = in.readInt();
+                if(count <= 0 || count > 1 << 20) {
+                    throw new IOException("Bad batch size " + count + " from node " + from);
+                }
+
+                for(int i = 0; i < count; i++) {
+                    String link = in.readUTF();
+                    int priority = in.readUnsignedByte();
+                    receiver.receive(link, priority, in.readUnsignedShort());
+                }
+                received.addAndGet(count);
+                lastActivity = System.currentTimeMillis();
+            }
+        } catch (EOFException | SocketException err) {
+            // The other node closed the connection.
+        } catch (IOException err) {
+            if(!closed) ErrorReport.createErrorReport(err);
+        } finally {
+            synchronized(accepted) {
+                accepted.remove(socket);
+            }
+            closeQuietly(socket);
+        }
+    }
+
+
+    /**
+     * Starts a daemon thread.
+     *
+     * @param name      The thread's name.
+     * @param task      The thread's work.
+     */
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Turns "host:port" into an address, without looking up the host.
+     *
+     * @param node  The node's address.
+     * @return      The address.
+     * @throws IllegalArgumentException If the address is not host:port.
+     */
+    private static InetSocketAddress parseAddress(String node) {
+        int colon = node.lastIndexOf(':');
+        if(colon <= 0) {
+            throw new IllegalArgumentException("Node address must be host:port: " + node);
+        }
+        try {
+            return InetSocketAddress.createUnresolved(node.substring(0, colon).trim(),
+                                                      Integer.parseInt(node.substring(colon + 1).trim()));
+        } catch (NumberFormatException err) {
+            throw new IllegalArgumentException("Node address must be host:port: " + node);
+        }
+    }
+
+
+    /**
+     * Closes a socket, ignoring any error.
+     *
+     * @param closeable The socket, or null.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException err) {
+            // Nothing more can be done with it.
+        }
+    }
+
+
+    /**
+     * Receives the links sent by the other nodes.
+     */
+    public interface Receiver {
+
+
+        /**
+         * Receives a link.
+         *
+         * @param link      The link.
+         * @param priority  The link's priority, from 0 to 255.
+         * @param depth     The link's depth.
+         */
+        void receive(String link, int priority, int depth);
+    }
+
+
+    /**
+     * A link waiting to be sent, with its priority and depth.
+     */
+    private static class Link {
+
+
+        /** The link. */
+        final String link;
+
+
+        /** The link's priority. */
+        final int priority;
+
+
+        /** The link's depth. */
+        final int depth;
+
+
+        /**
+         * Creates a new instance of the Link class.
+         *
+         * @param link      The link.
+         * @param priority  The link's priority.
+         * @param depth     The link's depth.
+         */
+        Link(String link, int priority, int depth) {
+            this.link = link;
+            this.priority = priority;
+            this.depth = depth;
+        }
+    }
+
+
+    /**
+     * The links waiting for one node, and the connection they are sent over.
+     */
+    private class Outbox {
+
+
+        /** The index of the node. */
+        final int node;
+
+
+        /** The links waiting. */
+        private ArrayList<Link> waiting = new ArrayList<>();
+
+
+        /** True while a batch taken from waiting is being sent. */
+        private boolean sending;
+
+
+        /** The connection, or null if there is none. */
+        private Socket socket;
+
+
+        /** Writes to the connection. */
+        private DataOutputStream out;
+
+
+        /**
+         * Creates a new instance of the Outbox class.
+         *
+         * @param node  The index of the node.
+         */
+        Outbox(int node) {
+            this.node = node;
+        }
+
+
+        /**
+         * Adds a link, waking the sender once a batch is full.
+         *
+         * @param link  The link.
+         */
+        synchronized void add(Link link) {
+            if(waiting.size() >= MAX_WAITING) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            waiting.add(link);
+            if(waiting.size() == batchSize) notifyAll();
+        }
+
+
+        /**
+         * Returns true if links are waiting or being sent.
+         *
+         * @return  True if the outbox is busy.
+         */
+        synchronized boolean isBusy() {
+            return sending || !waiting.isEmpty();
+        }
+
+
+        /**
+         * Takes the next batch, waiting up to LINGER_MILLIS for it to fill.
+         *
+         * @return  The batch, or null if the exchange was closed.
+         * @throws InterruptedException If the thread was interrupted.
+         */
+        private synchronized List<Link> take() throws InterruptedException {
+            while(!closed && waiting.isEmpty()) {
+                wait(LINGER_MILLIS * 5);
+            }
+            if(!closed && waiting.size() < batchSize) {
+                wait(LINGER_MILLIS);
+            }
+            if(closed) return null;
+
+            List<Link> batch;
+            if(waiting.size() <= batchSize) {
+                batch = waiting;
+                waiting = new ArrayList<>();
+            } else {
+                List<Link> head = waiting.subList(0, batchSize);
+                batch = new ArrayList<>(head);
+                head.clear();
+            }
+            sending = true;
+            return batch;
+        }
+
+
+        /**
+         * Marks the batch being sent as done.
+         */
+        private synchronized void sent() {
+            sending = false;
+        }
+
+
+        /**
+         * Sends batches until the exchange is closed. A batch that cannot be
+         * sent is tried again until the node has not been reached for the
+         * idle time, and is then dropped.
+         */
+        void sendLoop() {
+            try {
+                List<Link> batch;
+                while((batch = take()) != null) {
+                    long failingSince = 0;
+                    while(!closed) {
+                        try {
+                            write(batch);
+                            sent.addAndGet(batch.size());
+                            lastActivity = System.currentTimeMillis();
+                            break;
+                        } catch (IOException err) {
+                            disconnect();
+                            long now = System.currentTimeMillis();
+                            if(failingSince == 0) failingSince = now;
+                            if(now - failingSince >= idleMillis) {
+                                dropped.addAndGet(batch.size());
+                                ErrorReport.createErrorReport(err);
+                                break;
+                            }
+                            Thread.sleep(RETRY_MILLIS);
+                        }
+                    }
+                    sent();
+                }
+            } catch (InterruptedException err) {
+                // Closed.
+            } finally {
+                disconnect();
+            }
+        }
+
+
+        /**
+         * Writes a batch, connecting first if needed.
+         *
+         * @param batch     The links.
+         * @throws IOException  If the node could not be reached.
+         */
+        private void write(List<Link> batch) throws IOException {
+            if(socket == null) {
+                InetSocketAddress address = addresses[node];
+                Socket s = new Socket();
+                try {
+                    s.setTcpNoDelay(true);
+                    s.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                              (int) Math.max(1000, Math.min(idleMillis, 10000)));
+                    out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+                    out.writeInt(MAGIC);
+                    out.writeInt(self);
+                } catch (IOException err) {
+                    closeQuietly(s);
+                    throw err;
+                }
+                socket = s;
+            }
+
+            out.writeInt(batch.size());
+            for(Link link : batch) {
+                out.writeUTF(link.link);
+                out.writeByte(Math.max(0, Math.min(255, link.priority)));
+                out.writeShort(Math.max(0, Math.min(0xffff, link.depth)));
+            }
+            out.flush();
+        }
+
+
+        /**
+         * Closes the connection, if there is one.
+         */
+        private void disconnect() {
+            closeQuietly(socket);
+            socket = null;
+            out = null;
+        }
+
+
+        /**
+         * Wakes the sender so it sees the exchange is closed.
+         */
+        synchronized void close() {
+            notifyAll();
+        }
+    }
+}
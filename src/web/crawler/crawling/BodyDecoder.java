@@ -0,0 +1,461 @@
+package web.crawler.crawling;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+
+/**
+ * The BodyDecoder turns the bytes of a page as they arrive into bytes of
+ * HTML, and finds the charset they are written in, so the page can be decoded
+ * into chars a single time.
+ *
+ * Bodies sent with gzip or deflate content encoding are decompressed with
+ * Inflaters that are kept from page to page, instead of the new Inflater
+ * GZIPInputStream creates for every page. The gzip trailer is not checked;
+ * a body that was cut off still fails, because the Inflater runs out of
+ * input before the end of the compressed data.
+ *
+ * The charset is worked out the way a browser does, in this order: a byte
+ * order mark, the charset in the content type, a meta tag in the first
+ * PRESCAN bytes, and otherwise UTF-8.
+ *
+ * A BodyDecoder also keeps a byte buffer the whole body can be read into.
+ * One BodyDecoder can decode several pages one after another, but not at
+ * the same time.
+ *
+ * @author Jordan Hartwick
+ * July 3, 2016
+ */
+public class BodyDecoder {
+
+
+    /**
+     * The content encodings asked for, as an Accept-Encoding header.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+
+    /**
+     * The amount of bytes at the start of a page searched for a meta tag
+     * naming the charset. This is the same as in the HTML standard.
+     */
+    public static final int PRESCAN = 1024;
+
+
+    /**
+     * The size of the body buffer when it is created.
+     */
+    private static final int INITIAL_BUFFER = 32 * 1024;
+
+
+    /**
+     * The largest body buffer kept for the next page. A larger buffer is
+     * dropped once the page that needed it is done with it, so a few large
+     * pages do not hold memory on every fetch thread.
+     */
+    private static final int MAX_KEPT_BUFFER = 256 * 1024;
+
+
+    /**
+     * The size of the buffer compressed bytes are read into.
+     */
+    private static final int INFLATER_BUFFER = 8192;
+
+
+    /**
+     * Decompresses gzip bodies and raw deflate bodies.
+     */
+    private final Inflater rawInflater = new Inflater(true);
+
+
+    /**
+     * Decompresses deflate bodies with a zlib header.
+     */
+    private final Inflater zlibInflater = new Inflater(false);
+
+
+    /**
+     * The buffer compressed bytes are read into.
+     */
+    private final byte[] inflaterBuffer = new byte[INFLATER_BUFFER];
+
+
+    /**
+     * Holds a body, or the start of one.
+     */
+    private byte[] bytes = new byte[INITIAL_BUFFER];
+
+
+    /**
+     * The amount of bytes in the body buffer.
+     */
+    private int length;
+
+
+    /**
+     * Creates a new instance of the BodyDecoder class.
+     */
+    public BodyDecoder() {}
+
+
+    /**
+     * Returns a stream of a body's bytes with its content encoding undone.
+     *
+     * @param in        The body as it arrives.
+     * @param encoding  The content encoding of the body, or null.
+     * @return          The decompressed body.
+     * @throws IOException  If the encoding is not supported or the gzip
+     *                      header could not be read.
+     */
+    public InputStream decode(InputStream in, String encoding) throws IOException {
+        if(encoding == null) {
+            return in;
+        }
+
+        String name = encoding.trim().toLowerCase(Locale.ENGLISH);
+        if(name.isEmpty() || name.equals("identity")) {
+            return in;
+        }
+        if(name.equals("gzip") || name.equals("x-gzip")) {
+            skipGzipHeader(in);
+            rawInflater.reset();
+            return new Inflating(in, rawInflater);
+        }
+        if(name.equals("deflate")) {
+            // Some servers send raw deflate data instead of the zlib format
+            // the standard asks for, so look at the first two bytes.
+            PushbackInputStream pushback = new PushbackInputStream(in, 2);
+            int b0 = pushback.read(), b1 = pushback.read();
+            if(b1 != -1) pushback.unread(b1);
+            if(b0 != -1) pushback.unread(b0);
+
+            boolean zlib = b0 != -1 && b1 != -1 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+            Inflater inflater = zlib ? zlibInflater : rawInflater;
+            inflater.reset();
+            return new Inflating(pushback, inflater);
+        }
+        throw new ZipException("Unsupported content encoding: " + encoding);
+    }
+
+
+    /**
+     * Reads a body to its end into the body buffer.
+     *
+     * @param in    The body.
+     * @throws IOException  If the body could not be read.
+     */
+    public void readAll(InputStream in) throws IOException {
+        if(bytes.length > MAX_KEPT_BUFFER) {
+            bytes = new byte[INITIAL_BUFFER];
+        }
+
+        length = 0;
+        int n;
+        while((n = in.read(bytes, length, bytes.length - length)) != -1) {
+            length += n;
+            if(length == bytes.length) {
+                byte[] larger = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, larger, 0, length);
+                bytes = larger;
+            }
+        }
+    }
+
+
+    /**
+     * Reads up to PRESCAN bytes of a body into the body buffer, and returns
+     * a stream of the whole body that reads those bytes again first. The
+     * stream starts after the byte order mark, if there is one.
+     *
+     * @param in    The body.
+     * @return      The whole body, without its byte order mark.
+     * @throws IOException  If the body could not be read.
+     */
+    public InputStream readHead(InputStream in) throws IOException {
+        if(bytes.length > MAX_KEPT_BUFFER) {
+            bytes = new byte[INITIAL_BUFFER];
+        }
+
+        length = 0;
+        int n;
+        while(length < PRESCAN && (n = in.read(bytes, length, PRESCAN - length)) != -1) {
+            length += n;
+        }
+        int bom = bomLength();
+        return new SequenceInputStream(new ByteArrayInputStream(bytes, bom, length - bom), in);
+    }
+
+
+    /**
+     * Returns the body buffer.
+     *
+     * @return  The body buffer, holding getLength bytes.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+
+    /**
+     * Returns the amount of bytes in the body buffer.
+     *
+     * @return  The amount of bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+
+    /**
+     * Returns the charset of the body in the body buffer: the one its byte
+     * order mark names, the one in the content type, the one a meta tag near
+     * its start names, or UTF-8.
+     *
+     * @param contentType   The content type, or null.
+     * @return              The charset.
+     */
+    public Charset charset(String contentType) {
+        Charset bom = bomCharset();
+        if(bom != null) {
+            return bom;
+        }
+
+        String name = charsetNameOf(contentType);
+        if(name == null) {
+            name = prescan();
+        }
+        return name == null ? StandardCharsets.UTF_8 : Charset.forName(name);
+    }
+
+
+    /**
+     * Returns the length of the byte order mark at the start of the body
+     * buffer.
+     *
+     * @return  The length of the byte order mark, or 0 if there is none.
+     */
+    public int bomLength() {
+        if(length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+            return 3;
+        }
+        return bomCharset() != null ? 2 : 0;
+    }
+
+
+    /**
+     * Returns the charset a byte order mark at the start of the body buffer
+     * names.
+     *
+     * @return  The charset, or null if there is no byte order mark.
+     */
+    private Charset bomCharset() {
+        if(length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+            return StandardCharsets.UTF_8;
+        }
+        if(length >= 2 && (bytes[0] & 0xff) == 0xfe && (bytes[1] & 0xff) == 0xff) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if(length >= 2 && (bytes[0] & 0xff) == 0xff && (bytes[1] & 0xff) == 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+
+    /**
+     * Looks for a meta tag naming the charset in the first PRESCAN bytes of
+     * the body buffer, either as a charset attribute or in a content
+     * attribute. The bytes are read as ASCII, which every charset a page can
+     * name in a meta tag agrees with for the markup.
+     *
+     * @return  The name of a supported charset, or null if none was found.
+     */
+    private String prescan() {
+        int end = Math.min(length, PRESCAN);
+        int i = 0;
+        while((i = indexOfIgnoreCase("<meta", i, end)) != -1) {
+            int close = i;
+            while(close < end && bytes[close] != '>') close++;
+
+            int at = indexOfIgnoreCase("charset", i + 5, close);
+            if(at != -1) {
+                int p = at + 7;
+                while(p < close && isSpace(bytes[p])) p++;
+                if(p < close && bytes[p] == '=') {
+                    p++;
+                    while(p < close && (isSpace(bytes[p]) || bytes[p] == '"' || bytes[p] == '\'')) p++;
+                    int start = p;
+                    while(p < close && isNameByte(bytes[p])) p++;
+
+                    String name = supported(new String(bytes, start, p - start, StandardCharsets.US_ASCII));
+                    if(name != null) {
+                        // A page that says it is UTF-16 in ASCII is not.
+                        return name.toLowerCase(Locale.ENGLISH).startsWith("utf-16") ? "UTF-8" : name;
+                    }
+                }
+            }
+            i = close;
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the index of an ASCII string in the body buffer, ignoring case.
+     *
+     * @param s     The string, in lower case.
+     * @param from  The index to start at.
+     * @param end   The index to stop before.
+     * @return      The index, or -1 if it was not found.
+     */
+    private int indexOfIgnoreCase(String s, int from, int end) {
+        for(int i = from; i <= end - s.length(); i++) {
+            int j = 0;
+            while(j < s.length() && (bytes[i + j] | 0x20) == s.charAt(j)) j++;
+            if(j == s.length()) return i;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns true if a byte is HTML white space.
+     *
+     * @param b     The byte.
+     * @return      True if the byte is a space, tab, line feed, form feed or
+     *              carriage return.
+     */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\f' || b == '\r';
+    }
+
+
+    /**
+     * Returns true if a byte can be part of a charset name.
+     *
+     * @param b     The byte.
+     * @return      True for letters, digits, '-', '_', '.', ':' and '+'.
+     */
+    private static boolean isNameByte(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+               || b == '-' || b == '_' || b == '.' || b == ':' || b == '+';
+    }
+
+
+    /**
+     * Returns the name of the charset named in a content type, if the Java
+     * runtime supports it.
+     *
+     * @param contentType   The content type, or null.
+     * @return              The name of the charset, or null if there is none
+     *                      or it is not supported.
+     */
+    static String charsetNameOf(String contentType) {
+        if(contentType != null) {
+            int i = contentType.toLowerCase(Locale.ENGLISH).indexOf("charset=");
+            if(i != -1) {
+                return supported(contentType.substring(i + 8).split(";")[0].trim().replace("\"", ""));
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns a charset name if the Java runtime supports it.
+     *
+     * @param name  The name.
+     * @return      The name, or null if it is not supported.
+     */
+    private static String supported(String name) {
+        try {
+            return !name.isEmpty() && Charset.isSupported(name) ? name : null;
+        } catch (IllegalArgumentException err) {
+            // Not a charset name.
+            return null;
+        }
+    }
+
+
+    /**
+     * Reads a gzip header from a stream, leaving the stream at the start of
+     * the compressed data.
+     *
+     * @param in    The stream.
+     * @throws IOException  If the header is not a gzip header.
+     */
+    private static void skipGzipHeader(InputStream in) throws IOException {
+        if(readByte(in) != 0x1f || readByte(in) != 0x8b || readByte(in) != 8) {
+            throw new ZipException("Not in GZIP format");
+        }
+        int flags = readByte(in);
+        for(int i = 0; i < 6; i++) {
+            readByte(in);   // Modification time, extra flags and OS.
+        }
+
+        if((flags & 4) != 0) {
+            int extra = readByte(in) | (readByte(in) << 8);
+            for(int i = 0; i < extra; i++) readByte(in);
+        }
+        if((flags & 8) != 0) {
+            while(readByte(in) != 0) {
+                // File name.
+            }
+        }
+        if((flags & 16) != 0) {
+            while(readByte(in) != 0) {
+                // Comment.
+            }
+        }
+        if((flags & 2) != 0) {
+            readByte(in);   // Header CRC.
+            readByte(in);
+        }
+    }
+
+
+    /**
+     * Reads one byte of a gzip header.
+     *
+     * @param in    The stream.
+     * @return      The byte, from 0 to 255.
+     * @throws EOFException If the stream ended.
+     */
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if(b == -1) {
+            throw new EOFException("Unexpected end of GZIP header");
+        }
+        return b;
+    }
+
+
+    /**
+     * Decompresses a body with one of the kept Inflaters and the kept input
+     * buffer. Closing it closes the body but keeps the Inflater.
+     */
+    private class Inflating extends InflaterInputStream {
+
+
+        /**
+         * Creates a new instance of the Inflating class.
+         *
+         * @param in        The compressed body.
+         * @param inflater  The Inflater, already reset.
+         */
+        Inflating(InputStream in, Inflater inflater) {
+            super(in, inflater, 1);
+            buf = inflaterBuffer;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package web.crawler.crawling;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The ConcurrencyController decides how many fetches may be in flight, for
+ * the whole crawling session and for each host, from how the hosts answer.
+ * Each limit is raised while answers stay healthy and halved when there are
+ * signs of overload, the same way TCP adjusts its congestion window:
+ *
+ *   - While a limit has never been lowered it grows by one for each healthy
+ *     answer, so it doubles every round trip. After that it grows by one
+ *     for each limit's worth of healthy answers.
+ *   - A limit only grows while it is being used, so a host that is not busy
+ *     does not build up a large limit it has not earned.
+ *   - A host's limit is halved when a request to it times out, when it
+ *     answers 429 or 503, or when it has become much slower than it was at
+ *     its best. The session's limit is halved on time outs and when hosts in
+ *     general have become much slower than they were at their best, which is
+ *     a sign the crawler itself, or its network, cannot keep up.
+ *   - After a limit is halved it is not halved again until the answers to
+ *     the requests already in flight have had time to come back, so one
+ *     burst of slow answers halves it once.
+ *
+ * How slow a host has become is measured against the quickest it has
+ * answered, which slowly moves up toward how quickly it answers now, so a
+ * host that has become slower for good is not held back for good.
+ *
+ * The session's limit is never more than the amount of fetch threads, and
+ * is never less than one; a host's limit is never more than the most set
+ * for one host, and never less than one.
+ *
+ * @author Jordan Hartwick
+ * July 3, 2016
+ */
+public class ConcurrencyController {
+
+
+    /**
+     * The limit the session starts with, unless there are fewer fetch
+     * threads.
+     */
+    private static final int INITIAL_LIMIT = 4;
+
+
+    /**
+     * The limit each host starts with, unless the most for one host is
+     * lower.
+     */
+    private static final int INITIAL_HOST_LIMIT = 2;
+
+
+    /**
+     * What a limit is multiplied by when it is lowered.
+     */
+    private static final double DECREASE = 0.5;
+
+
+    /**
+     * How much of each new slowness sample goes into a limit's smoothed
+     * slowness.
+     */
+    private static final double SMOOTHING = 0.2;
+
+
+    /**
+     * The smoothed slowness, as a multiple of the quickest answer, at which
+     * a limit is lowered.
+     */
+    private static final double SLOW = 2.0;
+
+
+    /**
+     * The answers a limit needs before its slowness is trusted, so the time
+     * taken to open the first connections to a host is not taken for a
+     * slow down.
+     */
+    private static final int WARM_UP = 8;
+
+
+    /**
+     * How much of the difference between an answer and the quickest answer
+     * the quickest answer moves up by with each answer.
+     */
+    private static final double BASELINE_DRIFT = 0.01;
+
+
+    /**
+     * The quickest answer a slowness is measured against, in nanoseconds.
+     * Hosts that answer quicker than this are measured against it, so small
+     * changes in very quick answers are not taken for a slow down.
+     */
+    private static final long MIN_BASELINE_NANOS = 20000000L;
+
+
+    /**
+     * The shortest time a limit is left alone after it is lowered, in
+     * nanoseconds.
+     */
+    private static final long MIN_QUIET_NANOS = 100000000L;
+
+
+    /**
+     * The most hosts whose limits are kept. Hosts with no fetches in flight
+     * are forgotten, oldest first, once there are more.
+     */
+    private static final int MAX_HOSTS = 10000;
+
+
+    /**
+     * The limit of the whole session.
+     */
+    private final Limit session;
+
+
+    /**
+     * The most fetches in flight to one host.
+     */
+    private final int maxPerHost;
+
+
+    /**
+     * The limit of each host, least recently used first.
+     */
+    private final LinkedHashMap<String, Host> hosts = new LinkedHashMap<String, Host>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Host> eldest) {
+            return size() > MAX_HOSTS && eldest.getValue().limit.inFlight == 0;
+        }
+    };
+
+
+    /**
+     * The amount of times a limit has been lowered.
+     */
+    private long backOffs;
+
+
+    /**
+     * Creates a new instance of the ConcurrencyController class.
+     *
+     * @param maxFetches    The most fetches in flight in the session, usually
+     *                      the amount of fetch threads.
+     * @param maxPerHost    The most fetches in flight to one host.
+     */
+    public ConcurrencyController(int maxFetches, int maxPerHost) {
+        this.session = new Limit(Math.min(INITIAL_LIMIT, maxFetches), maxFetches);
+        this.maxPerHost = maxPerHost;
+    }
+
+
+    /**
+     * Waits until the session's limit allows another fetch, and counts it as
+     * in flight.
+     *
+     * @throws InterruptedException If the thread was interrupted while
+     *                              waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while(!session.hasRoom()) {
+            wait();
+        }
+        session.inFlight++;
+    }
+
+
+    /**
+     * Gives back a fetch taken with acquire that was not made, without
+     * changing the session's limit.
+     */
+    public synchronized void release() {
+        session.inFlight--;
+        notifyAll();
+    }
+
+
+    /**
+     * Counts a fetch to a host as in flight if the host's limit allows it.
+     * Never waits.
+     *
+     * @param host  The host.
+     * @return      True if the fetch may be made, false if the host already
+     *              has as many fetches in flight as its limit allows.
+     */
+    public synchronized boolean tryAcquireHost(String host) {
+        Host h = hosts.get(host);
+        if(h == null) {
+            h = new Host(Math.min(INITIAL_HOST_LIMIT, maxPerHost), maxPerHost);
+            hosts.put(host, h);
+        }
+        if(!h.limit.hasRoom()) {
+            return false;
+        }
+        h.limit.inFlight++;
+        return true;
+    }
+
+
+    /**
+     * Gives back a fetch taken with tryAcquireHost that was not made,
+     * without changing the host's limit.
+     *
+     * @param host  The host.
+     */
+    public synchronized void releaseHost(String host) {
+        Host h = hosts.get(host);
+        if(h != null) h.limit.inFlight--;
+    }
+
+
+    /**
+     * Gives back the session's and the host's share of a fetch that was made
+     * and adjusts both limits to how the host answered. An answer with a
+     * status code other than 429 or 503 is healthy, and its time is a sample
+     * of how slow the host is. A request that failed without an answer, for
+     * a reason other than a time out, does not change the limits.
+     *
+     * @param host          The host.
+     * @param status        The status code of the answer, or 0 if there was
+     *                      none.
+     * @param timedOut      True if the request timed out.
+     * @param fetchNanos    How long the host took to answer, in nanoseconds.
+     */
+    public synchronized void complete(String host, int status, boolean timedOut, long fetchNanos) {
+        long now = System.nanoTime();
+        long quiet = Math.max(MIN_QUIET_NANOS, fetchNanos);
+        Host h = hosts.get(host);
+
+        if(timedOut) {
+            if(h != null) h.limit.backOff(now, quiet);
+            session.backOff(now, quiet);
+        } else if(status == 429 || status == 503) {
+            if(h != null) h.limit.backOff(now, quiet);
+        } else if(status > 0 && h != null) {
+            double slowness = h.slowness(fetchNanos);
+            h.limit.answered(slowness, now, quiet);
+            session.answered(slowness, now, quiet);
+        }
+
+        if(h != null) h.limit.inFlight--;
+        session.inFlight--;
+        notifyAll();
+    }
+
+
+    /**
+     * Returns the session's limit.
+     *
+     * @return  The most fetches in flight allowed right now.
+     */
+    public synchronized int getLimit() {
+        return session.allowed();
+    }
+
+
+    /**
+     * Returns the amount of fetches in flight.
+     *
+     * @return  The amount of fetches in flight.
+     */
+    public synchronized int getInFlight() {
+        return session.inFlight;
+    }
+
+
+    /**
+     * Returns the amount of times the session's or a host's limit has been
+     * lowered.
+     *
+     * @return  The amount of times a limit has been lowered.
+     */
+    public synchronized long getBackOffs() {
+        return backOffs;
+    }
+
+
+    /**
+     * Returns the host a link's fetches are counted against: its host and
+     * port, so two servers on one machine are counted apart.
+     *
+     * @param link  The link, in canonical form.
+     * @return      The host and port of the link, or an empty string if the
+     *              link has no host.
+     */
+    public static String hostOf(String link) {
+        int start = link.indexOf("://");
+        if(start == -1) {
+            return "";
+        }
+        start += 3;
+
+        int end = start;
+        while(end < link.length()) {
+            char c = link.charAt(end);
+            if(c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+
+        int at = link.lastIndexOf('@', end - 1);
+        if(at >= start) start = at + 1;
+        return link.substring(start, end);
+    }
+
+
+    /**
+     * A limit on the fetches in flight, with how slow its answers have been.
+     */
+    private class Limit {
+
+
+        /** The most the limit can be. */
+        final int max;
+
+
+        /** The limit. Fetches are allowed up to its whole part. */
+        double value;
+
+
+        /** True until the limit is lowered for the first time. */
+        boolean slowStart = true;
+
+
+        /** The amount of fetches in flight. */
+        int inFlight;
+
+
+        /** The smoothed slowness of the answers. */
+        double slowness = 1;
+
+
+        /** The amount of answers. */
+        int answers;
+
+
+        /** When the limit may be lowered again, in nanoseconds. */
+        long quietUntil = System.nanoTime();
+
+
+        /**
+         * Creates a new instance of the Limit class.
+         *
+         * @param initial   The limit to start with.
+         * @param max       The most the limit can be.
+         */
+        Limit(int initial, int max) {
+            this.value = initial;
+            this.max = max;
+        }
+
+
+        /**
+         * Returns the amount of fetches allowed in flight.
+         *
+         * @return  The whole part of the limit.
+         */
+        int allowed() {
+            return (int) value;
+        }
+
+
+        /**
+         * Returns true if another fetch is allowed in flight.
+         *
+         * @return  True if there is room for another fetch.
+         */
+        boolean hasRoom() {
+            return inFlight < allowed();
+        }
+
+
+        /**
+         * Records a healthy answer, and lowers the limit if answers have
+         * become too slow or raises it if it is being used.
+         *
+         * @param sample    The slowness of the answer.
+         * @param now       The time, in nanoseconds.
+         * @param quiet     How long to leave the limit alone if it is
+         *                  lowered, in nanoseconds.
+         */
+        void answered(double sample, long now, long quiet) {
+            slowness += SMOOTHING * (sample - slowness);
+            if(++answers >= WARM_UP && slowness > SLOW) {
+                backOff(now, quiet);
+                return;
+            }
+
+            // The fetch being completed still counts as in flight, so the
+            // limit was in use if at most one more fetch would have fit.
+            if(inFlight + 1 >= allowed() && now - quietUntil >= 0) {
+                value = Math.min(max, value + (slowStart ? 1 : 1 / value));
+            }
+        }
+
+
+        /**
+         * Halves the limit, unless it was lowered a short time ago.
+         *
+         * @param now       The time, in nanoseconds.
+         * @param quiet     How long to leave the limit alone, in nanoseconds.
+         */
+        void backOff(long now, long quiet) {
+            if(now - quietUntil < 0) {
+                return;
+            }
+
+            value = Math.max(1, value * DECREASE);
+            slowStart = false;
+            quietUntil = now + quiet;
+            backOffs++;
+        }
+    }
+
+
+    /**
+     * The limit of one host and the quickest it has answered.
+     */
+    private class Host {
+
+
+        /** The host's limit. */
+        final Limit limit;
+
+
+        /** The quickest the host has answered, in nanoseconds. */
+        double baseline;
+
+
+        /**
+         * Creates a new instance of the Host class.
+         *
+         * @param initial   The limit to start with.
+         * @param max       The most the limit can be.
+         */
+        Host(int initial, int max) {
+            this.limit = new Limit(initial, max);
+        }
+
+
+        /**
+         * Records how long the host took to answer and returns how slow that
+         * was compared to the quickest it has answered.
+         *
+         * @param fetchNanos    How long the host took, in nanoseconds.
+         * @return              The time taken as a multiple of the quickest.
+         */
+        double slowness(long fetchNanos) {
+            if(baseline == 0 || fetchNanos < baseline) {
+                baseline = fetchNanos;
+            } else {
+                baseline += BASELINE_DRIFT * (fetchNanos - baseline);
+            }
+            return fetchNanos / Math.max(baseline, MIN_BASELINE_NANOS);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package web.crawler.crawling;
+
+
+/**
+ * A CrawlListener receives the results and the progress messages of a
+ * crawling session. The crawling classes only report through this interface,
+ * so they can run with or without a GUI. The methods are called from the
+ * crawler threads.
+ *
+ * @author Jordan Hartwick
+ * June 16, 2016
+ */
+public interface CrawlListener {
+
+
+    /**
+     * Receives a page that contains one or more of the search queries.
+     *
+     * @param infoPackage   The page's link and the occurrences of each query.
+     */
+    void resultFound(InformationPackage infoPackage);
+
+
+    /**
+     * Receives a progress message, such as a link that was visited.
+     *
+     * @param text  The message.
+     */
+    void message(String text);
+}
@@ -1,18 +1,22 @@
 package web.crawler.crawling;
 
-import java.util.ArrayList;
 import java.util.List;
-import web.crawler.gui.MainGraphics;
+import java.util.concurrent.atomic.AtomicInteger;
+import web.crawler.cache.PageCache;
+import web.crawler.frontier.Frontier;
+import web.crawler.metrics.CrawlMetrics;
 
 
 /**
- * The Crawler class holds a queue of links that need to be scanned by the
- * CrawlerLeg. When a CrawlerLeg finds at least one of the search queries on the
- * page it was assigned, the Crawler class will add an InformationPackage
- * containing the CrawlerLeg's results to the CrawlerManager.
+ * The Crawler class takes links that need to be scanned from the frontier
+ * shared by all Crawlers and hands them to a CrawlerLeg. When a CrawlerLeg
+ * finds at least one of the search queries on the page it was assigned, the
+ * Crawler class will add an InformationPackage containing the CrawlerLeg's
+ * results to the CrawlerManager.
  *
  * @see web.crawler.crawling.CrawlerManager
  * @see web.craw.er.crawling.InformationPackage
+ * @see web.crawler.frontier.Frontier
  *
  * @author Jordan Hartwick
  * May 16, 2016
@@ -21,21 +25,35 @@ public class Crawler implements Runnable {
 
 
     /**
-     * Contains the links that need to be scanned.
+     * How long to wait before asking the frontier again when it is empty but
+     * other Crawlers are still scanning pages.
      */
-    private List<String> linkQueue;
+    private static final long IDLE_WAIT_MILLIS = 50;
 
 
     /**
-     * The search queries to look for.
+     * The most links given back to the frontier in one call to getNextLink
+     * because their hosts already had as many fetches in flight as allowed.
      */
-    private String[] queries;
+    private static final int MAX_DEFERRED = 8;
 
 
     /**
-     * The first link to scan.
+     * Contains the links that need to be scanned. Shared by all Crawlers.
      */
-    private String startLink;
+    private Frontier frontier;
+
+
+    /**
+     * The index of this Crawler in the frontier.
+     */
+    private int workerId;
+
+
+    /**
+     * Counts the search queries on a page. Compiled once for the session.
+     */
+    private QueryMatcher matcher;
 
 
     /**
@@ -45,93 +63,252 @@ public class Crawler implements Runnable {
 
 
     /**
-     * The amount of links to scan.
+     * The tuning options for the crawling session.
+     */
+    private CrawlerSettings settings;
+
+
+    /**
+     * The amount of links that can still be scanned. Shared by all Crawlers.
      */
-    private int amountOfLinks;
+    private AtomicInteger linkBudget;
+
+
+    /**
+     * The metrics of the crawling session.
+     */
+    private CrawlMetrics metrics;
+
+
+    /**
+     * Remembers the pages of earlier crawls, or null if there is no cache.
+     */
+    private PageCache pageCache;
+
+
+    /**
+     * Works out the priority of the links found, or null if links are
+     * scanned in the order they were found.
+     */
+    private LinkScorer scorer;
+
+
+    /**
+     * Decides how many fetches may be in flight, or null if every Crawler
+     * fetches whenever it has a link. Shared by all Crawlers.
+     */
+    private ConcurrencyController concurrency;
+
+
+    /**
+     * Decides which links are fetched and how much of each page is read.
+     */
+    private FetchPolicy fetchPolicy;
 
 
     /**
      * Constructor method for the Crawler class.
      *
-     * @param queries       The search queries.
-     * @param startLink     The starting link for this crawler.
+     * @param matcher       The matcher for the search queries.
+     * @param frontier      The frontier shared by all crawlers.
+     * @param workerId      The index of this crawler in the frontier.
      * @param userAgent     The user agent for this crawler.
-     * @param a             The amount of links this crawler should scan.
+     * @param linkBudget    The amount of links that can still be scanned,
+     *                      shared by all crawlers.
+     * @param settings      The tuning options for the crawling session.
+     * @param metrics       The metrics of the crawling session.
+     * @param pageCache     The page cache, or null for none.
+     * @param concurrency   Decides how many fetches may be in flight, shared
+     *                      by all crawlers, or null for no limit other than
+     *                      the amount of crawlers.
      */
-    public Crawler(String[] queries, String startLink, String userAgent, int a) {
-        this.queries        = queries;
-        this.startLink      = startLink;
+    public Crawler(QueryMatcher matcher, Frontier frontier, int workerId, String userAgent,
+                   AtomicInteger linkBudget, CrawlerSettings settings, CrawlMetrics metrics,
+                   PageCache pageCache, ConcurrencyController concurrency) {
+        this.matcher        = matcher;
+        this.frontier       = frontier;
+        this.workerId       = workerId;
         this.userAgent      = userAgent;
-        this.amountOfLinks  = a;
-
-        linkQueue       = new ArrayList<>();
+        this.linkBudget     = linkBudget;
+        this.settings       = settings;
+        this.metrics        = metrics;
+        this.pageCache      = pageCache;
+        this.concurrency    = concurrency;
+        this.fetchPolicy    = new FetchPolicy(settings);
+        this.scorer         = settings.isFrontierPriority() ? new LinkScorer(matcher) : null;
     }
 
 
     /**
-     * Returns a link to a page that has not been scanned.
+     * Returns a link to a page that has not been scanned, or null if the
+     * frontier has no links right now. If the fetches in flight are limited,
+     * a link whose host already has as many as allowed is given back to the
+     * frontier, and null is returned once MAX_DEFERRED links have been given
+     * back. The link returned counts as in flight to its host.
      *
-     * @return  A link to a page that has not been scanned.
+     * @return  A link to a page that has not been scanned, or null.
      */
     private String getNextLink() {
         String nextLink;
+        int deferred = 0;
 
-        do
-        {
-            nextLink = linkQueue.remove(0);
-        } while(CrawlerManager.checkForScannedLink(nextLink));
-        CrawlerManager.addScannedLink(nextLink);
+        while((nextLink = frontier.poll(workerId)) != null) {
+            if(concurrency == null) {
+                if(CrawlerManager.addScannedLink(nextLink)) {
+                    return nextLink;
+                }
+            } else if(!CrawlerManager.checkForScannedLink(nextLink)) {
+                String host = ConcurrencyController.hostOf(nextLink);
+                if(!concurrency.tryAcquireHost(host)) {
+                    frontier.offer(workerId, nextLink);
+                    frontier.complete(workerId);
+                    if(++deferred >= MAX_DEFERRED) {
+                        return null;
+                    }
+                    continue;
+                }
+                if(CrawlerManager.addScannedLink(nextLink)) {
+                    return nextLink;
+                }
+                concurrency.releaseHost(host);
+            }
+            frontier.complete(workerId);
+        }
 
-        return nextLink;
+        return null;
     }
 
 
     /**
      * Creates a crawler leg and assigns it a link to search. If the crawler leg
      * found queries on the page specified by the link, then add an
-     * InformationPackage to the CrawlerManager.
-     *
-     * @param link  The link to scan.
+     * InformationPackage to the CrawlerManager. The links found by the crawler
+     * leg are added to the frontier. A page that is a near copy of a page
+     * already scanned adds neither its results nor its links. Links that the
+     * site's robots.txt disallows are not scanned, and found links already
+     * known to be disallowed are not added to the frontier. Found links the
+     * fetch policy says cannot be scanned are dropped too. Stops when the
+     * link budget shared by all crawlers is used up or when the frontier has
+     * run out of work. In a best first crawl each found link is given a
+     * priority by the LinkScorer and a depth one more than the page's. If
+     * the fetches in flight are limited, the Crawler waits for room before
+     * taking a link, and reports how the host answered once the page has
+     * been fetched. Each page is reported done to the CrawlerManager once
+     * its links are in the frontier, so a checkpoint can tell which pages
+     * to scan again.
      *
      * @see web.crawler.crawling.CrawlerManager
      * @see web.crawler.crawling.InformationPackage
      */
-    private void search(String link) {
+    private void search() {
         String linkToScan;
 
-        int amountScanned = 0;
+        while(!Thread.interrupted()) {
+            if(linkBudget.getAndDecrement() <= 0) {
+                return;
+            }
 
-        while(amountScanned < amountOfLinks && !Thread.interrupted()) {
-            if(linkQueue.isEmpty()) {
-                linkToScan = link;
-                CrawlerManager.addScannedLink(link);
-            } else {
-                linkToScan = getNextLink();
+            if(concurrency != null) {
+                try {
+                    concurrency.acquire();
+                } catch (InterruptedException err) {
+                    linkBudget.incrementAndGet();
+                    return;
+                }
             }
 
-            CrawlerLeg cl = new CrawlerLeg(queries, userAgent);
+            linkToScan = getNextLink();
 
-            if(cl.crawl(linkToScan)) {
-                CrawlerManager.addInfoPackage(
-                                    new InformationPackage(linkToScan,
-                                                           queries,
-                                                           cl.getAllAmounts()));
+            if(linkToScan == null) {
+                linkBudget.incrementAndGet();
+                if(concurrency != null) {
+                    concurrency.release();
+                }
+
+                if(frontier.isExhausted()) {
+                    return;
+                }
+
+                try {
+                    Thread.sleep(IDLE_WAIT_MILLIS);
+                } catch (InterruptedException err) {
+                    return;
+                }
+                continue;
             }
 
-            linkQueue.addAll(cl.getLinks());
-            amountScanned++;
+            int depth = scorer == null ? 0 : frontier.depthOf(linkToScan);
+            String host = concurrency == null ? null : ConcurrencyController.hostOf(linkToScan);
+            InformationPackage result = null;
+
+            try {
+                if(!CrawlerManager.isAllowedByRobots(linkToScan)) {
+                    metrics.robotsDenied();
+                    linkBudget.incrementAndGet();
+                    continue;
+                }
+
+                CrawlerLeg cl = new CrawlerLeg(matcher, userAgent, settings, metrics, pageCache,
+                                               fetchPolicy);
+                boolean found = cl.crawl(linkToScan);
+                if(host != null) {
+                    concurrency.complete(host, cl.getStatus(), cl.isTimedOut(), cl.getFetchNanos());
+                    host = null;
+                }
+
+                if(cl.hasSimHash() && !CrawlerManager.addPageFingerprint(cl.getSimHash())) {
+                    metrics.nearDuplicate();
+                    continue;
+                }
+
+                if(found) {
+                    result = new InformationPackage(linkToScan, matcher.getQueries(),
+                                                    cl.getAllAmounts());
+                    CrawlerManager.addInfoPackage(result);
+                }
+
+                long time = System.nanoTime();
+                int hits = scorer == null ? 0 : LinkScorer.hits(cl.getAllAmounts());
+                List<String> links = cl.getLinks();
+                for(int i = 0; i < links.size(); i++) {
+                    String link = links.get(i);
+                    if(fetchPolicy.isSkipped(link)) {
+                        metrics.skipped();
+                    } else if(CrawlerManager.isKnownDisallowed(link)) {
+                        metrics.robotsDenied();
+                    } else if(!CrawlerManager.addFoundLink(link)) {
+                        metrics.duplicate();
+                    } else if(scorer != null) {
+                        frontier.offer(workerId, link,
+                                       scorer.score(hits, cl.getAnchorText(i), link, depth + 1),
+                                       depth + 1);
+                    } else {
+                        frontier.offer(workerId, link);
+                    }
+                }
+                metrics.time(CrawlMetrics.Stage.ENQUEUE, time);
+            } finally {
+                // The links found on the page are in the frontier by now.
+                CrawlerManager.finishLink(linkToScan, result);
+                frontier.complete(workerId);
+                // The page was not fetched, so the fetch is given back as is.
+                if(host != null) {
+                    concurrency.releaseHost(host);
+                    concurrency.release();
+                }
+            }
         }
     }
 
 
     /*
-        Starts the scanning process and displays a message in the console area
-        telling the user that a web crawler has finished.
+        Starts the scanning process and sends a message telling the user that a
+        web crawler has finished.
     */
     @Override
     public void run() {
-        search(startLink);
+        search();
 
-        MainGraphics.updateConsoleArea("Web Crawler Finished");
+        CrawlerManager.message("Web Crawler Finished");
     }
 }
\ No newline at end of file
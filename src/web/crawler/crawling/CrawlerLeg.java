@@ -1,16 +1,29 @@
 package web.crawler.crawling;
 
 import errorreport.ErrorReport;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
+import org.jsoup.helper.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import web.crawler.cache.CachedPage;
+import web.crawler.cache.PageCache;
+import web.crawler.dedup.SimHash;
+import web.crawler.frontier.UrlCanonicalizer;
+import web.crawler.metrics.CrawlMetrics;
+import web.crawler.metrics.CrawlMetrics.Stage;
 
 
 /**
@@ -24,18 +37,70 @@ import org.jsoup.select.Elements;
 public class CrawlerLeg {
 
 
+    /**
+     * How long to wait when connecting to or reading from a site. This is the
+     * same as jsoup's default.
+     */
+    private static final int TIMEOUT_MILLIS = 3000;
+
+
+    /**
+     * The most redirects followed for one page. This is the same as jsoup's.
+     */
+    private static final int MAX_REDIRECTS = 20;
+
+
+    /**
+     * One scanner per thread, so the scanner's buffers are reused from page
+     * to page.
+     */
+    private static final ThreadLocal<HtmlStreamScanner> SCANNER = new ThreadLocal<HtmlStreamScanner>() {
+
+        @Override
+        protected HtmlStreamScanner initialValue() {
+            return new HtmlStreamScanner();
+        }
+    };
+
+
+    /**
+     * One body decoder per thread, so its Inflaters and body buffer are
+     * reused from page to page.
+     */
+    private static final ThreadLocal<BodyDecoder> DECODER = new ThreadLocal<BodyDecoder>() {
+
+        @Override
+        protected BodyDecoder initialValue() {
+            return new BodyDecoder();
+        }
+    };
+
+
     /**
      * Contains the links found on the page this crawler leg scanned.
      */
     private List<String> links;
 
 
+    /**
+     * Contains the anchor text of each link in links, or null if anchor text
+     * is not kept. Links taken from the page cache have empty anchor text.
+     */
+    private List<String> anchors;
+
+
     /**
      * Contains the search queries.
      */
     private String[] queries;
 
 
+    /**
+     * Counts the search queries on the page.
+     */
+    private QueryMatcher matcher;
+
+
     /**
      * Contains the occurrences of each search query on the page that was
      * scanned.
@@ -49,6 +114,69 @@ public class CrawlerLeg {
     private String userAgent;
 
 
+    /**
+     * True to scan the page as it is downloaded instead of building a jsoup
+     * Document.
+     */
+    private boolean streamingScan;
+
+
+    /**
+     * Receives the time taken by each stage and the page's counts.
+     */
+    private CrawlMetrics metrics;
+
+
+    /**
+     * Remembers the pages of earlier crawls, or null if there is no cache.
+     */
+    private PageCache pageCache;
+
+
+    /**
+     * The key of the search queries in the page cache.
+     */
+    private long queryKey;
+
+
+    /**
+     * Fingerprints the page's text for near copy detection, or null if
+     * detection is turned off.
+     */
+    private SimHash simHash;
+
+
+    /**
+     * The fingerprint of the page's text, once the page has been scanned.
+     */
+    private long fingerprint;
+
+
+    /**
+     * The status code the server answered with, or 0 if no answer was
+     * received.
+     */
+    private int status;
+
+
+    /**
+     * True if the server did not answer in time.
+     */
+    private boolean timedOut;
+
+
+    /**
+     * How long the server took to answer, in nanoseconds.
+     */
+    private long fetchNanos;
+
+
+    /**
+     * Decides which answers are read and how much of them.
+     */
+    private FetchPolicy fetchPolicy;
+
+
     /**
      * Constructor method for the CrawlerLeg creates a new instance of the
      * CrawlerLeg class and assigns the queries and user agent.
@@ -57,10 +185,94 @@ public class CrawlerLeg {
      * @param userAgent The user agent to use when connecting to a site.
      */
     public CrawlerLeg(String[] queries, String userAgent) {
-        this.queries = queries;
+        this(new QueryMatcher(queries), userAgent);
+    }
+
+
+    /**
+     * Creates a new instance of the CrawlerLeg class that counts the queries
+     * with a matcher compiled for the whole crawling session.
+     *
+     * @param matcher   The matcher for the search queries.
+     * @param userAgent The user agent to use when connecting to a site.
+     */
+    public CrawlerLeg(QueryMatcher matcher, String userAgent) {
+        this(matcher, userAgent, new CrawlerSettings());
+    }
+
+
+    /**
+     * Creates a new instance of the CrawlerLeg class that counts the queries
+     * with a matcher compiled for the whole crawling session and uses the
+     * session's settings.
+     *
+     * @param matcher   The matcher for the search queries.
+     * @param userAgent The user agent to use when connecting to a site.
+     * @param settings  The tuning options for the crawling session.
+     */
+    public CrawlerLeg(QueryMatcher matcher, String userAgent, CrawlerSettings settings) {
+        this(matcher, userAgent, settings, new CrawlMetrics());
+    }
+
+
+    /**
+     * Creates a new instance of the CrawlerLeg class that records what it does
+     * in the session's metrics.
+     *
+     * @param matcher   The matcher for the search queries.
+     * @param userAgent The user agent to use when connecting to a site.
+     * @param settings  The tuning options for the crawling session.
+     * @param metrics   The metrics of the crawling session.
+     */
+    public CrawlerLeg(QueryMatcher matcher, String userAgent, CrawlerSettings settings,
+                      CrawlMetrics metrics) {
+        this(matcher, userAgent, settings, metrics, null);
+    }
+
+
+    /**
+     * Creates a new instance of the CrawlerLeg class that asks for a page only
+     * if it changed since it was put in the page cache, and reuses the cached
+     * links and counts if it did not.
+     *
+     * @param matcher   The matcher for the search queries.
+     * @param userAgent The user agent to use when connecting to a site.
+     * @param settings  The tuning options for the crawling session.
+     * @param metrics   The metrics of the crawling session.
+     * @param pageCache The page cache, or null for none.
+     */
+    public CrawlerLeg(QueryMatcher matcher, String userAgent, CrawlerSettings settings,
+                      CrawlMetrics metrics, PageCache pageCache) {
+        this(matcher, userAgent, settings, metrics, pageCache, new FetchPolicy(settings));
+    }
+
+
+    /**
+     * Creates a new instance of the CrawlerLeg class that reads answers as a
+     * fetch policy shared by the session allows.
+     *
+     * @param matcher       The matcher for the search queries.
+     * @param userAgent     The user agent to use when connecting to a site.
+     * @param settings      The tuning options for the crawling session.
+     * @param metrics       The metrics of the crawling session.
+     * @param pageCache     The page cache, or null for none.
+     * @param fetchPolicy   Decides which answers are read and how much of
+     *                      them.
+     */
+    public CrawlerLeg(QueryMatcher matcher, String userAgent, CrawlerSettings settings,
+                      CrawlMetrics metrics, PageCache pageCache, FetchPolicy fetchPolicy) {
+        this.matcher = matcher;
+        this.queries = matcher.getQueries();
         this.userAgent = userAgent;
+        this.streamingScan = settings.isStreamingScan();
+        this.metrics = metrics;
+        this.pageCache = pageCache;
+        this.fetchPolicy = fetchPolicy;
+        this.queryKey = pageCache == null ? 0 : PageCache.queryKey(queries);
+        this.simHash = settings.getNearDuplicateMaxDistance() >= 0 ? new SimHash() : null;
 
         this.links = new ArrayList<>();
+        this.anchors = settings.isFrontierPriority() ? new ArrayList<String>() : null;
     }
 
 
@@ -71,7 +283,27 @@ public class CrawlerLeg {
      * gather links from the document. If the document does not contain any of
      * the search queries, it will return false; it will return true otherwise.
      * If the link is empty, it will return false. If the connection could not
-     * receive the web page, it will return false.
+     * receive the web page, it will return false. In streaming scan mode the
+     * page is scanned while it is downloaded and no Document is built. The
+     * time taken to fetch, parse and count the queries is recorded in the
+     * metrics.
+     *
+     * If the page is in the page cache with counts for these queries, the
+     * server is asked for it only if it changed. If the server answers that
+     * it did not (304), or sends the same content again, the cached links and
+     * counts are used instead of parsing the page.
+     *
+     * The fetch policy decides how much of the answer is read: a content type
+     * that cannot be scanned is given up on before the body is read, a body
+     * is only read up to the most bytes allowed, and a body that takes longer
+     * than allowed to download is given up on. The server is asked to
+     * compress the body; the limit on bytes applies to the body once it has
+     * been decompressed, and the page's size in the metrics is the bytes
+     * received.
+     *
+     * The status code, whether the request timed out and how long the server
+     * took to answer are kept, so the Crawler can tell how well the host is
+     * keeping up.
      *
      * @param link  The link to the page to process.
      * @return      True if the page contains a search query one or more times.
@@ -79,61 +311,432 @@ public class CrawlerLeg {
      *              received, or if all search queries were not found.
      */
     public boolean crawl(String link) {
+        long start = System.nanoTime();
         try {
 
             if(link.isEmpty()) {
                 return false;
             }
 
-            Connection con = Jsoup.connect(link).userAgent(userAgent);
-            Document doc = con.get();
-            if(con.response().statusCode() != 200) {
-                return false;
-            }
+            CachedPage cached = pageCache == null ? null : pageCache.get(link);
+            boolean reusable = cached != null && cached.getCounts(queryKey) != null;
+
+            HttpURLConnection con = connect(link, cached, reusable);
+            try {
+                String contentType = con.getContentType();
+                status = con.getResponseCode();
+                long time = metrics.time(Stage.FETCH, start);
+                fetchNanos = time - start;
+                if(status == HttpURLConnection.HTTP_NOT_MODIFIED && reusable) {
+                    return useCached(cached, 0);
+                }
+                if(status != 200) {
+                    metrics.error("HTTP " + status);
+                    return false;
+                }
+                if(!fetchPolicy.isScannable(contentType)) {
+                    metrics.skipped();
+                    return false;
+                }
 
-            searchDocument(doc);
+                // The bytes received are only counted apart from the body
+                // when the body is compressed.
+                InputStream body = con.getInputStream();
+                String encoding = con.getContentEncoding();
+                CountingInputStream wire = null;
+                if(encoding != null) {
+                    wire = new CountingInputStream(body, 0, 0);
+                    body = DECODER.get().decode(wire, encoding);
+                }
 
-            Elements linksOnPage = doc.select("a[href]");
-            for(Element e : linksOnPage) {
-                links.add(e.absUrl("href"));
+                CountingInputStream in = new CountingInputStream(body,
+                                                                 fetchPolicy.getMaxBodyBytes(),
+                                                                 fetchPolicy.getMaxDownloadNanos());
+                if(streamingScan) {
+                    return scanStreaming(link, cached, con, contentType, in, wire, time);
+                }
+                return scanDocument(link, cached, reusable, con, contentType, in, wire, time);
+            } finally {
+                con.disconnect();
             }
+        } catch (IOException err) {
+            timedOut = err instanceof SocketTimeoutException;
+            fetchNanos = System.nanoTime() - start;
+            metrics.error(errorType(err));
+            ErrorReport.createErrorReport(err);
+            return false;
+        }
+    }
+
+
+    /**
+     * Opens a connection to a page and waits for the headers of the answer.
+     * If the page is cached, the server is asked for it only if it changed.
+     * Redirects are followed here rather than by the connection, so a
+     * redirect from http to https is followed too, as jsoup does.
+     *
+     * @param link      The link to the page.
+     * @param cached    The page's cache entry, or null.
+     * @param reusable  True if the cache entry has counts for these queries.
+     * @return          The connection, with the headers of the answer read.
+     * @throws IOException  If the server could not be reached.
+     */
+    private HttpURLConnection connect(String link, CachedPage cached, boolean reusable) throws IOException {
+        URL url = new URL(link);
+
+        for(int redirects = 0; ; redirects++) {
+            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            try {
+                con.setInstanceFollowRedirects(false);
+                con.setRequestProperty("User-Agent", userAgent);
+                con.setRequestProperty("Accept-Encoding", BodyDecoder.ACCEPT_ENCODING);
+                con.setConnectTimeout(TIMEOUT_MILLIS);
+                con.setReadTimeout(TIMEOUT_MILLIS);
+                if(reusable) {
+                    if(cached.getEtag() != null) con.setRequestProperty("If-None-Match", cached.getEtag());
+                    if(cached.getLastModified() != null) con.setRequestProperty("If-Modified-Since", cached.getLastModified());
+                }
+
+                int code = con.getResponseCode();
+                String location = con.getHeaderField("Location");
+                if(!isRedirect(code) || location == null || redirects == MAX_REDIRECTS) {
+                    return con;
+                }
 
-            for(int i : amountFound) {
-                if(i > 0) return true;
+                URL next = new URL(url, location);
+                if(!next.getProtocol().equals("http") && !next.getProtocol().equals("https")) {
+                    return con;
+                }
+                url = next;
+            } catch (IOException err) {
+                con.disconnect();
+                throw err;
             }
+            con.disconnect();
+        }
+    }
 
-            return false;
+
+    /**
+     * Returns true if a status code is a redirect that should be followed.
+     *
+     * @param code  The status code.
+     * @return      True for 301, 302, 303, 307 and 308.
+     */
+    private static boolean isRedirect(int code) {
+        return code == 301 || code == 302 || code == 303 || code == 307 || code == 308;
+    }
+
+
+    /**
+     * Reads a page's body into the thread's body buffer and, if the page
+     * changed since it was cached, builds a jsoup Document from it, collects
+     * its links and counts the search queries in its text. The charset is
+     * found from the bytes before they are decoded, so the body is decoded
+     * into a String once and jsoup does not read or decode it again.
+     *
+     * @param link          The link to the page.
+     * @param cached        The page's cache entry, or null.
+     * @param reusable      True if the cache entry has counts for these
+     *                      queries.
+     * @param con           The connection, with the headers read.
+     * @param contentType   The content type of the answer, or null.
+     * @param in            The body, decompressed and limited by the fetch
+     *                      policy.
+     * @param wire          Counts the bytes received, or null if the body
+     *                      was not compressed.
+     * @param time          When the headers were read, in nanoseconds.
+     * @return              True if the page contains a search query one or
+     *                      more times.
+     * @throws IOException  If the body could not be read.
+     */
+    private boolean scanDocument(String link, CachedPage cached, boolean reusable, HttpURLConnection con,
+                                 String contentType, CountingInputStream in, CountingInputStream wire,
+                                 long time) throws IOException {
+        BodyDecoder decoder = DECODER.get();
+        decoder.readAll(in);
+        if(reusable && cached.getContentHash() == in.hash) {
+            boolean found = useCached(cached, received(in, wire));
+            store(link, cached, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"), in.hash);
+            return found;
+        }
+        metrics.page(received(in, wire));
+        if(in.truncated) metrics.truncated();
+
+        Charset charset = decoder.charset(contentType);
+        int bom = decoder.bomLength();
+        String html = new String(decoder.getBytes(), bom, decoder.getLength() - bom, charset);
+        Document doc = Jsoup.parse(html, con.getURL().toString());
+        Elements linksOnPage = doc.select("a[href]");
+        for(Element e : linksOnPage) {
+            addLink(e.absUrl("href"), anchors == null ? null : e.text());
+        }
+        metrics.links(links.size());
+        time = metrics.time(Stage.PARSE, time);
+
+        searchDocument(doc);
+        metrics.time(Stage.MATCH, time);
+
+        store(link, cached, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"), in.hash);
+        return foundQuery();
+    }
+
+
+    /**
+     * Returns the bytes received for a body.
+     *
+     * @param in    The body, decompressed.
+     * @param wire  Counts the bytes received, or null if the body was not
+     *              compressed.
+     * @return      The amount of bytes received.
+     */
+    private static long received(CountingInputStream in, CountingInputStream wire) {
+        return wire == null ? in.count : wire.count;
+    }
+
+
+    /**
+     * Takes the links and counts of an unchanged page from the page cache.
+     *
+     * @param cached    The cached page.
+     * @param bytes     The amount of bytes downloaded for the page.
+     * @return          True if any search query was found.
+     */
+    private boolean useCached(CachedPage cached, long bytes) {
+        links.addAll(cached.getLinks());
+        if(anchors != null) {
+            for(int i = anchors.size(); i < links.size(); i++) anchors.add("");
+        }
+        amountFound = cached.getCounts(queryKey);
+
+        metrics.page(bytes);
+        metrics.cached();
+        metrics.links(links.size());
+        return foundQuery();
+    }
+
+
+    /**
+     * Puts the page's validators, content hash, links and counts in the page
+     * cache. The counts of other sets of queries are kept if the content did
+     * not change.
+     *
+     * @param link          The link to the page.
+     * @param cached        The page's old cache entry, or null.
+     * @param etag          The ETag the server sent, or null.
+     * @param lastModified  The Last-Modified date the server sent, or null.
+     * @param hash          The hash of the page's content.
+     */
+    private void store(String link, CachedPage cached, String etag, String lastModified, long hash) {
+        if(pageCache == null) return;
+
+        CachedPage page;
+        if(cached == null) {
+            page = new CachedPage(etag, lastModified, hash, new ArrayList<>(links),
+                                  Collections.singletonMap(queryKey, amountFound.clone()));
+        } else {
+            page = cached.update(etag, lastModified, hash, new ArrayList<>(links), queryKey, amountFound);
+        }
+
+        try {
+            pageCache.put(link, page);
         } catch (IOException err) {
             ErrorReport.createErrorReport(err);
-            return false;
         }
     }
 
 
     /**
-     * Searches the document for the specified search queries.
+     * Adds a link found on the page in its canonical form. Links that cannot
+     * be crawled, such as empty, mailto and javascript links, are dropped.
      *
-     * @param doc   The document to search.
+     * @param link          The absolute link.
+     * @param anchorText    The link's anchor text, kept only if anchor text
+     *                      is being kept.
      */
-    private void searchDocument(Document doc) {
-        amountFound = new int[queries.length];
+    private void addLink(String link, String anchorText) {
+        String canonical = UrlCanonicalizer.canonicalize(link);
+        if(canonical != null) {
+            links.add(canonical);
+            if(anchors != null) anchors.add(anchorText);
+        }
+    }
 
-        if(doc != null && doc.body() != null) {
-            for(int i = 0; i < queries.length; i++) {
-                amountFound[i] = 0;
 
-                Pattern pattern = Pattern.compile("\\b" + queries[i] + "\\b");
-                Matcher matcher = pattern.matcher(doc.body().text().toLowerCase());
-                while(matcher.find()) {
-                    amountFound[i]++;
+    /**
+     * Returns true if any search query was found, and counts the page as a
+     * hit if so.
+     *
+     * @return  True if any search query was found.
+     */
+    private boolean foundQuery() {
+        for(int i : amountFound) {
+            if(i > 0) {
+                metrics.hit();
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the type of an error for the metrics: the name of the
+     * exception.
+     *
+     * @param err   The error.
+     * @return      The type of the error.
+     */
+    private static String errorType(IOException err) {
+        return err.getClass().getSimpleName();
+    }
+
+
+    /**
+     * Scans a page's body in one pass with an HtmlStreamScanner as it is
+     * downloaded. The text goes straight into the query counter and the
+     * hrefs are collected and resolved against the page's address (or its
+     * base tag) at the end. Because the queries are counted while the page is
+     * scanned, the parse stage in the metrics includes downloading the body
+     * and counting, and the match stage only collects the counts. The start
+     * of the body is read first so the charset can be found from a meta tag
+     * when the content type does not name one.
+     *
+     * @param link          The link to the page.
+     * @param cached        The page's cache entry, or null.
+     * @param con           The connection, with the headers read.
+     * @param contentType   The content type of the answer, or null.
+     * @param in            The body, decompressed and limited by the fetch
+     *                      policy.
+     * @param wire          Counts the bytes received, or null if the body
+     *                      was not compressed.
+     * @param time          When the headers were read, in nanoseconds.
+     * @return              True if the page contains a search query one or
+     *                      more times.
+     * @throws IOException  If the body could not be read.
+     */
+    private boolean scanStreaming(String link, CachedPage cached, HttpURLConnection con,
+                                  String contentType, CountingInputStream in, CountingInputStream wire,
+                                  long time) throws IOException {
+        final String[] baseUri = {con.getURL().toString()};
+        final List<String> hrefs = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final QueryMatcher.Counter counter = matcher.newCounter();
+
+        BodyDecoder decoder = DECODER.get();
+        InputStream body = decoder.readHead(in);
+        try (Reader reader = new InputStreamReader(body, decoder.charset(contentType))) {
+            SCANNER.get().scan(reader, new HtmlStreamScanner.Handler() {
+
+                @Override
+                public void text(char[] chars, int offset, int length) {
+                    counter.feed(chars, offset, length);
+                    if(simHash != null) simHash.feed(chars, offset, length);
+                }
+
+                @Override
+                public void link(String href, String anchorText) {
+                    hrefs.add(href);
+                    texts.add(anchorText);
+                }
+
+                @Override
+                public void base(String href) {
+                    baseUri[0] = StringUtil.resolve(baseUri[0], href);
                 }
+            });
+        }
+
+        for(int i = 0; i < hrefs.size(); i++) {
+            addLink(StringUtil.resolve(baseUri[0], hrefs.get(i)), texts.get(i));
+        }
+        metrics.page(received(in, wire));
+        if(in.truncated) metrics.truncated();
+        metrics.links(links.size());
+        time = metrics.time(Stage.PARSE, time);
+
+        amountFound = counter.finish();
+        if(simHash != null) fingerprint = simHash.finish();
+        metrics.time(Stage.MATCH, time);
+
+        store(link, cached, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"), in.hash);
+        return foundQuery();
+    }
+
+
+    /**
+     * Searches the document for the specified search queries. The body text is
+     * read once and all of the queries are counted in that one pass. The same
+     * text is fingerprinted for near copy detection.
+     *
+     * @param doc   The document to search.
+     */
+    private void searchDocument(Document doc) {
+        if(doc != null && doc.body() != null) {
+            String text = doc.body().text();
+            amountFound = matcher.count(text);
+            if(simHash != null) {
+                simHash.feed(text);
+                fingerprint = simHash.finish();
             }
         } else {
-            amountFound = new int[]{0,0,0,0};
+            amountFound = new int[queries.length];
         }
     }
 
 
+    /**
+     * Returns true if the page was scanned with enough text to fingerprint.
+     * Pages taken from the page cache have no fingerprint.
+     *
+     * @return  True if getSimHash returns the page's fingerprint.
+     */
+    public boolean hasSimHash() {
+        return simHash != null && simHash.getFeatures() >= SimHash.MIN_FEATURES;
+    }
+
+
+    /**
+     * Returns the SimHash fingerprint of the page's text.
+     *
+     * @return  The fingerprint, if hasSimHash returns true.
+     */
+    public long getSimHash() {
+        return fingerprint;
+    }
+
+
+    /**
+     * Returns the status code the server answered with.
+     *
+     * @return  The status code, or 0 if no answer was received.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+
+    /**
+     * Returns true if the server did not answer in time.
+     *
+     * @return  True if the request timed out.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+
+    /**
+     * Returns how long the server took to answer. For a request that failed
+     * this is how long it took to fail.
+     *
+     * @return  The time taken, in nanoseconds.
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+
     /**
      * Returns the occurrences of each search query.
      *
@@ -145,11 +748,148 @@ public class CrawlerLeg {
 
 
     /**
-     * Returns the links found on the page this crawler leg scanned.
+     * Returns the links found on the page this crawler leg scanned, in their
+     * canonical form.
      *
      * @return  The links found on the page this crawler leg scanned.
      */
     public List<String> getLinks() {
         return links;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Returns the anchor text of a link returned by getLinks. Anchor text is
+     * only kept for a best first crawl.
+     *
+     * @param index     The index of the link in getLinks.
+     * @return          The link's anchor text, or an empty string if it is
+     *                  not known.
+     */
+    public String getAnchorText(int index) {
+        return anchors == null || index >= anchors.size() ? "" : anchors.get(index);
+    }
+
+
+    /**
+     * Counts and hashes the bytes read from a stream, and stops reading once
+     * the fetch policy's limits are reached.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+
+        /**
+         * The amount of bytes read.
+         */
+        long count;
+
+
+        /**
+         * The content hash of the bytes read.
+         */
+        long hash = PageCache.EMPTY_HASH;
+
+
+        /**
+         * True if the stream went on past the most bytes allowed.
+         */
+        boolean truncated;
+
+
+        /**
+         * The most bytes read, or 0 for no limit.
+         */
+        private final long maxBytes;
+
+
+        /**
+         * The most nanoseconds the stream may take to read, or 0 for no
+         * limit.
+         */
+        private final long maxNanos;
+
+
+        /**
+         * When the stream was opened, in nanoseconds.
+         */
+        private final long start = System.nanoTime();
+
+
+        /**
+         * Creates a new instance of the CountingInputStream class.
+         *
+         * @param in        The stream to read from.
+         * @param maxBytes  The most bytes read, or 0 for no limit.
+         * @param maxNanos  The most nanoseconds the stream may take to read,
+         *                  or 0 for no limit.
+         */
+        CountingInputStream(InputStream in, long maxBytes, long maxNanos) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.maxNanos = maxNanos;
+        }
+
+
+        /*
+            Reads a byte and counts and hashes it.
+        */
+        @Override
+        public int read() throws IOException {
+            if(!canRead()) {
+                return -1;
+            }
+
+            int b = in.read();
+            if(b != -1) {
+                count++;
+                hash = (hash ^ b) * 0x100000001B3L;
+            }
+            return b;
+        }
+
+
+        /*
+            Reads bytes, up to the most allowed, and counts and hashes them.
+        */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(!canRead()) {
+                return -1;
+            }
+
+            if(maxBytes > 0) len = (int) Math.min(len, maxBytes - count);
+            int n = in.read(b, off, len);
+            if(n > 0) {
+                count += n;
+                hash = PageCache.contentHash(hash, b, off, n);
+            }
+            return n;
+        }
+
+
+        /**
+         * Returns false once the most bytes allowed have been read, and notes
+         * whether the stream went on past them.
+         *
+         * @return  True if more bytes may be read.
+         * @throws SocketTimeoutException   If the stream has taken longer to
+         *                                  read than allowed.
+         */
+        private boolean canRead() throws SocketTimeoutException {
+            if(maxNanos > 0 && System.nanoTime() - start > maxNanos) {
+                throw new SocketTimeoutException("Download took longer than " + maxNanos / 1000000 + "ms");
+            }
+            if(maxBytes > 0 && count >= maxBytes) {
+                if(!truncated) {
+                    try {
+                        truncated = in.read() != -1;
+                    } catch (IOException err) {
+                        truncated = true;
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -1,18 +1,47 @@
 package web.crawler.crawling;
 
-import java.util.HashSet;
-import java.util.Set;
-import javax.swing.DefaultListModel;
-import javax.swing.ListModel;
-import web.crawler.gui.MainGraphics;
+import errorreport.ErrorReport;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import web.crawler.cache.PageCache;
+import web.crawler.checkpoint.CrawlCheckpoint;
+import web.crawler.cluster.ClusterFrontier;
+import web.crawler.cluster.HashRing;
+import web.crawler.cluster.LinkExchange;
+import web.crawler.dedup.SimHashIndex;
+import web.crawler.frontier.BloomFilter;
+import web.crawler.frontier.Frontier;
+import web.crawler.frontier.PolitenessScheduler;
+import web.crawler.frontier.PriorityFrontier;
+import web.crawler.frontier.SpillingFrontier;
+import web.crawler.frontier.UrlCanonicalizer;
+import web.crawler.frontier.VisitedSet;
+import web.crawler.frontier.WorkStealingFrontier;
+import web.crawler.infoexport.ExportListener;
+import web.crawler.infoexport.ResultWriter;
+import web.crawler.metrics.CrawlMetrics;
+import web.crawler.metrics.MetricsReporter;
+import web.crawler.robots.RobotsCache;
 
 
 /**
- * The CrawlerManager is used to start and manage the Crawler threads, and add
- * InformationPackages to the InformationPackage list's list model.
+ * The CrawlerManager is used to start and manage the Crawler threads, and pass
+ * InformationPackages and progress messages to a CrawlListener. The amount
+ * of Crawlers is set by the fetch thread count in the CrawlerSettings, not by
+ * the amount of starting links.
  *
  * @see web.crawler.crawling.CrawlerLeg
  * @see web.crawler.crawling.InformationPackage
+ * @see web.crawler.crawling.CrawlListener
  *
  * @author Jordan Hartwick
  * May 16, 2016
@@ -20,28 +49,147 @@ import web.crawler.gui.MainGraphics;
 public class CrawlerManager extends Thread {
 
 
+    /**
+     * The amount of links the visited set is sized for up front.
+     */
+    private static final long EXPECTED_LINKS = 1 << 16;
+
+
     /**
      * Contains the links that have already been scanned.
      */
-    private static Set<String> linksScanned = new HashSet<>();
+    private static VisitedSet linksScanned = new VisitedSet(EXPECTED_LINKS, false);
+
+
+    /**
+     * Contains the links that have been found, whether they have been scanned
+     * yet or are still waiting in the frontier, or null if the filter is
+     * turned off. Found links are checked against it before they are added to
+     * the frontier, so the frontier does not fill with copies of a link.
+     */
+    private static BloomFilter linksSeen;
+
+
+    /**
+     * Contains the text fingerprints of the pages scanned, so a page that is
+     * a near copy of one already scanned can be found, or null if near copy
+     * detection is turned off.
+     */
+    private static SimHashIndex pagesSeen;
+
+
+    /**
+     * Contains the compiled robots.txt rules of the sites crawled, or null if
+     * robots.txt is not followed.
+     */
+    private static RobotsCache robots;
+
+
+    /**
+     * Contains the links that still need to be scanned. Shared by all of the
+     * crawlers so a crawler that runs out of links can take work from the
+     * others. Unless it is turned off, links are handed out through a
+     * PolitenessScheduler so no host receives too many requests.
+     */
+    private Frontier frontier;
+
+
+    /**
+     * Writes links to disk once too many are waiting, or null if every link
+     * is kept in memory.
+     */
+    private SpillingFrontier spillingFrontier;
+
+
+    /**
+     * Spaces out the requests to each host, or null if politeness is turned
+     * off. Crawl delays from robots.txt are passed to it.
+     */
+    private PolitenessScheduler scheduler;
+
+
+    /**
+     * Sends links to the other nodes of the cluster and receives theirs, or
+     * null if this node crawls alone.
+     */
+    private LinkExchange exchange;
+
+
+    /**
+     * Runs the crawlers.
+     */
+    private FetchExecutor fetchExecutor;
+
+
+    /**
+     * Contains all of the crawlers.
+     */
+    private Crawler[] crawlers;
+
+
+    /**
+     * The amount of links that can still be scanned in this session. Shared
+     * by all of the crawlers.
+     */
+    private AtomicInteger linkBudget;
+
+
+    /**
+     * The tuning options for this crawling session.
+     */
+    private CrawlerSettings settings;
+
+
+    /**
+     * Receives the InformationPackages and the progress messages.
+     */
+    private static CrawlListener listener;
+
+
+    /**
+     * Saves the session so it can be resumed, or null if checkpointing is
+     * turned off.
+     */
+    private static CrawlCheckpoint checkpoint;
+
+
+    /**
+     * Writes a checkpoint at a fixed interval.
+     */
+    private ScheduledExecutorService checkpointTimer;
+
+
+    /**
+     * Writes the results to the export file as they are found, or null if
+     * there is no export file.
+     */
+    private ExportListener exportListener;
 
 
     /**
-     * All of the crawler threads belong to this thread group.
+     * Counts and times what the crawlers do.
      */
-    private ThreadGroup crawlerThreadGroup;
+    private CrawlMetrics metrics;
 
 
     /**
-     * Contains all of the crawler threads.
+     * Writes the metrics at a fixed interval, or null if the metrics are not
+     * written.
      */
-    private Thread[] crawlerThreads;
+    private MetricsReporter metricsReporter;
 
 
     /**
-     * The list model to add InformationPackages to.
+     * Remembers the pages of earlier crawls, or null if there is no cache.
      */
-    private static DefaultListModel listModel;
+    private PageCache pageCache;
+
+
+    /**
+     * Decides how many fetches may be in flight, for the session and for
+     * each host, or null if every crawler fetches whenever it has a link.
+     */
+    private ConcurrencyController concurrency;
 
 
     /**
@@ -50,37 +198,466 @@ public class CrawlerManager extends Thread {
     private UserAgentAssigner uas;
 
 
+    /**
+     * Creates a new instance of the CrawlerManager class using the settings
+     * from the system properties.
+     *
+     * @param queries           The search queries (contains one or more query).
+     * @param startingLinks     The first links to scan.
+     * @param amountToScan      The maximum amount of links to scan for each
+     *                          starting link.
+     * @param listener          Receives the InformationPackages and the
+     *                          progress messages.
+     * @throws IllegalArgumentException If a setting in the system properties
+     *                                  is not valid, or the session resumes
+     *                                  a checkpoint that was saved for other
+     *                                  queries.
+     */
+    public CrawlerManager(String[] queries, String[] startingLinks, int amountToScan,
+                          CrawlListener listener) {
+        this(queries, startingLinks, amountToScan, listener,
+             CrawlerSettings.fromProperties(System.getProperties()));
+    }
+
+
     /**
      * Creates a new instance of the CrawlerManager class.
      *
      * @param queries           The search queries (contains one or more query).
      * @param startingLinks     The first links to scan.
-     * @param amountToScan      The maximum amount of links to scan.
-     * @param model             The list model to add InformationPackages to.
+     * @param amountToScan      The maximum amount of links to scan for each
+     *                          starting link.
+     * @param listener          Receives the InformationPackages and the
+     *                          progress messages.
+     * @param settings          The tuning options for this session.
+     * @throws IllegalArgumentException If the session resumes a checkpoint
+     *                                  that was saved for other queries.
+     */
+    public CrawlerManager(String[] queries, String[] startingLinks, int amountToScan,
+                          CrawlListener listener, CrawlerSettings settings) {
+        this.settings = settings;
+
+        // Opened first, so a checkpoint that cannot be resumed stops the
+        // session before anything is started.
+        checkpoint = openCheckpoint(queries);
+
+        CrawlerManager.listener = listener;
+        openExport();
+        linksScanned = new VisitedSet(EXPECTED_LINKS, settings.isVisitedOffHeap());
+        linksSeen = settings.getSeenFilterExpectedLinks() > 0
+                        ? new BloomFilter(settings.getSeenFilterExpectedLinks(),
+                                          settings.getSeenFilterFalsePositiveRate())
+                        : null;
+        // The index cannot find copies further apart than MAX_DISTANCE, so a
+        // larger setting is treated as the largest it supports.
+        pagesSeen = settings.getNearDuplicateMaxDistance() >= 0
+                        ? new SimHashIndex(Math.min(settings.getNearDuplicateMaxDistance(),
+                                                    SimHashIndex.MAX_DISTANCE),
+                                           settings.getNearDuplicateMaxPages())
+                        : null;
+
+        uas = new UserAgentAssigner(settings.getUserAgentFile(), 7);
+
+        // The budget used to be per crawler with one crawler per starting
+        // link, so the total stays the same now that the two are separate.
+        // It is worked out in a long so a large amount cannot wrap around.
+        linkBudget = new AtomicInteger((int) Math.min(Integer.MAX_VALUE,
+                                                      (long) amountToScan * startingLinks.length));
+
+        int workers = settings.getFetchThreads();
+        frontier = settings.isFrontierPriority() ? new PriorityFrontier()
+                                                 : new WorkStealingFrontier(workers);
+        if(settings.getFrontierMaxInMemory() > 0) {
+            try {
+                String spillDir = settings.getFrontierSpillDir();
+                spillingFrontier = new SpillingFrontier(frontier,
+                                                        settings.getFrontierMaxInMemory(),
+                                                        spillDir == null ? null : new File(spillDir));
+                frontier = spillingFrontier;
+            } catch (IOException err) {
+                ErrorReport.createErrorReport(err);
+            }
+        }
+        if(settings.getHostRequestsPerSecond() > 0) {
+            // A best first crawl keeps only a burst's worth of links for each
+            // host, so better links found later are not stuck behind them.
+            scheduler = settings.isFrontierPriority()
+                            ? new PolitenessScheduler(frontier,
+                                                      settings.getHostRequestsPerSecond(),
+                                                      settings.getHostBurst(),
+                                                      settings.getHostBurst())
+                            : new PolitenessScheduler(frontier,
+                                                      settings.getHostRequestsPerSecond(),
+                                                      settings.getHostBurst());
+            frontier = scheduler;
+        }
+        robots = openRobots();
+        openCluster(workers);
+
+        if(checkpoint != null && settings.isResume() && checkpoint.hasState()) {
+            resume(workers);
+        } else {
+            int next = 0;
+            for(String link : startingLinks) {
+                String canonical = UrlCanonicalizer.canonicalize(link);
+                if(canonical != null && addFoundLink(canonical)) {
+                    frontier.offer(next++ % workers, canonical, PriorityFrontier.MAX_PRIORITY, 0);
+                }
+            }
+        }
+
+        QueryMatcher matcher = new QueryMatcher(queries);
+        metrics = new CrawlMetrics();
+        pageCache = openPageCache();
+        concurrency = settings.isConcurrencyAdaptive()
+                          ? new ConcurrencyController(workers, settings.getConcurrencyMaxPerHost())
+                          : null;
+
+        crawlers = new Crawler[workers];
+        for(int i = 0; i < workers; i++) {
+            crawlers[i] = new Crawler(matcher,
+                                      frontier,
+                                      i,
+                                      uas.getUserAgent(),
+                                      linkBudget,
+                                      settings,
+                                      metrics,
+                                      pageCache,
+                                      concurrency);
+        }
+
+        fetchExecutor = new FetchExecutor(workers, settings.isVirtualThreads());
+        addGauges();
+    }
+
+
+    /**
+     * Joins the cluster named in the settings, if there is one. The frontier
+     * is put behind a ClusterFrontier so links for sites owned by other nodes
+     * are sent to them, and links received from other nodes are added to
+     * this node's frontier once they have been checked against the found
+     * links. If the exchange cannot be started this node crawls alone.
+     *
+     * @param workers   The amount of crawlers.
+     */
+    private void openCluster(final int workers) {
+        if(settings.getClusterNodes() == null) {
+            return;
+        }
+
+        String[] nodes = settings.getClusterNodes().split(",");
+        for(int i = 0; i < nodes.length; i++) {
+            nodes[i] = nodes[i].trim();
+        }
+
+        final Frontier local = frontier;
+        try {
+            exchange = new LinkExchange(nodes,
+                                        settings.getClusterNodeId(),
+                                        settings.getClusterBatchSize(),
+                                        settings.getClusterIdleSeconds() * 1000,
+                                        new LinkExchange.Receiver() {
+
+                @Override
+                public void receive(String link, int priority, int depth) {
+                    if(addFoundLink(link)) {
+                        local.offer(Math.floorMod(link.hashCode(), workers), link, priority, depth);
+                    }
+                }
+            });
+            exchange.start();
+            frontier = new ClusterFrontier(local, new HashRing(nodes), exchange,
+                                           settings.getClusterNodeId());
+        } catch (IOException | IllegalArgumentException err) {
+            ErrorReport.createErrorReport(err);
+            listener.message("Could not join the cluster: " + err.getMessage());
+            if(exchange != null) exchange.close();
+            exchange = null;
+        }
+    }
+
+
+    /**
+     * Adds the gauges for the frontier, the visited set, the crawlers, the
+     * fetches in flight and the cluster to the metrics.
+     */
+    private void addGauges() {
+        metrics.gauge(CrawlMetrics.QUEUE_DEPTH, new LongSupplier() {
+
+            @Override
+            public long getAsLong() {
+                return frontier.size();
+            }
+        });
+        metrics.gauge(CrawlMetrics.VISITED_LINKS, new LongSupplier() {
+
+            @Override
+            public long getAsLong() {
+                return linksScanned.size();
+            }
+        });
+        metrics.gauge(CrawlMetrics.ACTIVE_CRAWLERS, new LongSupplier() {
+
+            @Override
+            public long getAsLong() {
+                return fetchExecutor.activeCount();
+            }
+        });
+
+        if(concurrency != null) {
+            metrics.gauge(CrawlMetrics.FETCH_LIMIT, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return concurrency.getLimit();
+                }
+            });
+            metrics.gauge(CrawlMetrics.FETCHES_IN_FLIGHT, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return concurrency.getInFlight();
+                }
+            });
+            metrics.gauge(CrawlMetrics.FETCH_BACK_OFFS, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return concurrency.getBackOffs();
+                }
+            });
+        }
+
+        if(exchange != null) {
+            metrics.gauge(CrawlMetrics.CLUSTER_SENT, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return exchange.getSent();
+                }
+            });
+            metrics.gauge(CrawlMetrics.CLUSTER_RECEIVED, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return exchange.getReceived();
+                }
+            });
+            metrics.gauge(CrawlMetrics.CLUSTER_DROPPED, new LongSupplier() {
+
+                @Override
+                public long getAsLong() {
+                    return exchange.getDropped();
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Opens the export file named in the settings and puts an ExportListener
+     * in front of the listener, so results are written as they are found.
+     */
+    private void openExport() {
+        if(settings.getExportFile() == null) {
+            return;
+        }
+
+        try {
+            ResultWriter writer = ResultWriter.open(new File(settings.getExportFile()),
+                                                    settings.getExportFormat(),
+                                                    settings.getExportGzip());
+            exportListener = new ExportListener(listener, writer);
+            listener = exportListener;
+        } catch (IOException | IllegalArgumentException err) {
+            ErrorReport.createErrorReport(err);
+            listener.message("Could not open export file: " + err.getMessage());
+        }
+    }
+
+
+    /**
+     * Creates the robots.txt cache if robots.txt is followed. Crawl delays
+     * found in robots.txt are passed to the politeness scheduler, if there is
+     * one.
+     *
+     * @return  The robots.txt cache, or null if robots.txt is not followed.
+     */
+    private RobotsCache openRobots() {
+        if(!settings.isRobotsEnabled()) {
+            return null;
+        }
+
+        ObjLongConsumer<String> crawlDelays = null;
+        if(scheduler != null) {
+            crawlDelays = new ObjLongConsumer<String>() {
+
+                @Override
+                public void accept(String host, long delayMillis) {
+                    scheduler.setHostDelay(host, delayMillis);
+                }
+            };
+        }
+        return new RobotsCache(settings.getRobotsAgent(),
+                               uas.getUserAgent(),
+                               settings.getRobotsTtlSeconds() * 1000,
+                               settings.getRobotsMaxSites(),
+                               crawlDelays);
+    }
+
+
+    /**
+     * Opens the page cache directory named in the settings.
+     *
+     * @return  The page cache, or null if there is no cache directory or it
+     *          could not be opened.
      */
-    public CrawlerManager(String[] queries, String[] startingLinks, int amountToScan, ListModel model) {
-        listModel = (DefaultListModel)model;
+    private PageCache openPageCache() {
+        if(settings.getCacheDir() == null) {
+            return null;
+        }
 
-        uas = new UserAgentAssigner("src/agents.txt", 7);
+        try {
+            return new PageCache(new File(settings.getCacheDir()));
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+            listener.message("Could not open page cache: " + err.getMessage());
+            return null;
+        }
+    }
 
-        crawlerThreadGroup = new ThreadGroup("thread_group");
 
-        crawlerThreads = new Thread[startingLinks.length];
-        for(int i = 0; i < startingLinks.length; i++) {
-            crawlerThreads[i] = new Thread(crawlerThreadGroup,
-                                           new Crawler(queries,
-                                                       startingLinks[i],
-                                                       uas.getUserAgent(),
-                                                       amountToScan));
+    /**
+     * Opens the checkpoint directory named in the settings.
+     *
+     * @param queries   The search queries.
+     * @return          The checkpoint, or null if checkpointing is turned off
+     *                  or the directory could not be opened.
+     * @throws IllegalArgumentException If resuming a checkpoint that was
+     *                                  saved for other queries.
+     */
+    private CrawlCheckpoint openCheckpoint(String[] queries) {
+        if(settings.getCheckpointDir() == null) {
+            return null;
+        }
+
+        try {
+            return new CrawlCheckpoint(new File(settings.getCheckpointDir()),
+                                       queries,
+                                       settings.isResume());
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+            return null;
+        }
+    }
+
+
+    /**
+     * Loads the visited links, the frontier and the results from the
+     * checkpoint, and takes the links already scanned off the link budget.
+     *
+     * @param workers   The amount of crawlers.
+     */
+    private void resume(int workers) {
+        try {
+            checkpoint.restore(linksScanned, frontier, workers, new Consumer<InformationPackage>() {
+
+                @Override
+                public void accept(InformationPackage infoPackage) {
+                    listener.resultFound(infoPackage);
+                }
+            });
+
+            if(linksSeen != null) {
+                frontier.snapshot(new Consumer<String>() {
+
+                    @Override
+                    public void accept(String link) {
+                        linksSeen.add(UrlCanonicalizer.fingerprint(link));
+                    }
+                });
+            }
+
+            long scanned = checkpoint.getScannedCount();
+            linkBudget.set((int) Math.max(0, linkBudget.get() - scanned));
+
+            listener.message("Resumed crawl: " + scanned + " links scanned, "
+                                           + frontier.size() + " links waiting");
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
         }
     }
 
 
     /**
-     * Starts the crawlers.
+     * Starts the crawlers, and the checkpoint timer if checkpointing is turned
+     * on. The metrics are published through JMX and written at a fixed
+     * interval if the settings ask for it.
      */
     public void startCrawlers() {
-        for(Thread t : crawlerThreads) t.start();
+        startMetrics();
+
+        for(Crawler c : crawlers) fetchExecutor.submit(c);
+        fetchExecutor.shutdown();
+
+        if(checkpoint != null) {
+            checkpointTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "crawler-checkpoint");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+            long interval = settings.getCheckpointIntervalSeconds();
+            checkpointTimer.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeCheckpoint();
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * Publishes the metrics through JMX and starts writing them at a fixed
+     * interval, as set in the settings.
+     */
+    private void startMetrics() {
+        if(settings.isMetricsJmx()) {
+            try {
+                metrics.register();
+            } catch (JMException err) {
+                ErrorReport.createErrorReport(err);
+            }
+        }
+
+        if(settings.getMetricsDumpFile() != null) {
+            try {
+                metricsReporter = new MetricsReporter(metrics,
+                                                      settings.getMetricsDumpFile(),
+                                                      settings.getMetricsDumpFormat());
+                metricsReporter.start(settings.getMetricsDumpIntervalSeconds());
+            } catch (IOException err) {
+                ErrorReport.createErrorReport(err);
+            }
+        }
+    }
+
+
+    /**
+     * Writes a checkpoint of the session.
+     */
+    private void writeCheckpoint() {
+        try {
+            checkpoint.checkpoint();
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+        }
     }
 
 
@@ -88,7 +665,7 @@ public class CrawlerManager extends Thread {
      * Stops the active crawlers.
      */
     public void stopCrawlers() {
-        crawlerThreadGroup.interrupt();
+        fetchExecutor.shutdownNow();
     }
 
 
@@ -98,29 +675,163 @@ public class CrawlerManager extends Thread {
      * @return  The amount of active crawlers.
      */
     public int activeCrawlers() {
-        return crawlerThreadGroup.activeCount();
+        return fetchExecutor.activeCount();
+    }
+
+
+    /**
+     * Returns the metrics of this crawling session.
+     *
+     * @return  The metrics of this crawling session.
+     */
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Returns the tuning options for this crawling session.
+     *
+     * @return  The tuning options for this crawling session.
+     */
+    public CrawlerSettings getSettings() {
+        return settings;
     }
 
 
     /**
      * Add a link to the links that have been scanned so it's not scanned again.
+     * Checking and adding happen as one step, so if several crawlers try to
+     * add the same link only one of them will get true back and scan it. A
+     * crawler that gets true back calls finishLink once it is done with the
+     * page.
+     *
+     * @param link  The link that is about to be scanned.
+     * @return      True if the link had not been scanned before.
+     */
+    public static boolean addScannedLink(String link) {
+        long fingerprint = UrlCanonicalizer.fingerprint(link);
+        if(!linksScanned.addFingerprint(fingerprint)) {
+            return false;
+        }
+
+        if(checkpoint != null) {
+            checkpoint.recordVisited(fingerprint, link);
+        }
+
+        listener.message("Visited site "+link);
+        return true;
+    }
+
+
+    /**
+     * Records a link found on a page. Returns false if the link has already
+     * been scanned or was found before, so it does not need to go in the
+     * frontier again. The check for links found before uses a Bloom filter,
+     * so now and then a new link is wrongly taken for one found before. Links
+     * are compared by their UrlCanonicalizer key, so links that differ only
+     * in the order of their query parameters are the same link. A new link
+     * is recorded in the checkpoint, as the caller adds it to the frontier.
      *
-     * @param link  The link that was scanned.
+     * @param link  The link, in canonical form.
+     * @return      True if the link is new and should be added to the
+     *              frontier.
      */
-    public static void addScannedLink(String link) {
-        linksScanned.add(link);
-        MainGraphics.updateConsoleArea("Visited site "+link);
+    public static boolean addFoundLink(String link) {
+        long fingerprint = UrlCanonicalizer.fingerprint(link);
+        if(linksScanned.containsFingerprint(fingerprint)) {
+            return false;
+        }
+        if(linksSeen != null && !linksSeen.add(fingerprint)) {
+            return false;
+        }
+
+        if(checkpoint != null) {
+            checkpoint.recordFound(link);
+        }
+        return true;
     }
 
 
     /**
-     * Adds an InformationPackage to the list model so it is displayed to the
+     * Records the text fingerprint of a scanned page. Returns false if the
+     * page is a near copy of a page already scanned, so its links do not need
+     * to be followed and its results were already reported.
+     *
+     * @param fingerprint   The page's SimHash fingerprint.
+     * @return              True if the page is not a near copy, or if near
+     *                      copy detection is turned off.
+     */
+    public static boolean addPageFingerprint(long fingerprint) {
+        return pagesSeen == null || pagesSeen.add(fingerprint);
+    }
+
+
+    /**
+     * Returns true if the robots.txt of the link's site allows the link to be
+     * scanned. The first call for a site fetches its robots.txt, and calls
+     * for the same site from other crawlers wait for it.
+     *
+     * @param link  The link to check.
+     * @return      True if the link may be scanned, or if robots.txt is not
+     *              followed.
+     */
+    public static boolean isAllowedByRobots(String link) {
+        return robots == null || robots.isAllowed(link);
+    }
+
+
+    /**
+     * Returns true if the link's site has robots.txt rules that are already
+     * known and disallow the link. Never waits for a robots.txt to be
+     * fetched, so found links can be checked before they are added to the
+     * frontier.
+     *
+     * @param link  The link to check.
+     * @return      True if the link is known to be disallowed.
+     */
+    public static boolean isKnownDisallowed(String link) {
+        return robots != null && robots.isKnownDisallowed(link);
+    }
+
+
+    /**
+     * Passes an InformationPackage to the listener so it is displayed to the
      * user.
      *
-     * @param infoPackage   The InformationPackage to add to the list model.
+     * @param infoPackage   The InformationPackage to pass to the listener.
      */
     public static void addInfoPackage(InformationPackage infoPackage) {
-        listModel.addElement(infoPackage);
+        listener.resultFound(infoPackage);
+    }
+
+
+    /**
+     * Records that a crawler is done with a page it claimed with
+     * addScannedLink, once the links found on it are in the frontier. Until
+     * then the page is saved by checkpoints as one to scan again. A crawler
+     * that was interrupted may not have found every link on the page, so its
+     * page is left to be scanned again.
+     *
+     * @param link      The link of the page.
+     * @param result    The page's InformationPackage, or null if it has none.
+     */
+    public static void finishLink(String link, InformationPackage result) {
+        if(checkpoint == null || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        checkpoint.recordDone(link, result);
+    }
+
+
+    /**
+     * Passes a progress message to the listener.
+     *
+     * @param text  The message.
+     */
+    public static void message(String text) {
+        listener.message(text);
     }
 
 
@@ -131,15 +842,66 @@ public class CrawlerManager extends Thread {
      * @return      true id a link has been scanned. If not, returns false.
      */
     public static boolean checkForScannedLink(String link) {
-        return linksScanned.contains(link);
+        return linksScanned.containsFingerprint(UrlCanonicalizer.fingerprint(link));
+    }
+
+
+    /**
+     * Returns the amount of links that have been scanned.
+     *
+     * @return  The amount of links that have been scanned.
+     */
+    public static long scannedLinkCount() {
+        return linksScanned.size();
     }
 
 
     /*
-        Starts the crawling operation.
+        Starts the crawling operation and waits for it to end. If checkpointing
+        is turned on, a last checkpoint is written once the crawlers stop, and
+        if the metrics are being written they are written one last time. Any
+        links the frontier wrote to disk are deleted at the end, and the export
+        file and the page cache are closed.
     */
     @Override
     public void run() {
         startCrawlers();
+        fetchExecutor.awaitTermination();
+
+        if(checkpoint != null) {
+            checkpointTimer.shutdown();
+            try {
+                checkpointTimer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException err) {
+                ErrorReport.createErrorReport(err);
+            }
+
+            writeCheckpoint();
+            checkpoint.close();
+        }
+
+        if(metricsReporter != null) {
+            metricsReporter.stop();
+        }
+
+        if(exchange != null) {
+            exchange.close();
+        }
+
+        if(spillingFrontier != null) {
+            spillingFrontier.close();
+        }
+
+        if(exportListener != null) {
+            exportListener.close();
+        }
+
+        if(pageCache != null) {
+            try {
+                pageCache.close();
+            } catch (IOException err) {
+                ErrorReport.createErrorReport(err);
+            }
+        }
     }
 }
\ No newline at end of file
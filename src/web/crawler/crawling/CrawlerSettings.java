@@ -0,0 +1,1349 @@
+package web.crawler.crawling;
+
+import java.util.Properties;
+import web.crawler.dedup.SimHashIndex;
+
+
+/**
+ * The CrawlerSettings hold the tuning options of a crawling session that are
+ * not entered in the setup dialog. The defaults can be overridden with system
+ * properties (for example -Dcrawler.fetchThreads=200) or with a properties
+ * file when running headless.
+ *
+ * @author Jordan Hartwick
+ * June 6, 2016
+ */
+public class CrawlerSettings {
+
+
+    /**
+     * The amount of pages that can be fetched at the same time.
+     */
+    private int fetchThreads = 16;
+
+
+    /**
+     * True to run each fetch worker on a virtual thread when the Java runtime
+     * supports them.
+     */
+    private boolean virtualThreads = false;
+
+
+    /**
+     * True to keep the visited set's tables in direct memory.
+     */
+    private boolean visitedOffHeap = false;
+
+
+    /**
+     * True to keep the GUI's result store in direct memory.
+     */
+    private boolean resultsOffHeap = false;
+
+
+    /**
+     * True to scan pages as they are downloaded instead of building a jsoup
+     * Document for each page.
+     */
+    private boolean streamingScan = false;
+
+
+    /**
+     * The amount of requests per second allowed for each host. Zero or less
+     * turns the per-host limit off.
+     */
+    private double hostRequestsPerSecond = 2.0;
+
+
+    /**
+     * The amount of requests a host can receive back to back before the rate
+     * limit applies.
+     */
+    private int hostBurst = 2;
+
+
+    /**
+     * The directory to save checkpoints in, or null to turn checkpointing off.
+     */
+    private String checkpointDir = null;
+
+
+    /**
+     * The amount of seconds between checkpoints.
+     */
+    private long checkpointIntervalSeconds = 30;
+
+
+    /**
+     * True to resume from the checkpoint in the checkpoint directory instead
+     * of starting from the starting links.
+     */
+    private boolean resume = false;
+
+
+    /**
+     * Pages whose text fingerprints differ in at most this many bits are near
+     * copies, from 0 to 7. Less than zero turns near copy detection off.
+     */
+    private int nearDuplicateMaxDistance = 3;
+
+
+    /**
+     * The most page fingerprints kept for near copy detection.
+     */
+    private int nearDuplicateMaxPages = 1 << 20;
+
+
+    /**
+     * True to fetch each site's robots.txt and skip the links it disallows.
+     */
+    private boolean robotsEnabled = true;
+
+
+    /**
+     * The agent token robots.txt rules are chosen for.
+     */
+    private String robotsAgent = "WebCrawler";
+
+
+    /**
+     * The amount of seconds a site's robots.txt rules are kept.
+     */
+    private long robotsTtlSeconds = 24 * 60 * 60;
+
+
+    /**
+     * The most sites whose robots.txt rules are kept.
+     */
+    private int robotsMaxSites = 10000;
+
+
+    /**
+     * The address of every node of the cluster as host:port, separated by
+     * commas, or null to crawl on this node alone.
+     */
+    private String clusterNodes = null;
+
+
+    /**
+     * The index of this node in the cluster's node list.
+     */
+    private int clusterNodeId = 0;
+
+
+    /**
+     * The most links sent to another node in one batch.
+     */
+    private int clusterBatchSize = 256;
+
+
+    /**
+     * The amount of seconds a node waits for links from the other nodes after
+     * it has run out of work.
+     */
+    private long clusterIdleSeconds = 30;
+
+
+    /**
+     * True to adjust the amount of fetches in flight, for the session and for
+     * each host, to how quickly the hosts answer.
+     */
+    private boolean concurrencyAdaptive = true;
+
+
+    /**
+     * The most fetches in flight to one host when the amount is adjusted.
+     */
+    private int concurrencyMaxPerHost = 8;
+
+
+    /**
+     * The extensions of links that are not fetched, separated by commas.
+     */
+    private String fetchSkipExtensions = FetchPolicy.DEFAULT_SKIP_EXTENSIONS;
+
+
+    /**
+     * The most bytes of a page's body that are read, or 0 for no limit.
+     */
+    private long fetchMaxBodyBytes = 1024 * 1024;
+
+
+    /**
+     * The most milliseconds a page's body may take to download, or 0 for no
+     * limit.
+     */
+    private long fetchMaxDownloadMillis = 10000;
+
+
+    /**
+     * The directory of the page cache used to recrawl unchanged pages cheaply,
+     * or null to turn the cache off.
+     */
+    private String cacheDir = null;
+
+
+    /**
+     * The file holding the user agents to assign to the crawlers.
+     */
+    private String userAgentFile = "src/agents.txt";
+
+
+    /**
+     * The file results are written to while the crawl runs, or null to not
+     * write them.
+     */
+    private String exportFile = null;
+
+
+    /**
+     * The format of the export file, "csv", "jsonl" or "binary", or null to
+     * take it from the file's extension.
+     */
+    private String exportFormat = null;
+
+
+    /**
+     * True to gzip the export file, false not to, or null to gzip it if its
+     * name ends with ".gz".
+     */
+    private Boolean exportGzip = null;
+
+
+    /**
+     * The most links the frontier keeps in memory before it writes links to
+     * disk. Zero or less keeps every link in memory.
+     */
+    private int frontierMaxInMemory = 1000000;
+
+
+    /**
+     * The directory the frontier writes links to when memory is full, or null
+     * for a temporary directory.
+     */
+    private String frontierSpillDir = null;
+
+
+    /**
+     * True to scan the links most likely to lead to the queries first,
+     * instead of in the order they were found.
+     */
+    private boolean frontierPriority = false;
+
+
+    /**
+     * The amount of links the filter of seen and waiting links is sized for.
+     * Zero or less turns the filter off.
+     */
+    private long seenFilterExpectedLinks = 1 << 22;
+
+
+    /**
+     * The false positive rate of the filter of seen and waiting links. A
+     * false positive means a new link is dropped.
+     */
+    private double seenFilterFalsePositiveRate = 0.001;
+
+
+    /**
+     * True to publish the crawl metrics as a JMX MBean.
+     */
+    private boolean metricsJmx = true;
+
+
+    /**
+     * The file to write the crawl metrics to at a fixed interval, "-" for
+     * standard error, or null to not write them.
+     */
+    private String metricsDumpFile = null;
+
+
+    /**
+     * The format of the metrics dump, "text" or "json".
+     */
+    private String metricsDumpFormat = "text";
+
+
+    /**
+     * The amount of seconds between metrics dumps.
+     */
+    private long metricsDumpIntervalSeconds = 60;
+
+
+    /**
+     * Creates a new instance of the CrawlerSettings class with the default
+     * values.
+     */
+    public CrawlerSettings() {}
+
+
+    /**
+     * Creates CrawlerSettings from properties. Any property that is missing
+     * keeps its default value. Each value goes through its setter, so a
+     * property is checked the same way as a value set in code.
+     *
+     * @param props     The properties to read.
+     * @return          The settings.
+     * @throws IllegalArgumentException If a property is not a number where
+     *                                  one is needed or its value is not
+     *                                  allowed. The message names the
+     *                                  property.
+     */
+    public static CrawlerSettings fromProperties(Properties props) {
+        CrawlerSettings settings = new CrawlerSettings();
+        PropertyReader reader = new PropertyReader(props);
+
+        try {
+            settings.setFetchThreads(reader.intValue("crawler.fetchThreads", settings.fetchThreads));
+            settings.setVirtualThreads(reader.booleanValue("crawler.virtualThreads", settings.virtualThreads));
+            settings.setVisitedOffHeap(reader.booleanValue("crawler.visited.offHeap", settings.visitedOffHeap));
+            settings.setResultsOffHeap(reader.booleanValue("crawler.results.offHeap", settings.resultsOffHeap));
+            settings.setStreamingScan(reader.booleanValue("crawler.streamingScan", settings.streamingScan));
+            settings.setHostRequestsPerSecond(reader.doubleValue("crawler.host.requestsPerSecond",
+                                                                 settings.hostRequestsPerSecond));
+            settings.setHostBurst(reader.intValue("crawler.host.burst", settings.hostBurst));
+            settings.setCheckpointDir(reader.value("crawler.checkpoint.dir", settings.checkpointDir));
+            settings.setCheckpointIntervalSeconds(reader.longValue("crawler.checkpoint.intervalSeconds",
+                                                                   settings.checkpointIntervalSeconds));
+            settings.setResume(reader.booleanValue("crawler.resume", settings.resume));
+            settings.setNearDuplicateMaxDistance(reader.intValue("crawler.nearDuplicate.maxDistance",
+                                                                 settings.nearDuplicateMaxDistance));
+            settings.setNearDuplicateMaxPages(reader.intValue("crawler.nearDuplicate.maxPages",
+                                                              settings.nearDuplicateMaxPages));
+            settings.setRobotsEnabled(reader.booleanValue("crawler.robots.enabled", settings.robotsEnabled));
+            settings.setRobotsAgent(reader.value("crawler.robots.agent", settings.robotsAgent));
+            settings.setRobotsTtlSeconds(reader.longValue("crawler.robots.ttlSeconds", settings.robotsTtlSeconds));
+            settings.setRobotsMaxSites(reader.intValue("crawler.robots.maxSites", settings.robotsMaxSites));
+            settings.setClusterNodes(reader.value("crawler.cluster.nodes", settings.clusterNodes));
+            settings.setClusterNodeId(reader.intValue("crawler.cluster.nodeId", settings.clusterNodeId));
+            settings.setClusterBatchSize(reader.intValue("crawler.cluster.batchSize", settings.clusterBatchSize));
+            settings.setClusterIdleSeconds(reader.longValue("crawler.cluster.idleSeconds",
+                                                            settings.clusterIdleSeconds));
+            settings.setConcurrencyAdaptive(reader.booleanValue("crawler.concurrency.adaptive",
+                                                                settings.concurrencyAdaptive));
+            settings.setConcurrencyMaxPerHost(reader.intValue("crawler.concurrency.maxPerHost",
+                                                              settings.concurrencyMaxPerHost));
+            settings.setFetchSkipExtensions(reader.value("crawler.fetch.skipExtensions",
+                                                         settings.fetchSkipExtensions));
+            settings.setFetchMaxBodyBytes(reader.longValue("crawler.fetch.maxBodyBytes", settings.fetchMaxBodyBytes));
+            settings.setFetchMaxDownloadMillis(reader.longValue("crawler.fetch.maxDownloadMillis",
+                                                                settings.fetchMaxDownloadMillis));
+            settings.setCacheDir(reader.value("crawler.cache.dir", settings.cacheDir));
+            settings.setUserAgentFile(reader.value("crawler.userAgentFile", settings.userAgentFile));
+            settings.setExportFile(reader.value("crawler.export.file", settings.exportFile));
+            settings.setExportFormat(reader.value("crawler.export.format", settings.exportFormat));
+            if(props.getProperty("crawler.export.gzip") != null) {
+                settings.setExportGzip(reader.booleanValue("crawler.export.gzip", false));
+            }
+            settings.setFrontierMaxInMemory(reader.intValue("crawler.frontier.maxInMemory",
+                                                            settings.frontierMaxInMemory));
+            settings.setFrontierSpillDir(reader.value("crawler.frontier.spillDir", settings.frontierSpillDir));
+            settings.setFrontierPriority(reader.booleanValue("crawler.frontier.priority", settings.frontierPriority));
+            settings.setSeenFilterExpectedLinks(reader.longValue("crawler.seenFilter.expectedLinks",
+                                                                 settings.seenFilterExpectedLinks));
+            settings.setSeenFilterFalsePositiveRate(reader.doubleValue("crawler.seenFilter.falsePositiveRate",
+                                                                       settings.seenFilterFalsePositiveRate));
+            settings.setMetricsJmx(reader.booleanValue("crawler.metrics.jmx", settings.metricsJmx));
+            settings.setMetricsDumpFile(reader.value("crawler.metrics.dumpFile", settings.metricsDumpFile));
+            settings.setMetricsDumpFormat(reader.value("crawler.metrics.dumpFormat", settings.metricsDumpFormat));
+            settings.setMetricsDumpIntervalSeconds(reader.longValue("crawler.metrics.dumpIntervalSeconds",
+                                                                    settings.metricsDumpIntervalSeconds));
+        } catch (IllegalArgumentException err) {
+            throw new IllegalArgumentException("Invalid value for " + reader.key + ": " + err.getMessage(), err);
+        }
+
+        return settings;
+    }
+
+
+    /**
+     * Returns the amount of pages that can be fetched at the same time.
+     *
+     * @return  The amount of pages that can be fetched at the same time.
+     */
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+
+    /**
+     * Sets the amount of pages that can be fetched at the same time.
+     *
+     * @param fetchThreads  The amount of pages that can be fetched at the same
+     *                      time. Must be at least 1.
+     */
+    public void setFetchThreads(int fetchThreads) {
+        if(fetchThreads < 1) {
+            throw new IllegalArgumentException("fetchThreads must be at least 1");
+        }
+        this.fetchThreads = fetchThreads;
+    }
+
+
+    /**
+     * Returns true if fetch workers should run on virtual threads.
+     *
+     * @return  True if fetch workers should run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+
+    /**
+     * Sets whether fetch workers should run on virtual threads.
+     *
+     * @param virtualThreads    True to use virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+
+    /**
+     * Returns true if the visited set is kept in direct memory.
+     *
+     * @return  True if the visited set is kept in direct memory.
+     */
+    public boolean isVisitedOffHeap() {
+        return visitedOffHeap;
+    }
+
+
+    /**
+     * Sets whether the visited set is kept in direct memory.
+     *
+     * @param visitedOffHeap    True to keep the visited set in direct memory.
+     */
+    public void setVisitedOffHeap(boolean visitedOffHeap) {
+        this.visitedOffHeap = visitedOffHeap;
+    }
+
+
+    /**
+     * Returns true if the GUI's result store is kept in direct memory.
+     *
+     * @return  True if the result store is kept in direct memory.
+     */
+    public boolean isResultsOffHeap() {
+        return resultsOffHeap;
+    }
+
+
+    /**
+     * Sets whether the GUI's result store is kept in direct memory.
+     *
+     * @param resultsOffHeap    True to keep the result store in direct memory.
+     */
+    public void setResultsOffHeap(boolean resultsOffHeap) {
+        this.resultsOffHeap = resultsOffHeap;
+    }
+
+
+    /**
+     * Returns true if pages are scanned as they are downloaded.
+     *
+     * @return  True if pages are scanned as they are downloaded.
+     */
+    public boolean isStreamingScan() {
+        return streamingScan;
+    }
+
+
+    /**
+     * Sets whether pages are scanned as they are downloaded instead of
+     * building a jsoup Document for each page.
+     *
+     * @param streamingScan     True to scan pages as they are downloaded.
+     */
+    public void setStreamingScan(boolean streamingScan) {
+        this.streamingScan = streamingScan;
+    }
+
+
+    /**
+     * Returns the amount of requests per second allowed for each host. Zero or
+     * less means there is no limit.
+     *
+     * @return  The amount of requests per second allowed for each host.
+     */
+    public double getHostRequestsPerSecond() {
+        return hostRequestsPerSecond;
+    }
+
+
+    /**
+     * Sets the amount of requests per second allowed for each host.
+     *
+     * @param hostRequestsPerSecond     The amount of requests per second, or
+     *                                  zero for no limit.
+     */
+    public void setHostRequestsPerSecond(double hostRequestsPerSecond) {
+        this.hostRequestsPerSecond = hostRequestsPerSecond;
+    }
+
+
+    /**
+     * Returns the amount of requests a host can receive back to back.
+     *
+     * @return  The amount of requests a host can receive back to back.
+     */
+    public int getHostBurst() {
+        return hostBurst;
+    }
+
+
+    /**
+     * Sets the amount of requests a host can receive back to back.
+     *
+     * @param hostBurst     The amount of requests a host can receive back to
+     *                      back. Must be at least 1.
+     */
+    public void setHostBurst(int hostBurst) {
+        if(hostBurst < 1) {
+            throw new IllegalArgumentException("hostBurst must be at least 1");
+        }
+        this.hostBurst = hostBurst;
+    }
+
+
+    /**
+     * Returns the directory to save checkpoints in, or null if checkpointing
+     * is turned off.
+     *
+     * @return  The checkpoint directory, or null.
+     */
+    public String getCheckpointDir() {
+        return checkpointDir;
+    }
+
+
+    /**
+     * Sets the directory to save checkpoints in.
+     *
+     * @param checkpointDir     The checkpoint directory, or null to turn
+     *                          checkpointing off.
+     */
+    public void setCheckpointDir(String checkpointDir) {
+        this.checkpointDir = checkpointDir;
+    }
+
+
+    /**
+     * Returns the amount of seconds between checkpoints.
+     *
+     * @return  The amount of seconds between checkpoints.
+     */
+    public long getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+
+    /**
+     * Sets the amount of seconds between checkpoints.
+     *
+     * @param checkpointIntervalSeconds     The amount of seconds between
+     *                                      checkpoints. Must be at least 1.
+     */
+    public void setCheckpointIntervalSeconds(long checkpointIntervalSeconds) {
+        if(checkpointIntervalSeconds < 1) {
+            throw new IllegalArgumentException("checkpointIntervalSeconds must be at least 1");
+        }
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+
+    /**
+     * Returns true if the session resumes from the checkpoint directory.
+     *
+     * @return  True if the session resumes from the checkpoint directory.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+
+    /**
+     * Sets whether the session resumes from the checkpoint directory.
+     *
+     * @param resume    True to resume from the checkpoint directory.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+
+    /**
+     * Returns the largest difference in bits between the text fingerprints of
+     * two pages that are near copies.
+     *
+     * @return  The largest difference, or less than zero if near copy
+     *          detection is off.
+     */
+    public int getNearDuplicateMaxDistance() {
+        return nearDuplicateMaxDistance;
+    }
+
+
+    /**
+     * Sets the largest difference in bits between the text fingerprints of
+     * two pages that are near copies.
+     *
+     * @param nearDuplicateMaxDistance  The largest difference, at most 7, or
+     *                                  less than zero to turn near copy
+     *                                  detection off.
+     * @throws IllegalArgumentException If the difference is more than 7.
+     */
+    public void setNearDuplicateMaxDistance(int nearDuplicateMaxDistance) {
+        if(nearDuplicateMaxDistance > SimHashIndex.MAX_DISTANCE) {
+            throw new IllegalArgumentException("nearDuplicateMaxDistance must be at most " + SimHashIndex.MAX_DISTANCE);
+        }
+        this.nearDuplicateMaxDistance = nearDuplicateMaxDistance;
+    }
+
+
+    /**
+     * Returns the most page fingerprints kept for near copy detection.
+     *
+     * @return  The most fingerprints kept.
+     */
+    public int getNearDuplicateMaxPages() {
+        return nearDuplicateMaxPages;
+    }
+
+
+    /**
+     * Sets the most page fingerprints kept for near copy detection.
+     *
+     * @param nearDuplicateMaxPages The most fingerprints kept. Must not be
+     *                              negative.
+     */
+    public void setNearDuplicateMaxPages(int nearDuplicateMaxPages) {
+        if(nearDuplicateMaxPages < 0) {
+            throw new IllegalArgumentException("nearDuplicateMaxPages must not be negative");
+        }
+        this.nearDuplicateMaxPages = nearDuplicateMaxPages;
+    }
+
+
+    /**
+     * Returns true if robots.txt is followed.
+     *
+     * @return  True if robots.txt is followed.
+     */
+    public boolean isRobotsEnabled() {
+        return robotsEnabled;
+    }
+
+
+    /**
+     * Sets whether robots.txt is followed.
+     *
+     * @param robotsEnabled True to fetch each site's robots.txt and skip the
+     *                      links it disallows.
+     */
+    public void setRobotsEnabled(boolean robotsEnabled) {
+        this.robotsEnabled = robotsEnabled;
+    }
+
+
+    /**
+     * Returns the agent token robots.txt rules are chosen for.
+     *
+     * @return  The agent token.
+     */
+    public String getRobotsAgent() {
+        return robotsAgent;
+    }
+
+
+    /**
+     * Sets the agent token robots.txt rules are chosen for.
+     *
+     * @param robotsAgent   The agent token.
+     */
+    public void setRobotsAgent(String robotsAgent) {
+        this.robotsAgent = robotsAgent;
+    }
+
+
+    /**
+     * Returns the amount of seconds a site's robots.txt rules are kept.
+     *
+     * @return  The amount of seconds.
+     */
+    public long getRobotsTtlSeconds() {
+        return robotsTtlSeconds;
+    }
+
+
+    /**
+     * Sets the amount of seconds a site's robots.txt rules are kept.
+     *
+     * @param robotsTtlSeconds  The amount of seconds, at least 1.
+     * @throws IllegalArgumentException If the amount is less than 1.
+     */
+    public void setRobotsTtlSeconds(long robotsTtlSeconds) {
+        if(robotsTtlSeconds < 1) {
+            throw new IllegalArgumentException("robotsTtlSeconds must be at least 1");
+        }
+        this.robotsTtlSeconds = robotsTtlSeconds;
+    }
+
+
+    /**
+     * Returns the most sites whose robots.txt rules are kept.
+     *
+     * @return  The most sites.
+     */
+    public int getRobotsMaxSites() {
+        return robotsMaxSites;
+    }
+
+
+    /**
+     * Sets the most sites whose robots.txt rules are kept.
+     *
+     * @param robotsMaxSites    The most sites, at least 1.
+     * @throws IllegalArgumentException If the amount is less than 1.
+     */
+    public void setRobotsMaxSites(int robotsMaxSites) {
+        if(robotsMaxSites < 1) {
+            throw new IllegalArgumentException("robotsMaxSites must be at least 1");
+        }
+        this.robotsMaxSites = robotsMaxSites;
+    }
+
+
+    /**
+     * Returns the addresses of the cluster's nodes.
+     *
+     * @return  The address of every node as host:port, separated by commas,
+     *          or null if this node crawls alone.
+     */
+    public String getClusterNodes() {
+        return clusterNodes;
+    }
+
+
+    /**
+     * Sets the addresses of the cluster's nodes. Every node must be given the
+     * same list in the same order. Each node listens on its own address from
+     * the list. The nodes trust every link sent to them, so the addresses
+     * should be on a trusted network.
+     *
+     * @param clusterNodes  The address of every node as host:port, separated
+     *                      by commas, or null to crawl on this node alone.
+     */
+    public void setClusterNodes(String clusterNodes) {
+        this.clusterNodes = clusterNodes;
+    }
+
+
+    /**
+     * Returns the index of this node in the cluster's node list.
+     *
+     * @return  The index of this node.
+     */
+    public int getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+
+    /**
+     * Sets the index of this node in the cluster's node list.
+     *
+     * @param clusterNodeId The index of this node, at least 0.
+     * @throws IllegalArgumentException If the index is less than 0.
+     */
+    public void setClusterNodeId(int clusterNodeId) {
+        if(clusterNodeId < 0) {
+            throw new IllegalArgumentException("clusterNodeId must be at least 0");
+        }
+        this.clusterNodeId = clusterNodeId;
+    }
+
+
+    /**
+     * Returns the most links sent to another node in one batch.
+     *
+     * @return  The most links in one batch.
+     */
+    public int getClusterBatchSize() {
+        return clusterBatchSize;
+    }
+
+
+    /**
+     * Sets the most links sent to another node in one batch.
+     *
+     * @param clusterBatchSize  The most links in one batch, at least 1.
+     * @throws IllegalArgumentException If the size is less than 1.
+     */
+    public void setClusterBatchSize(int clusterBatchSize) {
+        if(clusterBatchSize < 1) {
+            throw new IllegalArgumentException("clusterBatchSize must be at least 1");
+        }
+        this.clusterBatchSize = clusterBatchSize;
+    }
+
+
+    /**
+     * Returns the amount of seconds a node waits for links from the other
+     * nodes after it has run out of work.
+     *
+     * @return  The amount of seconds.
+     */
+    public long getClusterIdleSeconds() {
+        return clusterIdleSeconds;
+    }
+
+
+    /**
+     * Sets the amount of seconds a node waits for links from the other nodes
+     * after it has run out of work.
+     *
+     * @param clusterIdleSeconds    The amount of seconds, at least 1.
+     * @throws IllegalArgumentException If the amount is less than 1.
+     */
+    public void setClusterIdleSeconds(long clusterIdleSeconds) {
+        if(clusterIdleSeconds < 1) {
+            throw new IllegalArgumentException("clusterIdleSeconds must be at least 1");
+        }
+        this.clusterIdleSeconds = clusterIdleSeconds;
+    }
+
+
+    /**
+     * Returns true if the amount of fetches in flight is adjusted to how
+     * quickly the hosts answer.
+     *
+     * @return  True if the amount is adjusted, false if every fetch thread
+     *          fetches whenever it has a link.
+     */
+    public boolean isConcurrencyAdaptive() {
+        return concurrencyAdaptive;
+    }
+
+
+    /**
+     * Sets whether the amount of fetches in flight is adjusted to how quickly
+     * the hosts answer. The fetch thread count stays the most fetches in
+     * flight either way.
+     *
+     * @param concurrencyAdaptive   True to adjust the amount.
+     */
+    public void setConcurrencyAdaptive(boolean concurrencyAdaptive) {
+        this.concurrencyAdaptive = concurrencyAdaptive;
+    }
+
+
+    /**
+     * Returns the most fetches in flight to one host when the amount is
+     * adjusted.
+     *
+     * @return  The most fetches in flight to one host.
+     */
+    public int getConcurrencyMaxPerHost() {
+        return concurrencyMaxPerHost;
+    }
+
+
+    /**
+     * Sets the most fetches in flight to one host when the amount is
+     * adjusted.
+     *
+     * @param concurrencyMaxPerHost The most fetches in flight, at least 1.
+     * @throws IllegalArgumentException If the amount is less than 1.
+     */
+    public void setConcurrencyMaxPerHost(int concurrencyMaxPerHost) {
+        if(concurrencyMaxPerHost < 1) {
+            throw new IllegalArgumentException("concurrencyMaxPerHost must be at least 1");
+        }
+        this.concurrencyMaxPerHost = concurrencyMaxPerHost;
+    }
+
+
+    /**
+     * Returns the extensions of links that are not fetched.
+     *
+     * @return  The extensions, without dots, separated by commas.
+     */
+    public String getFetchSkipExtensions() {
+        return fetchSkipExtensions;
+    }
+
+
+    /**
+     * Sets the extensions of links that are not fetched, such as "pdf" or
+     * "jpg". Case does not matter.
+     *
+     * @param fetchSkipExtensions   The extensions, without dots, separated by
+     *                              commas, or an empty string to fetch links
+     *                              with any extension.
+     * @throws IllegalArgumentException If the extensions are null.
+     */
+    public void setFetchSkipExtensions(String fetchSkipExtensions) {
+        if(fetchSkipExtensions == null) {
+            throw new IllegalArgumentException("fetchSkipExtensions must not be null");
+        }
+        this.fetchSkipExtensions = fetchSkipExtensions;
+    }
+
+
+    /**
+     * Returns the most bytes of a page's body that are read.
+     *
+     * @return  The most bytes, or 0 for no limit.
+     */
+    public long getFetchMaxBodyBytes() {
+        return fetchMaxBodyBytes;
+    }
+
+
+    /**
+     * Sets the most bytes of a page's body that are read. A longer page is
+     * scanned up to that point.
+     *
+     * @param fetchMaxBodyBytes The most bytes, or 0 for no limit.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public void setFetchMaxBodyBytes(long fetchMaxBodyBytes) {
+        if(fetchMaxBodyBytes < 0) {
+            throw new IllegalArgumentException("fetchMaxBodyBytes must not be negative");
+        }
+        this.fetchMaxBodyBytes = fetchMaxBodyBytes;
+    }
+
+
+    /**
+     * Returns the most milliseconds a page's body may take to download.
+     *
+     * @return  The most milliseconds, or 0 for no limit.
+     */
+    public long getFetchMaxDownloadMillis() {
+        return fetchMaxDownloadMillis;
+    }
+
+
+    /**
+     * Sets the most milliseconds a page's body may take to download. A page
+     * that takes longer is given up on.
+     *
+     * @param fetchMaxDownloadMillis    The most milliseconds, or 0 for no
+     *                                  limit.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public void setFetchMaxDownloadMillis(long fetchMaxDownloadMillis) {
+        if(fetchMaxDownloadMillis < 0) {
+            throw new IllegalArgumentException("fetchMaxDownloadMillis must not be negative");
+        }
+        this.fetchMaxDownloadMillis = fetchMaxDownloadMillis;
+    }
+
+
+    /**
+     * Returns the directory of the page cache.
+     *
+     * @return  The directory, or null if the cache is turned off.
+     */
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+
+    /**
+     * Sets the directory of the page cache.
+     *
+     * @param cacheDir  The directory, or null to turn the cache off.
+     */
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+
+    /**
+     * Returns the file holding the user agents.
+     *
+     * @return  The file holding the user agents.
+     */
+    public String getUserAgentFile() {
+        return userAgentFile;
+    }
+
+
+    /**
+     * Sets the file holding the user agents.
+     *
+     * @param userAgentFile     The file holding the user agents.
+     */
+    public void setUserAgentFile(String userAgentFile) {
+        this.userAgentFile = userAgentFile;
+    }
+
+
+    /**
+     * Returns the file results are written to while the crawl runs.
+     *
+     * @return  The file, or null if results are not written.
+     */
+    public String getExportFile() {
+        return exportFile;
+    }
+
+
+    /**
+     * Sets the file results are written to while the crawl runs.
+     *
+     * @param exportFile    The file, or null to not write results.
+     */
+    public void setExportFile(String exportFile) {
+        this.exportFile = exportFile;
+    }
+
+
+    /**
+     * Returns the format of the export file.
+     *
+     * @return  "csv", "jsonl" or "binary", or null if it is taken from the
+     *          file's extension.
+     */
+    public String getExportFormat() {
+        return exportFormat;
+    }
+
+
+    /**
+     * Sets the format of the export file.
+     *
+     * @param exportFormat  "csv", "jsonl" or "binary", or null to take it from
+     *                      the file's extension.
+     */
+    public void setExportFormat(String exportFormat) {
+        this.exportFormat = exportFormat;
+    }
+
+
+    /**
+     * Returns whether the export file is gzipped.
+     *
+     * @return  True or false, or null if the file is gzipped when its name
+     *          ends with ".gz".
+     */
+    public Boolean getExportGzip() {
+        return exportGzip;
+    }
+
+
+    /**
+     * Sets whether the export file is gzipped.
+     *
+     * @param exportGzip    True or false, or null to gzip the file when its
+     *                      name ends with ".gz".
+     */
+    public void setExportGzip(Boolean exportGzip) {
+        this.exportGzip = exportGzip;
+    }
+
+
+    /**
+     * Returns the most links the frontier keeps in memory.
+     *
+     * @return  The most links kept in memory, or zero or less for no limit.
+     */
+    public int getFrontierMaxInMemory() {
+        return frontierMaxInMemory;
+    }
+
+
+    /**
+     * Sets the most links the frontier keeps in memory before it writes links
+     * to disk.
+     *
+     * @param frontierMaxInMemory   The most links kept in memory, or zero or
+     *                              less for no limit.
+     */
+    public void setFrontierMaxInMemory(int frontierMaxInMemory) {
+        this.frontierMaxInMemory = frontierMaxInMemory;
+    }
+
+
+    /**
+     * Returns the directory the frontier writes links to when memory is full.
+     *
+     * @return  The directory, or null for a temporary directory.
+     */
+    public String getFrontierSpillDir() {
+        return frontierSpillDir;
+    }
+
+
+    /**
+     * Sets the directory the frontier writes links to when memory is full.
+     *
+     * @param frontierSpillDir  The directory, or null for a temporary
+     *                          directory.
+     */
+    public void setFrontierSpillDir(String frontierSpillDir) {
+        this.frontierSpillDir = frontierSpillDir;
+    }
+
+
+    /**
+     * Returns true if the links most likely to lead to the queries are
+     * scanned first.
+     *
+     * @return  True for a best first crawl, false for links in the order
+     *          they were found.
+     */
+    public boolean isFrontierPriority() {
+        return frontierPriority;
+    }
+
+
+    /**
+     * Sets whether the links most likely to lead to the queries are scanned
+     * first. Links are scored by the hits on the page they were found on,
+     * the queries in their anchor text and link, and their depth.
+     *
+     * @param frontierPriority  True for a best first crawl, false for links
+     *                          in the order they were found.
+     */
+    public void setFrontierPriority(boolean frontierPriority) {
+        this.frontierPriority = frontierPriority;
+    }
+
+
+    /**
+     * Returns the amount of links the filter of seen and waiting links is
+     * sized for.
+     *
+     * @return  The amount of links, or zero or less if the filter is off.
+     */
+    public long getSeenFilterExpectedLinks() {
+        return seenFilterExpectedLinks;
+    }
+
+
+    /**
+     * Sets the amount of links the filter of seen and waiting links is sized
+     * for.
+     *
+     * @param seenFilterExpectedLinks   The amount of links, or zero or less to
+     *                                  turn the filter off.
+     */
+    public void setSeenFilterExpectedLinks(long seenFilterExpectedLinks) {
+        this.seenFilterExpectedLinks = seenFilterExpectedLinks;
+    }
+
+
+    /**
+     * Returns the false positive rate of the filter of seen and waiting links.
+     *
+     * @return  The false positive rate.
+     */
+    public double getSeenFilterFalsePositiveRate() {
+        return seenFilterFalsePositiveRate;
+    }
+
+
+    /**
+     * Sets the false positive rate of the filter of seen and waiting links.
+     *
+     * @param seenFilterFalsePositiveRate   The false positive rate, between 0
+     *                                      and 1.
+     */
+    public void setSeenFilterFalsePositiveRate(double seenFilterFalsePositiveRate) {
+        if(seenFilterFalsePositiveRate <= 0 || seenFilterFalsePositiveRate >= 1) {
+            throw new IllegalArgumentException("seenFilterFalsePositiveRate must be between 0 and 1");
+        }
+        this.seenFilterFalsePositiveRate = seenFilterFalsePositiveRate;
+    }
+
+
+    /**
+     * Returns true if the crawl metrics are published as a JMX MBean.
+     *
+     * @return  True if the crawl metrics are published as a JMX MBean.
+     */
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+
+    /**
+     * Sets whether the crawl metrics are published as a JMX MBean.
+     *
+     * @param metricsJmx    True to publish the crawl metrics as a JMX MBean.
+     */
+    public void setMetricsJmx(boolean metricsJmx) {
+        this.metricsJmx = metricsJmx;
+    }
+
+
+    /**
+     * Returns the file the crawl metrics are written to.
+     *
+     * @return  The file, "-" for standard error, or null if the metrics are
+     *          not written.
+     */
+    public String getMetricsDumpFile() {
+        return metricsDumpFile;
+    }
+
+
+    /**
+     * Sets the file the crawl metrics are written to.
+     *
+     * @param metricsDumpFile   The file, "-" for standard error, or null to
+     *                          not write the metrics.
+     */
+    public void setMetricsDumpFile(String metricsDumpFile) {
+        this.metricsDumpFile = metricsDumpFile;
+    }
+
+
+    /**
+     * Returns the format of the metrics dump.
+     *
+     * @return  "text" or "json".
+     */
+    public String getMetricsDumpFormat() {
+        return metricsDumpFormat;
+    }
+
+
+    /**
+     * Sets the format of the metrics dump.
+     *
+     * @param metricsDumpFormat     "text" or "json".
+     */
+    public void setMetricsDumpFormat(String metricsDumpFormat) {
+        if(!"text".equals(metricsDumpFormat) && !"json".equals(metricsDumpFormat)) {
+            throw new IllegalArgumentException("metricsDumpFormat must be text or json");
+        }
+        this.metricsDumpFormat = metricsDumpFormat;
+    }
+
+
+    /**
+     * Returns the amount of seconds between metrics dumps.
+     *
+     * @return  The amount of seconds between metrics dumps.
+     */
+    public long getMetricsDumpIntervalSeconds() {
+        return metricsDumpIntervalSeconds;
+    }
+
+
+    /**
+     * Sets the amount of seconds between metrics dumps.
+     *
+     * @param metricsDumpIntervalSeconds    The amount of seconds between
+     *                                      metrics dumps. Must be at least 1.
+     */
+    public void setMetricsDumpIntervalSeconds(long metricsDumpIntervalSeconds) {
+        if(metricsDumpIntervalSeconds < 1) {
+            throw new IllegalArgumentException("metricsDumpIntervalSeconds must be at least 1");
+        }
+        this.metricsDumpIntervalSeconds = metricsDumpIntervalSeconds;
+    }
+
+
+    /**
+     * Reads the properties of CrawlerSettings and remembers the key of the
+     * last one read, so an error can name the property it came from.
+     */
+    private static class PropertyReader {
+
+
+        /**
+         * The properties.
+         */
+        private final Properties props;
+
+
+        /**
+         * The key of the last property read.
+         */
+        String key;
+
+
+        /**
+         * Creates a new instance of the PropertyReader class.
+         *
+         * @param props     The properties to read.
+         */
+        PropertyReader(Properties props) {
+            this.props = props;
+        }
+
+
+        /**
+         * Reads a String property.
+         *
+         * @param key           The key of the property.
+         * @param defaultValue  The value to use if the property is missing.
+         * @return              The value of the property.
+         */
+        String value(String key, String defaultValue) {
+            this.key = key;
+            return props.getProperty(key, defaultValue);
+        }
+
+
+        /**
+         * Reads an int property.
+         *
+         * @param key           The key of the property.
+         * @param defaultValue  The value to use if the property is missing.
+         * @return              The value of the property.
+         * @throws NumberFormatException    If the value is not a number.
+         */
+        int intValue(String key, int defaultValue) {
+            String value = value(key, null);
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        }
+
+
+        /**
+         * Reads a long property.
+         *
+         * @param key           The key of the property.
+         * @param defaultValue  The value to use if the property is missing.
+         * @return              The value of the property.
+         * @throws NumberFormatException    If the value is not a number.
+         */
+        long longValue(String key, long defaultValue) {
+            String value = value(key, null);
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        }
+
+
+        /**
+         * Reads a double property.
+         *
+         * @param key           The key of the property.
+         * @param defaultValue  The value to use if the property is missing.
+         * @return              The value of the property.
+         * @throws NumberFormatException    If the value is not a number.
+         */
+        double doubleValue(String key, double defaultValue) {
+            String value = value(key, null);
+            return value == null ? defaultValue : Double.parseDouble(value.trim());
+        }
+
+
+        /**
+         * Reads a boolean property.
+         *
+         * @param key           The key of the property.
+         * @param defaultValue  The value to use if the property is missing.
+         * @return              The value of the property.
+         */
+        boolean booleanValue(String key, boolean defaultValue) {
+            String value = value(key, null);
+            return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package web.crawler.crawling;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The FetchExecutor runs the fetch workers of a crawling session. The amount
+ * of workers is the amount of pages that can be fetched at the same time, and
+ * it does not depend on how many starting links were entered.
+ *
+ * Workers run on a fixed pool of platform threads by default. When virtual
+ * threads are requested and the Java runtime has them (Java 21 and later),
+ * every worker gets its own virtual thread instead, so hundreds of blocking
+ * fetches do not need hundreds of platform threads. On older runtimes the
+ * platform pool is used.
+ *
+ * @author Jordan Hartwick
+ * June 6, 2016
+ */
+public class FetchExecutor {
+
+
+    /**
+     * Runs the workers.
+     */
+    private ExecutorService executor;
+
+
+    /**
+     * The amount of workers that have been submitted and have not finished.
+     */
+    private AtomicInteger active;
+
+
+    /**
+     * True if the workers run on virtual threads.
+     */
+    private boolean virtual;
+
+
+    /**
+     * Creates a new instance of the FetchExecutor class.
+     *
+     * @param workers           The amount of workers that will be submitted.
+     * @param virtualThreads    True to run the workers on virtual threads if
+     *                          they are available.
+     */
+    public FetchExecutor(int workers, boolean virtualThreads) {
+        active = new AtomicInteger();
+
+        if(virtualThreads) {
+            executor = newVirtualThreadExecutor();
+        }
+
+        virtual = executor != null;
+        if(executor == null) {
+            executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "crawler-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Starts a worker.
+     *
+     * @param worker    The worker to run.
+     */
+    public void submit(final Runnable worker) {
+        active.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        worker.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException err) {
+            active.decrementAndGet();
+            throw err;
+        }
+    }
+
+
+    /**
+     * Lets the submitted workers finish and then releases the threads.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+
+    /**
+     * Waits until every worker has finished after a shutdown.
+     */
+    public void awaitTermination() {
+        try {
+            while(!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Keep waiting.
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Interrupts all of the workers.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Returns the amount of workers that have not finished.
+     *
+     * @return  The amount of workers that have not finished.
+     */
+    public int activeCount() {
+        return active.get();
+    }
+
+
+    /**
+     * Returns true if the workers run on virtual threads.
+     *
+     * @return  True if the workers run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task. The
+     * method is looked up by reflection so this class still compiles and runs
+     * on runtimes without virtual threads.
+     *
+     * @return  The executor, or null if virtual threads are not available.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException err) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package web.crawler.crawling;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+
+/**
+ * The FetchPolicy decides which links are worth fetching and how much of a
+ * page is read, so bandwidth and fetch threads only go to pages that can be
+ * scanned. It is checked in three places:
+ *
+ *   - Found links whose path ends in an extension of a file that cannot be
+ *     scanned, such as a PDF, an image or an archive, are never added to
+ *     the frontier.
+ *   - Once a server has sent the headers of its answer, the content type is
+ *     checked before the body is read, so a link that turns out to be an
+ *     image is given up on before the image arrives.
+ *   - The body is read up to the most bytes allowed, and the page is scanned
+ *     up to that point, and a body that takes longer than allowed to
+ *     download is given up on.
+ *
+ * @author Jordan Hartwick
+ * July 3, 2016
+ */
+public class FetchPolicy {
+
+
+    /**
+     * The extensions of links that are not fetched unless the settings say
+     * otherwise: documents, images, audio, video, archives, programs, fonts,
+     * style sheets and scripts.
+     */
+    public static final String DEFAULT_SKIP_EXTENSIONS =
+            "pdf,ps,doc,docx,xls,xlsx,ppt,pptx,odt,ods,odp,rtf,"
+          + "jpg,jpeg,png,gif,bmp,tif,tiff,webp,svg,ico,"
+          + "mp3,wav,ogg,flac,aac,m4a,wma,"
+          + "mp4,m4v,avi,mov,mkv,webm,wmv,flv,mpg,mpeg,swf,"
+          + "zip,gz,tgz,bz2,xz,7z,rar,tar,jar,war,"
+          + "exe,msi,dmg,iso,bin,apk,deb,rpm,"
+          + "woff,woff2,ttf,otf,eot,css,js";
+
+
+    /**
+     * The longest extension looked up. A longer one is not an extension that
+     * could be skipped.
+     */
+    private static final int MAX_EXTENSION = 8;
+
+
+    /**
+     * The extensions of links that are not fetched, in lower case.
+     */
+    private final Set<String> skipExtensions = new HashSet<>();
+
+
+    /**
+     * The most bytes of a body that are read, or 0 for no limit.
+     */
+    private final long maxBodyBytes;
+
+
+    /**
+     * The most nanoseconds a body may take to download, or 0 for no limit.
+     */
+    private final long maxDownloadNanos;
+
+
+    /**
+     * Creates a new instance of the FetchPolicy class from the fetch
+     * settings of a crawling session.
+     *
+     * @param settings  The tuning options for the crawling session.
+     */
+    public FetchPolicy(CrawlerSettings settings) {
+        for(String extension : settings.getFetchSkipExtensions().split(",")) {
+            extension = extension.trim();
+            if(extension.startsWith(".")) extension = extension.substring(1);
+            if(!extension.isEmpty()) skipExtensions.add(extension.toLowerCase(Locale.ENGLISH));
+        }
+        this.maxBodyBytes = settings.getFetchMaxBodyBytes();
+        this.maxDownloadNanos = settings.getFetchMaxDownloadMillis() * 1000000L;
+    }
+
+
+    /**
+     * Returns true if a link should not be fetched because its path ends in
+     * an extension that is skipped. Only the last part of the path counts,
+     * and the query and fragment are ignored, so "/report.pdf?v=2" is
+     * skipped and "/files.pdf/list" is not.
+     *
+     * @param link  The link, in canonical form.
+     * @return      True if the link should not be fetched.
+     */
+    public boolean isSkipped(String link) {
+        if(skipExtensions.isEmpty()) {
+            return false;
+        }
+
+        int scheme = link.indexOf("://");
+        int path = link.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+        if(path == -1) {
+            return false;
+        }
+
+        int end = path;
+        while(end < link.length()) {
+            char c = link.charAt(end);
+            if(c == '?' || c == '#') break;
+            end++;
+        }
+
+        int dot = link.lastIndexOf('.', end - 1);
+        if(dot <= link.lastIndexOf('/', end - 1) || end - dot - 1 > MAX_EXTENSION) {
+            return false;
+        }
+        return skipExtensions.contains(link.substring(dot + 1, end).toLowerCase(Locale.ENGLISH));
+    }
+
+
+    /**
+     * Returns true if a body with a content type can be scanned: any text
+     * type, or an XML type such as XHTML. Like jsoup, a missing content type
+     * is allowed.
+     *
+     * @param contentType   The content type, or null.
+     * @return              True if the body can be scanned.
+     */
+    public boolean isScannable(String contentType) {
+        if(contentType == null) return true;
+
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        return type.startsWith("text/") || type.contains("xml");
+    }
+
+
+    /**
+     * Returns the most bytes of a body that are read.
+     *
+     * @return  The most bytes, or 0 for no limit.
+     */
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+
+    /**
+     * Returns the most nanoseconds a body may take to download.
+     *
+     * @return  The most nanoseconds, or 0 for no limit.
+     */
+    public long getMaxDownloadNanos() {
+        return maxDownloadNanos;
+    }
+}
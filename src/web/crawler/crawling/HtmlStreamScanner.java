@@ -0,0 +1,582 @@
+package web.crawler.crawling;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+
+/**
+ * The HtmlStreamScanner reads a page's HTML from a stream a single time and
+ * hands the text and the links to a {@link Handler} as they are read. No
+ * document tree is built. It is used instead of a jsoup Document when only
+ * the body text and the links of a page are needed.
+ *
+ * The scanner follows jsoup's Element.text() closely enough for counting
+ * queries: the contents of the head, scripts, styles and comments are left
+ * out, character references are decoded, a block level start tag puts a
+ * space before its text while inline tags and end tags do not, and each run
+ * of white space, line breaks included, becomes a single space, which is
+ * what jsoup does. It does not repair broken markup the way a full HTML parser
+ * does.
+ *
+ * @author Jordan Hartwick
+ * June 10, 2016
+ */
+public class HtmlStreamScanner {
+
+
+    /**
+     * Receives the text and the links of a page while it is scanned.
+     */
+    public interface Handler {
+
+
+        /**
+         * Receives a piece of the page's text.
+         *
+         * @param chars     The array holding the text.
+         * @param offset    The index of the first char.
+         * @param length    The amount of chars.
+         */
+        void text(char[] chars, int offset, int length);
+
+
+        /**
+         * Receives the href of an anchor tag exactly as it is in the page,
+         * with character references decoded, once the anchor has ended.
+         *
+         * @param href          The href.
+         * @param anchorText    The first MAX_ANCHOR_TEXT chars of the
+         *                      anchor's text, trimmed.
+         */
+        void link(String href, String anchorText);
+
+
+        /**
+         * Receives the href of the page's base tag.
+         *
+         * @param href  The href.
+         */
+        void base(String href);
+    }
+
+
+    /**
+     * Tags whose start tag puts a space before their text.
+     */
+    private static final String BLOCK_TAGS =
+            " address article aside blockquote br dd div dl dt fieldset figcaption figure"
+          + " footer form h1 h2 h3 h4 h5 h6 header hr li main nav ol p pre section table"
+          + " tbody td tfoot th thead tr ul body ";
+
+
+    /**
+     * The size of the input buffer and the text buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+
+    /**
+     * The longest character reference that will be decoded.
+     */
+    private static final int MAX_ENTITY = 10;
+
+
+    /**
+     * The most chars of an anchor's text handed to the handler.
+     */
+    public static final int MAX_ANCHOR_TEXT = 256;
+
+
+    /** The stream being scanned. */
+    private Reader in;
+
+
+    /** Holds chars read from the stream. */
+    private final char[] input = new char[BUFFER_SIZE];
+
+
+    /** The index of the next char in the input buffer. */
+    private int inputPos;
+
+
+    /** The amount of chars in the input buffer. */
+    private int inputLength;
+
+
+    /** A char that was read but needs to be read again, or -1. */
+    private int unread = -1;
+
+
+    /** Holds text until it is handed to the handler. */
+    private final char[] text = new char[BUFFER_SIZE];
+
+
+    /** The amount of chars in the text buffer. */
+    private int textLength;
+
+
+    /**
+     * True if the last char of the text was white space, or no text has
+     * been added yet, so white space is not added again.
+     */
+    private boolean afterSpace;
+
+
+    /** Holds the markup of the tag being read. */
+    private final StringBuilder tag = new StringBuilder();
+
+
+    /** True while inside the head of the document. */
+    private boolean inHead;
+
+
+    /** The receiver of the text and links. */
+    private Handler handler;
+
+
+    /** The href of the anchor being read, or null if not in an anchor. */
+    private String anchorHref;
+
+
+    /** The text of the anchor being read. */
+    private final StringBuilder anchorText = new StringBuilder();
+
+
+    /**
+     * Creates a new instance of the HtmlStreamScanner class. One scanner can
+     * scan several pages one after another, but not at the same time.
+     */
+    public HtmlStreamScanner() {}
+
+
+    /**
+     * Scans a page.
+     *
+     * @param reader        The page's HTML.
+     * @param handler       Receives the text and the links.
+     * @throws IOException  If the page could not be read.
+     */
+    public void scan(Reader reader, Handler handler) throws IOException {
+        this.in = reader;
+        this.handler = handler;
+        inputPos = inputLength = textLength = 0;
+        afterSpace = true;
+        unread = -1;
+        inHead = false;
+        anchorHref = null;
+
+        int c;
+        while((c = read()) != -1) {
+            if(c == '<') {
+                readMarkup();
+            } else if(c == '&') {
+                appendText(readReference());
+            } else if(!inHead) {
+                appendText((char) c);
+            }
+        }
+
+        endAnchor();
+        flushText();
+        this.in = null;
+        this.handler = null;
+    }
+
+
+    /**
+     * Reads the markup after a '&lt;' and acts on it.
+     *
+     * @throws IOException  If the page could not be read.
+     */
+    private void readMarkup() throws IOException {
+        int c = read();
+
+        if(c == '!') {
+            if(readIf('-') && readIf('-')) {
+                skipPast("-->");
+            } else {
+                skipPast(">");
+            }
+            return;
+        }
+
+        if(c == '?') {
+            skipPast(">");
+            return;
+        }
+
+        boolean closing = c == '/';
+        if(!closing) unread(c);
+
+        c = read();
+        if(!Character.isLetter(c)) {
+            // Not a tag, so the '<' is part of the text.
+            if(!inHead) {
+                appendText('<');
+                if(closing) appendText('/');
+            }
+            unread(c);
+            return;
+        }
+        unread(c);
+
+        readTag();
+        String name = tagName();
+
+        if(closing) {
+            if(name.equals("head")) inHead = false;
+            else if(name.equals("a")) endAnchor();
+        } else if(name.equals("head")) {
+            inHead = true;
+        } else if(name.equals("body")) {
+            inHead = false;
+        } else if(name.equals("script") || name.equals("style")) {
+            skipRawText(name);
+            return;
+        } else if(name.equals("a")) {
+            // Anchors cannot be nested, so a new one ends the last.
+            endAnchor();
+            String href = attribute("href");
+            if(href != null) {
+                anchorHref = href;
+                anchorText.setLength(0);
+            }
+        } else if(name.equals("base")) {
+            String href = attribute("href");
+            if(href != null) handler.base(href);
+        }
+
+        if(!closing && !inHead && BLOCK_TAGS.contains(" " + name + " ")) {
+            appendText(' ');
+        }
+    }
+
+
+    /**
+     * Reads the rest of a tag into the tag buffer, up to and not including
+     * the '&gt;'. Quoted attribute values may contain '&gt;'.
+     *
+     * @throws IOException  If the page could not be read.
+     */
+    private void readTag() throws IOException {
+        tag.setLength(0);
+
+        int c, quote = 0;
+        while((c = read()) != -1) {
+            if(quote != 0) {
+                if(c == quote) quote = 0;
+            } else if(c == '"' || c == '\'') {
+                quote = c;
+            } else if(c == '>') {
+                return;
+            }
+            tag.append((char) c);
+        }
+    }
+
+
+    /**
+     * Returns the lower case name of the tag in the tag buffer.
+     *
+     * @return  The name of the tag.
+     */
+    private String tagName() {
+        int end = 0;
+        while(end < tag.length()) {
+            char c = tag.charAt(end);
+            if(Character.isWhitespace(c) || c == '/') break;
+            end++;
+        }
+        return tag.substring(0, end).toLowerCase(Locale.ENGLISH);
+    }
+
+
+    /**
+     * Returns the value of an attribute of the tag in the tag buffer, with
+     * character references decoded.
+     *
+     * @param name  The lower case name of the attribute.
+     * @return      The value, or null if the tag does not have the attribute.
+     */
+    private String attribute(String name) {
+        int i = 0, length = tag.length();
+
+        // Skip the tag name.
+        while(i < length && !Character.isWhitespace(tag.charAt(i))) i++;
+
+        while(i < length) {
+            while(i < length && (Character.isWhitespace(tag.charAt(i)) || tag.charAt(i) == '/')) i++;
+
+            int nameStart = i;
+            while(i < length && tag.charAt(i) != '=' && !Character.isWhitespace(tag.charAt(i))) i++;
+            String attrName = tag.substring(nameStart, i);
+
+            while(i < length && Character.isWhitespace(tag.charAt(i))) i++;
+            String value = "";
+            if(i < length && tag.charAt(i) == '=') {
+                i++;
+                while(i < length && Character.isWhitespace(tag.charAt(i))) i++;
+
+                if(i < length && (tag.charAt(i) == '"' || tag.charAt(i) == '\'')) {
+                    char quote = tag.charAt(i++);
+                    int valueStart = i;
+                    while(i < length && tag.charAt(i) != quote) i++;
+                    value = tag.substring(valueStart, i);
+                    i++;
+                } else {
+                    int valueStart = i;
+                    while(i < length && !Character.isWhitespace(tag.charAt(i))) i++;
+                    value = tag.substring(valueStart, i);
+                }
+            }
+
+            if(attrName.equalsIgnoreCase(name)) {
+                return decodeReferences(value);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Skips the contents of a script or style element, up to and including its
+     * closing tag.
+     *
+     * @param name  The name of the element.
+     * @throws IOException  If the page could not be read.
+     */
+    private void skipRawText(String name) throws IOException {
+        int c;
+        while((c = read()) != -1) {
+            if(c != '<') continue;
+            if(!readIf('/')) continue;
+
+            boolean matched = true;
+            for(int i = 0; i < name.length() && matched; i++) {
+                int n = read();
+                if(Character.toLowerCase(n) != name.charAt(i)) {
+                    unread(n);
+                    matched = false;
+                }
+            }
+
+            if(matched) {
+                skipPast(">");
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Skips chars up to and including a terminator.
+     *
+     * @param terminator    The terminator.
+     * @throws IOException  If the page could not be read.
+     */
+    private void skipPast(String terminator) throws IOException {
+        int matched = 0, c;
+        while((c = read()) != -1) {
+            if(c == terminator.charAt(matched)) {
+                if(++matched == terminator.length()) return;
+            } else {
+                matched = c == terminator.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+
+    /**
+     * Reads a character reference after a '&amp;'. If it is not a reference
+     * that can be decoded, the chars are returned as they were.
+     *
+     * @return  The decoded text.
+     * @throws IOException  If the page could not be read.
+     */
+    private String readReference() throws IOException {
+        StringBuilder sb = new StringBuilder("&");
+
+        int c;
+        while(sb.length() <= MAX_ENTITY && (c = read()) != -1) {
+            if(c == ';') {
+                sb.append(';');
+                return decodeReferences(sb.toString());
+            }
+            if(!Character.isLetterOrDigit(c) && c != '#') {
+                unread(c);
+                break;
+            }
+            sb.append((char) c);
+        }
+
+        return decodeReferences(sb.toString());
+    }
+
+
+    /**
+     * Decodes the character references in a piece of text. Numeric references
+     * and the common named references are decoded, others are left alone.
+     *
+     * @param s     The text.
+     * @return      The decoded text.
+     */
+    static String decodeReferences(String s) {
+        int amp = s.indexOf('&');
+        if(amp == -1) return s;
+
+        StringBuilder sb = new StringBuilder(s.length());
+        int i = 0;
+        while(amp != -1) {
+            sb.append(s, i, amp);
+            int semi = s.indexOf(';', amp);
+            String decoded = semi == -1 || semi - amp > MAX_ENTITY
+                                ? null
+                                : decodeReference(s.substring(amp + 1, semi));
+            if(decoded == null) {
+                sb.append('&');
+                i = amp + 1;
+            } else {
+                sb.append(decoded);
+                i = semi + 1;
+            }
+            amp = s.indexOf('&', i);
+        }
+        sb.append(s, i, s.length());
+        return sb.toString();
+    }
+
+
+    /**
+     * Decodes the name of one character reference.
+     *
+     * @param name  The text between the '&amp;' and the ';'.
+     * @return      The decoded text, or null if it is not known.
+     */
+    private static String decodeReference(String name) {
+        if(name.startsWith("#")) {
+            try {
+                int code = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X')
+                            ? Integer.parseInt(name.substring(2), 16)
+                            : Integer.parseInt(name.substring(1));
+                return Character.isValidCodePoint(code) ? new String(Character.toChars(code)) : null;
+            } catch (NumberFormatException err) {
+                return null;
+            }
+        }
+
+        switch(name) {
+            case "amp":     return "&";
+            case "lt":      return "<";
+            case "gt":      return ">";
+            case "quot":    return "\"";
+            case "apos":    return "'";
+            case "nbsp":    return "\u00a0";
+            default:        return null;
+        }
+    }
+
+
+    /**
+     * Adds a char to the text buffer. White space is added as a single space,
+     * and only if the text does not already end in white space.
+     *
+     * @param c     The char.
+     */
+    private void appendText(char c) {
+        if(c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r') {
+            if(afterSpace) return;
+            afterSpace = true;
+            c = ' ';
+        } else {
+            afterSpace = false;
+        }
+
+        if(textLength == text.length) flushText();
+        text[textLength++] = c;
+        if(anchorHref != null && anchorText.length() < MAX_ANCHOR_TEXT) anchorText.append(c);
+    }
+
+
+    /**
+     * Hands the anchor being read to the handler, if there is one.
+     */
+    private void endAnchor() {
+        if(anchorHref != null) {
+            handler.link(anchorHref, anchorText.toString().trim());
+            anchorHref = null;
+        }
+    }
+
+
+    /**
+     * Adds decoded text to the text buffer.
+     *
+     * @param s     The text.
+     */
+    private void appendText(String s) {
+        if(inHead) return;
+        for(int i = 0; i < s.length(); i++) appendText(s.charAt(i));
+    }
+
+
+    /**
+     * Hands the text buffer to the handler.
+     */
+    private void flushText() {
+        if(textLength > 0) {
+            handler.text(text, 0, textLength);
+            textLength = 0;
+        }
+    }
+
+
+    /**
+     * Reads the next char.
+     *
+     * @return  The next char, or -1 at the end of the stream.
+     * @throws IOException  If the page could not be read.
+     */
+    private int read() throws IOException {
+        if(unread != -1) {
+            int c = unread;
+            unread = -1;
+            return c;
+        }
+
+        if(inputPos == inputLength) {
+            inputLength = in.read(input, 0, input.length);
+            inputPos = 0;
+            if(inputLength <= 0) {
+                inputLength = 0;
+                return -1;
+            }
+        }
+        return input[inputPos++];
+    }
+
+
+    /**
+     * Reads the next char if it is the expected one.
+     *
+     * @param expected  The expected char.
+     * @return          True if the next char was the expected one.
+     * @throws IOException  If the page could not be read.
+     */
+    private boolean readIf(char expected) throws IOException {
+        int c = read();
+        if(c == expected) return true;
+        unread(c);
+        return false;
+    }
+
+
+    /**
+     * Puts a char back so it is read again.
+     *
+     * @param c     The char, or -1 to do nothing.
+     */
+    private void unread(int c) {
+        unread = c;
+    }
+}
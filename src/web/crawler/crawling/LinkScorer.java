@@ -0,0 +1,138 @@
+package web.crawler.crawling;
+
+import web.crawler.frontier.PriorityFrontier;
+
+
+/**
+ * The LinkScorer works out the priority of a link for a best first crawl,
+ * from what is already known when the link is found:
+ *
+ *   - the hits of the search queries on the page the link was found on,
+ *     as pages on a topic tend to link to other pages on it,
+ *   - the queries found in the link's anchor text,
+ *   - the queries found in the link itself, and
+ *   - the link's depth, so that of two links with the same evidence the one
+ *     closer to the starting links is scanned first.
+ *
+ * Queries are found in the anchor text and the link the same way the
+ * QueryMatcher finds them in a page, so a query in a link has to stand
+ * between characters such as '/', '-' or '.'.
+ *
+ * @author Jordan Hartwick
+ * July 2, 2016
+ */
+public class LinkScorer {
+
+
+    /**
+     * The hits on the parent page that give the parent signal its full
+     * weight. The signal grows with the logarithm of the hits up to here.
+     */
+    private static final int FULL_PARENT_HITS = 50;
+
+
+    /**
+     * The weight of the parent page's hits in the relevance.
+     */
+    private static final double PARENT_WEIGHT = 0.5;
+
+
+    /**
+     * The weight of the queries in the anchor text in the relevance.
+     */
+    private static final double ANCHOR_WEIGHT = 0.3;
+
+
+    /**
+     * The weight of the queries in the link in the relevance.
+     */
+    private static final double LINK_WEIGHT = 0.2;
+
+
+    /**
+     * The share of the priority that comes from the relevance. The rest
+     * comes from the depth.
+     */
+    private static final double RELEVANCE_SHARE = 0.85;
+
+
+    /**
+     * The depth at which the depth's share of the priority is halved.
+     */
+    private static final double HALF_DEPTH = 4;
+
+
+    /**
+     * Finds the queries in the anchor text and the link.
+     */
+    private final QueryMatcher matcher;
+
+
+    /**
+     * Creates a new instance of the LinkScorer class.
+     *
+     * @param matcher   The matcher of the search queries.
+     */
+    public LinkScorer(QueryMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+
+    /**
+     * Returns the priority of a link found on a page.
+     *
+     * @param parentHits    The hits of all of the queries on the page the
+     *                      link was found on.
+     * @param anchorText    The link's anchor text.
+     * @param link          The link.
+     * @param depth         The link's depth.
+     * @return              The link's priority, from 0 to one below
+     *                      PriorityFrontier.MAX_PRIORITY, which is kept for
+     *                      the starting links.
+     */
+    public int score(int parentHits, String anchorText, String link, int depth) {
+        double parent = Math.min(1.0, Math.log1p(parentHits) / Math.log1p(FULL_PARENT_HITS));
+        double relevance = PARENT_WEIGHT * parent
+                         + ANCHOR_WEIGHT * queriesIn(anchorText)
+                         + LINK_WEIGHT * queriesIn(link);
+        double nearness = HALF_DEPTH / (HALF_DEPTH + depth);
+
+        double score = RELEVANCE_SHARE * relevance + (1 - RELEVANCE_SHARE) * nearness;
+        return (int) Math.round(score * (PriorityFrontier.MAX_PRIORITY - 1));
+    }
+
+
+    /**
+     * Returns the hits of all of the queries in a page's counts.
+     *
+     * @param amounts   The count of each query, or null.
+     * @return          The sum of the counts.
+     */
+    public static int hits(int[] amounts) {
+        int hits = 0;
+        if(amounts != null) {
+            for(int amount : amounts) hits += amount;
+        }
+        return hits;
+    }
+
+
+    /**
+     * Returns the fraction of the queries found in a text.
+     *
+     * @param text  The text.
+     * @return      The fraction, from 0 to 1.
+     */
+    private double queriesIn(String text) {
+        if(text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int[] counts = matcher.count(text);
+        int found = 0;
+        for(int count : counts) {
+            if(count > 0) found++;
+        }
+        return counts.length == 0 ? 0 : (double) found / counts.length;
+    }
+}
@@ -0,0 +1,394 @@
+package web.crawler.crawling;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+
+/**
+ * The QueryMatcher counts how many times each search query occurs in a page's
+ * text. All of the queries are compiled once per crawling session into an
+ * Aho-Corasick automaton, so a page's text is read a single time no matter
+ * how many queries there are.
+ *
+ * A query only counts when it stands on word boundaries, the same way the
+ * regular expression "\bquery\b" does: the characters on either side of the
+ * boundary must differ in whether they are word characters (letters, digits
+ * and '_'). Like Matcher.find(), occurrences of the same query do not overlap.
+ * The text and the queries are both compared in lower case, and queries are
+ * matched literally.
+ *
+ * A QueryMatcher can be shared by all Crawlers. Each page is counted with its
+ * own {@link Counter}.
+ *
+ * @author Jordan Hartwick
+ * June 8, 2016
+ */
+public class QueryMatcher {
+
+
+    /**
+     * The search queries in the order they were given.
+     */
+    private final String[] queries;
+
+
+    /**
+     * The length of each query.
+     */
+    private final int[] queryLengths;
+
+
+    /**
+     * Maps every char to its column in the transition table. Chars that do not
+     * appear in any query share column 0.
+     */
+    private final char[] charClass;
+
+
+    /**
+     * The amount of columns in the transition table.
+     */
+    private final int alphabetSize;
+
+
+    /**
+     * The transition table. The next state after reading a char in state s
+     * is transitions[s * alphabetSize + charClass[c]].
+     */
+    private final int[] transitions;
+
+
+    /**
+     * The queries that end in each state, or null if none end there.
+     */
+    private final int[][] outputs;
+
+
+    /**
+     * The length of the longest query.
+     */
+    private final int longestQuery;
+
+
+    /**
+     * Creates a new instance of the QueryMatcher class and compiles the
+     * queries.
+     *
+     * @param queries   The search queries.
+     */
+    public QueryMatcher(String[] queries) {
+        this.queries = queries;
+
+        String[] folded = new String[queries.length];
+        queryLengths = new int[queries.length];
+        charClass = new char[Character.MAX_VALUE + 1];
+
+        int classes = 1, totalLength = 0, longest = 0;
+        for(int i = 0; i < queries.length; i++) {
+            folded[i] = fold(queries[i]);
+            queryLengths[i] = folded[i].length();
+            totalLength += queryLengths[i];
+            longest = Math.max(longest, queryLengths[i]);
+
+            for(int j = 0; j < folded[i].length(); j++) {
+                char c = folded[i].charAt(j);
+                if(charClass[c] == 0) charClass[c] = (char) classes++;
+            }
+        }
+
+        alphabetSize = classes;
+        longestQuery = longest;
+
+        int[] table = new int[(totalLength + 1) * alphabetSize];
+        Arrays.fill(table, -1);
+        int[][] out = new int[totalLength + 1][];
+        int states = 1;
+
+        // Build the trie of all queries.
+        for(int i = 0; i < folded.length; i++) {
+            if(folded[i].isEmpty()) continue;
+
+            int state = 0;
+            for(int j = 0; j < folded[i].length(); j++) {
+                int slot = state * alphabetSize + charClass[folded[i].charAt(j)];
+                if(table[slot] == -1) table[slot] = states++;
+                state = table[slot];
+            }
+            out[state] = append(out[state], i);
+        }
+
+        // Fill in the failure transitions breadth first so every state has a
+        // transition for every column.
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for(int a = 0; a < alphabetSize; a++) {
+            if(table[a] == -1) {
+                table[a] = 0;
+            } else {
+                fail[table[a]] = 0;
+                queue.add(table[a]);
+            }
+        }
+
+        while(!queue.isEmpty()) {
+            int state = queue.poll();
+            for(int a = 0; a < alphabetSize; a++) {
+                int slot = state * alphabetSize + a;
+                int next = table[slot];
+                int fallback = table[fail[state] * alphabetSize + a];
+
+                if(next == -1) {
+                    table[slot] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    if(out[fallback] != null) {
+                        for(int q : out[fallback]) out[next] = append(out[next], q);
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(table, states * alphabetSize);
+        outputs = Arrays.copyOf(out, states);
+    }
+
+
+    /**
+     * Returns the search queries this matcher was compiled from.
+     *
+     * @return  The search queries.
+     */
+    public String[] getQueries() {
+        return queries;
+    }
+
+
+    /**
+     * Counts the occurrences of each query in a text.
+     *
+     * @param text  The text to search.
+     * @return      The occurrences of each query, in the order of the queries.
+     */
+    public int[] count(CharSequence text) {
+        Counter counter = newCounter();
+        counter.feed(text);
+        return counter.finish();
+    }
+
+
+    /**
+     * Returns a new Counter for counting the queries in one page's text.
+     *
+     * @return  A new Counter.
+     */
+    public Counter newCounter() {
+        return new Counter();
+    }
+
+
+    /**
+     * Returns true if a char is a word char for the word boundary check. This
+     * is the same test that java.util.regex uses for "\b".
+     *
+     * @param c     The char.
+     * @return      True if the char is a word char.
+     */
+    static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+
+    /**
+     * Lower cases a query one char at a time, the same way the text is lower
+     * cased while it is counted.
+     *
+     * @param query     The query.
+     * @return          The lower cased query.
+     */
+    private static String fold(String query) {
+        char[] chars = query.toCharArray();
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Returns a copy of an array with a value added to the end.
+     *
+     * @param array     The array, or null.
+     * @param value     The value to add.
+     * @return          The new array.
+     */
+    private static int[] append(int[] array, int value) {
+        if(array == null) return new int[]{value};
+
+        int[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = value;
+        return copy;
+    }
+
+
+    /**
+     * The Counter counts the queries in one page's text. The text can be fed
+     * in pieces as it arrives. Whether an occurrence ends on a word boundary
+     * is only known once the next char has been read, so occurrences are
+     * counted one char late, and {@link #finish()} must be called after the
+     * last piece.
+     */
+    public class Counter {
+
+
+        /** The occurrences of each query so far. */
+        private final int[] counts = new int[queries.length];
+
+
+        /** Where the last counted occurrence of each query ended. */
+        private final long[] lastEnd = new long[queries.length];
+
+
+        /** Whether each of the most recent chars was a word char. */
+        private final boolean[] wordRing;
+
+
+        /** wordRing.length - 1, used to wrap positions. */
+        private final int ringMask;
+
+
+        /** Occurrences waiting for the next char: query index and start. */
+        private int[] pendingQuery = new int[4];
+
+
+        /** The start position of each waiting occurrence. */
+        private long[] pendingStart = new long[4];
+
+
+        /** The amount of waiting occurrences. */
+        private int pending;
+
+
+        /** The current state of the automaton. */
+        private int state;
+
+
+        /** The position of the next char. */
+        private long position;
+
+
+        /**
+         * Creates a new Counter.
+         */
+        private Counter() {
+            int ringSize = Integer.highestOneBit(longestQuery + 1) << 1;
+            wordRing = new boolean[ringSize];
+            ringMask = ringSize - 1;
+        }
+
+
+        /**
+         * Feeds one char of the text.
+         *
+         * @param raw   The next char of the text.
+         */
+        public void feed(char raw) {
+            char c = Character.toLowerCase(raw);
+            boolean word = isWordChar(c);
+
+            if(pending > 0) resolve(word);
+
+            wordRing[(int) position & ringMask] = word;
+            state = transitions[state * alphabetSize + charClass[c]];
+
+            int[] ended = outputs[state];
+            if(ended != null) {
+                for(int q : ended) {
+                    addPending(q, position - queryLengths[q] + 1);
+                }
+            }
+
+            position++;
+        }
+
+
+        /**
+         * Feeds a piece of the text.
+         *
+         * @param text  The next piece of the text.
+         */
+        public void feed(CharSequence text) {
+            for(int i = 0; i < text.length(); i++) {
+                feed(text.charAt(i));
+            }
+        }
+
+
+        /**
+         * Feeds a piece of the text from a char array.
+         *
+         * @param chars     The array holding the text.
+         * @param offset    The index of the first char.
+         * @param length    The amount of chars.
+         */
+        public void feed(char[] chars, int offset, int length) {
+            for(int i = offset; i < offset + length; i++) {
+                feed(chars[i]);
+            }
+        }
+
+
+        /**
+         * Ends the text and returns the occurrences of each query.
+         *
+         * @return  The occurrences of each query, in the order of the queries.
+         */
+        public int[] finish() {
+            if(pending > 0) resolve(false);
+            return counts;
+        }
+
+
+        /**
+         * Counts the waiting occurrences that stand on word boundaries and
+         * do not overlap the previous occurrence of the same query.
+         *
+         * @param nextIsWord    Whether the char after the occurrences is a
+         *                      word char.
+         */
+        private void resolve(boolean nextIsWord) {
+            for(int i = 0; i < pending; i++) {
+                int q = pendingQuery[i];
+                long start = pendingStart[i];
+
+                boolean before = start > 0 && wordRing[(int) (start - 1) & ringMask];
+                boolean first  = wordRing[(int) start & ringMask];
+                boolean last   = wordRing[(int) (position - 1) & ringMask];
+
+                if(before != first && last != nextIsWord && start >= lastEnd[q]) {
+                    counts[q]++;
+                    lastEnd[q] = position;
+                }
+            }
+            pending = 0;
+        }
+
+
+        /**
+         * Adds an occurrence that is waiting for the next char.
+         *
+         * @param q         The query index.
+         * @param start     The start position of the occurrence.
+         */
+        private void addPending(int q, long start) {
+            if(pending == pendingQuery.length) {
+                pendingQuery = Arrays.copyOf(pendingQuery, pending * 2);
+                pendingStart = Arrays.copyOf(pendingStart, pending * 2);
+            }
+            pendingQuery[pending] = q;
+            pendingStart[pending] = start;
+            pending++;
+        }
+    }
+}
@@ -21,6 +21,10 @@ import java.util.Random;
 public class UserAgentAssigner {
 
 
+    /** Assigned when no user agents could be loaded. */
+    private static final String DEFAULT_AGENT = "Mozilla/5.0 (compatible; web-crawler)";
+
+
     /** Contains user agents to assign to the crawlers. */
     private List<String> userAgents = new ArrayList<>();
 
@@ -74,7 +78,8 @@ public class UserAgentAssigner {
 
 
     /**
-     * Returns a random user agent from the list of user agents.
+     * Returns a random user agent from the list of user agents. If no user
+     * agents could be loaded, a default user agent is returned.
      *
      * @return  A random user agent from the list of user agents.
      */
@@ -83,6 +88,10 @@ public class UserAgentAssigner {
             userAgents = new ArrayList<>(removedAgents);
         }
 
+        if(userAgents.isEmpty()) {
+            return DEFAULT_AGENT;
+        }
+
         String userAgent = userAgents.get(new Random().nextInt(userAgents.size()));
         userAgents.remove(userAgent);
         removedAgents.add(userAgent);
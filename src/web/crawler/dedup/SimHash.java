@@ -0,0 +1,215 @@
+package web.crawler.dedup;
+
+
+/**
+ * The SimHash computes a 64-bit fingerprint of a page's text in which similar
+ * texts get fingerprints that differ in only a few bits. The text is split
+ * into words, which are folded to lower case, and every run of three words
+ * in a row is one feature. Each feature is hashed to 64 bits and votes on
+ * every bit of the fingerprint: a one bit votes for one and a zero bit votes
+ * for zero. A bit of the fingerprint is one if most votes were for one.
+ *
+ * Text can be fed in pieces, so a page can be fingerprinted while it is
+ * scanned. A word split between two pieces is still one word.
+ *
+ * @author Jordan Hartwick
+ * June 29, 2016
+ */
+public class SimHash {
+
+
+    /**
+     * The fewest features a text needs for its fingerprint to be used. Short
+     * texts, such as empty pages and redirect notices, would otherwise look
+     * like copies of each other.
+     */
+    public static final int MIN_FEATURES = 16;
+
+
+    /**
+     * The starting value of a word's hash.
+     */
+    private static final long EMPTY_WORD = 0xCBF29CE484222325L;
+
+
+    /**
+     * The votes for each bit: positive for one, negative for zero.
+     */
+    private final int[] votes = new int[64];
+
+
+    /**
+     * The hash of the word being read.
+     */
+    private long word = EMPTY_WORD;
+
+
+    /**
+     * True if a word is being read.
+     */
+    private boolean inWord;
+
+
+    /**
+     * The hashes of the two words before the current one.
+     */
+    private long first, second;
+
+
+    /**
+     * The amount of words read.
+     */
+    private int words;
+
+
+    /**
+     * The amount of features counted.
+     */
+    private int features;
+
+
+    /**
+     * Creates a new instance of the SimHash class.
+     */
+    public SimHash() {}
+
+
+    /**
+     * Returns the fingerprint of a whole text.
+     *
+     * @param text  The text.
+     * @return      The fingerprint.
+     */
+    public static long of(CharSequence text) {
+        SimHash simHash = new SimHash();
+        simHash.feed(text);
+        return simHash.finish();
+    }
+
+
+    /**
+     * Returns the amount of bits that differ between two fingerprints.
+     *
+     * @param a     A fingerprint.
+     * @param b     Another fingerprint.
+     * @return      The amount of bits that differ.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+
+    /**
+     * Adds a piece of text.
+     *
+     * @param chars     The characters.
+     * @param offset    The first character of the piece.
+     * @param length    The amount of characters in the piece.
+     */
+    public void feed(char[] chars, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            feed(chars[i]);
+        }
+    }
+
+
+    /**
+     * Adds a piece of text.
+     *
+     * @param text  The text.
+     */
+    public void feed(CharSequence text) {
+        for(int i = 0; i < text.length(); i++) {
+            feed(text.charAt(i));
+        }
+    }
+
+
+    /**
+     * Ends the text and returns its fingerprint.
+     *
+     * @return  The fingerprint.
+     */
+    public long finish() {
+        endWord();
+
+        long fingerprint = 0;
+        for(int bit = 0; bit < 64; bit++) {
+            if(votes[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+
+    /**
+     * Returns the amount of features counted so far.
+     *
+     * @return  The amount of features.
+     */
+    public int getFeatures() {
+        return features;
+    }
+
+
+    /**
+     * Adds a character, ending the current word if it is not a letter or a
+     * digit.
+     *
+     * @param c     The character.
+     */
+    private void feed(char c) {
+        if(Character.isLetterOrDigit(c)) {
+            word = (word ^ Character.toLowerCase(c)) * 0x100000001B3L;
+            inWord = true;
+        } else {
+            endWord();
+        }
+    }
+
+
+    /**
+     * Ends the current word, if any, and counts the feature it ends.
+     */
+    private void endWord() {
+        if(!inWord) return;
+
+        if(words >= 2) {
+            vote(mix(first * 0x9E3779B97F4A7C15L ^ second * 0xC2B2AE3D27D4EB4FL ^ word));
+        }
+        first = second;
+        second = word;
+        words++;
+
+        word = EMPTY_WORD;
+        inWord = false;
+    }
+
+
+    /**
+     * Counts a feature's votes.
+     *
+     * @param hash  The feature's hash.
+     */
+    private void vote(long hash) {
+        for(int bit = 0; bit < 64; bit++) {
+            votes[bit] += (int) ((hash >>> bit) & 1) * 2 - 1;
+        }
+        features++;
+    }
+
+
+    /**
+     * Spreads the bits of a hash so each one depends on all of the input.
+     *
+     * @param h     The hash.
+     * @return      The mixed hash.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
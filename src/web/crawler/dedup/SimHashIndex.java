@@ -0,0 +1,183 @@
+package web.crawler.dedup;
+
+import java.util.Arrays;
+
+
+/**
+ * The SimHashIndex remembers the fingerprints of the pages crawled and finds
+ * whether a new page is a near copy of one of them, meaning its fingerprint
+ * differs in at most maxDistance bits.
+ *
+ * Each fingerprint is split into maxDistance + 1 blocks, and at least four,
+ * and for each block there is a table of buckets holding the fingerprints
+ * with that block's value. Two fingerprints that differ in at most
+ * maxDistance bits have at least one block the same, so only one bucket per
+ * block has to be checked instead of every fingerprint. The larger the
+ * distance, the shorter the blocks and the fuller the buckets.
+ *
+ * All methods are synchronized.
+ *
+ * @author Jordan Hartwick
+ * June 29, 2016
+ */
+public class SimHashIndex {
+
+
+    /**
+     * The fewest blocks a fingerprint is split into, so a block's table has
+     * at most 2^16 buckets.
+     */
+    private static final int MIN_BLOCKS = 4;
+
+
+    /**
+     * The largest distance supported. Blocks of eight bits leave buckets too
+     * full to be worth going further.
+     */
+    public static final int MAX_DISTANCE = 7;
+
+
+    /**
+     * The bit each block starts at, with 64 at the end.
+     */
+    private final int[] starts;
+
+
+    /**
+     * The fingerprints in each bucket of each block's table, or null for an
+     * empty bucket.
+     */
+    private final long[][][] buckets;
+
+
+    /**
+     * The amount of fingerprints in each bucket of each block's table.
+     */
+    private final int[][] sizes;
+
+
+    /**
+     * Fingerprints that differ in at most this many bits are near copies.
+     */
+    private final int maxDistance;
+
+
+    /**
+     * The most fingerprints kept. Once it is reached, new pages are still
+     * checked but no longer added.
+     */
+    private final int capacity;
+
+
+    /**
+     * The amount of fingerprints kept.
+     */
+    private int size;
+
+
+    /**
+     * Creates a new instance of the SimHashIndex class.
+     *
+     * @param maxDistance   Fingerprints that differ in at most this many bits
+     *                      are near copies, from 0 to MAX_DISTANCE.
+     * @param capacity      The most fingerprints to keep.
+     * @throws IllegalArgumentException If maxDistance is out of range.
+     */
+    public SimHashIndex(int maxDistance, int capacity) {
+        if(maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must be from 0 to " + MAX_DISTANCE);
+        }
+        this.maxDistance = maxDistance;
+        this.capacity = capacity;
+
+        int blocks = Math.max(MIN_BLOCKS, maxDistance + 1);
+        starts = new int[blocks + 1];
+        buckets = new long[blocks][][];
+        sizes = new int[blocks][];
+        for(int block = 0; block <= blocks; block++) {
+            starts[block] = block * 64 / blocks;
+        }
+        for(int block = 0; block < blocks; block++) {
+            int bits = starts[block + 1] - starts[block];
+            buckets[block] = new long[1 << bits][];
+            sizes[block] = new int[1 << bits];
+        }
+    }
+
+
+    /**
+     * Adds a fingerprint unless it is a near copy of one already added.
+     *
+     * @param fingerprint   The fingerprint.
+     * @return              True if the fingerprint is new, false if it is a
+     *                      near copy.
+     */
+    public synchronized boolean add(long fingerprint) {
+        if(contains(fingerprint)) {
+            return false;
+        }
+
+        if(size < capacity) {
+            for(int block = 0; block < buckets.length; block++) {
+                int key = blockOf(fingerprint, block);
+                long[] bucket = buckets[block][key];
+                int n = sizes[block][key];
+
+                if(bucket == null) {
+                    bucket = buckets[block][key] = new long[2];
+                } else if(n == bucket.length) {
+                    bucket = buckets[block][key] = Arrays.copyOf(bucket, n * 2);
+                }
+                bucket[n] = fingerprint;
+                sizes[block][key] = n + 1;
+            }
+            size++;
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns true if a fingerprint is a near copy of one already added.
+     *
+     * @param fingerprint   The fingerprint.
+     * @return              True if a near copy was added.
+     */
+    public synchronized boolean contains(long fingerprint) {
+        for(int block = 0; block < buckets.length; block++) {
+            int key = blockOf(fingerprint, block);
+            long[] bucket = buckets[block][key];
+            int n = sizes[block][key];
+
+            for(int i = 0; i < n; i++) {
+                if(Long.bitCount(bucket[i] ^ fingerprint) <= maxDistance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the amount of fingerprints kept.
+     *
+     * @return  The amount of fingerprints kept.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns one block of a fingerprint.
+     *
+     * @param fingerprint   The fingerprint.
+     * @param block         The index of the block.
+     * @return              The block's bits.
+     */
+    private int blockOf(long fingerprint, int block) {
+        int bits = starts[block + 1] - starts[block];
+        return (int) (fingerprint >>> starts[block]) & ((1 << bits) - 1);
+    }
+}
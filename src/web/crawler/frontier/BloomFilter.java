@@ -0,0 +1,130 @@
+package web.crawler.frontier;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A Bloom filter of link fingerprints that many threads can add to at once
+ * without locking. It answers "have I seen this link before?" in a fixed
+ * amount of memory. It never says no for a link that was added, but it can
+ * say yes for a link that was not, at about the configured false positive
+ * rate while it holds no more than the expected amount of links.
+ *
+ * The bit positions come from the link's 64-bit fingerprint by double
+ * hashing, so links are only hashed once.
+ *
+ * @author Jordan Hartwick
+ * June 23, 2016
+ */
+public class BloomFilter {
+
+
+    /**
+     * The most bits the filter can have (256MB).
+     */
+    private static final long MAX_BITS = 1L << 31;
+
+
+    /**
+     * The bits, 64 to a word.
+     */
+    private final AtomicLongArray words;
+
+
+    /**
+     * The amount of bits minus one. The amount of bits is a power of two.
+     */
+    private final long mask;
+
+
+    /**
+     * The amount of bits set for each fingerprint.
+     */
+    private final int hashes;
+
+
+    /**
+     * Creates a new instance of the BloomFilter class sized for an amount of
+     * links and a false positive rate.
+     *
+     * @param expectedLinks         The amount of links the filter should hold.
+     * @param falsePositiveRate     The wanted false positive rate, between 0
+     *                              and 1.
+     */
+    public BloomFilter(long expectedLinks, double falsePositiveRate) {
+        if(expectedLinks < 1) {
+            throw new IllegalArgumentException("expectedLinks must be at least 1");
+        }
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+
+        double ln2 = Math.log(2);
+        double bitsNeeded = -expectedLinks * Math.log(falsePositiveRate) / (ln2 * ln2);
+
+        long bits = 64;
+        while(bits < bitsNeeded && bits < MAX_BITS) bits <<= 1;
+
+        this.words = new AtomicLongArray((int) (bits >>> 6));
+        this.mask = bits - 1;
+        this.hashes = Math.max(1, Math.min(16, (int) Math.round((double) bits / expectedLinks * ln2)));
+    }
+
+
+    /**
+     * Adds a fingerprint to the filter.
+     *
+     * @param fingerprint   The fingerprint of the link.
+     * @return              True if the fingerprint was not in the filter
+     *                      before, false if it was (or seemed to be).
+     */
+    public boolean add(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) | 1;
+        boolean added = false;
+
+        for(int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            int index = (int) (bit >>> 6);
+            long flag = 1L << bit;
+
+            long word;
+            while(((word = words.get(index)) & flag) == 0) {
+                if(words.compareAndSet(index, word, word | flag)) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        return added;
+    }
+
+
+    /**
+     * Returns true if a fingerprint may be in the filter.
+     *
+     * @param fingerprint   The fingerprint of the link.
+     * @return              False if the fingerprint was never added, true if
+     *                      it was probably added.
+     */
+    public boolean mightContain(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) | 1;
+
+        for(int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the size of the filter in bits.
+     *
+     * @return  The size of the filter in bits.
+     */
+    public long bitSize() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,103 @@
+package web.crawler.frontier;
+
+import java.util.function.Consumer;
+
+/**
+ * The Frontier holds the links that have been discovered but not yet scanned.
+ * It is shared by all of the Crawlers in a crawling session. Each Crawler is
+ * identified by a worker index so the frontier can keep work close to the
+ * Crawler that discovered it.
+ *
+ * A link handed out by {@link #poll(int)} counts as being processed until
+ * {@link #complete(int)} is called for the same worker. This is how the
+ * frontier knows when the whole crawling session has run out of work.
+ *
+ * @author Jordan Hartwick
+ * June 2, 2016
+ */
+public interface Frontier {
+
+
+    /**
+     * Adds a link to the frontier.
+     *
+     * @param worker    The index of the Crawler that found the link.
+     * @param link      The link to add.
+     */
+    void offer(int worker, String link);
+
+
+    /**
+     * Adds a link to the frontier with a priority and the depth of the link
+     * from the starting links. Frontiers that hand out links in a fixed order
+     * ignore the priority and the depth.
+     *
+     * @param worker    The index of the Crawler that found the link.
+     * @param link      The link to add.
+     * @param priority  How soon the link should be scanned, from 0 to
+     *                  PriorityFrontier.MAX_PRIORITY, higher first.
+     * @param depth     The amount of links followed from a starting link to
+     *                  reach this link.
+     */
+    default void offer(int worker, String link, int priority, int depth) {
+        offer(worker, link);
+    }
+
+
+    /**
+     * Returns the next link for a Crawler to scan, or null if there are no
+     * links available right now.
+     *
+     * @param worker    The index of the Crawler asking for a link.
+     * @return          The next link to scan, or null if there is none.
+     */
+    String poll(int worker);
+
+
+    /**
+     * Tells the frontier that a Crawler has finished with the last link it
+     * polled and has offered all of the links it found on that page.
+     *
+     * @param worker    The index of the Crawler that finished.
+     */
+    void complete(int worker);
+
+
+    /**
+     * Returns the depth a link was added with, for a link recently handed out
+     * by {@link #poll(int)}. Frontiers that do not keep depths return 0.
+     *
+     * @param link  The link.
+     * @return      The link's depth, or 0 if it is not known.
+     */
+    default int depthOf(String link) {
+        return 0;
+    }
+
+
+    /**
+     * Returns the amount of links waiting in the frontier.
+     *
+     * @return  The amount of links waiting in the frontier.
+     */
+    int size();
+
+
+    /**
+     * Returns true if there are no links waiting and no Crawler is processing
+     * a link that could add more.
+     *
+     * @return  True if the frontier has run out of work.
+     */
+    boolean isExhausted();
+
+
+    /**
+     * Hands every link waiting in the frontier to a consumer, for example to
+     * save them in a checkpoint. Links added or taken while this runs may or
+     * may not be included.
+     *
+     * @param consumer  Receives the links.
+     */
+    void snapshot(Consumer<String> consumer);
+}
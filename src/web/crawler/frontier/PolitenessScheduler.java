@@ -0,0 +1,567 @@
+package web.crawler.frontier;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+/**
+ * The PolitenessScheduler sits between a frontier and the Crawlers and keeps
+ * any one host from being hit too hard. Links taken from the frontier are
+ * sorted into one queue per host, and each host has a token bucket that
+ * allows a set amount of requests per second with a small burst. The
+ * Crawlers are always handed a link from a host whose bucket has a token, so
+ * the Crawlers stay busy as long as some host is ready.
+ *
+ * When a link is taken from the frontier for a host whose queue is full, it
+ * is given back and no more links are taken until that host's queue has
+ * room or new links are added, so idle Crawlers do not churn through the
+ * frontier. A host's queue is forgotten once it is empty and its bucket has
+ * filled up again, unless the host has a delay of its own.
+ *
+ * The scheduler is a Frontier itself, so the Crawlers use it the same way
+ * they use the frontier it wraps.
+ *
+ * @author Jordan Hartwick
+ * June 12, 2016
+ */
+public class PolitenessScheduler implements Frontier {
+
+
+    /**
+     * The most links taken from the wrapped frontier at once.
+     */
+    private static final int REFILL_BATCH = 256;
+
+
+    /**
+     * The most links held in all of the host queues together.
+     */
+    private static final int MAX_BUFFERED = 16384;
+
+
+    /**
+     * The most links held in one host's queue by default. Links for a host
+     * that is full are given back to the wrapped frontier.
+     */
+    private static final int MAX_PER_HOST = 512;
+
+
+    /**
+     * How often the host queues are looked through for ones that can be
+     * forgotten, in nanoseconds.
+     */
+    private static final long SWEEP_NANOS = 1000000000L;
+
+
+    /**
+     * The frontier the links come from.
+     */
+    private final Frontier source;
+
+
+    /**
+     * The default amount of requests per second allowed for each host.
+     */
+    private final double requestsPerSecond;
+
+
+    /**
+     * The amount of requests a host can receive back to back.
+     */
+    private final double burst;
+
+
+    /**
+     * The most links held in one host's queue.
+     */
+    private final int maxPerHost;
+
+
+    /**
+     * The queue of every host that has links queued, has a delay of its own,
+     * or was sent a request too recently for its bucket to be full.
+     */
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+
+
+    /**
+     * The hosts that have links queued, ordered by when they are ready.
+     */
+    private final DelayQueue<HostQueue> schedule = new DelayQueue<>();
+
+
+    /**
+     * The amount of links in all of the host queues.
+     */
+    private int buffered;
+
+
+    /**
+     * The amount of Crawlers processing a link from this scheduler.
+     */
+    private int busy;
+
+
+    /**
+     * The full host queue the last refill stopped at, or null if it did not
+     * stop at one. No links are taken from the wrapped frontier while it is
+     * set, until the host's queue has room or new links are added.
+     */
+    private HostQueue blockedOn;
+
+
+    /**
+     * The amount of links added, so a refill can tell if links were added
+     * since it stopped at a full host queue.
+     */
+    private final AtomicLong offers = new AtomicLong();
+
+
+    /**
+     * The value of offers when the last refill started.
+     */
+    private long offersAtRefill;
+
+
+    /**
+     * When the host queues were last looked through for ones that can be
+     * forgotten, in nanoseconds.
+     */
+    private long lastSweep = System.nanoTime();
+
+
+    /**
+     * Creates a new instance of the PolitenessScheduler class.
+     *
+     * @param source                The frontier the links come from.
+     * @param requestsPerSecond     The amount of requests per second allowed
+     *                              for each host.
+     * @param burst                 The amount of requests a host can receive
+     *                              back to back. At least 1.
+     */
+    public PolitenessScheduler(Frontier source, double requestsPerSecond, int burst) {
+        this(source, requestsPerSecond, burst, MAX_PER_HOST);
+    }
+
+
+    /**
+     * Creates a new instance of the PolitenessScheduler class that holds at
+     * most a set amount of links for each host. A frontier that hands out
+     * links by priority needs a small amount, or a host's queue fills with
+     * links taken long before better ones were found.
+     *
+     * @param source                The frontier the links come from.
+     * @param requestsPerSecond     The amount of requests per second allowed
+     *                              for each host.
+     * @param burst                 The amount of requests a host can receive
+     *                              back to back. At least 1.
+     * @param maxPerHost            The most links held in one host's queue.
+     *                              At least 1.
+     */
+    public PolitenessScheduler(Frontier source, double requestsPerSecond, int burst, int maxPerHost) {
+        if(requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be greater than 0");
+        }
+
+        this.source = source;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxPerHost = Math.max(1, maxPerHost);
+    }
+
+
+    /*
+        New links go to the wrapped frontier. They are sorted into host queues
+        when the Crawlers need more work.
+    */
+    @Override
+    public void offer(int worker, String link) {
+        source.offer(worker, link);
+        offers.incrementAndGet();
+    }
+
+
+    /*
+        New links go to the wrapped frontier with their priority and depth.
+    */
+    @Override
+    public void offer(int worker, String link, int priority, int depth) {
+        source.offer(worker, link, priority, depth);
+        offers.incrementAndGet();
+    }
+
+
+    /*
+        Hands out a link from the host that has been ready the longest. If no
+        host is ready, more links are taken from the wrapped frontier first,
+        unless the last refill stopped at a full host queue and nothing has
+        changed since.
+    */
+    @Override
+    public synchronized String poll(int worker) {
+        busy++;
+
+        String link = takeReady();
+        if(link == null && canRefill() && refill(worker) > 0) {
+            link = takeReady();
+        }
+        sweep();
+
+        if(link == null) {
+            busy--;
+        }
+        return link;
+    }
+
+
+    /*
+        Marks the worker as no longer processing a link.
+    */
+    @Override
+    public synchronized void complete(int worker) {
+        busy--;
+    }
+
+
+    /*
+        Returns the depth kept by the wrapped frontier.
+    */
+    @Override
+    public int depthOf(String link) {
+        return source.depthOf(link);
+    }
+
+
+    /*
+        Returns the amount of links in the host queues and the wrapped
+        frontier.
+    */
+    @Override
+    public synchronized int size() {
+        return buffered + source.size();
+    }
+
+
+    /*
+        Returns true if nothing is queued here, no Crawler is processing a link
+        from here and the wrapped frontier is exhausted. Links only move from
+        the wrapped frontier into the host queues while holding this object's
+        lock, so the checks cannot miss a link in between.
+    */
+    @Override
+    public synchronized boolean isExhausted() {
+        return busy == 0 && buffered == 0 && source.isExhausted();
+    }
+
+
+    /*
+        Hands over the links in the host queues and then the links in the
+        wrapped frontier.
+    */
+    @Override
+    public synchronized void snapshot(Consumer<String> consumer) {
+        for(HostQueue queue : hosts.values()) {
+            for(String link : queue.links) consumer.accept(link);
+        }
+        source.snapshot(consumer);
+    }
+
+
+    /**
+     * Sets the smallest delay between two requests to a host, for example from
+     * the host's robots.txt crawl delay. The host's rate will not be raised
+     * above the default rate.
+     *
+     * @param host          The host.
+     * @param delayMillis   The smallest delay between two requests.
+     */
+    public synchronized void setHostDelay(String host, long delayMillis) {
+        if(delayMillis <= 0) return;
+
+        HostQueue queue = queueFor(host.toLowerCase(Locale.ENGLISH));
+        queue.rate = Math.min(requestsPerSecond, 1000.0 / delayMillis);
+        queue.capacity = 1;
+        queue.tokens = Math.min(queue.tokens, 1);
+        queue.ownDelay = true;
+    }
+
+
+    /**
+     * Returns the time in milliseconds until the next host is ready, or -1 if
+     * no host has links queued.
+     *
+     * @return  The time until the next host is ready, or -1.
+     */
+    public synchronized long millisUntilReady() {
+        HostQueue next = schedule.peek();
+        return next == null ? -1 : Math.max(0, next.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+
+    /**
+     * Takes a link from a host that is ready and schedules the host again if it
+     * has more links.
+     *
+     * @return  The link, or null if no host is ready.
+     */
+    private String takeReady() {
+        HostQueue queue = schedule.poll();
+        if(queue == null) {
+            return null;
+        }
+
+        String link = queue.links.pollFirst();
+        buffered--;
+        queue.take(System.nanoTime());
+        if(queue == blockedOn) {
+            blockedOn = null;
+        }
+
+        if(queue.links.isEmpty()) {
+            queue.scheduled = false;
+        } else {
+            schedule.add(queue);
+        }
+        return link;
+    }
+
+
+    /**
+     * Returns true if links may be taken from the wrapped frontier: the last
+     * refill did not stop at a full host queue, or links have been added
+     * since it started.
+     *
+     * @return  True if a refill may move links.
+     */
+    private boolean canRefill() {
+        return blockedOn == null || offers.get() != offersAtRefill;
+    }
+
+
+    /**
+     * Moves links from the wrapped frontier into the host queues. Stops at
+     * the first link for a host whose queue is full and gives that link
+     * back, so the frontier's order is kept and the same links are not
+     * taken and given back again on every poll.
+     *
+     * @param worker    The worker asking for links.
+     * @return          The amount of links moved.
+     */
+    private int refill(int worker) {
+        int moved = 0;
+        blockedOn = null;
+        offersAtRefill = offers.get();
+
+        while(moved < REFILL_BATCH && buffered < MAX_BUFFERED) {
+            String link = source.poll(worker);
+            if(link == null) {
+                break;
+            }
+
+            try {
+                HostQueue queue = queueFor(hostOf(link));
+                if(queue.links.size() >= maxPerHost) {
+                    source.offer(worker, link);
+                    blockedOn = queue;
+                    break;
+                }
+
+                queue.links.addLast(link);
+                buffered++;
+                moved++;
+
+                if(!queue.scheduled) {
+                    queue.scheduled = true;
+                    schedule.add(queue);
+                }
+            } finally {
+                source.complete(worker);
+            }
+        }
+        return moved;
+    }
+
+
+    /**
+     * Forgets the host queues that are empty, have no delay of their own and
+     * have full buckets, at most once every SWEEP_NANOS. A forgotten host
+     * gets a new queue with a full bucket, which is the same as the one it
+     * had, so forgetting it does not let it receive requests any sooner.
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        if(now - lastSweep < SWEEP_NANOS) {
+            return;
+        }
+        lastSweep = now;
+
+        Iterator<HostQueue> it = hosts.values().iterator();
+        while(it.hasNext()) {
+            HostQueue queue = it.next();
+            if(queue.isIdle(now) && queue != blockedOn) it.remove();
+        }
+    }
+
+
+    /**
+     * Returns the queue for a host, creating it if needed.
+     *
+     * @param host  The lower case host.
+     * @return      The host's queue.
+     */
+    private HostQueue queueFor(String host) {
+        HostQueue queue = hosts.get(host);
+        if(queue == null) {
+            queue = new HostQueue(host, requestsPerSecond, burst);
+            hosts.put(host, queue);
+        }
+        return queue;
+    }
+
+
+    /**
+     * Returns the lower case host of a link, or an empty string if the link
+     * has no host.
+     *
+     * @param link  The link.
+     * @return      The host of the link.
+     */
+    public static String hostOf(String link) {
+        int start = link.indexOf("://");
+        if(start == -1) {
+            return "";
+        }
+        start += 3;
+
+        int end = start;
+        while(end < link.length()) {
+            char c = link.charAt(end);
+            if(c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+
+        String authority = link.substring(start, end);
+        int at = authority.lastIndexOf('@');
+        if(at != -1) authority = authority.substring(at + 1);
+
+        int colon = authority.lastIndexOf(':');
+        if(colon != -1 && authority.indexOf(']') < colon) authority = authority.substring(0, colon);
+
+        return authority.toLowerCase(Locale.ENGLISH);
+    }
+
+
+    /**
+     * The links waiting for one host and the host's token bucket.
+     */
+    private static class HostQueue implements Delayed {
+
+
+        /** The host. */
+        final String host;
+
+
+        /** The links waiting for this host. */
+        final ArrayDeque<String> links = new ArrayDeque<>();
+
+
+        /** The amount of requests per second allowed. */
+        double rate;
+
+
+        /** The most tokens the bucket holds. */
+        double capacity;
+
+
+        /** The tokens in the bucket. */
+        double tokens;
+
+
+        /** When the tokens were last counted, in nanoseconds. */
+        long lastRefill;
+
+
+        /** When this host can receive its next request, in nanoseconds. */
+        long readyAt;
+
+
+        /** True while this host is in the schedule. */
+        boolean scheduled;
+
+
+        /** True if the host has a delay of its own, so it is never forgotten. */
+        boolean ownDelay;
+
+
+        /**
+         * Creates a new host queue with a full bucket.
+         *
+         * @param host      The host.
+         * @param rate      The amount of requests per second allowed.
+         * @param capacity  The most tokens the bucket holds.
+         */
+        HostQueue(String host, double rate, double capacity) {
+            this.host = host;
+            this.rate = rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+            this.readyAt = lastRefill;
+        }
+
+
+        /**
+         * Uses a token for a request and works out when the next token will
+         * be available.
+         *
+         * @param now   The current time in nanoseconds.
+         */
+        void take(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+            tokens -= 1;
+
+            readyAt = tokens >= 1 ? now : now + (long) ((1 - tokens) / rate * 1e9);
+        }
+
+
+        /**
+         * Returns true if the queue can be forgotten: it has no links, no
+         * delay of its own, and its bucket has filled up again.
+         *
+         * @param now   The current time in nanoseconds.
+         * @return      True if the queue can be forgotten.
+         */
+        boolean isIdle(long now) {
+            return links.isEmpty() && !scheduled && !ownDelay
+                   && tokens + (now - lastRefill) * rate / 1e9 >= capacity;
+        }
+
+
+        /*
+            Returns the time left until this host is ready.
+        */
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+
+        /*
+            Orders host queues by when they are ready.
+        */
+        @Override
+        public int compareTo(Delayed other) {
+            long diff = readyAt - ((HostQueue) other).readyAt;
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package web.crawler.frontier;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+/**
+ * The PriorityFrontier hands out the link with the highest priority first,
+ * for focused crawls where some links are much more likely than others to
+ * lead to pages with the search queries. Links with the same priority are
+ * handed out in the order they were added.
+ *
+ * Priorities are small integers, so the links are kept in one queue for each
+ * priority instead of a heap, and adding or taking a link does not depend on
+ * how many links are waiting. The frontier also keeps the depth of each link,
+ * which is handed back through depthOf once the link has been taken, so the
+ * Crawler can work out the depth of the links it finds on the page.
+ *
+ * Links added without a priority, such as links read back from a checkpoint
+ * or from disk, get priority 0 and depth 0, unless they were taken from this
+ * frontier a short time ago, in which case they keep what they had.
+ *
+ * @author Jordan Hartwick
+ * July 2, 2016
+ */
+public class PriorityFrontier implements Frontier {
+
+
+    /**
+     * The highest priority. Starting links are added with it.
+     */
+    public static final int MAX_PRIORITY = 255;
+
+
+    /**
+     * The most links remembered after being taken, so their depth can be
+     * looked up and they keep their priority if they are given back.
+     */
+    private static final int MAX_TAKEN = 1 << 16;
+
+
+    /**
+     * The links waiting, one queue for each priority.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Queued>[] queues = new ArrayDeque[MAX_PRIORITY + 1];
+
+
+    /**
+     * The links taken a short time ago, oldest first.
+     */
+    private final LinkedHashMap<String, Queued> taken = new LinkedHashMap<String, Queued>() {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Queued> eldest) {
+            return size() > MAX_TAKEN;
+        }
+    };
+
+
+    /**
+     * The highest priority that may have links waiting.
+     */
+    private int top = -1;
+
+
+    /**
+     * The amount of links waiting.
+     */
+    private int size;
+
+
+    /**
+     * The amount of Crawlers processing a link from this frontier.
+     */
+    private int busy;
+
+
+    /**
+     * Creates a new instance of the PriorityFrontier class.
+     */
+    public PriorityFrontier() {
+        for(int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+
+    /*
+        Adds the link with priority 0, or with its old priority and depth if
+        it was taken a short time ago and is being given back.
+    */
+    @Override
+    public synchronized void offer(int worker, String link) {
+        Queued entry = taken.remove(link);
+        add(entry != null ? entry : new Queued(link, 0, 0));
+    }
+
+
+    /*
+        Adds the link to the queue of its priority.
+    */
+    @Override
+    public synchronized void offer(int worker, String link, int priority, int depth) {
+        add(new Queued(link, Math.max(0, Math.min(MAX_PRIORITY, priority)), depth));
+    }
+
+
+    /*
+        Takes the oldest link with the highest priority.
+    */
+    @Override
+    public synchronized String poll(int worker) {
+        while(top >= 0 && queues[top].isEmpty()) {
+            top--;
+        }
+        if(top < 0) {
+            return null;
+        }
+
+        Queued entry = queues[top].pollFirst();
+        size--;
+        busy++;
+        taken.put(entry.link, entry);
+        return entry.link;
+    }
+
+
+    /*
+        Marks the worker as no longer processing a link.
+    */
+    @Override
+    public synchronized void complete(int worker) {
+        busy--;
+    }
+
+
+    /*
+        Returns the depth the link was added with, and forgets the link.
+    */
+    @Override
+    public synchronized int depthOf(String link) {
+        Queued entry = taken.remove(link);
+        return entry == null ? 0 : entry.depth;
+    }
+
+
+    /*
+        Returns the amount of links waiting.
+    */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /*
+        Returns true if no links are waiting and no Crawler is processing one.
+    */
+    @Override
+    public synchronized boolean isExhausted() {
+        return size == 0 && busy == 0;
+    }
+
+
+    /*
+        Hands over the waiting links, highest priority first.
+    */
+    @Override
+    public synchronized void snapshot(Consumer<String> consumer) {
+        for(int i = MAX_PRIORITY; i >= 0; i--) {
+            for(Queued entry : queues[i]) consumer.accept(entry.link);
+        }
+    }
+
+
+    /**
+     * Adds an entry to the queue of its priority.
+     *
+     * @param entry     The entry.
+     */
+    private void add(Queued entry) {
+        queues[entry.priority].addLast(entry);
+        size++;
+        if(entry.priority > top) top = entry.priority;
+    }
+
+
+    /**
+     * A link with its priority and depth.
+     */
+    private static class Queued {
+
+
+        /** The link. */
+        final String link;
+
+
+        /** The link's priority. */
+        final int priority;
+
+
+        /** The link's depth. */
+        final int depth;
+
+
+        /**
+         * Creates a new instance of the Queued class.
+         *
+         * @param link      The link.
+         * @param priority  The link's priority.
+         * @param depth     The link's depth.
+         */
+        Queued(String link, int priority, int depth) {
+            this.link = link;
+            this.priority = priority;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package web.crawler.frontier;
+
+import errorreport.ErrorReport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+
+/**
+ * The SpillingFrontier keeps the number of links in memory under a limit.
+ * Links go to the wrapped frontier while it has room. Once it is full they are
+ * written to segment files on disk. When the wrapped frontier runs low, links
+ * are read back from the oldest segment in batches. A crawl of any size then
+ * holds at most the limit in memory plus one batch, and the rest of the
+ * frontier is on disk.
+ *
+ * Each segment file holds up to LINKS_PER_SEGMENT links, written one after
+ * the other as a length followed by UTF-8 bytes. A segment is deleted once
+ * all of its links have been read back.
+ *
+ * @author Jordan Hartwick
+ * June 24, 2016
+ */
+public class SpillingFrontier implements Frontier {
+
+
+    /**
+     * The most links written to one segment file.
+     */
+    private static final int LINKS_PER_SEGMENT = 1 << 16;
+
+
+    /**
+     * The most links read back from disk at once.
+     */
+    private static final int REFILL_BATCH = 4096;
+
+
+    /**
+     * The size of the buffers of the segment files.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+    /**
+     * The frontier that holds the links in memory.
+     */
+    private final Frontier source;
+
+
+    /**
+     * The most links kept in the wrapped frontier before links are spilled.
+     */
+    private final int maxInMemory;
+
+
+    /**
+     * Links are read back from disk when the wrapped frontier has fewer than
+     * this many links.
+     */
+    private final int refillBelow;
+
+
+    /**
+     * The directory holding the segment files.
+     */
+    private final File dir;
+
+
+    /**
+     * The amount of links on disk that have not been read back.
+     */
+    private final AtomicLong spilled = new AtomicLong();
+
+
+    /**
+     * Changes every time links are written or read back, so isExhausted can
+     * tell whether spilled changed while it was looking.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+
+    /**
+     * Guards the segment files.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+
+    /**
+     * The full segments waiting to be read, oldest first.
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+
+    /**
+     * The segment being written, or null if none is open.
+     */
+    private Segment writeSegment;
+
+
+    /**
+     * Writes the segment being written.
+     */
+    private DataOutputStream writer;
+
+
+    /**
+     * The segment being read, or null if none is open.
+     */
+    private Segment readSegment;
+
+
+    /**
+     * Reads the segment being read.
+     */
+    private DataInputStream reader;
+
+
+    /**
+     * The amount of links already read back from the segment being read.
+     */
+    private int read;
+
+
+    /**
+     * The number of the next segment file.
+     */
+    private int nextSegment;
+
+
+    /**
+     * Creates a new instance of the SpillingFrontier class.
+     *
+     * @param source        The frontier that holds the links in memory.
+     * @param maxInMemory   The most links to keep in memory.
+     * @param dir           The directory for the segment files, or null for a
+     *                      new directory in the system's temporary directory.
+     * @throws IOException  If the directory could not be created.
+     */
+    public SpillingFrontier(Frontier source, int maxInMemory, File dir) throws IOException {
+        if(maxInMemory < 1) {
+            throw new IllegalArgumentException("maxInMemory must be at least 1");
+        }
+
+        this.source = source;
+        this.maxInMemory = maxInMemory;
+        this.refillBelow = Math.max(1, maxInMemory / 2);
+
+        if(dir == null) {
+            this.dir = Files.createTempDirectory("web-crawler-frontier").toFile();
+        } else {
+            if(!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            this.dir = dir;
+        }
+    }
+
+
+    /*
+        Adds the link to the wrapped frontier if it has room, or writes it to
+        disk if not. If the link cannot be written it is kept in memory.
+    */
+    @Override
+    public void offer(int worker, String link) {
+        if(source.size() < maxInMemory) {
+            source.offer(worker, link);
+            return;
+        }
+        spillOrKeep(worker, link);
+    }
+
+
+    /*
+        Adds the link to the wrapped frontier with its priority and depth if
+        there is room. A link written to disk loses them.
+    */
+    @Override
+    public void offer(int worker, String link, int priority, int depth) {
+        if(source.size() < maxInMemory) {
+            source.offer(worker, link, priority, depth);
+            return;
+        }
+        spillOrKeep(worker, link);
+    }
+
+
+    /**
+     * Writes a link to disk, or adds it to the wrapped frontier if it cannot
+     * be written.
+     *
+     * @param worker    The index of the Crawler that found the link.
+     * @param link      The link.
+     */
+    private void spillOrKeep(int worker, String link) {
+        lock.lock();
+        try {
+            spill(link);
+            spilled.incrementAndGet();
+            version.incrementAndGet();
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+            source.offer(worker, link);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+        Returns the depth kept by the wrapped frontier.
+    */
+    @Override
+    public int depthOf(String link) {
+        return source.depthOf(link);
+    }
+
+
+    /*
+        Takes a link from the wrapped frontier. If it is empty, a batch is read
+        back from disk first. If it is only running low, a batch is read back
+        unless another crawler is already doing so.
+    */
+    @Override
+    public String poll(int worker) {
+        if(spilled.get() > 0) {
+            if(source.size() == 0) {
+                lock.lock();
+                try {
+                    refill(worker);
+                } finally {
+                    lock.unlock();
+                }
+            } else if(source.size() < refillBelow && lock.tryLock()) {
+                try {
+                    refill(worker);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return source.poll(worker);
+    }
+
+
+    /*
+        Passes the call on to the wrapped frontier.
+    */
+    @Override
+    public void complete(int worker) {
+        source.complete(worker);
+    }
+
+
+    /*
+        Returns the links in memory plus the links on disk.
+    */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, source.size() + spilled.get());
+    }
+
+
+    /*
+        Exhausted when nothing is on disk and the wrapped frontier is
+        exhausted. Links can only be spilled by a crawler that is busy, so the
+        wrapped frontier is not exhausted while one is being spilled, and the
+        version catches a spill that finished while this was looking.
+    */
+    @Override
+    public boolean isExhausted() {
+        long before = version.get();
+        return spilled.get() == 0 && source.isExhausted() && version.get() == before;
+    }
+
+
+    /*
+        Gives the links in memory and then every link on disk that has not
+        been read back.
+    */
+    @Override
+    public void snapshot(Consumer<String> consumer) {
+        source.snapshot(consumer);
+
+        lock.lock();
+        try {
+            if(writer != null) writer.flush();
+
+            if(readSegment != null) readLinks(readSegment.file, read, consumer);
+            for(Segment segment : segments) readLinks(segment.file, 0, consumer);
+            if(writeSegment != null) readLinks(writeSegment.file, 0, consumer);
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns the amount of links on disk.
+     *
+     * @return  The amount of links on disk.
+     */
+    public long spilledCount() {
+        return spilled.get();
+    }
+
+
+    /**
+     * Closes the segment files and deletes them and the directory.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closeQuietly(writer);
+            closeQuietly(reader);
+            writer = null;
+            reader = null;
+
+            List<Segment> files = new ArrayList<>(segments);
+            if(readSegment != null) files.add(readSegment);
+            if(writeSegment != null) files.add(writeSegment);
+            for(Segment segment : files) segment.file.delete();
+
+            segments.clear();
+            readSegment = null;
+            writeSegment = null;
+            spilled.set(0);
+            dir.delete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Writes a link to the segment being written, starting a new segment if
+     * there is none or the current one is full. The lock must be held.
+     *
+     * @param link  The link.
+     * @throws IOException  If the link could not be written.
+     */
+    private void spill(String link) throws IOException {
+        if(writer == null || writeSegment.count == LINKS_PER_SEGMENT) {
+            finishWriteSegment();
+            writeSegment = new Segment(new File(dir, String.format("frontier-%08d.links", nextSegment++)));
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(writeSegment.file), BUFFER_SIZE));
+        }
+
+        byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(bytes.length);
+        writer.write(bytes);
+        writeSegment.count++;
+    }
+
+
+    /**
+     * Closes the segment being written and puts it in line to be read. The
+     * lock must be held.
+     *
+     * @throws IOException  If the segment could not be closed.
+     */
+    private void finishWriteSegment() throws IOException {
+        if(writer == null) return;
+
+        writer.close();
+        writer = null;
+        segments.addLast(writeSegment);
+        writeSegment = null;
+    }
+
+
+    /**
+     * Reads up to REFILL_BATCH links back from disk into the wrapped
+     * frontier. If only the segment being written has links, it is closed so
+     * it can be read. If a segment cannot be read, the rest of its links are
+     * dropped so the crawl can still finish. The lock must be held.
+     *
+     * @param worker    The crawler the links are given to.
+     */
+    private void refill(int worker) {
+        int removed = 0;
+
+        try {
+            for(int moved = 0; moved < REFILL_BATCH && spilled.get() - removed > 0; ) {
+                if(reader == null) {
+                    if(segments.isEmpty()) finishWriteSegment();
+                    if(segments.isEmpty()) break;
+
+                    readSegment = segments.pollFirst();
+                    read = 0;
+                    reader = new DataInputStream(new BufferedInputStream(new FileInputStream(readSegment.file), BUFFER_SIZE));
+                }
+
+                if(read == readSegment.count) {
+                    finishReadSegment();
+                    continue;
+                }
+
+                String link = readLink(reader);
+                read++;
+                removed++;
+                source.offer(worker, link);
+                moved++;
+            }
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+            if(readSegment != null) {
+                removed += readSegment.count - read;
+                finishReadSegment();
+            }
+        } finally {
+            spilled.addAndGet(-removed);
+            version.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Closes and deletes the segment being read. The lock must be held.
+     */
+    private void finishReadSegment() {
+        closeQuietly(reader);
+        reader = null;
+        readSegment.file.delete();
+        readSegment = null;
+    }
+
+
+    /**
+     * Reads the links of a segment, skipping the first ones.
+     *
+     * @param segment   The segment.
+     * @param skip      The amount of links to skip.
+     * @param consumer  Receives the links.
+     * @throws IOException  If the segment could not be read.
+     */
+    private static void readLinks(File segment, int skip, Consumer<String> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), BUFFER_SIZE))) {
+            for(int index = 0; ; index++) {
+                String link;
+                try {
+                    link = readLink(in);
+                } catch (EOFException err) {
+                    return;
+                }
+                if(index >= skip) consumer.accept(link);
+            }
+        }
+    }
+
+
+    /**
+     * Reads one link from a segment.
+     *
+     * @param in    The segment.
+     * @return      The link.
+     * @throws IOException  If the segment could not be read.
+     */
+    private static String readLink(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Closes a stream, reporting any error.
+     *
+     * @param c     The stream, or null.
+     */
+    private static void closeQuietly(Closeable c) {
+        if(c == null) return;
+        try {
+            c.close();
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+        }
+    }
+
+
+    /**
+     * A segment file and the amount of links written to it.
+     */
+    private static class Segment {
+
+
+        /** The file. */
+        final File file;
+
+
+        /** The amount of links written to the file. */
+        int count;
+
+
+        /**
+         * Creates a new instance of the Segment class.
+         *
+         * @param file  The file.
+         */
+        Segment(File file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package web.crawler.frontier;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/**
+ * The UrlCanonicalizer rewrites links so that links to the same page are
+ * spelled the same way, and drops links that cannot be crawled. Without it the
+ * frontier fills with copies of a page that differ only in a fragment, the
+ * case of the host, a default port or the order of the query parameters.
+ *
+ * A canonical link:
+ *   - uses http or https, in lower case
+ *   - has its host in lower case, without a trailing dot
+ *   - has no port if the port is the default for the scheme
+ *   - has a path of at least "/", with "." and ".." segments removed
+ *   - has upper case hex digits in percent escapes
+ *   - has no fragment
+ *
+ * A canonical link is still the page the link pointed to, so it is what gets
+ * fetched. Some sites care about the order of the query parameters, so they
+ * are only sorted, and empty parameters removed, in the key that decides
+ * whether two links are the same page.
+ *
+ * @author Jordan Hartwick
+ * June 23, 2016
+ */
+public class UrlCanonicalizer {
+
+
+    /** Private constructor so the class cannot be instantiated. */
+    private UrlCanonicalizer(){}
+
+
+    /**
+     * Returns the canonical form of a link.
+     *
+     * @param link  The link, which should be absolute.
+     * @return      The canonical link, or null if the link is empty, is not
+     *              an http or https link, or has no host.
+     */
+    public static String canonicalize(String link) {
+        if(link == null) return null;
+
+        String s = link.trim();
+        int schemeEnd = s.indexOf("://");
+        if(schemeEnd <= 0) return null;
+
+        String scheme = s.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+        String defaultPort;
+        if(scheme.equals("http")) {
+            defaultPort = "80";
+        } else if(scheme.equals("https")) {
+            defaultPort = "443";
+        } else {
+            return null;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while(authorityEnd < s.length()) {
+            char c = s.charAt(authorityEnd);
+            if(c == '/' || c == '?' || c == '#') break;
+            authorityEnd++;
+        }
+
+        String authority = s.substring(authorityStart, authorityEnd);
+        int at = authority.lastIndexOf('@');
+        String userInfo = authority.substring(0, at + 1);
+        String hostAndPort = authority.substring(at + 1);
+
+        int portStart = hostAndPort.lastIndexOf(':');
+        if(portStart != -1 && hostAndPort.indexOf(']', portStart) != -1) {
+            portStart = -1; // The colon is inside an IPv6 address.
+        }
+
+        String host = (portStart == -1 ? hostAndPort : hostAndPort.substring(0, portStart))
+                        .toLowerCase(Locale.ENGLISH);
+        if(host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        if(host.isEmpty()) return null;
+
+        String port = portStart == -1 ? "" : hostAndPort.substring(portStart + 1);
+        if(port.equals(defaultPort)) port = "";
+
+        int fragment = s.indexOf('#', authorityEnd);
+        String rest = fragment == -1 ? s.substring(authorityEnd) : s.substring(authorityEnd, fragment);
+
+        int queryStart = rest.indexOf('?');
+        String path = queryStart == -1 ? rest : rest.substring(0, queryStart);
+        String query = queryStart == -1 ? "" : rest.substring(queryStart + 1);
+
+        path = path.isEmpty() ? "/" : normalizeEscapes(removeDotSegments(path));
+        query = normalizeEscapes(query);
+
+        StringBuilder sb = new StringBuilder(s.length());
+        sb.append(scheme).append("://").append(userInfo).append(host);
+        if(!port.isEmpty()) sb.append(':').append(port);
+        sb.append(path);
+        if(!query.isEmpty()) sb.append('?').append(query);
+        return sb.toString();
+    }
+
+
+    /**
+     * Returns the key of a canonical link: the link with its query parameters
+     * sorted and empty parameters removed. Links with the same key are taken
+     * to be the same page.
+     *
+     * @param link  The link, in canonical form.
+     * @return      The key of the link.
+     */
+    public static String key(String link) {
+        int queryStart = link.indexOf('?');
+        if(queryStart == -1) return link;
+
+        String query = link.substring(queryStart + 1);
+        String sorted = sortQuery(query);
+        if(sorted == query) return link;
+        return sorted.isEmpty() ? link.substring(0, queryStart)
+                                : link.substring(0, queryStart + 1) + sorted;
+    }
+
+
+    /**
+     * Returns the fingerprint of a canonical link's key, so links to the same
+     * page have the same fingerprint.
+     *
+     * @param link  The link, in canonical form.
+     * @return      The fingerprint of the link's key.
+     * @see VisitedSet#fingerprint(String)
+     */
+    public static long fingerprint(String link) {
+        return VisitedSet.fingerprint(key(link));
+    }
+
+
+    /**
+     * Removes the "." and ".." segments from a path, as described in RFC 3986
+     * section 5.2.4.
+     *
+     * @param path  The path, starting with "/".
+     * @return      The path without dot segments.
+     */
+    static String removeDotSegments(String path) {
+        if(path.indexOf("/.") == -1) return path;
+
+        String[] segments = path.split("/", -1);
+        String[] out = new String[segments.length];
+        int n = 0;
+
+        for(int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+
+            if(segment.equals(".")) {
+                if(last) out[n++] = "";
+            } else if(segment.equals("..")) {
+                if(n > 0) n--;
+                if(last) out[n++] = "";
+            } else {
+                out[n++] = segment;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(path.length());
+        for(int i = 0; i < n; i++) {
+            sb.append('/').append(out[i]);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+
+    /**
+     * Changes the hex digits of percent escapes to upper case.
+     *
+     * @param s     The text.
+     * @return      The text with upper case escapes.
+     */
+    static String normalizeEscapes(String s) {
+        int percent = s.indexOf('%');
+        if(percent == -1) return s;
+
+        char[] chars = s.toCharArray();
+        for(int i = percent; i + 2 < chars.length; i++) {
+            if(chars[i] == '%' && isHex(chars[i + 1]) && isHex(chars[i + 2])) {
+                chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+                chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+                i += 2;
+            }
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Returns true if a character is a hex digit.
+     *
+     * @param c     The character.
+     * @return      True if the character is a hex digit.
+     */
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+
+    /**
+     * Sorts the parameters of a query and removes the empty ones.
+     *
+     * @param query     The query, without the "?".
+     * @return          The sorted query.
+     */
+    static String sortQuery(String query) {
+        if(query.isEmpty()) return query;
+
+        String[] params = query.split("&", -1);
+        int n = 0;
+        boolean sorted = true;
+        for(String param : params) {
+            if(param.isEmpty()) continue;
+            if(n > 0 && params[n - 1].compareTo(param) > 0) sorted = false;
+            params[n++] = param;
+        }
+
+        if(n == params.length && sorted) return query;
+        if(!sorted) Arrays.sort(params, 0, n);
+
+        StringBuilder sb = new StringBuilder(query.length());
+        for(int i = 0; i < n; i++) {
+            if(i > 0) sb.append('&');
+            sb.append(params[i]);
+        }
+        return sb.toString();
+    }
+}
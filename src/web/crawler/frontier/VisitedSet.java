@@ -0,0 +1,312 @@
+package web.crawler.frontier;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+
+/**
+ * The VisitedSet remembers which links have already been scanned. Instead of
+ * keeping every link as a String it keeps a 64-bit fingerprint of each link in
+ * open-addressing tables of primitive longs. The set is split into segments
+ * that each have their own lock, so Crawlers rarely wait on each other. The
+ * tables can be kept on the heap or in direct (off-heap) memory.
+ *
+ * Two different links can share a fingerprint. With 64-bit fingerprints the
+ * chance of that is negligible for the sizes this crawler works with, and the
+ * only effect would be that one page is not scanned.
+ *
+ * @author Jordan Hartwick
+ * June 4, 2016
+ */
+public class VisitedSet {
+
+
+    /**
+     * The default amount of segments. Must be a power of two.
+     */
+    private static final int DEFAULT_SEGMENTS = 64;
+
+
+    /**
+     * Marks an empty slot. A link whose fingerprint is zero is stored as
+     * EMPTY_REPLACEMENT instead.
+     */
+    private static final long EMPTY = 0L;
+
+
+    /**
+     * Stored in place of a fingerprint that happens to be zero.
+     */
+    private static final long EMPTY_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+
+    /**
+     * The largest table a segment will grow to, so a direct table's size in
+     * bytes still fits in an int.
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+
+    /**
+     * The segments of this set.
+     */
+    private final Segment[] segments;
+
+
+    /**
+     * Shifts a fingerprint so its highest bits pick a segment.
+     */
+    private final int segmentShift;
+
+
+    /**
+     * Creates a new instance of the VisitedSet class.
+     *
+     * @param expectedLinks     The amount of links the set is expected to hold.
+     *                          The set grows past this if it needs to.
+     * @param offHeap           True to keep the tables in direct memory.
+     */
+    public VisitedSet(long expectedLinks, boolean offHeap) {
+        segments = new Segment[DEFAULT_SEGMENTS];
+        segmentShift = 64 - Integer.numberOfTrailingZeros(DEFAULT_SEGMENTS);
+
+        long perSegment = Math.max(16, expectedLinks / DEFAULT_SEGMENTS);
+        for(int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacityFor(perSegment), offHeap);
+        }
+    }
+
+
+    /**
+     * Adds a link to this set if it is not in it already. The check and the
+     * add happen as one step, so when several Crawlers add the same link at
+     * the same time only one of them gets true back.
+     *
+     * @param link  The link to add.
+     * @return      True if the link was added, false if it was already in
+     *              this set.
+     */
+    public boolean add(String link) {
+        return addFingerprint(fingerprint(link));
+    }
+
+
+    /**
+     * Adds a fingerprint to this set if it is not in it already.
+     *
+     * @param fingerprint   The fingerprint to add.
+     * @return              True if the fingerprint was added, false if it was
+     *                      already in this set.
+     */
+    public boolean addFingerprint(long fingerprint) {
+        long key = fingerprint == EMPTY ? EMPTY_REPLACEMENT : fingerprint;
+        return segmentFor(key).add(key);
+    }
+
+
+    /**
+     * Returns true if a link is in this set.
+     *
+     * @param link  The link to check.
+     * @return      True if the link is in this set.
+     */
+    public boolean contains(String link) {
+        return containsFingerprint(fingerprint(link));
+    }
+
+
+    /**
+     * Returns true if a fingerprint is in this set.
+     *
+     * @param fingerprint   The fingerprint to check.
+     * @return              True if the fingerprint is in this set.
+     */
+    public boolean containsFingerprint(long fingerprint) {
+        long key = fingerprint == EMPTY ? EMPTY_REPLACEMENT : fingerprint;
+        return segmentFor(key).contains(key);
+    }
+
+
+    /**
+     * Returns the amount of links in this set.
+     *
+     * @return  The amount of links in this set.
+     */
+    public long size() {
+        long size = 0;
+        for(Segment s : segments) size += s.size();
+        return size;
+    }
+
+
+    /**
+     * Returns a 64-bit fingerprint of a link. This is FNV-1a over the link's
+     * characters followed by a final mixing step so the high and low bits are
+     * both well spread.
+     *
+     * @param link  The link.
+     * @return      The fingerprint of the link.
+     */
+    public static long fingerprint(String link) {
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < link.length(); i++) {
+            h ^= link.charAt(i);
+            h *= 0x100000001B3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    /**
+     * Returns the segment a key belongs to.
+     *
+     * @param key   The key.
+     * @return      The segment the key belongs to.
+     */
+    private Segment segmentFor(long key) {
+        return segments[(int) (key >>> segmentShift)];
+    }
+
+
+    /**
+     * Returns the table capacity (a power of two) needed to hold an amount of
+     * keys without going over the load factor.
+     *
+     * @param keys  The amount of keys.
+     * @return      The table capacity.
+     */
+    private static int capacityFor(long keys) {
+        long needed = Math.max(16, (keys * 4) / 3 + 1);
+        if(needed >= MAX_CAPACITY) return MAX_CAPACITY;
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+
+    /**
+     * One segment of the set: a linear probing table guarded by its own lock.
+     */
+    private static class Segment {
+
+
+        /** The slots of this segment. */
+        private LongBuffer table;
+
+
+        /** table.capacity() - 1, used to wrap slot indexes. */
+        private int mask;
+
+
+        /** The amount of keys in this segment. */
+        private int size;
+
+
+        /** True if the table lives in direct memory. */
+        private final boolean offHeap;
+
+
+        /**
+         * Creates a new segment.
+         *
+         * @param capacity  The initial capacity. Must be a power of two.
+         * @param offHeap   True to keep the table in direct memory.
+         */
+        Segment(int capacity, boolean offHeap) {
+            this.offHeap = offHeap;
+            this.table = allocate(capacity);
+            this.mask = capacity - 1;
+        }
+
+
+        /**
+         * Adds a key if it is not present.
+         *
+         * @param key   The key to add. Never EMPTY.
+         * @return      True if the key was added.
+         */
+        synchronized boolean add(long key) {
+            int slot = (int) key & mask;
+            long current;
+            while((current = table.get(slot)) != EMPTY) {
+                if(current == key) return false;
+                slot = (slot + 1) & mask;
+            }
+
+            table.put(slot, key);
+            if(++size > ((mask + 1) / 4) * 3 && mask + 1 < MAX_CAPACITY) grow();
+            return true;
+        }
+
+
+        /**
+         * Returns true if a key is present.
+         *
+         * @param key   The key to look for. Never EMPTY.
+         * @return      True if the key is present.
+         */
+        synchronized boolean contains(long key) {
+            int slot = (int) key & mask;
+            long current;
+            while((current = table.get(slot)) != EMPTY) {
+                if(current == key) return true;
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+
+        /**
+         * Returns the amount of keys in this segment.
+         *
+         * @return  The amount of keys in this segment.
+         */
+        synchronized int size() {
+            return size;
+        }
+
+
+        /**
+         * Doubles the table and puts every key into its new slot.
+         */
+        private void grow() {
+            LongBuffer old = table;
+            int capacity = (mask + 1) << 1;
+
+            table = allocate(capacity);
+            mask = capacity - 1;
+
+            for(int i = 0; i < old.capacity(); i++) {
+                long key = old.get(i);
+                if(key == EMPTY) continue;
+
+                int slot = (int) key & mask;
+                while(table.get(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table.put(slot, key);
+            }
+        }
+
+
+        /**
+         * Allocates an empty table.
+         *
+         * @param capacity  The amount of slots.
+         * @return          The table.
+         */
+        private LongBuffer allocate(int capacity) {
+            if(offHeap) {
+                return ByteBuffer.allocateDirect(capacity * 8)
+                                 .order(ByteOrder.nativeOrder())
+                                 .asLongBuffer();
+            }
+            return LongBuffer.allocate(capacity);
+        }
+    }
+}
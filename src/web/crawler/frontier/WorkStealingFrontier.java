@@ -0,0 +1,157 @@
+package web.crawler.frontier;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+/**
+ * The WorkStealingFrontier gives every Crawler its own lock-free deque. A
+ * Crawler adds the links it finds to the tail of its own deque and takes links
+ * from the head, so links are scanned in the order they were found. When its
+ * own deque is empty it steals from the tail of another Crawler's deque. Both
+ * adding and taking a link are constant time operations.
+ *
+ * @author Jordan Hartwick
+ * June 2, 2016
+ */
+public class WorkStealingFrontier implements Frontier {
+
+
+    /**
+     * One deque per Crawler.
+     */
+    private final ConcurrentLinkedDeque<String>[] deques;
+
+
+    /**
+     * The amount of links in all of the deques. ConcurrentLinkedDeque.size()
+     * walks the whole deque, so the count is kept separately.
+     */
+    private final AtomicInteger size;
+
+
+    /**
+     * The amount of Crawlers currently processing a link.
+     */
+    private final AtomicInteger busy;
+
+
+    /**
+     * Changes every time a link is added, handed out or completed. Used to
+     * take a consistent look at size and busy in isExhausted().
+     */
+    private final AtomicLong version;
+
+
+    /**
+     * Creates a new instance of the WorkStealingFrontier class.
+     *
+     * @param workers   The amount of Crawlers that will share this frontier.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WorkStealingFrontier(int workers) {
+        deques = new ConcurrentLinkedDeque[Math.max(1, workers)];
+        for(int i = 0; i < deques.length; i++) {
+            deques[i] = new ConcurrentLinkedDeque<>();
+        }
+
+        size    = new AtomicInteger();
+        busy    = new AtomicInteger();
+        version = new AtomicLong();
+    }
+
+
+    /*
+        Adds the link to the tail of the worker's own deque.
+    */
+    @Override
+    public void offer(int worker, String link) {
+        deques[index(worker)].offerLast(link);
+        size.incrementAndGet();
+        version.incrementAndGet();
+    }
+
+
+    /*
+        Takes a link from the head of the worker's own deque. If that deque is
+        empty, the other deques are tried in turn and a link is stolen from the
+        tail of the first one that has any.
+    */
+    @Override
+    public String poll(int worker) {
+        int own = index(worker);
+
+        // Count the worker as busy before taking a link so there is never a
+        // moment where a link is neither counted in size nor in busy.
+        busy.incrementAndGet();
+
+        String link = deques[own].pollFirst();
+        for(int i = 1; link == null && i < deques.length; i++) {
+            link = deques[(own + i) % deques.length].pollLast();
+        }
+
+        if(link == null) {
+            busy.decrementAndGet();
+            return null;
+        }
+
+        size.decrementAndGet();
+        version.incrementAndGet();
+        return link;
+    }
+
+
+    /*
+        Marks the worker as no longer processing a link.
+    */
+    @Override
+    public void complete(int worker) {
+        busy.decrementAndGet();
+        version.incrementAndGet();
+    }
+
+
+    /*
+        Returns the amount of links waiting in all of the deques.
+    */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+
+    /*
+        Returns true if no links are waiting and no worker is busy. The version
+        is checked on both sides so the two counters are read as one snapshot.
+    */
+    @Override
+    public boolean isExhausted() {
+        long before = version.get();
+        return busy.get() == 0 && size.get() == 0 && version.get() == before;
+    }
+
+
+    /*
+        Walks the deques. The deques' iterators never fail while links are
+        added or taken.
+    */
+    @Override
+    public void snapshot(Consumer<String> consumer) {
+        for(ConcurrentLinkedDeque<String> deque : deques) {
+            for(String link : deque) consumer.accept(link);
+        }
+    }
+
+
+    /**
+     * Maps a worker index onto one of the deques.
+     *
+     * @param worker    The worker index.
+     * @return          The index of the worker's deque.
+     */
+    private int index(int worker) {
+        return Math.abs(worker % deques.length);
+    }
+}
@@ -2,11 +2,11 @@ package web.crawler.gui;
 
 import errorreport.ErrorReport;
 import java.util.Arrays;
-import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JTextArea;
 import web.crawler.crawling.CrawlerManager;
+import web.crawler.metrics.CrawlMetrics;
 
 
 /**
@@ -41,23 +41,35 @@ public class Controller {
      * This ListModel will contain InformationPackages that will be added during
      * the web crawling session.
      */
-    private DefaultListModel listModel;
+    private ResultListModel listModel;
+
+
+    /**
+     * Receives the results and messages of the crawling session and passes
+     * them to the GUI.
+     */
+    private GuiCrawlListener guiListener;
 
 
     /**
      * The constructor method for the Controller class.
      *
      * @param listModel     The list model to update when crawling websites.
+     * @param guiListener   Passes the crawling session's results and messages
+     *                      to the GUI.
      */
-    public Controller(DefaultListModel listModel) {
+    public Controller(ResultListModel listModel, GuiCrawlListener guiListener) {
         this.listModel = listModel;
+        this.guiListener = guiListener;
     }
 
 
     /**
      * Displays a dialog so the user can enter their desired settings for the
      * web crawler and then starts the crawling if the user did not cancel the
-     * dialog. It also displays some output to the user.
+     * dialog. It also displays some output to the user. If the crawling
+     * session cannot be created because a setting is not valid, the reason is
+     * shown and the buttons are put back.
      *
      * @param quickInfo     The text area to clear when the crawling starts.
      * @param start         The button to disable if setup is complete and the
@@ -84,10 +96,21 @@ public class Controller {
             listModel.clear();
             MainGraphics.clearConsoleArea();
 
-            crawlerManager = new CrawlerManager((String[])data[1],
-                                                (String[])data[0],
-                                                (int)data[2],
-                                                listModel);
+            try {
+                crawlerManager = new CrawlerManager((String[])data[1],
+                                                    (String[])data[0],
+                                                    (int)data[2],
+                                                    guiListener);
+            } catch (IllegalArgumentException err) {
+                // A setting is not valid, or the checkpoint cannot be resumed.
+                JOptionPane.showMessageDialog(null,
+                                              err.getMessage(),
+                                              "Error",
+                                              0);
+                start.setEnabled(true);
+                stop.setEnabled(false);
+                return;
+            }
 
             // Start web crawling on a new thread.
             new Thread(new Runnable() {
@@ -104,7 +127,13 @@ public class Controller {
                     }
 
                     while(crawlerManager.activeCrawlers() > 0) {
-                        MainGraphics.updateConsoleArea("Active Crawlers: " + crawlerManager.activeCrawlers());
+                        CrawlMetrics metrics = crawlerManager.getMetrics();
+                        MainGraphics.updateConsoleArea(String.format("Active Crawlers: %d, Pages: %d (%.1f/s), Errors: %d, Links Waiting: %d",
+                                                                     crawlerManager.activeCrawlers(),
+                                                                     metrics.getPages(),
+                                                                     metrics.getPagesPerSecond(),
+                                                                     metrics.getErrors(),
+                                                                     metrics.getQueueDepth()));
 
                         try {
                             Thread.sleep(1000);
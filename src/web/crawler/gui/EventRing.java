@@ -0,0 +1,112 @@
+package web.crawler.gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * The EventRing is a bounded, lock-free queue that many threads can add to and
+ * one thread takes from. Each slot has a sequence number that tells adders
+ * when the slot is free and the taker when it is filled, so neither side ever
+ * waits on a lock.
+ *
+ * @param <T>   The type of the events.
+ *
+ * @author Jordan Hartwick
+ * June 18, 2016
+ */
+class EventRing<T> {
+
+
+    /**
+     * The slots of the ring.
+     */
+    private final AtomicReferenceArray<T> slots;
+
+
+    /**
+     * The sequence number of each slot.
+     */
+    private final AtomicLongArray sequences;
+
+
+    /**
+     * slots.length() - 1, used to wrap positions.
+     */
+    private final int mask;
+
+
+    /**
+     * The position the next event will be added at.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+
+    /**
+     * The position the next event will be taken from. Only the taking thread
+     * uses it.
+     */
+    private long head;
+
+
+    /**
+     * Creates a new ring.
+     *
+     * @param capacity  The amount of events the ring holds. Rounded up to a
+     *                  power of two.
+     */
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+
+        for(int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+
+    /**
+     * Adds an event if there is room.
+     *
+     * @param event     The event.
+     * @return          True if the event was added, false if the ring is full.
+     */
+    boolean offer(T event) {
+        while(true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    slots.set(slot, event);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if(difference < 0) {
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Takes the oldest event. Must only be called by one thread.
+     *
+     * @return  The oldest event, or null if the ring is empty.
+     */
+    T poll() {
+        int slot = (int) head & mask;
+        if(sequences.get(slot) != head + 1) {
+            return null;
+        }
+
+        T event = slots.get(slot);
+        slots.set(slot, null);
+        sequences.set(slot, head + mask + 1);
+        head++;
+        return event;
+    }
+}
@@ -0,0 +1,228 @@
+package web.crawler.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * The GuiCrawlListener shows the results of a crawling session in the
+ * InformationPackage list and the progress messages in the console area.
+ *
+ * The crawler threads never touch the Swing components. Results and messages
+ * are put in lock-free rings, and a Swing Timer takes them out on the Event
+ * Dispatch Thread a fixed amount of times per second, adding all of the
+ * results and appending all of the messages that arrived since the last time
+ * in one go. The console only keeps its most recent text.
+ *
+ * Results are never dropped; a crawler waits if the result ring is full.
+ * Messages are dropped if the message ring is full, and the console says how
+ * many were dropped.
+ *
+ * @see web.crawler.crawling.CrawlListener
+ * @see web.crawler.gui.MainGraphics
+ *
+ * @author Jordan Hartwick
+ * June 16, 2016
+ */
+public class GuiCrawlListener implements CrawlListener {
+
+
+    /**
+     * The time between two updates of the GUI, about 30 updates per second.
+     */
+    private static final int FRAME_MILLIS = 33;
+
+
+    /**
+     * The amount of results the result ring holds.
+     */
+    private static final int RESULT_CAPACITY = 1 << 14;
+
+
+    /**
+     * The amount of messages the message ring holds.
+     */
+    private static final int MESSAGE_CAPACITY = 1 << 14;
+
+
+    /**
+     * The most chars the console area keeps. Older text is removed.
+     */
+    private static final int MAX_CONSOLE_CHARS = 256 * 1024;
+
+
+    /**
+     * Put in the message ring to clear the console area in order with the
+     * messages around it.
+     */
+    private static final String CLEAR = new String("clear");
+
+
+    /**
+     * The list model to add InformationPackages to.
+     */
+    private ResultListModel listModel;
+
+
+    /**
+     * The console area to append messages to.
+     */
+    private JTextArea consoleArea;
+
+
+    /**
+     * Results waiting to be added to the list model.
+     */
+    private final EventRing<InformationPackage> results = new EventRing<>(RESULT_CAPACITY);
+
+
+    /**
+     * Messages waiting to be appended to the console area.
+     */
+    private final EventRing<String> messages = new EventRing<>(MESSAGE_CAPACITY);
+
+
+    /**
+     * The amount of messages dropped since the last update.
+     */
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+
+    /**
+     * Reused to hand the results of one update to the list model.
+     */
+    private final InformationPackage[] pending = new InformationPackage[RESULT_CAPACITY];
+
+
+    /**
+     * Reused to join the messages of one update.
+     */
+    private final StringBuilder batch = new StringBuilder();
+
+
+    /**
+     * Creates a new instance of the GuiCrawlListener class and starts the
+     * timer that updates the GUI.
+     *
+     * @param listModel     The list model to add InformationPackages to.
+     * @param consoleArea   The console area to append messages to.
+     */
+    public GuiCrawlListener(ResultListModel listModel, JTextArea consoleArea) {
+        this.listModel = listModel;
+        this.consoleArea = consoleArea;
+
+        Timer timer = new Timer(FRAME_MILLIS, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+        timer.setCoalesce(true);
+        timer.start();
+    }
+
+
+    /*
+        Queues the InformationPackage for the list model, waiting for room if
+        the ring is full.
+    */
+    @Override
+    public void resultFound(InformationPackage infoPackage) {
+        while(!results.offer(infoPackage)) {
+            LockSupport.parkNanos(FRAME_MILLIS * 1000000L);
+        }
+    }
+
+
+    /*
+        Queues the message for the console area, or drops it if the ring is
+        full.
+    */
+    @Override
+    public void message(String text) {
+        if(!messages.offer(text)) {
+            droppedMessages.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Clears the console area after the messages queued before this call have
+     * been appended.
+     */
+    public void clearConsole() {
+        while(!messages.offer(CLEAR)) {
+            LockSupport.parkNanos(FRAME_MILLIS * 1000000L);
+        }
+    }
+
+
+    /**
+     * Adds the queued results to the list model and appends the queued
+     * messages to the console area. Runs on the Event Dispatch Thread.
+     */
+    private void flush() {
+        int count = 0;
+        InformationPackage infoPackage;
+        while(count < pending.length && (infoPackage = results.poll()) != null) {
+            pending[count++] = infoPackage;
+        }
+        listModel.addElements(pending, count);
+        Arrays.fill(pending, 0, count, null);
+
+        batch.setLength(0);
+        String text;
+        while((text = messages.poll()) != null) {
+            if(text == CLEAR) {
+                consoleArea.setText(null);
+                batch.setLength(0);
+            } else {
+                batch.append(text).append('\n');
+            }
+        }
+
+        long dropped = droppedMessages.getAndSet(0);
+        if(dropped > 0) {
+            batch.append("(").append(dropped).append(" messages not shown)\n");
+        }
+
+        if(batch.length() > 0) {
+            if(batch.length() > MAX_CONSOLE_CHARS) {
+                batch.delete(0, batch.length() - MAX_CONSOLE_CHARS);
+            }
+            consoleArea.append(batch.toString());
+            trimConsole();
+        }
+    }
+
+
+    /**
+     * Removes the oldest lines of the console area once it holds more than
+     * MAX_CONSOLE_CHARS.
+     */
+    private void trimConsole() {
+        Document doc = consoleArea.getDocument();
+        int excess = doc.getLength() - MAX_CONSOLE_CHARS;
+        if(excess <= 0) {
+            return;
+        }
+
+        try {
+            String text = doc.getText(excess, Math.min(doc.getLength() - excess, 1024));
+            int newline = text.indexOf('\n');
+            doc.remove(0, newline == -1 ? excess : excess + newline + 1);
+        } catch (BadLocationException err) {
+            consoleArea.setText(null);
+        }
+    }
+}
@@ -9,7 +9,6 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import javax.swing.AbstractAction;
-import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JList;
@@ -24,6 +23,7 @@ import javax.swing.JToolBar;
 import javax.swing.ListSelectionModel;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
+import web.crawler.crawling.CrawlerSettings;
 import web.crawler.infoexport.InfoExporter;
 
 
@@ -104,9 +104,17 @@ public class MainGraphics {
 
 
     /**
-     * The ListModel to add an InformationPackage to.
+     * The ListModel to add an InformationPackage to. The results are kept in
+     * columns rather than as InformationPackages.
      */
-    private DefaultListModel listModel;
+    private ResultListModel listModel;
+
+
+    /**
+     * Passes results and console messages to the GUI on the Event Dispatch
+     * Thread.
+     */
+    private static GuiCrawlListener guiListener;
 
 
     /**
@@ -147,7 +155,8 @@ public class MainGraphics {
         createQuickInfoAreaAndList();
         addComponents();
 
-        controller = new Controller(listModel);
+        guiListener = new GuiCrawlListener(listModel, consoleArea);
+        controller = new Controller(listModel, guiListener);
 
         windowFrame.setContentPane(windowPanel);
         windowFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -242,7 +251,18 @@ public class MainGraphics {
     private void createQuickInfoAreaAndList() {
         quickInfo = new JTextArea(5,15);
 
-        listModel = new DefaultListModel();
+        // A bad setting is reported again when a crawl is started, so the
+        // window still opens, with the results kept on the heap.
+        boolean offHeap = false;
+        try {
+            offHeap = CrawlerSettings.fromProperties(System.getProperties()).isResultsOffHeap();
+        } catch (IllegalArgumentException err) {
+            JOptionPane.showMessageDialog(null,
+                                          err.getMessage(),
+                                          "Error",
+                                          0);
+        }
+        listModel = new ResultListModel(offHeap);
 
         infoPackagesList = new JList(listModel);
         infoPackagesList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -297,19 +317,22 @@ public class MainGraphics {
 
     /**
      * Appends a message to the end of the console text area. The console text
-     * area is located at the bottom of the main application window.
+     * area is located at the bottom of the main application window. Can be
+     * called from any thread; the message is appended on the Event Dispatch
+     * Thread with the next batch.
      *
      * @param text  The text to append to the console text area.
      */
     public static void updateConsoleArea(String text) {
-        consoleArea.append(text+"\n");
+        guiListener.message(text);
     }
 
 
     /**
-     * Clears the console text area.
+     * Clears the console text area once the messages already sent to it have
+     * been appended. Can be called from any thread.
      */
     public static void clearConsoleArea() {
-        consoleArea.setText(null);
+        guiListener.clearConsole();
     }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package web.crawler.gui;
+
+import java.util.Arrays;
+import javax.swing.AbstractListModel;
+import web.crawler.crawling.InformationPackage;
+import web.crawler.results.ResultStore;
+
+
+/**
+ * The ResultListModel is the list model of the found sites list. The results
+ * are kept in a ResultStore instead of as InformationPackages, and
+ * getElementAt gives an InformationPackage view of a result when the list or
+ * the exporter asks for it. Since the list only asks for the rows on screen,
+ * a session with millions of results keeps only a few InformationPackages
+ * alive at a time.
+ *
+ * The store is created when the first result of a session is added, using
+ * that result's search queries. Results removed from the list stay in the
+ * store but are no longer shown.
+ *
+ * @see web.crawler.results.ResultStore
+ *
+ * @author Jordan Hartwick
+ * June 26, 2016
+ */
+public class ResultListModel extends AbstractListModel<InformationPackage> {
+
+
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+
+    /**
+     * True to keep the results in direct memory.
+     */
+    private final boolean offHeap;
+
+
+    /**
+     * The results of the session, or null if none have been added.
+     */
+    private ResultStore store;
+
+
+    /**
+     * The store row of each shown result, in list order.
+     */
+    private int[] rows = new int[1024];
+
+
+    /**
+     * The amount of shown results.
+     */
+    private int size;
+
+
+    /**
+     * Creates a new instance of the ResultListModel class.
+     *
+     * @param offHeap   True to keep the results in direct memory.
+     */
+    public ResultListModel(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+
+    /*
+        Returns the amount of shown results.
+    */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+
+    /*
+        Returns an InformationPackage view of the shown result at the index.
+    */
+    @Override
+    public InformationPackage getElementAt(int index) {
+        if(index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index + " >= " + size);
+        }
+        return store.get(rows[index]);
+    }
+
+
+    /**
+     * Returns the amount of shown results.
+     *
+     * @return  The amount of shown results.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Adds a result to the end of the list.
+     *
+     * @param infoPackage   The result.
+     */
+    public void addElement(InformationPackage infoPackage) {
+        append(infoPackage);
+        fireIntervalAdded(this, size - 1, size - 1);
+    }
+
+
+    /**
+     * Adds results to the end of the list, telling the list once for all of
+     * them.
+     *
+     * @param infoPackages  The results.
+     * @param count         The amount of results to take from the array.
+     */
+    public void addElements(InformationPackage[] infoPackages, int count) {
+        if(count == 0) return;
+
+        int first = size;
+        for(int i = 0; i < count; i++) {
+            append(infoPackages[i]);
+        }
+        fireIntervalAdded(this, first, size - 1);
+    }
+
+
+    /**
+     * Removes a result from the list.
+     *
+     * @param index The index of the result.
+     */
+    public void removeElementAt(int index) {
+        if(index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index + " >= " + size);
+        }
+
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        size--;
+        fireIntervalRemoved(this, index, index);
+    }
+
+
+    /**
+     * Removes every result and drops the store, so the next session starts
+     * with a new one.
+     */
+    public void clear() {
+        int last = size - 1;
+        store = null;
+        size = 0;
+        if(last >= 0) fireIntervalRemoved(this, 0, last);
+    }
+
+
+    /**
+     * Returns the store holding the results, for totals and sorts over the
+     * whole session.
+     *
+     * @return  The store, or null if no results have been added.
+     */
+    public ResultStore getStore() {
+        return store;
+    }
+
+
+    /**
+     * Adds a result to the store and to the shown rows without telling the
+     * list.
+     *
+     * @param infoPackage   The result.
+     */
+    private void append(InformationPackage infoPackage) {
+        if(store == null) {
+            store = new ResultStore(infoPackage.getSearchQueries(), offHeap);
+        }
+
+        if(size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        rows[size++] = store.add(infoPackage);
+    }
+}
@@ -0,0 +1,118 @@
+package web.crawler.infoexport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Reads the results in a file written by a BinaryResultWriter, gzipped or
+ * not.
+ *
+ * @see web.crawler.infoexport.BinaryResultWriter
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public class BinaryResultReader {
+
+
+    /** Private constructor so the class cannot be instantiated. */
+    private BinaryResultReader(){}
+
+
+    /**
+     * Reads every result in a file.
+     *
+     * @param file      The file.
+     * @param consumer  Receives the results in the order they were written.
+     * @return          The amount of results read.
+     * @throws IOException  If the file could not be read or is not a binary
+     *                      result file.
+     */
+    public static long read(File file, Consumer<InformationPackage> consumer) throws IOException {
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            raw.mark(2);
+            boolean gzip = raw.read() == 0x1F && raw.read() == 0x8B;
+            raw.reset();
+
+            DataInputStream in = new DataInputStream(gzip
+                                                     ? new BufferedInputStream(new GZIPInputStream(raw, 1 << 16), 1 << 16)
+                                                     : raw);
+
+            byte[] magic = new byte[BinaryResultWriter.MAGIC.length];
+            in.readFully(magic);
+            for(int i = 0; i < magic.length; i++) {
+                if(magic[i] != BinaryResultWriter.MAGIC[i]) {
+                    throw new IOException(file + " is not a binary result file");
+                }
+            }
+            int version = in.readUnsignedByte();
+            if(version != BinaryResultWriter.VERSION) {
+                throw new IOException("Unsupported binary result version " + version);
+            }
+
+            String[] queries = new String[0];
+            long records = 0;
+            int type;
+            while((type = in.read()) != -1) {
+                if(type == BinaryResultWriter.QUERIES) {
+                    queries = new String[(int) readVarint(in)];
+                    for(int i = 0; i < queries.length; i++) queries[i] = readString(in);
+                } else if(type == BinaryResultWriter.RECORD) {
+                    String link = readString(in);
+                    int[] occurrences = new int[queries.length];
+                    for(int i = 0; i < occurrences.length; i++) occurrences[i] = (int) readVarint(in);
+
+                    consumer.accept(new InformationPackage(link, queries, occurrences));
+                    records++;
+                } else {
+                    throw new IOException("Unknown block type " + type + " in " + file);
+                }
+            }
+            return records;
+        }
+    }
+
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param in    The stream.
+     * @return      The number.
+     * @throws IOException  If the stream ended or could not be read.
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        long n = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if(b == -1) throw new EOFException();
+
+            n |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return n;
+        }
+        throw new IOException("Varint too long");
+    }
+
+
+    /**
+     * Reads a string written as its UTF-8 length and bytes.
+     *
+     * @param in    The stream.
+     * @return      The string.
+     * @throws IOException  If the stream ended or could not be read.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package web.crawler.infoexport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Writes results in a compact binary format that is quick to read back in
+ * bulk. All numbers are unsigned LEB128 varints and all strings are a varint
+ * byte length followed by UTF-8 bytes.
+ *
+ *   file    = "WCRB" version(1 byte) block*
+ *   block   = 'Q' count string*           the search queries of the records
+ *                                         that follow
+ *           | 'R' link occurrence*        one result, with one occurrence
+ *                                         count for each query
+ *
+ * A 'Q' block is only written before the first record and when the queries
+ * change, so each record is just its link and its counts.
+ *
+ * @see web.crawler.infoexport.BinaryResultReader
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public class BinaryResultWriter extends ResultWriter {
+
+
+    /**
+     * The bytes a binary result file starts with.
+     */
+    static final byte[] MAGIC = {'W', 'C', 'R', 'B'};
+
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+
+    /**
+     * Starts a block of search queries.
+     */
+    static final int QUERIES = 'Q';
+
+
+    /**
+     * Starts a result.
+     */
+    static final int RECORD = 'R';
+
+
+    /**
+     * The search queries of the last 'Q' block written.
+     */
+    private String[] queries;
+
+
+    /**
+     * Creates a new instance of the BinaryResultWriter class.
+     *
+     * @param file  The file.
+     * @param gzip  True to gzip the file.
+     * @throws IOException  If the file could not be opened.
+     */
+    public BinaryResultWriter(File file, boolean gzip) throws IOException {
+        super(file, gzip);
+        for(byte b : MAGIC) put(b);
+        put(VERSION);
+    }
+
+
+    /*
+        Writes a block of queries if they changed, then the result.
+    */
+    @Override
+    protected void encode(InformationPackage infoPackage) throws IOException {
+        String[] recordQueries = infoPackage.getSearchQueries();
+        if(recordQueries != queries && !Arrays.equals(recordQueries, queries)) {
+            put(QUERIES);
+            putVarint(recordQueries.length);
+            for(String query : recordQueries) putString(query);
+            queries = recordQueries;
+        }
+
+        put(RECORD);
+        putString(infoPackage.getLink());
+        for(int n : infoPackage.getSearchQueryOccurrences()) putVarint(n);
+    }
+
+
+    /**
+     * Puts an unsigned LEB128 varint.
+     *
+     * @param n     The number, which must not be negative.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    private void putVarint(long n) throws IOException {
+        while((n & ~0x7FL) != 0) {
+            put((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        put((int) n);
+    }
+
+
+    /**
+     * Puts a string as its UTF-8 length and bytes.
+     *
+     * @param s     The string.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    private void putString(String s) throws IOException {
+        putVarint(utf8Length(s));
+        for(int i = 0; i < s.length(); i++) i = putUtf8(s, i);
+    }
+
+
+    /**
+     * Returns the length of a string in UTF-8, counting the same way as
+     * putUtf8.
+     *
+     * @param s     The string.
+     * @return      The length in bytes.
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < s.length()
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if(Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+package web.crawler.infoexport;
+
+import java.io.File;
+import java.io.IOException;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Writes results as CSV (RFC 4180). The first line is a header of "link"
+ * followed by the search queries, and each result is one line with its link
+ * and the occurrences of each query. Fields are quoted only when they need
+ * to be.
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public class CsvResultWriter extends ResultWriter {
+
+
+    /**
+     * True once the header has been written.
+     */
+    private boolean headerWritten;
+
+
+    /**
+     * Creates a new instance of the CsvResultWriter class.
+     *
+     * @param file  The file.
+     * @param gzip  True to gzip the file.
+     * @throws IOException  If the file could not be opened.
+     */
+    public CsvResultWriter(File file, boolean gzip) throws IOException {
+        super(file, gzip);
+    }
+
+
+    /*
+        Writes the header before the first result, then the result's line.
+    */
+    @Override
+    protected void encode(InformationPackage infoPackage) throws IOException {
+        String[] queries = infoPackage.getSearchQueries();
+        int[] occurrences = infoPackage.getSearchQueryOccurrences();
+
+        if(!headerWritten) {
+            putAscii("link");
+            for(String query : queries) {
+                put(',');
+                putField(query);
+            }
+            putAscii("\r\n");
+            headerWritten = true;
+        }
+
+        putField(infoPackage.getLink());
+        for(int n : occurrences) {
+            put(',');
+            putDecimal(n);
+        }
+        putAscii("\r\n");
+    }
+
+
+    /**
+     * Puts a field, quoting it if it has a comma, quote or line break.
+     *
+     * @param s     The field.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    private void putField(String s) throws IOException {
+        boolean quote = false;
+        for(int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if(quote) put('"');
+        for(int i = 0; i < s.length(); i++) {
+            if(s.charAt(i) == '"') put('"');
+            i = putUtf8(s, i);
+        }
+        if(quote) put('"');
+    }
+}
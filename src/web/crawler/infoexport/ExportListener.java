@@ -0,0 +1,89 @@
+package web.crawler.infoexport;
+
+import errorreport.ErrorReport;
+import java.io.IOException;
+import web.crawler.crawling.CrawlListener;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Writes every result to a ResultWriter as it is found, then passes it on to
+ * another CrawlListener. The results reach the disk during the crawl, so a
+ * long crawl does not have to be exported at the end.
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public class ExportListener implements CrawlListener {
+
+
+    /**
+     * The listener the results and messages are passed on to.
+     */
+    private final CrawlListener next;
+
+
+    /**
+     * Writes the results.
+     */
+    private final ResultWriter writer;
+
+
+    /**
+     * True once a write has failed, so the error is reported only once.
+     */
+    private volatile boolean failed;
+
+
+    /**
+     * Creates a new instance of the ExportListener class.
+     *
+     * @param next      The listener the results and messages are passed on
+     *                  to.
+     * @param writer    Writes the results.
+     */
+    public ExportListener(CrawlListener next, ResultWriter writer) {
+        this.next = next;
+        this.writer = writer;
+    }
+
+
+    /*
+        Writes the result and passes it on.
+    */
+    @Override
+    public void resultFound(InformationPackage infoPackage) {
+        if(!failed) {
+            try {
+                writer.write(infoPackage);
+            } catch (IOException err) {
+                failed = true;
+                ErrorReport.createErrorReport(err);
+                next.message("Export failed: " + err.getMessage());
+            }
+        }
+        next.resultFound(infoPackage);
+    }
+
+
+    /*
+        Passes the message on.
+    */
+    @Override
+    public void message(String text) {
+        next.message(text);
+    }
+
+
+    /**
+     * Writes the buffered results and closes the file.
+     */
+    public void close() {
+        try {
+            writer.close();
+            next.message("Exported " + writer.getRecords() + " results");
+        } catch (IOException err) {
+            ErrorReport.createErrorReport(err);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package web.crawler.infoexport;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -14,7 +15,9 @@ import web.crawler.crawling.InformationPackage;
 
 /**
  * Exports the data in the InformationPackage list as a text file to a 
- * specified file location. 
+ * specified file location. If the file name ends with ".csv", ".jsonl" or
+ * ".bin" (optionally followed by ".gz") the data is written in that format
+ * with a ResultWriter instead.
  *
  * @author Jordan Hartwick
  * May 22, 2016
@@ -52,13 +55,21 @@ public class InfoExporter {
             }
         }        
             
-        PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(fileName, true)));
+        if(ResultWriter.formatOf(fileName) != null) {
+            try (ResultWriter writer = ResultWriter.open(new File(fileName), null, null)) {
+                for(int i = 0; i < listModel.getSize(); i++) {
+                    writer.write((InformationPackage) listModel.getElementAt(i));
+                }
+            }
+        } else {
+            PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(fileName, true)));
 
-        for(int i = 0; i < listModel.getSize(); i++) {
-            pw.println(((InformationPackage) listModel.getElementAt(i)).toString());
-        }
+            for(int i = 0; i < listModel.getSize(); i++) {
+                pw.println(((InformationPackage) listModel.getElementAt(i)).toString());
+            }
 
-        pw.close();
+            pw.close();
+        }
         JOptionPane.showMessageDialog(null, "File saved.", "Save File", 1);
     }
     
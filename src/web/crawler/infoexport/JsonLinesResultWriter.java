@@ -0,0 +1,82 @@
+package web.crawler.infoexport;
+
+import java.io.File;
+import java.io.IOException;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * Writes results as JSON Lines: one JSON object per line, such as
+ *
+ *   {"link":"http://example.com/","counts":{"java":3,"crawler":0}}
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public class JsonLinesResultWriter extends ResultWriter {
+
+
+    /**
+     * Hex digits for escapes.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+    /**
+     * Creates a new instance of the JsonLinesResultWriter class.
+     *
+     * @param file  The file.
+     * @param gzip  True to gzip the file.
+     * @throws IOException  If the file could not be opened.
+     */
+    public JsonLinesResultWriter(File file, boolean gzip) throws IOException {
+        super(file, gzip);
+    }
+
+
+    /*
+        Writes the result as one line of JSON.
+    */
+    @Override
+    protected void encode(InformationPackage infoPackage) throws IOException {
+        String[] queries = infoPackage.getSearchQueries();
+        int[] occurrences = infoPackage.getSearchQueryOccurrences();
+
+        putAscii("{\"link\":");
+        putString(infoPackage.getLink());
+        putAscii(",\"counts\":{");
+        for(int i = 0; i < queries.length; i++) {
+            if(i > 0) put(',');
+            putString(queries[i]);
+            put(':');
+            putDecimal(occurrences[i]);
+        }
+        putAscii("}}\n");
+    }
+
+
+    /**
+     * Puts a JSON string, escaping quotes, backslashes and control
+     * characters.
+     *
+     * @param s     The string.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    private void putString(String s) throws IOException {
+        put('"');
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if(c < 0x20) {
+                putAscii("\\u00");
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xF]);
+            } else {
+                i = putUtf8(s, i);
+            }
+        }
+        put('"');
+    }
+}
@@ -0,0 +1,264 @@
+package web.crawler.infoexport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * A ResultWriter writes InformationPackages to a file one at a time, so
+ * results can be saved while a crawl runs instead of all at the end. Records
+ * are encoded into a buffer, and the buffer is written to the file's channel
+ * when it is full, when flush is called and when the writer is closed. The
+ * file can be gzipped as it is written.
+ *
+ * The formats are CSV, JSON Lines and a compact binary format; see the
+ * subclasses. Writers are safe to use from several threads.
+ *
+ * @author Jordan Hartwick
+ * June 25, 2016
+ */
+public abstract class ResultWriter implements Closeable {
+
+
+    /**
+     * The size of the write buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+    /**
+     * The channel the encoded records are written to.
+     */
+    private final WritableByteChannel channel;
+
+
+    /**
+     * The encoded records waiting to be written.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+
+    /**
+     * The amount of records written.
+     */
+    private long records;
+
+
+    /**
+     * Creates a new instance of the ResultWriter class that writes to a file,
+     * replacing anything in it.
+     *
+     * @param file  The file.
+     * @param gzip  True to gzip the file.
+     * @throws IOException  If the file could not be opened.
+     */
+    protected ResultWriter(File file, boolean gzip) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file.toPath(),
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING);
+        channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE))
+                    : fileChannel;
+    }
+
+
+    /**
+     * Opens a writer for a file. If the format is null it is taken from the
+     * file's extension, and if gzip is null the file is gzipped when its name
+     * ends with ".gz".
+     *
+     * @param file      The file.
+     * @param format    "csv", "jsonl" or "binary", or null.
+     * @param gzip      True to gzip the file, or null.
+     * @return          The writer.
+     * @throws IOException  If the file could not be opened.
+     * @throws IllegalArgumentException If the format is not known.
+     */
+    public static ResultWriter open(File file, String format, Boolean gzip) throws IOException {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        boolean compress = gzip != null ? gzip : name.endsWith(".gz");
+        String type = format != null ? format.toLowerCase(Locale.ENGLISH) : formatOf(name);
+
+        if(type == null) {
+            throw new IllegalArgumentException("Unknown export format for " + file);
+        }
+
+        switch(type) {
+            case "csv":
+                return new CsvResultWriter(file, compress);
+            case "jsonl":
+                return new JsonLinesResultWriter(file, compress);
+            case "binary":
+                return new BinaryResultWriter(file, compress);
+            default:
+                throw new IllegalArgumentException("Unknown export format " + format);
+        }
+    }
+
+
+    /**
+     * Returns the format for a file name, ignoring a ".gz" ending.
+     *
+     * @param name  The file name.
+     * @return      "csv", "jsonl" or "binary", or null if the extension is
+     *              not one of theirs.
+     */
+    public static String formatOf(String name) {
+        String base = name.toLowerCase(Locale.ENGLISH);
+        if(base.endsWith(".gz")) base = base.substring(0, base.length() - 3);
+
+        if(base.endsWith(".csv")) return "csv";
+        if(base.endsWith(".jsonl") || base.endsWith(".json")) return "jsonl";
+        if(base.endsWith(".bin") || base.endsWith(".wcr")) return "binary";
+        return null;
+    }
+
+
+    /**
+     * Writes an InformationPackage.
+     *
+     * @param infoPackage   The InformationPackage.
+     * @throws IOException  If the file could not be written.
+     */
+    public synchronized void write(InformationPackage infoPackage) throws IOException {
+        encode(infoPackage);
+        records++;
+    }
+
+
+    /**
+     * Returns the amount of records written.
+     *
+     * @return  The amount of records written.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException  If the file could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        drain();
+    }
+
+
+    /*
+        Writes the buffered records and closes the file.
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Encodes one InformationPackage into the buffer with the put methods.
+     *
+     * @param infoPackage   The InformationPackage.
+     * @throws IOException  If the file could not be written.
+     */
+    protected abstract void encode(InformationPackage infoPackage) throws IOException;
+
+
+    /**
+     * Puts a byte in the buffer.
+     *
+     * @param b     The byte.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    protected final void put(int b) throws IOException {
+        if(!buffer.hasRemaining()) drain();
+        buffer.put((byte) b);
+    }
+
+
+    /**
+     * Puts the ASCII characters of a string in the buffer.
+     *
+     * @param s     The string, which must only have ASCII characters.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    protected final void putAscii(String s) throws IOException {
+        for(int i = 0; i < s.length(); i++) put(s.charAt(i));
+    }
+
+
+    /**
+     * Puts a number in the buffer as decimal digits.
+     *
+     * @param n     The number.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    protected final void putDecimal(long n) throws IOException {
+        putAscii(Long.toString(n));
+    }
+
+
+    /**
+     * Puts a character in the buffer encoded as UTF-8.
+     *
+     * @param s     The string the character is in.
+     * @param i     The index of the character.
+     * @return      The index of the last char used, which is i + 1 for a
+     *              surrogate pair and i otherwise.
+     * @throws IOException  If the buffer was full and could not be written.
+     */
+    protected final int putUtf8(CharSequence s, int i) throws IOException {
+        char c = s.charAt(i);
+
+        if(c < 0x80) {
+            put(c);
+        } else if(c < 0x800) {
+            put(0xC0 | (c >> 6));
+            put(0x80 | (c & 0x3F));
+        } else if(Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            put(0xF0 | (cp >> 18));
+            put(0x80 | ((cp >> 12) & 0x3F));
+            put(0x80 | ((cp >> 6) & 0x3F));
+            put(0x80 | (cp & 0x3F));
+            return i + 1;
+        } else if(Character.isSurrogate(c)) {
+            put('?');
+        } else {
+            put(0xE0 | (c >> 12));
+            put(0x80 | ((c >> 6) & 0x3F));
+            put(0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+
+    /**
+     * Writes everything in the buffer to the channel.
+     *
+     * @throws IOException  If the file could not be written.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) channel.write(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,835 @@
+package web.crawler.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * The CrawlMetrics count what a crawling session has done and time each stage
+ * of scanning a page, so bottlenecks can be found while a crawl runs. Every
+ * crawler updates the same CrawlMetrics, so the counters are LongAdders that
+ * do not make the crawlers wait on each other.
+ *
+ * Gauges are values read when the metrics are read, such as the amount of
+ * links waiting in the frontier. The metrics can be published as a JMX MBean
+ * and written as text or JSON.
+ *
+ * @author Jordan Hartwick
+ * June 22, 2016
+ */
+public class CrawlMetrics implements CrawlMetricsMBean {
+
+
+    /**
+     * The stages of scanning a page.
+     */
+    public enum Stage {
+
+        /** Connecting and downloading the page. */
+        FETCH,
+
+        /** Parsing the page and collecting its links. */
+        PARSE,
+
+        /** Counting the search queries. */
+        MATCH,
+
+        /** Adding the page's links to the frontier. */
+        ENQUEUE
+    }
+
+
+    /**
+     * The name of the gauge for the amount of links waiting in the frontier.
+     */
+    public static final String QUEUE_DEPTH = "queueDepth";
+
+
+    /**
+     * The name of the gauge for the amount of links scanned.
+     */
+    public static final String VISITED_LINKS = "visitedLinks";
+
+
+    /**
+     * The name of the gauge for the amount of crawlers running.
+     */
+    public static final String ACTIVE_CRAWLERS = "activeCrawlers";
+
+
+    /**
+     * The name of the gauge for the amount of links sent to other nodes of
+     * the cluster.
+     */
+    public static final String CLUSTER_SENT = "clusterLinksSent";
+
+
+    /**
+     * The name of the gauge for the amount of links received from other
+     * nodes of the cluster.
+     */
+    public static final String CLUSTER_RECEIVED = "clusterLinksReceived";
+
+
+    /**
+     * The name of the gauge for the amount of links that could not be sent
+     * to other nodes of the cluster.
+     */
+    public static final String CLUSTER_DROPPED = "clusterLinksDropped";
+
+
+    /**
+     * The name of the gauge for the most fetches allowed in flight.
+     */
+    public static final String FETCH_LIMIT = "fetchLimit";
+
+
+    /**
+     * The name of the gauge for the amount of fetches in flight.
+     */
+    public static final String FETCHES_IN_FLIGHT = "fetchesInFlight";
+
+
+    /**
+     * The name of the gauge for the amount of times a limit on the fetches
+     * in flight was lowered.
+     */
+    public static final String FETCH_BACK_OFFS = "fetchBackOffs";
+
+
+    /**
+     * The name the MBean is published under.
+     */
+    private static final String OBJECT_NAME = "web.crawler:type=CrawlMetrics";
+
+
+    /**
+     * When these metrics were created, in nanoseconds.
+     */
+    private final long startNanos = System.nanoTime();
+
+
+    /**
+     * The amount of pages downloaded.
+     */
+    private final LongAdder pages = new LongAdder();
+
+
+    /**
+     * The amount of bytes downloaded.
+     */
+    private final LongAdder bytes = new LongAdder();
+
+
+    /**
+     * The amount of pages that contained a search query.
+     */
+    private final LongAdder hits = new LongAdder();
+
+
+    /**
+     * The amount of links found on pages.
+     */
+    private final LongAdder links = new LongAdder();
+
+
+    /**
+     * The amount of links found that were already scanned or waiting.
+     */
+    private final LongAdder duplicates = new LongAdder();
+
+
+    /**
+     * The amount of pages whose results were taken from the page cache.
+     */
+    private final LongAdder cachedPages = new LongAdder();
+
+
+    /**
+     * The amount of pages that were near copies of pages already crawled.
+     */
+    private final LongAdder nearDuplicates = new LongAdder();
+
+
+    /**
+     * The amount of links dropped because robots.txt disallows them.
+     */
+    private final LongAdder robotsDenied = new LongAdder();
+
+
+    /**
+     * The amount of links and pages skipped because the fetch policy says
+     * they cannot be scanned.
+     */
+    private final LongAdder skipped = new LongAdder();
+
+
+    /**
+     * The amount of pages cut off at the most bytes the fetch policy allows.
+     */
+    private final LongAdder truncated = new LongAdder();
+
+
+    /**
+     * The amount of pages that could not be scanned.
+     */
+    private final LongAdder errors = new LongAdder();
+
+
+    /**
+     * The amount of errors of each type.
+     */
+    private final ConcurrentMap<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+
+
+    /**
+     * The timers of the stages, in the order of Stage.
+     */
+    private final StageTimer[] timers;
+
+
+    /**
+     * The gauges, by name.
+     */
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a new instance of the CrawlMetrics class with every counter at
+     * zero and no gauges.
+     */
+    public CrawlMetrics() {
+        timers = new StageTimer[Stage.values().length];
+        for(int i = 0; i < timers.length; i++) {
+            timers[i] = new StageTimer();
+        }
+    }
+
+
+    /**
+     * Records the time taken by a stage.
+     *
+     * @param stage         The stage.
+     * @param startNanos    When the stage started, from System.nanoTime.
+     * @return              When the stage ended, so the next stage can be
+     *                      timed from it.
+     */
+    public long time(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        timers[stage.ordinal()].add(now - startNanos);
+        return now;
+    }
+
+
+    /**
+     * Records a downloaded page.
+     *
+     * @param size  The bytes received for the page, before any content
+     *              encoding was undone.
+     */
+    public void page(long size) {
+        pages.increment();
+        bytes.add(size);
+    }
+
+
+    /**
+     * Records a page that contained a search query.
+     */
+    public void hit() {
+        hits.increment();
+    }
+
+
+    /**
+     * Records the links found on a page.
+     *
+     * @param count     The amount of links.
+     */
+    public void links(int count) {
+        links.add(count);
+    }
+
+
+    /**
+     * Records a found link that was dropped because it was already scanned or
+     * waiting.
+     */
+    public void duplicate() {
+        duplicates.increment();
+    }
+
+
+    /**
+     * Records a page whose links and counts were taken from the page cache
+     * because it had not changed.
+     */
+    public void cached() {
+        cachedPages.increment();
+    }
+
+
+    /**
+     * Records a page whose links were not followed because it was a near copy
+     * of a page already crawled.
+     */
+    public void nearDuplicate() {
+        nearDuplicates.increment();
+    }
+
+
+    /**
+     * Records a link that was dropped because its site's robots.txt
+     * disallows it.
+     */
+    public void robotsDenied() {
+        robotsDenied.increment();
+    }
+
+
+    /**
+     * Records a link that was not fetched, or a page whose body was not read,
+     * because the fetch policy says it cannot be scanned.
+     */
+    public void skipped() {
+        skipped.increment();
+    }
+
+
+    /**
+     * Records a page that was only scanned up to the most bytes the fetch
+     * policy allows.
+     */
+    public void truncated() {
+        truncated.increment();
+    }
+
+
+    /**
+     * Records a page that could not be scanned.
+     *
+     * @param type  The type of error, such as "HTTP 404" or the name of the
+     *              exception.
+     */
+    public void error(String type) {
+        errors.increment();
+
+        LongAdder count = errorsByType.get(type);
+        if(count == null) {
+            LongAdder added = new LongAdder();
+            count = errorsByType.putIfAbsent(type, added);
+            if(count == null) count = added;
+        }
+        count.increment();
+    }
+
+
+    /**
+     * Adds a gauge, replacing any gauge with the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param value Reads the gauge's value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+
+    /**
+     * Returns the value of a gauge.
+     *
+     * @param name  The name of the gauge.
+     * @return      The value of the gauge, or -1 if there is no such gauge.
+     */
+    public long gaugeValue(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return gauge == null ? -1 : gauge.getAsLong();
+    }
+
+
+    /**
+     * Returns the timer of a stage.
+     *
+     * @param stage     The stage.
+     * @return          The timer of the stage.
+     */
+    public StageTimer timer(Stage stage) {
+        return timers[stage.ordinal()];
+    }
+
+
+    /**
+     * Publishes these metrics as a JMX MBean, replacing any metrics published
+     * before.
+     *
+     * @throws JMException  If the MBean could not be published.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+
+        if(server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+
+    /*
+        Returns the amount of pages downloaded.
+    */
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+
+    /*
+        Returns the amount of bytes downloaded.
+    */
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+
+    /*
+        Returns the amount of pages that contained a search query.
+    */
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+
+    /*
+        Returns the amount of links found on pages.
+    */
+    @Override
+    public long getLinks() {
+        return links.sum();
+    }
+
+
+    /*
+        Returns the amount of found links that were already scanned or waiting.
+    */
+    @Override
+    public long getDuplicateLinks() {
+        return duplicates.sum();
+    }
+
+
+    /*
+        Returns the amount of pages whose results were taken from the page
+        cache.
+    */
+    @Override
+    public long getCachedPages() {
+        return cachedPages.sum();
+    }
+
+
+    /*
+        Returns the amount of pages that were near copies of pages already
+        crawled.
+    */
+    @Override
+    public long getNearDuplicatePages() {
+        return nearDuplicates.sum();
+    }
+
+
+    /*
+        Returns the amount of links dropped because robots.txt disallows them.
+    */
+    @Override
+    public long getRobotsDenied() {
+        return robotsDenied.sum();
+    }
+
+
+    /*
+        Returns the amount of links and pages skipped because the fetch policy
+        says they cannot be scanned.
+    */
+    @Override
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+
+    /*
+        Returns the amount of pages cut off at the most bytes the fetch policy
+        allows.
+    */
+    @Override
+    public long getTruncatedPages() {
+        return truncated.sum();
+    }
+
+
+    /*
+        Returns the amount of pages that could not be scanned.
+    */
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+
+    /*
+        Returns the amount of errors of each type, sorted by type.
+    */
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> counts = new TreeMap<>();
+        for(Map.Entry<String, LongAdder> e : errorsByType.entrySet()) {
+            counts.put(e.getKey(), e.getValue().sum());
+        }
+        return counts;
+    }
+
+
+    /*
+        Returns the seconds since these metrics were created.
+    */
+    @Override
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+
+    /*
+        Returns the average amount of pages downloaded each second.
+    */
+    @Override
+    public double getPagesPerSecond() {
+        double seconds = getUptimeSeconds();
+        return seconds > 0 ? getPages() / seconds : 0;
+    }
+
+
+    /*
+        Returns the total time spent fetching.
+    */
+    @Override
+    public double getFetchMillis() {
+        return timer(Stage.FETCH).getTotalMillis();
+    }
+
+
+    /*
+        Returns the longest fetch.
+    */
+    @Override
+    public double getFetchMaxMillis() {
+        return timer(Stage.FETCH).getMaxMillis();
+    }
+
+
+    /*
+        Returns the total time spent parsing.
+    */
+    @Override
+    public double getParseMillis() {
+        return timer(Stage.PARSE).getTotalMillis();
+    }
+
+
+    /*
+        Returns the longest parse.
+    */
+    @Override
+    public double getParseMaxMillis() {
+        return timer(Stage.PARSE).getMaxMillis();
+    }
+
+
+    /*
+        Returns the total time spent counting search queries.
+    */
+    @Override
+    public double getMatchMillis() {
+        return timer(Stage.MATCH).getTotalMillis();
+    }
+
+
+    /*
+        Returns the longest search query count.
+    */
+    @Override
+    public double getMatchMaxMillis() {
+        return timer(Stage.MATCH).getMaxMillis();
+    }
+
+
+    /*
+        Returns the total time spent adding links to the frontier.
+    */
+    @Override
+    public double getEnqueueMillis() {
+        return timer(Stage.ENQUEUE).getTotalMillis();
+    }
+
+
+    /*
+        Returns the longest time spent adding one page's links.
+    */
+    @Override
+    public double getEnqueueMaxMillis() {
+        return timer(Stage.ENQUEUE).getMaxMillis();
+    }
+
+
+    /*
+        Returns the amount of links waiting in the frontier.
+    */
+    @Override
+    public long getQueueDepth() {
+        return gaugeValue(QUEUE_DEPTH);
+    }
+
+
+    /*
+        Returns the amount of links scanned.
+    */
+    @Override
+    public long getVisitedLinks() {
+        return gaugeValue(VISITED_LINKS);
+    }
+
+
+    /*
+        Returns the amount of crawlers running.
+    */
+    @Override
+    public long getActiveCrawlers() {
+        return gaugeValue(ACTIVE_CRAWLERS);
+    }
+
+
+    /*
+        Returns the metrics as lines of text.
+    */
+    @Override
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "uptime %.1fs, %d pages (%.1f/s), %d bytes, %d hits, %d links, %d duplicate links, %d cached pages, %d near duplicate pages, %d robots denied, %d skipped, %d truncated pages%n",
+                                getUptimeSeconds(), getPages(), getPagesPerSecond(),
+                                getBytes(), getHits(), getLinks(), getDuplicateLinks(),
+                                getCachedPages(), getNearDuplicatePages(), getRobotsDenied(),
+                                getSkipped(), getTruncatedPages()));
+
+        sb.append("errors ").append(getErrors());
+        for(Map.Entry<String, Long> e : getErrorsByType().entrySet()) {
+            sb.append(", ").append(e.getKey()).append(' ').append(e.getValue());
+        }
+        sb.append(System.lineSeparator());
+
+        for(Stage stage : Stage.values()) {
+            StageTimer t = timer(stage);
+            sb.append(String.format(Locale.ROOT, "%-8s %d calls, %.1fms total, %.3fms mean, %.1fms max%n",
+                                    stage.name().toLowerCase(Locale.ROOT), t.getCount(),
+                                    t.getTotalMillis(), t.getMeanMillis(), t.getMaxMillis()));
+        }
+
+        sb.append("gauges");
+        String separator = " ";
+        for(Map.Entry<String, Long> e : gaugeValues().entrySet()) {
+            sb.append(separator).append(e.getKey()).append(' ').append(e.getValue());
+            separator = ", ";
+        }
+        sb.append(System.lineSeparator());
+
+        return sb.toString();
+    }
+
+
+    /*
+        Returns the metrics as one line of JSON.
+    */
+    @Override
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"time\":").append(System.currentTimeMillis())
+          .append(",\"uptimeSeconds\":").append(format(getUptimeSeconds()))
+          .append(",\"pages\":").append(getPages())
+          .append(",\"pagesPerSecond\":").append(format(getPagesPerSecond()))
+          .append(",\"bytes\":").append(getBytes())
+          .append(",\"hits\":").append(getHits())
+          .append(",\"links\":").append(getLinks())
+          .append(",\"duplicateLinks\":").append(getDuplicateLinks())
+          .append(",\"cachedPages\":").append(getCachedPages())
+          .append(",\"nearDuplicatePages\":").append(getNearDuplicatePages())
+          .append(",\"robotsDenied\":").append(getRobotsDenied())
+          .append(",\"skipped\":").append(getSkipped())
+          .append(",\"truncatedPages\":").append(getTruncatedPages())
+          .append(",\"errors\":{\"total\":").append(getErrors());
+        for(Map.Entry<String, Long> e : getErrorsByType().entrySet()) {
+            sb.append(',');
+            appendJsonString(sb, e.getKey());
+            sb.append(':').append(e.getValue());
+        }
+
+        sb.append("},\"stages\":{");
+        for(Stage stage : Stage.values()) {
+            StageTimer t = timer(stage);
+            if(stage.ordinal() > 0) sb.append(',');
+            sb.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":{")
+              .append("\"count\":").append(t.getCount())
+              .append(",\"totalMillis\":").append(format(t.getTotalMillis()))
+              .append(",\"meanMillis\":").append(format(t.getMeanMillis()))
+              .append(",\"maxMillis\":").append(format(t.getMaxMillis()))
+              .append('}');
+        }
+
+        sb.append("},\"gauges\":{");
+        boolean first = true;
+        for(Map.Entry<String, Long> e : gaugeValues().entrySet()) {
+            if(!first) sb.append(',');
+            appendJsonString(sb, e.getKey());
+            sb.append(':').append(e.getValue());
+            first = false;
+        }
+        sb.append("}}");
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Reads every gauge.
+     *
+     * @return  The value of each gauge, sorted by name.
+     */
+    private Map<String, Long> gaugeValues() {
+        Map<String, Long> values = new TreeMap<>();
+        for(Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            values.put(e.getKey(), e.getValue().getAsLong());
+        }
+        return values;
+    }
+
+
+    /**
+     * Formats a number for JSON with three decimal places.
+     *
+     * @param value     The number.
+     * @return          The formatted number.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+
+    /**
+     * Appends a JSON string, escaping quotes, backslashes and control
+     * characters.
+     *
+     * @param sb    The builder to append to.
+     * @param s     The string.
+     */
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if(c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+
+    /**
+     * Times one stage: how many times it ran, the total time and the longest
+     * time.
+     */
+    public static class StageTimer {
+
+
+        /** The amount of times the stage ran. */
+        private final LongAdder count = new LongAdder();
+
+
+        /** The total time, in nanoseconds. */
+        private final LongAdder totalNanos = new LongAdder();
+
+
+        /** The longest time, in nanoseconds. */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+
+        /**
+         * Records one run of the stage.
+         *
+         * @param nanos     How long it took, in nanoseconds.
+         */
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+
+            long max;
+            while(nanos > (max = maxNanos.get())) {
+                if(maxNanos.compareAndSet(max, nanos)) break;
+            }
+        }
+
+
+        /**
+         * Returns the amount of times the stage ran.
+         *
+         * @return  The amount of times the stage ran.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+
+        /**
+         * Returns the total time in milliseconds.
+         *
+         * @return  The total time in milliseconds.
+         */
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+
+        /**
+         * Returns the mean time in milliseconds.
+         *
+         * @return  The mean time in milliseconds, or 0 if the stage never
+         *          ran.
+         */
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+
+        /**
+         * Returns the longest time in milliseconds.
+         *
+         * @return  The longest time in milliseconds.
+         */
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+    }
+}
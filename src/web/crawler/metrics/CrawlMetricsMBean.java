@@ -0,0 +1,236 @@
+package web.crawler.metrics;
+
+import java.util.Map;
+
+
+/**
+ * The attributes and operations of the CrawlMetrics that are published
+ * through JMX.
+ *
+ * @author Jordan Hartwick
+ * June 22, 2016
+ */
+public interface CrawlMetricsMBean {
+
+
+    /**
+     * Returns the amount of pages downloaded.
+     *
+     * @return  The amount of pages downloaded.
+     */
+    long getPages();
+
+
+    /**
+     * Returns the amount of bytes downloaded.
+     *
+     * @return  The amount of bytes downloaded.
+     */
+    long getBytes();
+
+
+    /**
+     * Returns the amount of pages that contained a search query.
+     *
+     * @return  The amount of pages that contained a search query.
+     */
+    long getHits();
+
+
+    /**
+     * Returns the amount of links found on pages.
+     *
+     * @return  The amount of links found on pages.
+     */
+    long getLinks();
+
+
+    /**
+     * Returns the amount of found links that were dropped because they were
+     * already scanned or waiting.
+     *
+     * @return  The amount of duplicate links.
+     */
+    long getDuplicateLinks();
+
+
+    /**
+     * Returns the amount of pages whose links and counts were taken from the
+     * page cache because they had not changed.
+     *
+     * @return  The amount of cached pages.
+     */
+    long getCachedPages();
+
+
+    /**
+     * Returns the amount of pages whose links were not followed because they
+     * were near copies of pages already crawled.
+     *
+     * @return  The amount of near duplicate pages.
+     */
+    long getNearDuplicatePages();
+
+
+    /**
+     * Returns the amount of links dropped because their site's robots.txt
+     * disallows them.
+     *
+     * @return  The amount of links denied by robots.txt.
+     */
+    long getRobotsDenied();
+
+
+    /**
+     * Returns the amount of links that were not fetched, and pages whose body
+     * was not read, because the fetch policy says they cannot be scanned.
+     *
+     * @return  The amount of links and pages skipped.
+     */
+    long getSkipped();
+
+
+    /**
+     * Returns the amount of pages that were only scanned up to the most bytes
+     * the fetch policy allows.
+     *
+     * @return  The amount of truncated pages.
+     */
+    long getTruncatedPages();
+
+
+    /**
+     * Returns the amount of pages that could not be scanned.
+     *
+     * @return  The amount of pages that could not be scanned.
+     */
+    long getErrors();
+
+
+    /**
+     * Returns the amount of errors of each type.
+     *
+     * @return  The amount of errors of each type, sorted by type.
+     */
+    Map<String, Long> getErrorsByType();
+
+
+    /**
+     * Returns the seconds since the session started.
+     *
+     * @return  The seconds since the session started.
+     */
+    double getUptimeSeconds();
+
+
+    /**
+     * Returns the average amount of pages downloaded each second.
+     *
+     * @return  The average amount of pages downloaded each second.
+     */
+    double getPagesPerSecond();
+
+
+    /**
+     * Returns the total time spent fetching pages.
+     *
+     * @return  The total time in milliseconds.
+     */
+    double getFetchMillis();
+
+
+    /**
+     * Returns the longest time spent fetching one page.
+     *
+     * @return  The longest time in milliseconds.
+     */
+    double getFetchMaxMillis();
+
+
+    /**
+     * Returns the total time spent parsing pages.
+     *
+     * @return  The total time in milliseconds.
+     */
+    double getParseMillis();
+
+
+    /**
+     * Returns the longest time spent parsing one page.
+     *
+     * @return  The longest time in milliseconds.
+     */
+    double getParseMaxMillis();
+
+
+    /**
+     * Returns the total time spent counting search queries.
+     *
+     * @return  The total time in milliseconds.
+     */
+    double getMatchMillis();
+
+
+    /**
+     * Returns the longest time spent counting search queries on one page.
+     *
+     * @return  The longest time in milliseconds.
+     */
+    double getMatchMaxMillis();
+
+
+    /**
+     * Returns the total time spent adding links to the frontier.
+     *
+     * @return  The total time in milliseconds.
+     */
+    double getEnqueueMillis();
+
+
+    /**
+     * Returns the longest time spent adding one page's links to the frontier.
+     *
+     * @return  The longest time in milliseconds.
+     */
+    double getEnqueueMaxMillis();
+
+
+    /**
+     * Returns the amount of links waiting in the frontier.
+     *
+     * @return  The amount of links waiting, or -1 if unknown.
+     */
+    long getQueueDepth();
+
+
+    /**
+     * Returns the amount of links scanned.
+     *
+     * @return  The amount of links scanned, or -1 if unknown.
+     */
+    long getVisitedLinks();
+
+
+    /**
+     * Returns the amount of crawlers running.
+     *
+     * @return  The amount of crawlers running, or -1 if unknown.
+     */
+    long getActiveCrawlers();
+
+
+    /**
+     * Returns all of the metrics as lines of text.
+     *
+     * @return  The metrics as text.
+     */
+    String toText();
+
+
+    /**
+     * Returns all of the metrics as one line of JSON.
+     *
+     * @return  The metrics as JSON.
+     */
+    String toJson();
+}
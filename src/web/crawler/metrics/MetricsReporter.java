@@ -0,0 +1,167 @@
+package web.crawler.metrics;
+
+import errorreport.ErrorReport;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The MetricsReporter writes CrawlMetrics to a file or to standard error at a
+ * fixed interval, and once more when it is stopped. Each dump is added to the
+ * end of the file: a block of lines in text format, or one line in JSON
+ * format so the file can be read as JSON Lines.
+ *
+ * @author Jordan Hartwick
+ * June 22, 2016
+ */
+public class MetricsReporter {
+
+
+    /**
+     * The metrics to write.
+     */
+    private final CrawlMetrics metrics;
+
+
+    /**
+     * Where the metrics are written.
+     */
+    private final PrintWriter out;
+
+
+    /**
+     * True to write JSON, false to write text.
+     */
+    private final boolean json;
+
+
+    /**
+     * Writes the metrics at a fixed interval.
+     */
+    private ScheduledExecutorService timer;
+
+
+    /**
+     * Creates a new instance of the MetricsReporter class.
+     *
+     * @param metrics   The metrics to write.
+     * @param file      The file to add the metrics to, or "-" for standard
+     *                  error.
+     * @param format    "json" for JSON, anything else for text.
+     * @throws IOException  If the file could not be opened.
+     */
+    public MetricsReporter(CrawlMetrics metrics, String file, String format) throws IOException {
+        this.metrics = metrics;
+        this.json = "json".equals(format);
+
+        Writer writer = "-".equals(file)
+                            ? new OutputStreamWriter(new NonClosingStream(System.err), StandardCharsets.UTF_8)
+                            : new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+        this.out = new PrintWriter(writer);
+    }
+
+
+    /**
+     * Starts writing the metrics at a fixed interval.
+     *
+     * @param intervalSeconds   The amount of seconds between dumps.
+     */
+    public void start(long intervalSeconds) {
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "crawler-metrics");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        timer.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                dump();
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Writes the metrics now.
+     */
+    public synchronized void dump() {
+        if(json) {
+            out.println(metrics.toJson());
+        } else {
+            out.println("--- crawl metrics " + new Date() + " ---");
+            out.print(metrics.toText());
+        }
+        out.flush();
+    }
+
+
+    /**
+     * Stops the timer, writes the metrics one last time and closes the file.
+     */
+    public void stop() {
+        if(timer != null) {
+            timer.shutdown();
+            try {
+                timer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException err) {
+                ErrorReport.createErrorReport(err);
+            }
+        }
+
+        dump();
+        out.close();
+    }
+
+
+    /**
+     * Passes writes through to a stream but does not close it, so standard
+     * error stays open when the reporter is stopped.
+     */
+    private static class NonClosingStream extends FilterOutputStream {
+
+
+        /**
+         * Creates a new instance of the NonClosingStream class.
+         *
+         * @param out   The stream to write to.
+         */
+        NonClosingStream(PrintStream out) {
+            super(out);
+        }
+
+
+        /*
+            Writes the bytes straight through instead of one at a time.
+        */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+
+        /*
+            Flushes the stream without closing it.
+        */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package web.crawler.results;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import web.crawler.crawling.InformationPackage;
+
+
+/**
+ * The ResultStore holds the results of a crawling session in columns of
+ * primitives instead of one InformationPackage per result. Each link is
+ * stored once as UTF-8 bytes in a link dictionary and given an id. Each
+ * search query has its own column of occurrence counts. Both grow in
+ * fixed-size chunks, so adding never copies what is already stored, and the
+ * counts and link bytes can be kept in direct memory.
+ *
+ * A result is a row: the id of its link and one count in each query column.
+ * get returns an InformationPackage view of a row for code that works with
+ * InformationPackages, such as the GUI list and the exporters.
+ *
+ * All methods are synchronized.
+ *
+ * @author Jordan Hartwick
+ * June 26, 2016
+ */
+public class ResultStore {
+
+
+    /**
+     * The amount of rows in a chunk, as a power of two.
+     */
+    private static final int ROW_SHIFT = 14;
+
+
+    /**
+     * The amount of rows in a chunk.
+     */
+    private static final int ROWS_PER_CHUNK = 1 << ROW_SHIFT;
+
+
+    /**
+     * The size of a chunk of link bytes. A longer link gets a chunk of its
+     * own.
+     */
+    private static final int BYTES_PER_CHUNK = 1 << 20;
+
+
+    /**
+     * The search queries, one column for each.
+     */
+    private final String[] queries;
+
+
+    /**
+     * True to keep the count columns and the link bytes in direct memory.
+     */
+    private final boolean offHeap;
+
+
+    /**
+     * The link id of each row, by chunk.
+     */
+    private int[][] linkIds = new int[4][];
+
+
+    /**
+     * The count columns: counts[query][chunk] holds the counts of one query
+     * for one chunk of rows.
+     */
+    private IntBuffer[][] counts;
+
+
+    /**
+     * The amount of rows.
+     */
+    private int rows;
+
+
+    /**
+     * The link bytes, by chunk.
+     */
+    private ByteBuffer[] linkBytes = new ByteBuffer[4];
+
+
+    /**
+     * The amount of link byte chunks in use.
+     */
+    private int byteChunks;
+
+
+    /**
+     * Where each link starts, by chunk of link ids: the byte chunk in the
+     * high 32 bits and the offset in the chunk in the low 32 bits.
+     */
+    private long[][] linkStarts = new long[4][];
+
+
+    /**
+     * The length in bytes of each link, by chunk of link ids.
+     */
+    private int[][] linkLengths = new int[4][];
+
+
+    /**
+     * The amount of links in the dictionary.
+     */
+    private int links;
+
+
+    /**
+     * The dictionary's hash table: one more than the id of a link, or 0 for
+     * an empty slot. Links are compared by their bytes, so the table holds no
+     * keys of its own.
+     */
+    private int[] table = new int[1024];
+
+
+    /**
+     * Creates a new instance of the ResultStore class.
+     *
+     * @param queries   The search queries of the results.
+     * @param offHeap   True to keep the count columns and the link bytes in
+     *                  direct memory.
+     */
+    public ResultStore(String[] queries, boolean offHeap) {
+        this.queries = queries.clone();
+        this.offHeap = offHeap;
+        this.counts = new IntBuffer[queries.length][4];
+    }
+
+
+    /**
+     * Returns the search queries.
+     *
+     * @return  The search queries.
+     */
+    public String[] getQueries() {
+        return queries.clone();
+    }
+
+
+    /**
+     * Adds a result.
+     *
+     * @param infoPackage   The result. Its search queries must be the same as
+     *                      this store's.
+     * @return              The result's row.
+     * @throws IllegalArgumentException If the result has different search
+     *                                  queries.
+     */
+    public synchronized int add(InformationPackage infoPackage) {
+        if(!Arrays.equals(infoPackage.getSearchQueries(), queries)) {
+            throw new IllegalArgumentException("The result's search queries do not match the store's");
+        }
+        return add(infoPackage.getLink(), infoPackage.getSearchQueryOccurrences());
+    }
+
+
+    /**
+     * Adds a result.
+     *
+     * @param link          The link.
+     * @param occurrences   The occurrences of each search query.
+     * @return              The result's row.
+     */
+    public synchronized int add(String link, int[] occurrences) {
+        int row = rows;
+        int chunk = row >>> ROW_SHIFT;
+        int slot = row & (ROWS_PER_CHUNK - 1);
+
+        if(slot == 0) {
+            if(chunk == linkIds.length) {
+                linkIds = Arrays.copyOf(linkIds, chunk * 2);
+                for(int q = 0; q < counts.length; q++) counts[q] = Arrays.copyOf(counts[q], chunk * 2);
+            }
+            linkIds[chunk] = new int[ROWS_PER_CHUNK];
+            for(int q = 0; q < counts.length; q++) counts[q][chunk] = newIntChunk();
+        }
+
+        linkIds[chunk][slot] = intern(link);
+        for(int q = 0; q < counts.length; q++) {
+            counts[q][chunk].put(slot, occurrences[q]);
+        }
+
+        rows++;
+        return row;
+    }
+
+
+    /**
+     * Returns the amount of rows.
+     *
+     * @return  The amount of rows.
+     */
+    public synchronized int size() {
+        return rows;
+    }
+
+
+    /**
+     * Returns the amount of different links.
+     *
+     * @return  The amount of different links.
+     */
+    public synchronized int linkCount() {
+        return links;
+    }
+
+
+    /**
+     * Returns the link of a row.
+     *
+     * @param row   The row.
+     * @return      The link.
+     */
+    public synchronized String getLink(int row) {
+        checkRow(row);
+        return linkOf(linkIds[row >>> ROW_SHIFT][row & (ROWS_PER_CHUNK - 1)]);
+    }
+
+
+    /**
+     * Returns the occurrences of a search query in a row.
+     *
+     * @param row   The row.
+     * @param query The index of the search query.
+     * @return      The occurrences.
+     */
+    public synchronized int getCount(int row, int query) {
+        checkRow(row);
+        return counts[query][row >>> ROW_SHIFT].get(row & (ROWS_PER_CHUNK - 1));
+    }
+
+
+    /**
+     * Returns an InformationPackage holding a row. The package is a copy, so
+     * it is not changed by later additions.
+     *
+     * @param row   The row.
+     * @return      An InformationPackage for the row.
+     */
+    public synchronized InformationPackage get(int row) {
+        checkRow(row);
+
+        int chunk = row >>> ROW_SHIFT;
+        int slot = row & (ROWS_PER_CHUNK - 1);
+
+        int[] occurrences = new int[queries.length];
+        for(int q = 0; q < occurrences.length; q++) {
+            occurrences[q] = counts[q][chunk].get(slot);
+        }
+        return new InformationPackage(linkOf(linkIds[chunk][slot]), queries, occurrences);
+    }
+
+
+    /**
+     * Returns the id of a link, adding it to the dictionary if it is new.
+     *
+     * @param link  The link.
+     * @return      The link's id.
+     */
+    private int intern(String link) {
+        byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+
+        int mask = table.length - 1;
+        int i = hash(bytes) & mask;
+        while(table[i] != 0) {
+            if(sameBytes(table[i] - 1, bytes)) return table[i] - 1;
+            i = (i + 1) & mask;
+        }
+
+        int id = storeLink(bytes);
+        table[i] = id + 1;
+        if(links * 4 >= table.length * 3) growTable();
+        return id;
+    }
+
+
+    /**
+     * Appends a link's bytes to the dictionary.
+     *
+     * @param bytes The link's UTF-8 bytes.
+     * @return      The new link's id.
+     */
+    private int storeLink(byte[] bytes) {
+        ByteBuffer current = byteChunks == 0 ? null : linkBytes[byteChunks - 1];
+        if(current == null || current.remaining() < bytes.length) {
+            if(byteChunks == linkBytes.length) linkBytes = Arrays.copyOf(linkBytes, byteChunks * 2);
+            int size = Math.max(BYTES_PER_CHUNK, bytes.length);
+            current = offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            linkBytes[byteChunks++] = current;
+        }
+
+        int id = links;
+        int chunk = id >>> ROW_SHIFT;
+        int slot = id & (ROWS_PER_CHUNK - 1);
+        if(slot == 0) {
+            if(chunk == linkStarts.length) {
+                linkStarts = Arrays.copyOf(linkStarts, chunk * 2);
+                linkLengths = Arrays.copyOf(linkLengths, chunk * 2);
+            }
+            linkStarts[chunk] = new long[ROWS_PER_CHUNK];
+            linkLengths[chunk] = new int[ROWS_PER_CHUNK];
+        }
+
+        linkStarts[chunk][slot] = (long) (byteChunks - 1) << 32 | current.position();
+        linkLengths[chunk][slot] = bytes.length;
+        current.put(bytes);
+
+        links++;
+        return id;
+    }
+
+
+    /**
+     * Returns true if a stored link has the given bytes.
+     *
+     * @param id    The stored link's id.
+     * @param bytes The bytes.
+     * @return      True if the bytes are the same.
+     */
+    private boolean sameBytes(int id, byte[] bytes) {
+        int chunk = id >>> ROW_SHIFT;
+        int slot = id & (ROWS_PER_CHUNK - 1);
+        if(linkLengths[chunk][slot] != bytes.length) return false;
+
+        long start = linkStarts[chunk][slot];
+        ByteBuffer buffer = linkBytes[(int) (start >>> 32)];
+        int offset = (int) start;
+        for(int i = 0; i < bytes.length; i++) {
+            if(buffer.get(offset + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Decodes a link from the dictionary.
+     *
+     * @param id    The link's id.
+     * @return      The link.
+     */
+    private String linkOf(int id) {
+        return new String(bytesOf(id), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Copies a link's bytes out of the dictionary.
+     *
+     * @param id    The link's id.
+     * @return      The link's UTF-8 bytes.
+     */
+    private byte[] bytesOf(int id) {
+        int chunk = id >>> ROW_SHIFT;
+        int slot = id & (ROWS_PER_CHUNK - 1);
+
+        long start = linkStarts[chunk][slot];
+        byte[] bytes = new byte[linkLengths[chunk][slot]];
+        ByteBuffer buffer = linkBytes[(int) (start >>> 32)].duplicate();
+        buffer.position((int) start);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+
+    /**
+     * Doubles the dictionary's hash table.
+     */
+    private void growTable() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+
+        for(int id = 0; id < links; id++) {
+            int i = hash(bytesOf(id)) & mask;
+            while(table[i] != 0) i = (i + 1) & mask;
+            table[i] = id + 1;
+        }
+    }
+
+
+    /**
+     * Hashes a link's bytes.
+     *
+     * @param bytes The bytes.
+     * @return      The hash.
+     */
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for(byte b : bytes) {
+            h = (h ^ b) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+
+    /**
+     * Creates a chunk of a count column.
+     *
+     * @return  The chunk.
+     */
+    private IntBuffer newIntChunk() {
+        return offHeap ? ByteBuffer.allocateDirect(ROWS_PER_CHUNK * 4).asIntBuffer()
+                       : IntBuffer.allocate(ROWS_PER_CHUNK);
+    }
+
+
+    /**
+     * Checks that a row exists.
+     *
+     * @param row   The row.
+     * @throws IndexOutOfBoundsException    If the row does not exist.
+     */
+    private void checkRow(int row) {
+        if(row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+    }
+}
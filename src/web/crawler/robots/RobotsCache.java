@@ -0,0 +1,402 @@
+package web.crawler.robots;
+
+import errorreport.ErrorReport;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.function.ObjLongConsumer;
+import web.crawler.frontier.PolitenessScheduler;
+
+
+/**
+ * The RobotsCache fetches the robots.txt file of each site once, compiles
+ * the rules that apply to this crawler, and keeps them for a set time. A site
+ * is a scheme, host and port, as robots.txt only covers its own site.
+ *
+ * When several crawlers need the rules of a new site at once, one fetches the
+ * file and the others wait for it, while crawlers working on other sites go
+ * on. The sites used longest ago are dropped when there are too many.
+ *
+ * As in the robots exclusion standard (RFC 9309), a missing file (any 4xx)
+ * allows everything. Up to MAX_REDIRECTS redirects are followed, also from
+ * http to https, and a redirect chain that does not end at a file is taken
+ * as a missing file. A file that could not be fetched because of a server or
+ * network error disallows everything, and is fetched again after
+ * ERROR_TTL_MILLIS instead of the full time.
+ *
+ * @author Jordan Hartwick
+ * June 30, 2016
+ */
+public class RobotsCache {
+
+
+    /**
+     * How long to wait when connecting to or reading from a site.
+     */
+    private static final int TIMEOUT_MILLIS = 3000;
+
+
+    /**
+     * The most redirects followed when fetching a robots.txt file, as RFC 9309
+     * asks for.
+     */
+    private static final int MAX_REDIRECTS = 5;
+
+
+    /**
+     * The most bytes of a robots.txt file that are read.
+     */
+    private static final int MAX_BYTES = 512 * 1024;
+
+
+    /**
+     * How long the rules of a site that could not be reached are kept.
+     */
+    private static final long ERROR_TTL_MILLIS = 5 * 60 * 1000;
+
+
+    /**
+     * The agent token the rules are chosen for.
+     */
+    private final String agent;
+
+
+    /**
+     * The user agent sent when fetching robots.txt.
+     */
+    private final String userAgent;
+
+
+    /**
+     * How long the rules of a site are kept.
+     */
+    private final long ttlMillis;
+
+
+    /**
+     * The most sites kept.
+     */
+    private final int maxSites;
+
+
+    /**
+     * Receives the host and crawl delay of each site that has one, or null.
+     */
+    private final ObjLongConsumer<String> crawlDelays;
+
+
+    /**
+     * The sites, used longest ago first.
+     */
+    private final LinkedHashMap<String, Entry> sites = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * Creates a new instance of the RobotsCache class.
+     *
+     * @param agent         The agent token the rules are chosen for.
+     * @param userAgent     The user agent sent when fetching robots.txt.
+     * @param ttlMillis     How long the rules of a site are kept.
+     * @param maxSites      The most sites kept.
+     * @param crawlDelays   Receives the host and crawl delay in milliseconds
+     *                      of each site whose rules have a crawl delay, or
+     *                      null.
+     */
+    public RobotsCache(String agent, String userAgent, long ttlMillis, int maxSites,
+                       ObjLongConsumer<String> crawlDelays) {
+        this.agent = agent;
+        this.userAgent = userAgent;
+        this.ttlMillis = ttlMillis;
+        this.maxSites = maxSites;
+        this.crawlDelays = crawlDelays;
+    }
+
+
+    /**
+     * Returns true if a link may be crawled, fetching its site's robots.txt
+     * first if it is not cached.
+     *
+     * @param link  The link, in canonical form.
+     * @return      True if the link may be crawled.
+     */
+    public boolean isAllowed(String link) {
+        String site = siteOf(link);
+        if(site == null) return true;
+
+        return entryFor(site, true).rules().isAllowed(pathOf(link));
+    }
+
+
+    /**
+     * Returns true if a link is disallowed by rules that are already cached.
+     * Never fetches anything, so it can be used on every link found.
+     *
+     * @param link  The link, in canonical form.
+     * @return      True if the cached rules disallow the link, false if they
+     *              allow it or the site's rules are not cached.
+     */
+    public boolean isKnownDisallowed(String link) {
+        String site = siteOf(link);
+        if(site == null) return false;
+
+        Entry entry = entryFor(site, false);
+        RobotsRules rules = entry == null ? null : entry.rulesIfReady();
+        return rules != null && !rules.isAllowed(pathOf(link));
+    }
+
+
+    /**
+     * Returns the amount of sites cached.
+     *
+     * @return  The amount of sites cached.
+     */
+    public synchronized int size() {
+        return sites.size();
+    }
+
+
+    /**
+     * Returns a site's entry, adding a new one if there is none or it has
+     * expired, and dropping the sites used longest ago if there are too many.
+     *
+     * @param site      The site.
+     * @param create    False to return null instead of adding an entry.
+     * @return          The site's entry, or null.
+     */
+    private synchronized Entry entryFor(String site, boolean create) {
+        Entry entry = sites.get(site);
+        if(entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            return entry;
+        }
+        if(!create) return null;
+
+        entry = new Entry(site);
+        sites.put(site, entry);
+
+        Iterator<Entry> it = sites.values().iterator();
+        while(sites.size() > maxSites && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        return entry;
+    }
+
+
+    /**
+     * Fetches and compiles a site's robots.txt.
+     *
+     * @param site  The site.
+     * @return      The rules.
+     * @throws IOException  If the file could not be fetched because of a
+     *                      server or network error.
+     */
+    private RobotsRules fetch(String site) throws IOException {
+        HttpURLConnection con = connect(new URL(site + "/robots.txt"));
+        if(con == null) {
+            return RobotsRules.ALLOW_ALL;
+        }
+
+        try {
+            int status = con.getResponseCode();
+            if(status >= 400 && status < 500) {
+                return RobotsRules.ALLOW_ALL;
+            }
+            if(status < 200 || status >= 300) {
+                throw new IOException("HTTP " + status + " fetching " + site + "/robots.txt");
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = con.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while(body.size() < MAX_BYTES && (n = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, Math.min(n, MAX_BYTES - body.size()));
+                }
+            }
+            return RobotsRules.parse(new String(body.toByteArray(), StandardCharsets.UTF_8), agent);
+        } finally {
+            con.disconnect();
+        }
+    }
+
+
+    /**
+     * Opens a connection to a robots.txt file and waits for the headers of the
+     * answer. Redirects are followed here rather than by the connection, so a
+     * redirect from http to https is followed too.
+     *
+     * @param url   The file's address.
+     * @return      The connection, with the headers of the answer read, or
+     *              null if the redirects did not end at a file.
+     * @throws IOException  If the server could not be reached.
+     */
+    private HttpURLConnection connect(URL url) throws IOException {
+        for(int redirects = 0; ; redirects++) {
+            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            try {
+                con.setInstanceFollowRedirects(false);
+                con.setRequestProperty("User-Agent", userAgent);
+                con.setConnectTimeout(TIMEOUT_MILLIS);
+                con.setReadTimeout(TIMEOUT_MILLIS);
+
+                int code = con.getResponseCode();
+                if(!isRedirect(code)) {
+                    return con;
+                }
+
+                String location = con.getHeaderField("Location");
+                if(location == null || redirects == MAX_REDIRECTS) {
+                    con.disconnect();
+                    return null;
+                }
+
+                URL next = new URL(url, location);
+                if(!next.getProtocol().equals("http") && !next.getProtocol().equals("https")) {
+                    con.disconnect();
+                    return null;
+                }
+                url = next;
+            } catch (IOException err) {
+                con.disconnect();
+                throw err;
+            }
+            con.disconnect();
+        }
+    }
+
+
+    /**
+     * Returns true if a status code is a redirect that should be followed.
+     *
+     * @param code  The status code.
+     * @return      True for 301, 302, 303, 307 and 308.
+     */
+    private static boolean isRedirect(int code) {
+        return code == 301 || code == 302 || code == 303 || code == 307 || code == 308;
+    }
+
+
+    /**
+     * Returns the site of a link: its lower case scheme, host and port.
+     *
+     * @param link  The link.
+     * @return      The site, or null if the link is not http or https.
+     */
+    static String siteOf(String link) {
+        int start = link.indexOf("://");
+        if(start == -1) return null;
+
+        String scheme = link.substring(0, start).toLowerCase(Locale.ENGLISH);
+        if(!"http".equals(scheme) && !"https".equals(scheme)) return null;
+
+        int end = start + 3;
+        while(end < link.length()) {
+            char c = link.charAt(end);
+            if(c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+        return link.substring(0, end).toLowerCase(Locale.ENGLISH);
+    }
+
+
+    /**
+     * Returns the path and query of a link, without the fragment.
+     *
+     * @param link  The link.
+     * @return      The path and query, starting with "/".
+     */
+    static String pathOf(String link) {
+        int start = link.indexOf("://");
+        int i = start == -1 ? 0 : start + 3;
+        while(i < link.length() && link.charAt(i) != '/' && link.charAt(i) != '?' && link.charAt(i) != '#') {
+            i++;
+        }
+
+        int end = link.indexOf('#', i);
+        String path = end == -1 ? link.substring(i) : link.substring(i, end);
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+
+    /**
+     * The rules of one site, fetched by the first crawler that needs them.
+     */
+    private class Entry {
+
+
+        /** The site. */
+        final String site;
+
+
+        /** The rules, or null until they are fetched. */
+        volatile RobotsRules rules;
+
+
+        /** When the rules expire, in milliseconds. */
+        volatile long expires = Long.MAX_VALUE;
+
+
+        /**
+         * Creates a new instance of the Entry class.
+         *
+         * @param site  The site.
+         */
+        Entry(String site) {
+            this.site = site;
+        }
+
+
+        /**
+         * Returns the rules, fetching them if no crawler has yet. Crawlers
+         * that ask while they are being fetched wait for them.
+         *
+         * @return  The rules.
+         */
+        synchronized RobotsRules rules() {
+            if(rules == null) {
+                long ttl = ttlMillis;
+                try {
+                    rules = fetch(site);
+                } catch (IOException | RuntimeException err) {
+                    ErrorReport.createErrorReport(err);
+                    rules = RobotsRules.DISALLOW_ALL;
+                    ttl = Math.min(ttlMillis, ERROR_TTL_MILLIS);
+                }
+                expires = System.currentTimeMillis() + ttl;
+
+                if(crawlDelays != null && rules.getCrawlDelayMillis() > 0) {
+                    crawlDelays.accept(PolitenessScheduler.hostOf(site), rules.getCrawlDelayMillis());
+                }
+            }
+            return rules;
+        }
+
+
+        /**
+         * Returns the rules if they have been fetched, without waiting for a
+         * fetch in progress.
+         *
+         * @return  The rules, or null.
+         */
+        RobotsRules rulesIfReady() {
+            return rules;
+        }
+
+
+        /**
+         * Returns true if the rules have expired.
+         *
+         * @param now   The current time in milliseconds.
+         * @return      True if the rules have expired.
+         */
+        boolean isExpired(long now) {
+            return now >= expires;
+        }
+    }
+}
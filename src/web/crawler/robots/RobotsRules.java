@@ -0,0 +1,391 @@
+package web.crawler.robots;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * The RobotsRules are the rules of one robots.txt file that apply to this
+ * crawler, compiled for fast checks.
+ *
+ * The file is read as groups of user-agent lines followed by allow, disallow
+ * and crawl-delay lines. The groups whose user-agent is the longest prefix of
+ * this crawler's agent token apply, or the "*" groups if none match. As in
+ * the robots exclusion standard (RFC 9309), the longest rule that matches a
+ * path decides, and allow wins a tie. A rule may use "*" for any characters
+ * and end with "$" to match only the end of the path.
+ *
+ * Rules without "*" or "$" are put in a trie, so a path is checked against
+ * all of them in one walk along its characters. Only the few rules with
+ * wildcards are checked one by one.
+ *
+ * @author Jordan Hartwick
+ * June 30, 2016
+ */
+public class RobotsRules {
+
+
+    /**
+     * A node's rule bit for an allow rule.
+     */
+    private static final int ALLOW = 1;
+
+
+    /**
+     * A node's rule bit for a disallow rule.
+     */
+    private static final int DISALLOW = 2;
+
+
+    /**
+     * Rules that allow every path.
+     */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new Node(), new ArrayList<Pattern>(), 0);
+
+
+    /**
+     * Rules that allow no path except "/robots.txt".
+     */
+    public static final RobotsRules DISALLOW_ALL;
+
+
+    static {
+        Node root = new Node();
+        root.rule = DISALLOW;
+        DISALLOW_ALL = new RobotsRules(root, new ArrayList<Pattern>(), 0);
+    }
+
+
+    /**
+     * The root of the trie of rules without wildcards.
+     */
+    private final Node root;
+
+
+    /**
+     * The rules with wildcards.
+     */
+    private final Pattern[] patterns;
+
+
+    /**
+     * The crawl delay in milliseconds, or 0 if there is none.
+     */
+    private final long crawlDelayMillis;
+
+
+    /**
+     * Creates a new instance of the RobotsRules class.
+     *
+     * @param root              The root of the trie of rules.
+     * @param patterns          The rules with wildcards.
+     * @param crawlDelayMillis  The crawl delay in milliseconds.
+     */
+    private RobotsRules(Node root, List<Pattern> patterns, long crawlDelayMillis) {
+        this.root = root;
+        this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+        this.crawlDelayMillis = crawlDelayMillis;
+    }
+
+
+    /**
+     * Compiles the rules of a robots.txt file that apply to an agent.
+     *
+     * @param text      The robots.txt file.
+     * @param agent     The crawler's agent token, such as "WebCrawler".
+     * @return          The compiled rules.
+     */
+    public static RobotsRules parse(String text, String agent) {
+        String token = agent.toLowerCase(Locale.ENGLISH);
+
+        List<String> groupAgents = new ArrayList<>();
+        List<String[]> groupRules = new ArrayList<>();
+        double groupDelay = -1;
+        boolean inRules = false;
+
+        int bestMatch = -1;
+        List<String[]> rules = new ArrayList<>();
+        double delay = -1;
+
+        String[] lines = text.split("\r\n|\r|\n");
+        for(int i = 0; i <= lines.length; i++) {
+            String key = null, value = null;
+            if(i < lines.length) {
+                String line = lines[i];
+                int hash = line.indexOf('#');
+                if(hash != -1) line = line.substring(0, hash);
+
+                int colon = line.indexOf(':');
+                if(colon == -1) continue;
+                key = line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+                value = line.substring(colon + 1).trim();
+            }
+
+            boolean newGroup = i == lines.length || ("user-agent".equals(key) && inRules);
+            if(newGroup && !groupAgents.isEmpty()) {
+                int match = agentMatch(groupAgents, token);
+                if(match > bestMatch) {
+                    bestMatch = match;
+                    rules = new ArrayList<>(groupRules);
+                    delay = groupDelay;
+                } else if(match == bestMatch && match >= 0) {
+                    rules.addAll(groupRules);
+                    if(groupDelay >= 0) delay = groupDelay;
+                }
+                groupAgents.clear();
+                groupRules.clear();
+                groupDelay = -1;
+                inRules = false;
+            }
+            if(key == null) break;
+
+            switch(key) {
+                case "user-agent":
+                    groupAgents.add(value.toLowerCase(Locale.ENGLISH));
+                    break;
+                case "allow":
+                case "disallow":
+                    inRules = true;
+                    if(!value.isEmpty()) groupRules.add(new String[]{key, normalize(value)});
+                    break;
+                case "crawl-delay":
+                    inRules = true;
+                    try {
+                        groupDelay = Double.parseDouble(value);
+                    } catch (NumberFormatException err) {
+                        // Ignore a crawl delay that is not a number.
+                    }
+                    break;
+                default:
+                    // Sitemap and other lines do not belong to a group.
+                    break;
+            }
+        }
+
+        Node trie = new Node();
+        List<Pattern> patterns = new ArrayList<>();
+        for(String[] rule : rules) {
+            int bit = "allow".equals(rule[0]) ? ALLOW : DISALLOW;
+            String path = rule[1];
+            if(path.indexOf('*') != -1 || path.endsWith("$")) {
+                patterns.add(new Pattern(path, bit == ALLOW));
+            } else {
+                trie.insert(path, bit);
+            }
+        }
+
+        long delayMillis = delay > 0 ? (long) Math.min(delay * 1000, Long.MAX_VALUE) : 0;
+        return new RobotsRules(trie, patterns, delayMillis);
+    }
+
+
+    /**
+     * Returns true if a path may be crawled. "/robots.txt" may always be
+     * crawled.
+     *
+     * @param path  The path and query of a link, starting with "/".
+     * @return      True if the path may be crawled.
+     */
+    public boolean isAllowed(String path) {
+        if("/robots.txt".equals(path)) return true;
+
+        int bestLength = -1;
+        boolean allowed = true;
+
+        Node node = root;
+        for(int i = 0; node != null; i++) {
+            if(node.rule != 0) {
+                bestLength = i;
+                allowed = (node.rule & ALLOW) != 0;
+            }
+            if(i == path.length()) break;
+            node = node.child(path.charAt(i));
+        }
+
+        for(Pattern pattern : patterns) {
+            int length = pattern.path.length();
+            if((length > bestLength || length == bestLength && pattern.allow && !allowed)
+                    && pattern.matches(path)) {
+                bestLength = length;
+                allowed = pattern.allow;
+            }
+        }
+        return allowed;
+    }
+
+
+    /**
+     * Returns the crawl delay.
+     *
+     * @return  The crawl delay in milliseconds, or 0 if there is none.
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+
+    /**
+     * Returns how well a group's user-agent lines match the agent token: the
+     * length of the longest line that is a prefix of the token, 0 for "*",
+     * or -1 if none match.
+     *
+     * @param agents    The group's user-agent values, in lower case.
+     * @param token     The agent token, in lower case.
+     * @return          How well the group matches.
+     */
+    private static int agentMatch(List<String> agents, String token) {
+        int best = -1;
+        for(String agent : agents) {
+            if("*".equals(agent)) {
+                best = Math.max(best, 0);
+            } else if(!agent.isEmpty() && token.startsWith(agent)) {
+                best = Math.max(best, agent.length());
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Puts a rule's path in the form links are in: starting with "/" and with
+     * upper case percent escapes.
+     *
+     * @param path  The rule's path.
+     * @return      The normalized path.
+     */
+    private static String normalize(String path) {
+        StringBuilder sb = new StringBuilder(path.length() + 1);
+        if(path.charAt(0) != '/' && path.charAt(0) != '*') sb.append('/');
+
+        for(int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if(c == '%' && i + 2 < path.length()) {
+                sb.append('%').append(Character.toUpperCase(path.charAt(i + 1)))
+                  .append(Character.toUpperCase(path.charAt(i + 2)));
+                i += 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * A node of the trie of rules. A node at depth n ends the rules whose
+     * path is the n characters on the way to it.
+     */
+    private static class Node {
+
+
+        /** The characters of the children, in the order they were added. */
+        char[] keys = new char[0];
+
+
+        /** The children. */
+        Node[] children = new Node[0];
+
+
+        /** The rules ending here: ALLOW, DISALLOW, both or 0. */
+        int rule;
+
+
+        /**
+         * Returns the child for a character.
+         *
+         * @param c     The character.
+         * @return      The child, or null.
+         */
+        Node child(char c) {
+            for(int i = 0; i < keys.length; i++) {
+                if(keys[i] == c) return children[i];
+            }
+            return null;
+        }
+
+
+        /**
+         * Adds a rule below this node.
+         *
+         * @param path  The rule's path.
+         * @param bit   ALLOW or DISALLOW.
+         */
+        void insert(String path, int bit) {
+            Node node = this;
+            for(int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                Node next = node.child(c);
+                if(next == null) {
+                    next = new Node();
+                    int n = node.keys.length;
+                    node.keys = Arrays.copyOf(node.keys, n + 1);
+                    node.children = Arrays.copyOf(node.children, n + 1);
+                    node.keys[n] = c;
+                    node.children[n] = next;
+                }
+                node = next;
+            }
+            node.rule |= bit;
+        }
+    }
+
+
+    /**
+     * A rule with "*" wildcards or an ending "$".
+     */
+    private static class Pattern {
+
+
+        /** The rule's path. */
+        final String path;
+
+
+        /** True for an allow rule. */
+        final boolean allow;
+
+
+        /**
+         * Creates a new instance of the Pattern class.
+         *
+         * @param path  The rule's path.
+         * @param allow True for an allow rule.
+         */
+        Pattern(String path, boolean allow) {
+            this.path = path;
+            this.allow = allow;
+        }
+
+
+        /**
+         * Returns true if the rule matches the start of a path, or the whole
+         * path if the rule ends with "$".
+         *
+         * @param s     The path.
+         * @return      True if the rule matches.
+         */
+        boolean matches(String s) {
+            boolean anchored = path.endsWith("$");
+            int end = anchored ? path.length() - 1 : path.length();
+
+            int p = 0, i = 0, star = -1, resume = 0;
+            while(true) {
+                if(p < end && path.charAt(p) == '*') {
+                    star = p++;
+                    resume = i;
+                } else if(p == end && (!anchored || i == s.length())) {
+                    return true;
+                } else if(p < end && i < s.length() && path.charAt(p) == s.charAt(i)) {
+                    p++;
+                    i++;
+                } else if(star != -1 && resume < s.length()) {
+                    p = star + 1;
+                    i = ++resume;
+                } else {
+                    return false;
+                }
+            }
+        }
+    }
+}